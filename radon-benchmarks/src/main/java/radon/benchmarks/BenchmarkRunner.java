@@ -0,0 +1,63 @@
+package radon.benchmarks;
+
+import org.openjdk.jmh.results.format.ResultFormatType;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.ChainedOptionsBuilder;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+
+/**
+ * Runs the benchmarks and stores their results as JSON in the results directory, so runs of different commits can be
+ * compared. Any argument is forwarded to JMH
+ */
+public final class BenchmarkRunner {
+
+    private static final Path RESULTS_DIRECTORY = Path.of("results");
+    private static final DateTimeFormatter TIMESTAMP_FORMAT = DateTimeFormatter.ofPattern("yyyyMMdd-HHmmss");
+
+    public static void main(String[] args) throws Exception {
+
+        CommandLineOptions commandLineOptions = new CommandLineOptions(args);
+
+        ChainedOptionsBuilder options = new OptionsBuilder()
+                .parent(commandLineOptions)
+                .jvmArgsAppend("-Djava.awt.headless=true");
+
+        if (!commandLineOptions.getResult().hasValue()) {
+
+            Files.createDirectories(RESULTS_DIRECTORY);
+
+            options.resultFormat(ResultFormatType.JSON)
+                    .result(RESULTS_DIRECTORY.resolve(resultFileName()).toString());
+        }
+
+        new Runner(options.build()).run();
+    }
+
+    private static String resultFileName() {
+        return "radon-" + commitId() + "-" + LocalDateTime.now().format(TIMESTAMP_FORMAT) + ".json";
+    }
+
+    private static String commitId() {
+        try {
+
+            Process process = new ProcessBuilder("git", "rev-parse", "--short", "HEAD").start();
+
+            try (BufferedReader reader = new BufferedReader(new InputStreamReader(process.getInputStream()))) {
+                final String commit = reader.readLine();
+                return process.waitFor() == 0 && commit != null ? commit.trim() : "unknown";
+            }
+
+        } catch (IOException | InterruptedException e) {
+            return "unknown";
+        }
+    }
+}
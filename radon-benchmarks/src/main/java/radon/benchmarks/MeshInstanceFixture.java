@@ -0,0 +1,132 @@
+package radon.benchmarks;
+
+import radon.engine.materials.HeadlessMaterial;
+import radon.engine.materials.ManagedMaterial;
+import radon.engine.meshes.StaticMesh;
+import radon.engine.meshes.views.StaticMeshView;
+import radon.engine.resource.ResourceManager;
+import radon.engine.scenes.Entity;
+import radon.engine.scenes.HeadlessScene;
+import radon.engine.scenes.components.math.Transform;
+import radon.engine.scenes.components.meshes.MeshInstanceList;
+import radon.engine.scenes.components.meshes.StaticMeshInstance;
+
+import java.nio.ByteBuffer;
+import java.util.HashSet;
+import java.util.Random;
+
+import static org.lwjgl.system.MemoryUtil.memCalloc;
+import static org.lwjgl.system.MemoryUtil.memFree;
+
+/**
+ * A headless scene of cubes randomly spread over a square area, with their transforms and spatial index up to date
+ */
+public final class MeshInstanceFixture {
+
+    private static final int MATERIAL_COUNT = 16;
+
+    private final HeadlessScene scene;
+    private final ByteBuffer vertices;
+    private final ByteBuffer indices;
+    private final StaticMesh mesh;
+    private final StaticMeshView[] meshViews;
+
+    public MeshInstanceFixture(int instanceCount, float areaSize) {
+
+        installResourceManager();
+
+        scene = new HeadlessScene("MeshInstanceFixture");
+
+        vertices = cubeVertices();
+        indices = cubeIndices();
+        mesh = new StaticMesh(0, "Cube", vertices, indices);
+
+        meshViews = new StaticMeshView[MATERIAL_COUNT];
+
+        for (int i = 0; i < MATERIAL_COUNT; i++) {
+            ManagedMaterial material = new HeadlessMaterial("Material " + i, i);
+            meshViews[i] = new StaticMeshView(mesh, material);
+        }
+
+        Random random = new Random(0);
+
+        for (int i = 0; i < instanceCount; i++) {
+
+            final float x = (random.nextFloat() - 0.5f) * areaSize;
+            final float y = random.nextFloat() * 10.0f;
+            final float z = (random.nextFloat() - 0.5f) * areaSize;
+
+            Entity entity = scene.newEntity();
+
+            entity.get(Transform.class)
+                    .position(x, y, z)
+                    .scale(0.5f + random.nextFloat() * 2.0f)
+                    .rotateY(random.nextFloat() * 6.28f);
+
+            entity.add(StaticMeshInstance.class).meshView(meshView(i));
+        }
+
+        scene.processTasks();
+        scene.transforms().update();
+        scene.meshes().update();
+    }
+
+    public HeadlessScene scene() {
+        return scene;
+    }
+
+    public StaticMeshView meshView(int index) {
+        return meshViews[index % meshViews.length];
+    }
+
+    public MeshInstanceList<StaticMeshInstance> instances() {
+        return scene.meshes().getStaticMeshInstances();
+    }
+
+    public void release() {
+        scene.terminate();
+        memFree(vertices);
+        memFree(indices);
+        Reflection.set(null, ResourceManager.class, "instance", null);
+    }
+
+    /**
+     * Meshes are tracked as resources, and the resource manager is otherwise created by the engine at startup
+     */
+    private static void installResourceManager() {
+        ResourceManager resourceManager = Reflection.allocate(ResourceManager.class);
+        Reflection.set(resourceManager, ResourceManager.class, "resources", new HashSet<>());
+        Reflection.set(null, ResourceManager.class, "instance", resourceManager);
+    }
+
+    private static ByteBuffer cubeVertices() {
+
+        ByteBuffer vertices = memCalloc(8 * StaticMesh.VERTEX_DATA_SIZE);
+
+        for (int i = 0; i < 8; i++) {
+            vertices.putFloat(i * StaticMesh.VERTEX_DATA_SIZE, (i & 1) == 0 ? -0.5f : 0.5f)
+                    .putFloat(i * StaticMesh.VERTEX_DATA_SIZE + 4, (i & 2) == 0 ? -0.5f : 0.5f)
+                    .putFloat(i * StaticMesh.VERTEX_DATA_SIZE + 8, (i & 4) == 0 ? -0.5f : 0.5f);
+        }
+
+        return vertices;
+    }
+
+    private static ByteBuffer cubeIndices() {
+
+        final int[] faces = {
+                0, 2, 1, 1, 2, 3,
+                4, 5, 6, 5, 7, 6,
+                0, 1, 4, 1, 5, 4,
+                2, 6, 3, 3, 6, 7,
+                0, 4, 2, 2, 4, 6,
+                1, 3, 5, 3, 7, 5
+        };
+
+        ByteBuffer indices = memCalloc(faces.length * Integer.BYTES);
+
+        indices.asIntBuffer().put(faces);
+
+        return indices;
+    }
+}
@@ -0,0 +1,80 @@
+package radon.benchmarks;
+
+import sun.misc.Unsafe;
+
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+
+/**
+ * Builds engine objects without running their constructors, for the fixtures whose constructors need a graphics
+ * context. Only the fields the benchmarked code reads have to be set
+ */
+public final class Reflection {
+
+    private static final Unsafe UNSAFE = unsafe();
+
+    public static <T> T allocate(Class<T> type) {
+        try {
+            return type.cast(UNSAFE.allocateInstance(type));
+        } catch (InstantiationException e) {
+            throw new IllegalStateException("Cannot allocate an instance of " + type, e);
+        }
+    }
+
+    public static void set(Object target, Class<?> owner, String fieldName, Object value) {
+        try {
+            Field field = owner.getDeclaredField(fieldName);
+            field.setAccessible(true);
+            field.set(target, value);
+        } catch (ReflectiveOperationException e) {
+            throw new IllegalStateException("Cannot set " + owner.getSimpleName() + "." + fieldName, e);
+        }
+    }
+
+    public static Object get(Object target, Class<?> owner, String fieldName) {
+        try {
+            Field field = owner.getDeclaredField(fieldName);
+            field.setAccessible(true);
+            return field.get(target);
+        } catch (ReflectiveOperationException e) {
+            throw new IllegalStateException("Cannot get " + owner.getSimpleName() + "." + fieldName, e);
+        }
+    }
+
+    public static Object invoke(Object target, Class<?> owner, String methodName) {
+        return invoke(target, method(owner, methodName));
+    }
+
+    public static Object invoke(Object target, Method method) {
+        try {
+            return method.invoke(target);
+        } catch (ReflectiveOperationException e) {
+            throw new IllegalStateException("Cannot invoke " + method, e);
+        }
+    }
+
+    /**
+     * Returns the accessible method without parameters of the given name, to be invoked many times
+     */
+    public static Method method(Class<?> owner, String methodName) {
+        try {
+            Method method = owner.getDeclaredMethod(methodName);
+            method.setAccessible(true);
+            return method;
+        } catch (ReflectiveOperationException e) {
+            throw new IllegalStateException("Cannot find " + owner.getSimpleName() + "." + methodName, e);
+        }
+    }
+
+    private static Unsafe unsafe() {
+        try {
+            Field field = Unsafe.class.getDeclaredField("theUnsafe");
+            field.setAccessible(true);
+            return (Unsafe) field.get(null);
+        } catch (ReflectiveOperationException e) {
+            throw new ExceptionInInitializerError(e);
+        }
+    }
+
+    private Reflection() {}
+}
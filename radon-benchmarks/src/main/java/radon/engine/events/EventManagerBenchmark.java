@@ -0,0 +1,94 @@
+package radon.engine.events;
+
+import org.openjdk.jmh.annotations.*;
+import radon.benchmarks.Reflection;
+
+import java.lang.reflect.Method;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Dispatch of a frame worth of input events, both immediately and through the event queue. The event manager is
+ * created without its system manager, and the queue is processed without polling GLFW
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class EventManagerBenchmark {
+
+    private static final int EVENT_COUNT = 256;
+
+    // Callbacks registered for every event class, and for their common type
+    @Param({"1", "8"})
+    private int callbackCount;
+
+    private EventManager eventManager;
+    private Method processEventQueue;
+    private Event[] events;
+    private int received;
+
+    @Setup
+    public void setUp() {
+
+        eventManager = Reflection.allocate(EventManager.class);
+        eventManager.init();
+        Reflection.set(null, EventManager.class, "instance", eventManager);
+
+        processEventQueue = Reflection.method(EventManager.class, "processEventQueue");
+
+        for (int i = 0; i < callbackCount; i++) {
+            EventManager.addEventCallback(PressedEvent.class, event -> ++received);
+            EventManager.addEventCallback(ReleasedEvent.class, event -> ++received);
+            EventManager.addEventCallback(InputEvent.class, event -> ++received);
+        }
+
+        events = new Event[EVENT_COUNT];
+
+        for (int i = 0; i < EVENT_COUNT; i++) {
+            events[i] = i % 2 == 0 ? new PressedEvent() : new ReleasedEvent();
+        }
+    }
+
+    @TearDown
+    public void tearDown() {
+        Reflection.set(null, EventManager.class, "instance", null);
+    }
+
+    @Benchmark
+    public int triggerEventNow() {
+        for (Event event : events) {
+            EventManager.triggerEventNow(event);
+        }
+        return received;
+    }
+
+    @Benchmark
+    public int triggerEvent() {
+
+        for (Event event : events) {
+            EventManager.triggerEvent(event);
+        }
+
+        Reflection.invoke(eventManager, processEventQueue);
+
+        return received;
+    }
+
+    private abstract static class InputEvent extends Event {
+
+        @Override
+        public Class<? extends Event> type() {
+            return InputEvent.class;
+        }
+    }
+
+    private static final class PressedEvent extends InputEvent {
+
+    }
+
+    private static final class ReleasedEvent extends InputEvent {
+
+    }
+}
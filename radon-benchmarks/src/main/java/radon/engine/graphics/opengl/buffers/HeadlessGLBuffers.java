@@ -0,0 +1,38 @@
+package radon.engine.graphics.opengl.buffers;
+
+import radon.benchmarks.Reflection;
+
+import static org.lwjgl.system.MemoryUtil.NULL;
+import static org.lwjgl.system.MemoryUtil.nmemCalloc;
+import static org.lwjgl.system.MemoryUtil.nmemFree;
+
+/**
+ * GL buffers without a GL object, whose mapped memory is plain memory allocated with MemoryUtil. Only the mapped
+ * memory functions can be used on them
+ */
+public final class HeadlessGLBuffers {
+
+    public static GLBuffer allocate(long size) {
+
+        GLBuffer buffer = Reflection.allocate(GLBuffer.class);
+
+        Reflection.set(buffer, GLBuffer.class, "size", size);
+        Reflection.set(buffer, GLBuffer.class, "memoryPtr", nmemCalloc(1, size));
+
+        return buffer;
+    }
+
+    public static void free(GLBuffer buffer) {
+
+        if (buffer == null || !buffer.mapped()) {
+            return;
+        }
+
+        nmemFree(buffer.nmappedMemoryPtr());
+
+        Reflection.set(buffer, GLBuffer.class, "size", 0L);
+        Reflection.set(buffer, GLBuffer.class, "memoryPtr", NULL);
+    }
+
+    private HeadlessGLBuffers() {}
+}
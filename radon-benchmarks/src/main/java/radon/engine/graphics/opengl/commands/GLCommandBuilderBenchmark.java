@@ -0,0 +1,124 @@
+package radon.engine.graphics.opengl.commands;
+
+import org.joml.Vector4f;
+import org.lwjgl.system.MemoryStack;
+import org.openjdk.jmh.annotations.*;
+import radon.benchmarks.MeshInstanceFixture;
+import radon.engine.graphics.opengl.rendering.renderers.data.GLRenderData;
+import radon.engine.graphics.opengl.rendering.renderers.data.HeadlessRenderData;
+import radon.engine.materials.ManagedMaterial;
+import radon.engine.meshes.Mesh;
+import radon.engine.meshes.views.StaticMeshView;
+import radon.engine.util.geometry.ISphere;
+
+import java.nio.IntBuffer;
+import java.util.concurrent.TimeUnit;
+
+import static org.lwjgl.system.MemoryStack.stackPush;
+
+/**
+ * Writing of the draw commands and instance data of visible mesh views into headless command and instance buffers,
+ * one command at a time, as the renderers did before command blocks, and as command blocks
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class GLCommandBuilderBenchmark {
+
+    @Param({"1024", "65536"})
+    private int drawCount;
+
+    private MeshInstanceFixture fixture;
+    private GLRenderData renderData;
+    private GLCommandBuilder commandBuilder;
+    private StaticMeshView[] meshViews;
+    // Bounding sphere of every draw, as the culler passes them
+    private Vector4f[] centers;
+    private float[] radii;
+
+    @Setup
+    public void setUp() {
+
+        fixture = new MeshInstanceFixture(0, 0.0f);
+
+        renderData = HeadlessRenderData.create(drawCount);
+
+        commandBuilder = new GLCommandBuilder(renderData);
+
+        meshViews = new StaticMeshView[drawCount];
+        centers = new Vector4f[drawCount];
+        radii = new float[drawCount];
+
+        for (int i = 0; i < drawCount; i++) {
+            meshViews[i] = fixture.meshView(i);
+            final ISphere sphere = meshViews[i].mesh().boundingSphere();
+            centers[i] = new Vector4f(sphere.center(), 1.0f);
+            radii[i] = sphere.radius();
+        }
+    }
+
+    @TearDown
+    public void tearDown() {
+        HeadlessRenderData.release(renderData);
+        fixture.release();
+    }
+
+    @Benchmark
+    public int buildDrawCommand() {
+
+        try (MemoryStack stack = stackPush()) {
+
+            GLDrawElementsCommand command = GLDrawElementsCommand.callocStack(stack);
+
+            for (int i = 0; i < drawCount; i++) {
+                writeDrawCommand(command, i, i, meshViews[i], meshViews[i].mesh());
+            }
+        }
+
+        return drawCount;
+    }
+
+    @Benchmark
+    public int submitCommandBlock() {
+
+        GLCommandBlock commandBlock = commandBuilder.commandBlock();
+
+        for (int i = 0; i < drawCount; i++) {
+            commandBlock.add(i, meshViews[i], meshViews[i].mesh(), centers[i], radii[i]);
+        }
+
+        commandBuilder.submit(commandBlock);
+
+        return commandBuilder.count();
+    }
+
+    private void writeDrawCommand(GLDrawElementsCommand command, int baseInstance, int matricesIndex, StaticMeshView meshView, Mesh mesh) {
+
+        final int materialIndex = ((ManagedMaterial) meshView.material()).storageInfo().bufferIndex();
+
+        setInstanceData(baseInstance, matricesIndex, materialIndex, mesh.storageInfo().index());
+
+        command.count(mesh.indexCount())
+                .primCount(1)
+                .firstIndex(mesh.storageInfo().firstIndex())
+                .baseVertex(mesh.storageInfo().baseVertex())
+                .baseInstance(baseInstance);
+
+        renderData.getCommandBuffer().copy(baseInstance * GLDrawElementsCommand.SIZEOF, command.buffer());
+    }
+
+    private void setInstanceData(int instanceID, int matrixIndex, int materialIndex, int meshIndex) {
+
+        try (MemoryStack stack = stackPush()) {
+
+            IntBuffer buffer = stack.mallocInt(3);
+
+            buffer.put(0, matrixIndex).put(1, materialIndex).put(2, meshIndex);
+
+            renderData.getInstanceBuffer().copy(instanceID * GLRenderData.INSTANCE_BUFFER_MIN_SIZE, buffer);
+        }
+    }
+}
@@ -0,0 +1,99 @@
+package radon.engine.graphics.opengl.rendering.culling;
+
+import org.joml.FrustumIntersection;
+import org.joml.Matrix4f;
+import org.openjdk.jmh.annotations.*;
+import radon.benchmarks.MeshInstanceFixture;
+import radon.engine.graphics.opengl.rendering.renderers.data.GLRenderData;
+import radon.engine.graphics.opengl.rendering.renderers.data.HeadlessRenderData;
+import radon.engine.graphics.rendering.culling.FrustumCullingPreCondition;
+import radon.engine.graphics.rendering.culling.VisibilitySet;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * CPU frustum culling of static mesh instances, writing the draw commands into headless command and instance buffers.
+ * Views are cameras placed around the scene, looking at its center
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class GLFrustumCullerBenchmark {
+
+    private static final float AREA_SIZE = 1000.0f;
+
+    @Param({"4096", "65536"})
+    private int instanceCount;
+
+    @Param({"1", "4"})
+    private int viewCount;
+
+    private MeshInstanceFixture fixture;
+    private GLRenderData renderData;
+    private GLFrustumCuller culler;
+    private FrustumIntersection frustum;
+    private VisibilitySet visibilitySet;
+    private Matrix4f[] projectionViewMatrices;
+
+    @Setup
+    public void setUp() {
+
+        fixture = new MeshInstanceFixture(instanceCount, AREA_SIZE);
+
+        renderData = HeadlessRenderData.create(instanceCount * viewCount);
+
+        culler = new GLFrustumCuller(renderData);
+        culler.init();
+
+        projectionViewMatrices = new Matrix4f[viewCount];
+
+        for (int view = 0; view < viewCount; view++) {
+
+            final double angle = Math.PI * 2.0 * view / viewCount;
+            final float eyeX = (float) Math.sin(angle) * AREA_SIZE * 0.5f;
+            final float eyeZ = (float) Math.cos(angle) * AREA_SIZE * 0.5f;
+
+            projectionViewMatrices[view] = new Matrix4f()
+                    .perspective((float) Math.toRadians(60.0), 16.0f / 9.0f, 0.1f, AREA_SIZE * 0.5f)
+                    .lookAt(eyeX, 20.0f, eyeZ, 0.0f, 0.0f, 0.0f, 0.0f, 1.0f, 0.0f);
+        }
+
+        frustum = new FrustumIntersection(projectionViewMatrices[0]);
+        visibilitySet = new VisibilitySet();
+    }
+
+    @TearDown
+    public void tearDown() {
+        culler.terminate();
+        HeadlessRenderData.release(renderData);
+        fixture.release();
+    }
+
+    @Benchmark
+    public int performCullingCPU() {
+        return culler.performCullingCPU(frustum, fixture.instances());
+    }
+
+    @Benchmark
+    public int performCulling() {
+
+        visibilitySet.clear();
+
+        for (Matrix4f projectionViewMatrix : projectionViewMatrices) {
+            visibilitySet.addView(projectionViewMatrix, FrustumCullingPreCondition.NO_PRECONDITION);
+        }
+
+        culler.performCulling(visibilitySet, fixture.instances());
+
+        int drawCount = 0;
+
+        for (int view = 0; view < viewCount; view++) {
+            drawCount += visibilitySet.drawCount(view);
+        }
+
+        return drawCount;
+    }
+}
@@ -0,0 +1,43 @@
+package radon.engine.graphics.opengl.rendering.renderers.data;
+
+import radon.benchmarks.Reflection;
+import radon.engine.graphics.opengl.buffers.GLBufferRing;
+import radon.engine.graphics.opengl.buffers.HeadlessGLBuffers;
+import radon.engine.graphics.opengl.commands.GLDrawElementsCommand;
+
+/**
+ * Render data with headless command, instance and draw bounds buffers, for code that only writes draw commands. The
+ * other buffers and the vertex array are not created
+ */
+public final class HeadlessRenderData {
+
+    public static GLRenderData create(int maxDrawCount) {
+
+        GLRenderData renderData = Reflection.allocate(GLStaticRenderData.class);
+
+        Reflection.set(renderData, GLRenderData.class, "commandBuffers",
+                new GLBufferRing(() -> HeadlessGLBuffers.allocate((long) maxDrawCount * GLDrawElementsCommand.SIZEOF)));
+
+        Reflection.set(renderData, GLRenderData.class, "instanceBuffers",
+                new GLBufferRing(() -> HeadlessGLBuffers.allocate((long) maxDrawCount * GLRenderData.INSTANCE_BUFFER_MIN_SIZE)));
+
+        Reflection.set(renderData, GLRenderData.class, "boundsBuffers",
+                new GLBufferRing(() -> HeadlessGLBuffers.allocate((long) maxDrawCount * GLRenderData.DRAW_BOUNDS_SIZEOF)));
+
+        return renderData;
+    }
+
+    public static void release(GLRenderData renderData) {
+        free((GLBufferRing) Reflection.get(renderData, GLRenderData.class, "commandBuffers"));
+        free((GLBufferRing) Reflection.get(renderData, GLRenderData.class, "instanceBuffers"));
+        free((GLBufferRing) Reflection.get(renderData, GLRenderData.class, "boundsBuffers"));
+    }
+
+    private static void free(GLBufferRing ring) {
+        for (int i = 0; i < ring.size(); i++) {
+            HeadlessGLBuffers.free(ring.get(i));
+        }
+    }
+
+    private HeadlessRenderData() {}
+}
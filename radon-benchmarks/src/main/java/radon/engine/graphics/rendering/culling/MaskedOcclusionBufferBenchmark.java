@@ -0,0 +1,87 @@
+package radon.engine.graphics.rendering.culling;
+
+import org.joml.Matrix4f;
+import org.openjdk.jmh.annotations.*;
+import radon.benchmarks.MeshInstanceFixture;
+import radon.engine.scenes.components.meshes.MeshInstanceList;
+import radon.engine.scenes.components.meshes.StaticMeshInstance;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Rasterization of occluders into the masked occlusion buffer, and tests of every instance against it. Occluders are
+ * a fraction of the cubes of the scene, seen by a camera at one side of it
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class MaskedOcclusionBufferBenchmark {
+
+    private static final float AREA_SIZE = 200.0f;
+
+    @Param({"4096", "65536"})
+    private int instanceCount;
+
+    @Param({"16", "4"})
+    private int occluderRatio;
+
+    private MeshInstanceFixture fixture;
+    private MaskedOcclusionBuffer buffer;
+    private Matrix4f projectionViewMatrix;
+
+    @Setup
+    public void setUp() {
+
+        fixture = new MeshInstanceFixture(instanceCount, AREA_SIZE);
+
+        buffer = new MaskedOcclusionBuffer(320, 192);
+
+        projectionViewMatrix = new Matrix4f()
+                .perspective((float) Math.toRadians(60.0), 16.0f / 9.0f, 0.1f, AREA_SIZE)
+                .lookAt(0.0f, 5.0f, AREA_SIZE * 0.5f, 0.0f, 0.0f, 0.0f, 0.0f, 1.0f, 0.0f);
+
+        render();
+    }
+
+    @TearDown
+    public void tearDown() {
+        fixture.release();
+    }
+
+    @Benchmark
+    public int render() {
+
+        final MeshInstanceList<StaticMeshInstance> instances = fixture.instances();
+
+        buffer.begin(projectionViewMatrix);
+
+        for (int i = 0; i < instances.size(); i += occluderRatio) {
+            final StaticMeshInstance instance = instances.get(i);
+            buffer.addOccluder(instance.modelMatrix(), instance.meshView().mesh());
+        }
+
+        buffer.render();
+
+        return buffer.occluderCount();
+    }
+
+    @Benchmark
+    public int testAab() {
+
+        final MeshInstanceList<StaticMeshInstance> instances = fixture.instances();
+
+        int visibleCount = 0;
+
+        for (int i = 0; i < instances.size(); i++) {
+            final StaticMeshInstance instance = instances.get(i);
+            if (buffer.testAab(instance.modelMatrix(), instance.meshView().mesh().bounds())) {
+                ++visibleCount;
+            }
+        }
+
+        return visibleCount;
+    }
+}
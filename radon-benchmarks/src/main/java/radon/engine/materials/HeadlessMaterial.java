@@ -0,0 +1,29 @@
+package radon.engine.materials;
+
+import radon.engine.graphics.rendering.ShadingModel;
+
+import static radon.engine.util.types.DataType.FLOAT32_SIZEOF;
+
+/**
+ * A managed material placed at a fixed index of the materials buffer, without a material manager
+ */
+public final class HeadlessMaterial extends ManagedMaterial {
+
+    private static final int SIZEOF = 16 * FLOAT32_SIZEOF;
+
+    public HeadlessMaterial(String name, int bufferIndex) {
+        super(name);
+        storageInfo().index(bufferIndex);
+        storageInfo().offset((long) bufferIndex * SIZEOF);
+    }
+
+    @Override
+    public int sizeof() {
+        return SIZEOF;
+    }
+
+    @Override
+    public ShadingModel shadingModel() {
+        return ShadingModel.PHONG;
+    }
+}
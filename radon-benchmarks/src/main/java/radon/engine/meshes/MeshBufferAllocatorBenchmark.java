@@ -0,0 +1,80 @@
+package radon.engine.meshes;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Streams meshes in and out of a {@link MeshBufferAllocator}: every invocation frees a random mesh and allocates a new
+ * one of a random size, then compacts a bounded amount of memory like the renderer does every frame
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class MeshBufferAllocatorBenchmark {
+
+    private static final int MAX_MESH_SIZE = 8192;
+    private static final int MOVES_PER_INVOCATION = 4;
+
+    @Param({"1024", "16384"})
+    private int meshCount;
+
+    private MeshBufferAllocator allocator;
+    private int[] ranges;
+    private Random random;
+
+    @Setup
+    public void setUp() {
+
+        random = new Random(42);
+        allocator = new MeshBufferAllocator(meshCount * MAX_MESH_SIZE / 2);
+        ranges = new int[meshCount];
+
+        for (int i = 0; i < meshCount; i++) {
+            ranges[i] = allocate(1 + random.nextInt(MAX_MESH_SIZE));
+        }
+    }
+
+    @Benchmark
+    public int streamMesh() {
+
+        final int index = random.nextInt(meshCount);
+
+        allocator.free(ranges[index]);
+
+        ranges[index] = allocate(1 + random.nextInt(MAX_MESH_SIZE));
+
+        return ranges[index];
+    }
+
+    @Benchmark
+    public int streamMeshAndDefragment() {
+
+        final int range = streamMesh();
+
+        int movable = allocator.nextMovableRange(MeshBufferAllocator.NO_SPACE);
+
+        for (int i = 0; i < MOVES_PER_INVOCATION && movable != MeshBufferAllocator.NO_SPACE; i++) {
+            allocator.moveDown(movable);
+            movable = allocator.nextMovableRange(movable);
+        }
+
+        return range;
+    }
+
+    private int allocate(int size) {
+
+        int range = allocator.allocate(size);
+
+        if (range == MeshBufferAllocator.NO_SPACE) {
+            allocator.grow(Math.max(allocator.capacity() * 2, allocator.capacity() + size));
+            range = allocator.allocate(size);
+        }
+
+        return range;
+    }
+}
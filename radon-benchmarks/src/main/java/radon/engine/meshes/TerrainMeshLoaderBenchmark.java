@@ -0,0 +1,65 @@
+package radon.engine.meshes;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.nio.ByteBuffer;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import static org.lwjgl.system.MemoryUtil.memAlloc;
+import static org.lwjgl.system.MemoryUtil.memFree;
+
+/**
+ * Generation of the vertices, indices and height map of a terrain from a random height map image. The upload of the
+ * mesh is left out, so no graphics context is needed
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class TerrainMeshLoaderBenchmark {
+
+    private static final float TERRAIN_SIZE = 512;
+    private static final float MIN_HEIGHT = -50;
+    private static final float MAX_HEIGHT = 50;
+
+    @Param({"256", "1024"})
+    private int size;
+
+    private TerrainMeshLoader loader;
+    private ByteBuffer pixels;
+    private ByteBuffer vertices;
+    private ByteBuffer indices;
+
+    @Setup
+    public void setUp() {
+
+        loader = TerrainMeshLoader.get();
+
+        pixels = memAlloc(size * size * 4);
+
+        Random random = new Random(0);
+
+        for (int i = 0; i < pixels.capacity(); i++) {
+            pixels.put(i, (byte) random.nextInt(256));
+        }
+
+        vertices = memAlloc(TerrainMeshLoader.vertexDataSize(size, size));
+        indices = memAlloc(TerrainMeshLoader.indexDataSize(size, size));
+    }
+
+    @TearDown
+    public void tearDown() {
+        memFree(pixels);
+        memFree(vertices);
+        memFree(indices);
+    }
+
+    @Benchmark
+    public HeightMap generateTerrain() {
+        indices.clear();
+        return loader.generateGeometry(TERRAIN_SIZE, MIN_HEIGHT, MAX_HEIGHT, size, size, pixels, vertices, indices);
+    }
+}
@@ -0,0 +1,66 @@
+package radon.engine.scenes;
+
+import org.openjdk.jmh.annotations.*;
+import radon.engine.scenes.components.math.Transform;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Creation and destruction of entities with a transform, including the deferred tasks that add their components to
+ * and remove them from the managers
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class EntityManagerBenchmark {
+
+    @Param({"1024", "16384"})
+    private int entityCount;
+
+    @Param({"false", "true"})
+    private boolean named;
+
+    private HeadlessScene scene;
+    private Entity[] entities;
+    private String[] names;
+
+    @Setup
+    public void setUp() {
+
+        scene = new HeadlessScene("EntityManagerBenchmark");
+        entities = new Entity[entityCount];
+        names = new String[entityCount];
+
+        for (int i = 0; i < entityCount; i++) {
+            names[i] = "Entity " + i;
+        }
+    }
+
+    @TearDown
+    public void tearDown() {
+        scene.terminate();
+    }
+
+    @Benchmark
+    public int churn() {
+
+        for (int i = 0; i < entityCount; i++) {
+            Entity entity = named ? scene.newEntity(names[i]) : scene.newEntity();
+            entity.add(Transform.class);
+            entities[i] = entity;
+        }
+
+        scene.processTasks();
+
+        for (int i = 0; i < entityCount; i++) {
+            entities[i].destroy();
+        }
+
+        scene.processTasks();
+
+        return scene.scene().entityCount();
+    }
+}
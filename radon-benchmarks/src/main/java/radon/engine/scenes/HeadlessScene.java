@@ -0,0 +1,79 @@
+package radon.engine.scenes;
+
+import radon.benchmarks.Reflection;
+import radon.engine.scenes.components.audio.AudioPlayerManager;
+import radon.engine.scenes.components.behaviours.BehaviourManager;
+import radon.engine.scenes.components.math.TransformManager;
+import radon.engine.scenes.components.meshes.MeshInstanceManager;
+import radon.engine.scenes.components.sprites.SpriteInstanceManager;
+import radon.engine.scenes.components.tilemap.TileMapManager;
+
+import java.util.ArrayDeque;
+import java.util.Map;
+
+import static java.lang.Math.max;
+import static radon.engine.util.types.TypeUtils.newInstance;
+
+/**
+ * A scene with entities and component managers only. Cameras, environment and render system are left out, since
+ * they need a window and a graphics context
+ */
+public final class HeadlessScene {
+
+    private final Scene scene;
+
+    public HeadlessScene(String name) {
+
+        scene = Reflection.allocate(Scene.class);
+
+        Reflection.set(scene, Scene.class, "name", name);
+        Reflection.set(scene, Scene.class, "entityManager", new EntityManager(scene));
+
+        Reflection.set(scene, Scene.class, "transforms", newInstance(TransformManager.class, scene));
+        Reflection.set(scene, Scene.class, "behaviours", newInstance(BehaviourManager.class, scene));
+        Reflection.set(scene, Scene.class, "meshes", newInstance(MeshInstanceManager.class, scene));
+        Reflection.set(scene, Scene.class, "audio", newInstance(AudioPlayerManager.class, scene));
+        Reflection.set(scene, Scene.class, "sprites", newInstance(SpriteInstanceManager.class, scene));
+        Reflection.set(scene, Scene.class, "tileMaps", newInstance(TileMapManager.class, scene));
+
+        Reflection.set(scene, Scene.class, "componentManagers", Reflection.invoke(scene, Scene.class, "createComponentManagersMap"));
+        Reflection.set(scene, Scene.class, "componentPools", new ComponentPool<?>[max(ComponentType.count(), 1)]);
+
+        Reflection.set(scene, Scene.class, "taskQueue", new ArrayDeque<Runnable>());
+    }
+
+    public Scene scene() {
+        return scene;
+    }
+
+    public Entity newEntity() {
+        return scene.newEntity();
+    }
+
+    public Entity newEntity(String name) {
+        return scene.newEntity(name);
+    }
+
+    /**
+     * Runs the pending tasks of the scene, so added components reach their managers and destroyed ones are removed
+     */
+    public void processTasks() {
+        scene.processTasks();
+    }
+
+    public TransformManager transforms() {
+        return scene.transforms();
+    }
+
+    public MeshInstanceManager meshes() {
+        return (MeshInstanceManager) Reflection.get(scene, Scene.class, "meshes");
+    }
+
+    @SuppressWarnings("unchecked")
+    public void terminate() {
+        processTasks();
+        ((EntityManager) Reflection.get(scene, Scene.class, "entityManager")).remove();
+        ((Map<Class<?>, ComponentManager<?>>) Reflection.get(scene, Scene.class, "componentManagers"))
+                .values().forEach(ComponentManager::removeAll);
+    }
+}
@@ -0,0 +1,84 @@
+package radon.engine.scenes.components.math;
+
+import org.openjdk.jmh.annotations.*;
+import radon.engine.scenes.HeadlessScene;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * World matrix update of a scene made of small hierarchies, as the one of a frame where part of the roots moved
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class TransformManagerBenchmark {
+
+    // Every hierarchy is a root with a chain of children
+    private static final int HIERARCHY_SIZE = 4;
+
+    @Param({"1024", "16384", "131072"})
+    private int transformCount;
+
+    // Fraction of the hierarchies modified before every update
+    @Param({"0.1", "1.0"})
+    private float modifiedRatio;
+
+    private HeadlessScene scene;
+    private TransformManager transforms;
+    private Transform[] roots;
+    private int modifiedStride;
+    private float offset;
+
+    @Setup
+    public void setUp() {
+
+        scene = new HeadlessScene("TransformManagerBenchmark");
+
+        roots = new Transform[transformCount / HIERARCHY_SIZE];
+
+        for (int i = 0; i < roots.length; i++) {
+
+            Transform parent = scene.newEntity().get(Transform.class).position(i, 0, 0);
+
+            roots[i] = parent;
+
+            for (int j = 1; j < HIERARCHY_SIZE; j++) {
+                Transform child = scene.newEntity().get(Transform.class).position(0, 1, 0).rotateY(0.5f);
+                parent.addChild(child);
+                parent = child;
+            }
+        }
+
+        scene.processTasks();
+
+        transforms = scene.transforms();
+        transforms.update();
+
+        modifiedStride = Math.max(Math.round(1.0f / modifiedRatio), 1);
+    }
+
+    @TearDown
+    public void tearDown() {
+        scene.terminate();
+    }
+
+    @Benchmark
+    public void update() {
+
+        offset = -offset + 0.01f;
+
+        for (int i = 0; i < roots.length; i += modifiedStride) {
+            roots[i].translate(0, offset, 0);
+        }
+
+        transforms.update();
+    }
+
+    @Benchmark
+    public void updateUnmodified() {
+        transforms.update();
+    }
+}
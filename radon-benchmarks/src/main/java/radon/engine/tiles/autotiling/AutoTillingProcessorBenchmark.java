@@ -0,0 +1,90 @@
+package radon.engine.tiles.autotiling;
+
+import org.openjdk.jmh.annotations.*;
+import radon.engine.scenes.HeadlessScene;
+import radon.engine.scenes.components.tilemap.TileMap;
+import radon.engine.sprites.Sprite;
+import radon.engine.tiles.Tile;
+import radon.engine.tiles.properties.TileProperty;
+import radon.engine.util.geometry.Rect;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Auto tiling of every tile of a square tile map randomly painted with two auto tiled tiles, as after a large fill,
+ * one tile at a time and with the bulk pass of {@link TileMap#updateTiles}. Sprites have no texture, since the
+ * processor only picks them
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class AutoTillingProcessorBenchmark {
+
+    private static final int AUTO_TILING_SPRITES = 47;
+
+    @Param({"64", "256"})
+    private int size;
+
+    private HeadlessScene scene;
+    private TileMap tileMap;
+
+    @Setup
+    public void setUp() {
+
+        scene = new HeadlessScene("AutoTillingProcessorBenchmark");
+
+        tileMap = scene.newEntity("TileMap").add(TileMap.class);
+
+        Tile grass = newTile(0, "Grass");
+        Tile water = newTile(1, "Water");
+
+        Random random = new Random(0);
+        Tile[][] tilesArray = new Tile[size][size];
+
+        for (int x = 0; x < size; x++) {
+            for (int y = 0; y < size; y++) {
+                tilesArray[x][y] = random.nextInt(4) == 0 ? water : grass;
+            }
+        }
+
+        tileMap.fill(0, 0, tilesArray);
+
+        scene.processTasks();
+    }
+
+    @TearDown
+    public void tearDown() {
+        scene.terminate();
+    }
+
+    @Benchmark
+    public int process() {
+        int variants = 0;
+        for (int x = 0; x < size; x++) {
+            for (int y = 0; y < size; y++) {
+                variants += AutoTillingProcessor.process(tileMap, x, y);
+            }
+        }
+        return variants;
+    }
+
+    @Benchmark
+    public void processBulk() {
+        tileMap.updateTiles(0, 0, size - 1, size - 1);
+    }
+
+    private static Tile newTile(int id, String name) {
+
+        Sprite[] sprites = new Sprite[AUTO_TILING_SPRITES];
+
+        for (int i = 0; i < sprites.length; i++) {
+            sprites[i] = new Sprite(null, new Rect(i * 16, i * 16 + 16, 0, 16));
+        }
+
+        return new Tile(id, name, sprites[0]).addProperty(TileProperty.AUTO_TILING, sprites);
+    }
+}
@@ -0,0 +1,115 @@
+package radon.engine.util.collections;
+
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares the slot based {@link FastIterableSet} with the hash table based implementation it replaced, on the
+ * operations the behaviour manager performs every frame
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class FastIterableSetBenchmark {
+
+    @Param({"1024", "65536"})
+    private int size;
+
+    @Param({"slots", "legacy"})
+    private String implementation;
+
+    private Element[] elements;
+    private Set<Element> set;
+
+    @Setup
+    public void setUp() {
+
+        elements = new Element[size];
+
+        for (int i = 0; i < size; i++) {
+            elements[i] = new Element(i);
+        }
+
+        set = "slots".equals(implementation) ? new FastIterableSet<>(Element.SLOT) : new LegacyFastIterableSet<>();
+
+        for (Element element : elements) {
+            set.add(element);
+        }
+    }
+
+    @Benchmark
+    public int iterate() {
+        int sum = 0;
+        for (Element element : set) {
+            sum += element.value;
+        }
+        return sum;
+    }
+
+    @Benchmark
+    public void forEach(Blackhole blackhole) {
+        set.forEach(blackhole::consume);
+    }
+
+    @Benchmark
+    public long parallelStream() {
+        return set.parallelStream().mapToLong(element -> element.value).sum();
+    }
+
+    @Benchmark
+    public int contains() {
+        int count = 0;
+        for (Element element : elements) {
+            if (set.contains(element)) {
+                ++count;
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Removes and adds back every other element, as components being disabled and enabled again
+     */
+    @Benchmark
+    public int churn() {
+
+        for (int i = 0; i < size; i += 2) {
+            set.remove(elements[i]);
+        }
+
+        for (int i = 0; i < size; i += 2) {
+            set.add(elements[i]);
+        }
+
+        return set.size();
+    }
+
+    private static final class Element {
+
+        private static final FastIterableSet.SlotAccessor<Element> SLOT = new FastIterableSet.SlotAccessor<>() {
+
+            @Override
+            public int slotOf(Object element) {
+                return element instanceof Element ? ((Element) element).slot : FastIterableSet.NO_SLOT;
+            }
+
+            @Override
+            public void setSlot(Element element, int slot) {
+                element.slot = slot;
+            }
+        };
+
+        private final int value;
+        private int slot = FastIterableSet.NO_SLOT;
+
+        private Element(int value) {
+            this.value = value;
+        }
+    }
+}
@@ -7,7 +7,6 @@ import imgui.extension.imguizmo.flag.Operation;
 import org.joml.Matrix4f;
 import org.joml.Vector2f;
 import org.joml.Vector3f;
-import org.joml.Vector3fc;
 import radon.editor.core.RadonEditor;
 import radon.editor.gui.GameViewport;
 import radon.engine.input.Input;
@@ -35,6 +34,13 @@ public class TransformationGizmo extends Gizmo {
         operation = op;
     }
 
+    /**
+     * Whether the mouse is over the gizmo of the selected entity, so clicks should not pick other entities
+     */
+    public static boolean isOver() {
+        return RadonEditor.selected != null && ImGuizmo.isOver();
+    }
+
     public static boolean update(ImVec2 size) {
         setupImGuizmo(size);
         checkOperations();
@@ -47,21 +53,25 @@ public class TransformationGizmo extends Gizmo {
 
         ImGuizmo.manipulate(cameraView, cameraProjection, model, operation, Mode.LOCAL);
         if (ImGuizmo.isUsing()) {
-            float[] position = new float[3];
-            float[] rotation = new float[3];
-            float[] scale = new float[3];
-            ImGuizmo.decomposeMatrixToComponents(model, position, rotation, scale);
-            Vector3f pos = vec3(position);
-            Vector3f rot = vec3(rotation);
-            Vector3f sca = vec3(scale);
 
             Entity entity = RadonEditor.selected;
 
             Transform transform = entity.get(Transform.class);
 
-            transform.position(pos);
-           // transform.localRotation = rot;
-            transform.scale(sca);
+            // The gizmo works in world space, but the transform is relative to its parent
+            Matrix4f localMatrix = new Matrix4f().set(model);
+
+            if (transform.parent() != null) {
+                transform.parent().modelMatrix().invertAffine(new Matrix4f()).mul(localMatrix, localMatrix);
+            }
+
+            // The rotation matrix may hold a translation of its own, see Transform.rotateAround
+            Vector3f position = localMatrix.getTranslation(new Vector3f())
+                    .sub(transform.rotationMatrix().getTranslation(new Vector3f()));
+
+            transform.position(position);
+            // transform.localRotation = rot;
+            transform.scale(localMatrix.getScale(new Vector3f()));
 
             return true;
         }
@@ -133,13 +143,7 @@ public class TransformationGizmo extends Gizmo {
 
         Transform transform = entity.get(Transform.class);
 
-        float[] model = new float[16];
-        float[] position = array(transform.position());
-        float[] rotation = array(new Vector3f());
-        float[] scale = array(transform.scale());
-        ImGuizmo.recomposeMatrixFromComponents(model, position, rotation, scale);
-
-        return model;
+        return transform.modelMatrix().get(new float[16]);
     }
 
     private static float[] emptyModel() {
@@ -152,14 +156,6 @@ public class TransformationGizmo extends Gizmo {
         return model;
     }
 
-    private static float[] array(Vector3fc vector) {
-        return new float[]{vector.x(), vector.y(), vector.z()};
-    }
-
-    private static Vector3f vec3(float[] arr) {
-        return new Vector3f(arr[0], arr[1], arr[2]);
-    }
-
     @Override
     public void update() {
 
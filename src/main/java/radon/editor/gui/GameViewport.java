@@ -4,6 +4,7 @@ import imgui.ImGui;
 import imgui.ImVec2;
 import imgui.flag.ImGuiWindowFlags;
 import org.joml.Vector2f;
+import org.joml.Vector3f;
 import radon.editor.core.RadonEditor;
 import radon.editor.debug.gizmo.TransformationGizmo;
 import radon.engine.core.Radon;
@@ -16,6 +17,8 @@ import radon.engine.input.Input;
 import radon.engine.input.Key;
 import radon.engine.scenes.Camera;
 import radon.engine.scenes.SceneManager;
+import radon.engine.scenes.components.meshes.MeshInstanceList;
+import radon.engine.scenes.components.meshes.StaticMeshInstance;
 
 import static org.lwjgl.opengl.GL30.GL_COLOR_ATTACHMENT0;
 import static radon.engine.core.Time.deltaTime;
@@ -28,6 +31,7 @@ public class GameViewport extends EditorWindow {
     public static Vector2f imageSize = new Vector2f();
     public static Vector2f imagePosition = new Vector2f();
 
+    private static final float PICKING_MAX_DISTANCE = 10000.0f;
 
     private float minSpeed = 0.5f, maxSpeed = 3.0f;
     private float moveSpeed = 0.5f, mouseSensitivity = 1.5f;
@@ -73,6 +77,10 @@ public class GameViewport extends EditorWindow {
                 usingTransformationGizmo = TransformationGizmo.update(s);
             }
 
+            if (!usingTransformationGizmo && ImGui.isWindowHovered() && ImGui.isMouseClicked(0) && !TransformationGizmo.isOver()) {
+                pickEntity();
+            }
+
             updateEditorCamera(usingTransformationGizmo);
         }
 
@@ -80,6 +88,37 @@ public class GameViewport extends EditorWindow {
 
     }
 
+    private void pickEntity() {
+
+        MeshInstanceList<StaticMeshInstance> instances = SceneManager.scene().meshInfo().getStaticMeshInstances();
+
+        if (instances == null || instances.tree() == null) {
+            return;
+        }
+
+        // Window coordinates inside of the viewport image, with the origin at the bottom left corner
+        final float x = ImGui.getMousePosX() - position.x - imagePosition.x;
+        final float y = imageSize.y - (ImGui.getMousePosY() - position.y - imagePosition.y);
+
+        if (x < 0 || y < 0 || x > imageSize.x || y > imageSize.y) {
+            return;
+        }
+
+        Camera camera = SceneManager.scene().editorCamera();
+
+        Vector3f origin = new Vector3f();
+        Vector3f direction = new Vector3f();
+
+        camera.projectionViewMatrix().unprojectRay(x, y, new int[]{0, 0, (int) imageSize.x, (int) imageSize.y}, origin, direction);
+
+        StaticMeshInstance instance = instances.tree().raycast(origin, direction, PICKING_MAX_DISTANCE);
+
+        // Clicking on nothing keeps the selection
+        if (instance != null) {
+            RadonEditor.selected = instance.entity();
+        }
+    }
+
     private void updateEditorCamera(boolean usingGizmo) {
         Camera camera = SceneManager.scene().editorCamera();
 
@@ -71,16 +71,13 @@ public class InspectorWindow extends EditorWindow {
 
             Transform transform = entity.get(Transform.class);
             if (transform != null) {
-                boolean variableUpdated = false;
-
-                Vector3f position = (Vector3f) transform.position();
+                Vector3f position = transform.getPosition(new Vector3f());
                 Vector3f euler = transform.euler();
-                Vector3f scale = (Vector3f) transform.scale();
+                Vector3f scale = transform.getScale(new Vector3f());
 
                 float[] p = {position.x, position.y, position.z};
                 if (ImGui.dragFloat3("position", p, 0.1f)) {
-                    position.set(p[0], p[1], p[2]);
-                    variableUpdated = true;
+                    transform.position(p[0], p[1], p[2]);
                 }
 
                 float[] r = {euler.x, euler.y, euler.z};
@@ -90,13 +87,7 @@ public class InspectorWindow extends EditorWindow {
 
                 float[] s = {scale.x, scale.y, scale.z};
                 if (ImGui.dragFloat3("scale", s, 0.1f)) {
-                    scale.set(s[0], s[1], s[2]);
-                    variableUpdated = true;
-                }
-
-
-                if (variableUpdated) {
-                    transform.modify();
+                    transform.scale(s[0], s[1], s[2]);
                 }
             }
 
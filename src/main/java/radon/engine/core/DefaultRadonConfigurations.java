@@ -3,6 +3,8 @@ package radon.engine.core;
 import org.joml.Vector2ic;
 import radon.engine.graphics.GraphicsAPI;
 import radon.engine.graphics.rendering.ShadingModel;
+import radon.engine.graphics.rendering.culling.FrustumCullingMode;
+import radon.engine.graphics.rendering.culling.OcclusionCullingMode;
 import radon.engine.graphics.window.CursorType;
 import radon.engine.graphics.window.DisplayMode;
 import radon.engine.logging.Log;
@@ -12,6 +14,7 @@ import radon.engine.util.ANSIColor;
 import radon.engine.util.Version;
 import radon.engine.util.geometry.Sizec;
 
+import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.nio.file.StandardOpenOption;
 import java.time.format.DateTimeFormatter;
@@ -36,6 +39,8 @@ class DefaultRadonConfigurations {
 
     static final boolean DEFAULT_EVENTS_DEBUG_REPORT = false;
 
+    static final boolean DEFAULT_RENDERING_DEBUG_REPORT = false;
+
     static final boolean DEFAULT_SCENES_DEBUG_REPORT = false;
 
     static final String DEFAULT_APPLICATION_NAME = "Unnamed Radon Application";
@@ -97,6 +102,16 @@ class DefaultRadonConfigurations {
 
     static final boolean DEFAULT_GRAPHICS_MULTITHREADING_ENABLED = true;
 
+    static final FrustumCullingMode DEFAULT_FRUSTUM_CULLING_MODE = FrustumCullingMode.CPU;
+
+    static final OcclusionCullingMode DEFAULT_OCCLUSION_CULLING_MODE = OcclusionCullingMode.DISABLED;
+
+    static final boolean DEFAULT_COMPACT_VERTEX_FORMAT = false;
+
+    static final boolean DEFAULT_SPRITE_TEXTURE_ATLAS = true;
+
+    static final Path DEFAULT_SPRITE_TEXTURE_ATLAS_LAYOUT = Paths.get("radon-texture-atlas.layout");
+
     static final String DEFAULT_FIRST_SCENE_NAME = "__Unnamed Scene";
 
     static void ensureDefaultConfigurationsClassIsLoaded() {
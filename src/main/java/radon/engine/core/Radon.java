@@ -291,6 +291,11 @@ public class Radon {
             builder.append("\n\t");
         }
 
+        if (RENDERING_DEBUG_REPORT) {
+            builder.append("[RENDER-SYSTEM]: ").append(systems.getRenderSystem().debugReport());
+            builder.append("\n\t");
+        }
+
         if (SCENES_DEBUG_REPORT) {
             builder.append("[SCENE-MANAGER]: ").append(systems.getSceneManager().debugReport());
         }
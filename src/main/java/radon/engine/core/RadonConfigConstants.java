@@ -4,6 +4,8 @@ import org.joml.Vector2ic;
 import org.lwjgl.system.Configuration;
 import radon.engine.graphics.GraphicsAPI;
 import radon.engine.graphics.rendering.ShadingModel;
+import radon.engine.graphics.rendering.culling.FrustumCullingMode;
+import radon.engine.graphics.rendering.culling.OcclusionCullingMode;
 import radon.engine.graphics.window.CursorType;
 import radon.engine.graphics.window.DisplayMode;
 import radon.engine.logging.Log;
@@ -12,6 +14,7 @@ import radon.engine.util.ANSIColor;
 import radon.engine.util.Version;
 import radon.engine.util.geometry.Sizec;
 
+import java.nio.file.Path;
 import java.time.format.DateTimeFormatter;
 import java.util.Collection;
 import java.util.Map;
@@ -40,6 +43,8 @@ public final class RadonConfigConstants {
 
     public static final boolean EVENTS_DEBUG_REPORT = RadonConfiguration.EVENTS_DEBUG_REPORT.get();
 
+    public static final boolean RENDERING_DEBUG_REPORT = RadonConfiguration.RENDERING_DEBUG_REPORT.get();
+
     public static final boolean SCENES_DEBUG_REPORT = RadonConfiguration.SCENES_DEBUG_REPORT.get();
 
     public static final String APPLICATION_NAME = RadonConfiguration.APPLICATION_NAME.get();
@@ -90,6 +95,26 @@ public final class RadonConfigConstants {
 
     public static final boolean GRAPHICS_MULTITHREADING_ENABLED = RadonConfiguration.GRAPHICS_MULTITHREADING_ENABLED.get();
 
+    public static final FrustumCullingMode FRUSTUM_CULLING_MODE = RadonConfiguration.FRUSTUM_CULLING_MODE.get();
+
+    public static final OcclusionCullingMode OCCLUSION_CULLING_MODE = RadonConfiguration.OCCLUSION_CULLING_MODE.get();
+
+    /**
+     * Whether static meshes are stored in the GPU with half float positions, octahedral normals and half float
+     * texture coordinates, instead of full floats
+     */
+    public static final boolean COMPACT_VERTEX_FORMAT = RadonConfiguration.COMPACT_VERTEX_FORMAT.get();
+
+    /**
+     * Whether the textures of sprites and tiles are packed into a texture atlas as they are drawn
+     */
+    public static final boolean SPRITE_TEXTURE_ATLAS = RadonConfiguration.SPRITE_TEXTURE_ATLAS.get();
+
+    /**
+     * File where the layout of the first texture atlas build is cached, so the next runs skip packing. Null disables it
+     */
+    public static final Path SPRITE_TEXTURE_ATLAS_LAYOUT = RadonConfiguration.SPRITE_TEXTURE_ATLAS_LAYOUT.get();
+
     public static final String FIRST_SCENE_NAME = RadonConfiguration.FIRST_SCENE_NAME.get();
 
     static void ensureLoaded() {
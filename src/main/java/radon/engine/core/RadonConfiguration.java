@@ -3,6 +3,8 @@ package radon.engine.core;
 import org.joml.Vector2ic;
 import radon.engine.graphics.GraphicsAPI;
 import radon.engine.graphics.rendering.ShadingModel;
+import radon.engine.graphics.rendering.culling.FrustumCullingMode;
+import radon.engine.graphics.rendering.culling.OcclusionCullingMode;
 import radon.engine.graphics.window.CursorType;
 import radon.engine.graphics.window.DisplayMode;
 import radon.engine.logging.Log;
@@ -11,6 +13,7 @@ import radon.engine.util.ANSIColor;
 import radon.engine.util.Version;
 import radon.engine.util.geometry.Sizec;
 
+import java.nio.file.Path;
 import java.time.format.DateTimeFormatter;
 import java.util.Collection;
 import java.util.Map;
@@ -38,6 +41,8 @@ public final class RadonConfiguration<T> {
 
     public static final RadonConfiguration<Boolean> EVENTS_DEBUG_REPORT = new RadonConfiguration<>(DefaultRadonConfigurations.DEFAULT_EVENTS_DEBUG_REPORT);
 
+    public static final RadonConfiguration<Boolean> RENDERING_DEBUG_REPORT = new RadonConfiguration<>(DefaultRadonConfigurations.DEFAULT_RENDERING_DEBUG_REPORT);
+
     public static final RadonConfiguration<Boolean> SCENES_DEBUG_REPORT = new RadonConfiguration<>(DefaultRadonConfigurations.DEFAULT_SCENES_DEBUG_REPORT);
 
     public static final RadonConfiguration<String> APPLICATION_NAME = new RadonConfiguration<>(DefaultRadonConfigurations.DEFAULT_APPLICATION_NAME);
@@ -88,6 +93,16 @@ public final class RadonConfiguration<T> {
 
     public static final RadonConfiguration<Boolean> GRAPHICS_MULTITHREADING_ENABLED = new RadonConfiguration<>(DefaultRadonConfigurations.DEFAULT_GRAPHICS_MULTITHREADING_ENABLED);
 
+    public static final RadonConfiguration<FrustumCullingMode> FRUSTUM_CULLING_MODE = new RadonConfiguration<>(DefaultRadonConfigurations.DEFAULT_FRUSTUM_CULLING_MODE);
+
+    public static final RadonConfiguration<OcclusionCullingMode> OCCLUSION_CULLING_MODE = new RadonConfiguration<>(DefaultRadonConfigurations.DEFAULT_OCCLUSION_CULLING_MODE);
+
+    public static final RadonConfiguration<Boolean> COMPACT_VERTEX_FORMAT = new RadonConfiguration<>(DefaultRadonConfigurations.DEFAULT_COMPACT_VERTEX_FORMAT);
+
+    public static final RadonConfiguration<Boolean> SPRITE_TEXTURE_ATLAS = new RadonConfiguration<>(DefaultRadonConfigurations.DEFAULT_SPRITE_TEXTURE_ATLAS);
+
+    public static final RadonConfiguration<Path> SPRITE_TEXTURE_ATLAS_LAYOUT = new RadonConfiguration<>(DefaultRadonConfigurations.DEFAULT_SPRITE_TEXTURE_ATLAS_LAYOUT);
+
     public static final RadonConfiguration<String> FIRST_SCENE_NAME = new RadonConfiguration<>(DefaultRadonConfigurations.DEFAULT_FIRST_SCENE_NAME);
 
     static void ensureLoaded() {
@@ -11,6 +11,7 @@ public final class RadonConfigurationHelper {
         RadonConfiguration.ENABLE_ASSERTS.set(true);
         RadonConfiguration.SCENES_DEBUG_REPORT.set(true);
         RadonConfiguration.EVENTS_DEBUG_REPORT.set(true);
+        RadonConfiguration.RENDERING_DEBUG_REPORT.set(true);
         RadonConfiguration.OPENGL_ENABLE_DEBUG_MESSAGES.set(true);
         RadonConfiguration.SHOW_DEBUG_INFO_ON_WINDOW_TITLE.set(true);
         RadonConfiguration.OPENGL_ENABLE_WARNINGS_UNIFORMS.set(true);
@@ -27,6 +28,7 @@ public final class RadonConfigurationHelper {
         RadonConfiguration.ENABLE_ASSERTS.set(true);
         RadonConfiguration.SCENES_DEBUG_REPORT.set(false);
         RadonConfiguration.EVENTS_DEBUG_REPORT.set(false);
+        RadonConfiguration.RENDERING_DEBUG_REPORT.set(false);
         RadonConfiguration.OPENGL_ENABLE_DEBUG_MESSAGES.set(true);
         RadonConfiguration.SHOW_DEBUG_INFO_ON_WINDOW_TITLE.set(true);
         RadonConfiguration.OPENGL_ENABLE_WARNINGS_UNIFORMS.set(false);
@@ -43,6 +45,7 @@ public final class RadonConfigurationHelper {
         RadonConfiguration.ENABLE_ASSERTS.set(false);
         RadonConfiguration.SCENES_DEBUG_REPORT.set(false);
         RadonConfiguration.EVENTS_DEBUG_REPORT.set(false);
+        RadonConfiguration.RENDERING_DEBUG_REPORT.set(false);
         RadonConfiguration.OPENGL_ENABLE_DEBUG_MESSAGES.set(true);
         RadonConfiguration.SHOW_DEBUG_INFO_ON_WINDOW_TITLE.set(true);
         RadonConfiguration.OPENGL_ENABLE_WARNINGS_UNIFORMS.set(false);
@@ -59,6 +62,7 @@ public final class RadonConfigurationHelper {
         RadonConfiguration.ENABLE_ASSERTS.set(false);
         RadonConfiguration.SCENES_DEBUG_REPORT.set(false);
         RadonConfiguration.EVENTS_DEBUG_REPORT.set(false);
+        RadonConfiguration.RENDERING_DEBUG_REPORT.set(false);
         RadonConfiguration.OPENGL_ENABLE_DEBUG_MESSAGES.set(false);
         RadonConfiguration.SHOW_DEBUG_INFO_ON_WINDOW_TITLE.set(false);
         RadonConfiguration.OPENGL_ENABLE_WARNINGS_UNIFORMS.set(false);
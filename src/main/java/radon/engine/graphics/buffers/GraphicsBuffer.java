@@ -35,6 +35,8 @@ public interface GraphicsBuffer extends Resource {
     void update(long offset, IntBuffer data);
     void update(long offset, FloatBuffer data);
 
+    void copyRange(long srcOffset, long destOffset, long size); // Copy between non overlapping ranges of this buffer
+
     ByteBuffer get(long offset, ByteBuffer buffer);
 
     default ByteBuffer get(long offset) {
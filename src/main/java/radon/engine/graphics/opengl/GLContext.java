@@ -26,6 +26,7 @@ public class GLContext implements GraphicsContext, LongHandle {
     private GLGraphicsFactory graphicsFactory;
     private GLSkyboxPBRTextureFactory skyboxPBRTextureFactory;
     private GLMapper mapper;
+    private GLFrameSync frameSync;
     private boolean vsync;
 
     private GLContext() {
@@ -43,6 +44,7 @@ public class GLContext implements GraphicsContext, LongHandle {
         graphicsFactory = new GLGraphicsFactory(this);
         skyboxPBRTextureFactory = new GLSkyboxPBRTextureFactory(this);
         mapper = new GLMapper();
+        frameSync = new GLFrameSync();
 
         glfwSwapInterval(VSYNC ? 1 : 0);
 
@@ -88,6 +90,10 @@ public class GLContext implements GraphicsContext, LongHandle {
         return capabilities;
     }
 
+    public GLFrameSync frameSync() {
+        return frameSync;
+    }
+
     private void makeCurrent() {
         glfwMakeContextCurrent(glContext);
     }
@@ -95,6 +101,8 @@ public class GLContext implements GraphicsContext, LongHandle {
     @Override
     public void release() {
 
+        frameSync.release();
+
         graphicsFactory.release();
 
         if(OPENGL_ENABLE_DEBUG_MESSAGES) {
@@ -0,0 +1,113 @@
+package radon.engine.graphics.opengl;
+
+import radon.engine.logging.Log;
+import radon.engine.resource.Resource;
+
+import static org.lwjgl.opengl.GL32.*;
+import static org.lwjgl.system.MemoryUtil.NULL;
+
+/**
+ * Keeps track of the frames the GPU may still be working on. Buffers rewritten by the CPU every frame keep one copy
+ * per frame in flight, and the copy of a frame is only reused once the fence of that frame has been signaled, so the
+ * CPU can build a frame while the GPU renders the previous ones
+ */
+public final class GLFrameSync implements Resource {
+
+    public static final int FRAMES_IN_FLIGHT = 3;
+
+    private static final long WAIT_TIMEOUT = 1_000_000L; // 1 ms
+
+    private final long[] fences;
+    private int frameIndex;
+    // Stats
+    private long waitTime;
+
+    GLFrameSync() {
+        fences = new long[FRAMES_IN_FLIGHT];
+    }
+
+    /**
+     * Returns the index of the current frame copy of the per frame resources, in [0, FRAMES_IN_FLIGHT)
+     */
+    public int frameIndex() {
+        return frameIndex;
+    }
+
+    /**
+     * Returns the nanoseconds the CPU waited for the GPU at the beginning of the last frame
+     */
+    public long waitTime() {
+        return waitTime;
+    }
+
+    /**
+     * Moves to the next frame copy, waiting for the GPU to finish the frame that used it last
+     */
+    public void beginFrame() {
+        frameIndex = (frameIndex + 1) % FRAMES_IN_FLIGHT;
+        waitTime = waitFor(frameIndex);
+    }
+
+    /**
+     * Signals the end of the commands of the current frame. Must be called once all of them have been submitted
+     */
+    public void endFrame() {
+        deleteFence(frameIndex);
+        fences[frameIndex] = glFenceSync(GL_SYNC_GPU_COMMANDS_COMPLETE, 0);
+    }
+
+    /**
+     * Waits for every frame in flight
+     */
+    public void waitIdle() {
+        for (int i = 0; i < FRAMES_IN_FLIGHT; i++) {
+            waitFor(i);
+        }
+    }
+
+    @Override
+    public void release() {
+        waitIdle();
+    }
+
+    private long waitFor(int frame) {
+
+        final long fence = fences[frame];
+
+        if (fence == NULL) {
+            return 0;
+        }
+
+        final long startTime = System.nanoTime();
+
+        // Commands must be flushed the first time, or the fence could never be signaled
+        int flags = GL_SYNC_FLUSH_COMMANDS_BIT;
+
+        while (true) {
+
+            final int status = glClientWaitSync(fence, flags, WAIT_TIMEOUT);
+
+            if (status == GL_ALREADY_SIGNALED || status == GL_CONDITION_SATISFIED) {
+                break;
+            }
+
+            if (status == GL_WAIT_FAILED) {
+                Log.error("Failed to wait for the fence of frame " + frame);
+                break;
+            }
+
+            flags = 0;
+        }
+
+        deleteFence(frame);
+
+        return System.nanoTime() - startTime;
+    }
+
+    private void deleteFence(int frame) {
+        if (fences[frame] != NULL) {
+            glDeleteSync(fences[frame]);
+            fences[frame] = NULL;
+        }
+    }
+}
@@ -59,7 +59,7 @@ public class GLGraphicsFactory implements GraphicsFactory {
     @Override
     public Texture2D newTexture2D(Path imagePath, PixelFormat pixelFormat, boolean flipY) {
 
-        GLTexture2D texture = new GLTexture2D(context);
+        GLTexture2D texture = new GLTexture2D(context).name(imagePath.toString());
 
         try(Image image = ImageFactory.newImage(imagePath, pixelFormat, flipY)) {
             texture.pixels(requireNonNull(image));
@@ -95,8 +95,7 @@ public class GLBuffer extends GLObject implements MappedGraphicsBuffer, VertexBu
 
         glCopyNamedBufferSubData(srcBuffer, destBuffer, 0, 0, min(newSize, oldSize));
 
-        glFinish();
-
+        // Deleting the source buffer is deferred by the driver until the copy is done
         release();
 
         setHandle(destBuffer);
@@ -157,6 +156,17 @@ public class GLBuffer extends GLObject implements MappedGraphicsBuffer, VertexBu
         glNamedBufferSubData(handle(), offset, data);
     }
 
+    @Override
+    public void copyRange(long srcOffset, long destOffset, long size) {
+
+        if(srcOffset < destOffset + size && destOffset < srcOffset + size) {
+            Log.error("Cannot copy between overlapping ranges of buffer " + this);
+            return;
+        }
+
+        glCopyNamedBufferSubData(handle(), handle(), srcOffset, destOffset, size);
+    }
+
     @Override
     public long nmappedMemoryPtr() {
         return memoryPtr;
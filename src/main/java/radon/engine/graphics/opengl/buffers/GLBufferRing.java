@@ -0,0 +1,49 @@
+package radon.engine.graphics.opengl.buffers;
+
+import radon.engine.graphics.opengl.GLFrameSync;
+import radon.engine.resource.Resource;
+
+import java.util.function.Supplier;
+
+/**
+ * One buffer per frame in flight. The CPU only writes into the buffer of the current frame, while the GPU may still
+ * be reading the buffers of the previous ones. Each buffer is allocated and grown independently, when it is current
+ */
+public final class GLBufferRing implements Resource {
+
+    private final GLBuffer[] buffers;
+    private int current;
+
+    public GLBufferRing(Supplier<GLBuffer> factory) {
+        buffers = new GLBuffer[GLFrameSync.FRAMES_IN_FLIGHT];
+        for (int i = 0; i < buffers.length; i++) {
+            buffers[i] = factory.get();
+        }
+    }
+
+    public GLBuffer current() {
+        return buffers[current];
+    }
+
+    public GLBuffer get(int frameIndex) {
+        return buffers[frameIndex];
+    }
+
+    public int size() {
+        return buffers.length;
+    }
+
+    /**
+     * Makes the buffer of the given frame the current one. The GPU must have finished the last frame that used it
+     */
+    public void select(int frameIndex) {
+        current = frameIndex;
+    }
+
+    @Override
+    public void release() {
+        for (GLBuffer buffer : buffers) {
+            buffer.release();
+        }
+    }
+}
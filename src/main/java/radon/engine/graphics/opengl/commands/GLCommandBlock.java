@@ -0,0 +1,100 @@
+package radon.engine.graphics.opengl.commands;
+
+import org.joml.Vector4fc;
+import radon.engine.materials.ManagedMaterial;
+import radon.engine.meshes.Mesh;
+import radon.engine.meshes.views.MeshView;
+
+import java.util.Arrays;
+
+/**
+ * Worker local list of visible draws. It is filled without any synchronization and then submitted to a
+ * {@link GLCommandBuilder} as a single contiguous block of command and instance slots
+ */
+public final class GLCommandBlock {
+
+    static final int INDEX_COUNT = 0;
+    static final int FIRST_INDEX = 1;
+    static final int BASE_VERTEX = 2;
+    static final int MATRIX_INDEX = 3;
+    static final int MATERIAL_INDEX = 4;
+    static final int LAYER_MASK = 5;
+    static final int MESH_INDEX = 6;
+    static final int STRIDE = 7;
+    // World space bounding sphere of each draw
+    static final int BOUNDS_STRIDE = 4;
+
+    private static final int INITIAL_CAPACITY = 256;
+
+    private int[] draws;
+    private float[] bounds;
+    private int count;
+
+    GLCommandBlock() {
+        draws = new int[INITIAL_CAPACITY * STRIDE];
+        bounds = new float[INITIAL_CAPACITY * BOUNDS_STRIDE];
+    }
+
+    public void add(int matricesIndex, MeshView<?> meshView, Mesh mesh, Vector4fc center, float radius) {
+        add(matricesIndex, meshView, mesh, 0, center, radius, 0);
+    }
+
+    /**
+     * Adds a draw of the given level of detail of the mesh
+     */
+    public void add(int matricesIndex, MeshView<?> meshView, Mesh mesh, int lod, Vector4fc center, float radius) {
+        add(matricesIndex, meshView, mesh, lod, center, radius, 0);
+    }
+
+    /**
+     * Adds a draw of a layered view, visible in the layers of the given mask
+     */
+    public void add(int matricesIndex, MeshView<?> meshView, Mesh mesh, int lod, Vector4fc center, float radius, int layerMask) {
+
+        final int offset = count * STRIDE;
+
+        if(offset == draws.length) {
+            draws = Arrays.copyOf(draws, draws.length * 2);
+            bounds = Arrays.copyOf(bounds, bounds.length * 2);
+        }
+
+        ManagedMaterial material = (ManagedMaterial) meshView.material();
+
+        draws[offset + INDEX_COUNT] = mesh.lodIndexCount(lod);
+        draws[offset + FIRST_INDEX] = mesh.storageInfo().firstIndex() + mesh.lodFirstIndex(lod);
+        draws[offset + BASE_VERTEX] = mesh.storageInfo().baseVertex();
+        draws[offset + MATRIX_INDEX] = matricesIndex;
+        draws[offset + MATERIAL_INDEX] = material.storageInfo().bufferIndex();
+        draws[offset + LAYER_MASK] = layerMask;
+        draws[offset + MESH_INDEX] = mesh.storageInfo().index();
+
+        final int boundsOffset = count * BOUNDS_STRIDE;
+
+        bounds[boundsOffset] = center.x();
+        bounds[boundsOffset + 1] = center.y();
+        bounds[boundsOffset + 2] = center.z();
+        bounds[boundsOffset + 3] = radius;
+
+        ++count;
+    }
+
+    public int count() {
+        return count;
+    }
+
+    public boolean isEmpty() {
+        return count == 0;
+    }
+
+    void clear() {
+        count = 0;
+    }
+
+    int[] draws() {
+        return draws;
+    }
+
+    float[] bounds() {
+        return bounds;
+    }
+}
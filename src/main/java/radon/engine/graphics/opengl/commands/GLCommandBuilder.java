@@ -1,28 +1,22 @@
 package radon.engine.graphics.opengl.commands;
 
-import org.joml.Matrix4fc;
-import org.lwjgl.system.MemoryStack;
+import radon.engine.graphics.opengl.buffers.GLBuffer;
 import radon.engine.graphics.opengl.rendering.renderers.data.GLRenderData;
-import radon.engine.materials.ManagedMaterial;
-import radon.engine.meshes.Mesh;
-import radon.engine.meshes.views.MeshView;
+import radon.engine.logging.Log;
 
-import java.nio.ByteBuffer;
-import java.nio.IntBuffer;
+import java.util.Arrays;
 import java.util.concurrent.atomic.AtomicInteger;
 
-import static org.lwjgl.system.MemoryStack.stackPush;
+import static org.lwjgl.system.MemoryUtil.memPutFloat;
+import static org.lwjgl.system.MemoryUtil.memPutInt;
+import static radon.engine.graphics.opengl.commands.GLCommandBlock.*;
+import static radon.engine.graphics.opengl.commands.GLDrawElementsCommand.*;
+import static radon.engine.graphics.opengl.rendering.renderers.data.GLRenderData.INSTANCE_BUFFER_MIN_SIZE;
 import static radon.engine.util.types.DataType.INT32_SIZEOF;
-import static radon.engine.util.types.DataType.MATRIX4_SIZEOF;
 
 public class GLCommandBuilder {
 
-    private static final int INSTANCE_BUFFER_MIN_SIZE = INT32_SIZEOF * 2;
-
-    private static final int TRANSFORMS_BUFFER_MIN_SIZE = MATRIX4_SIZEOF * 2;
-    private static final int TRANSFORMS_BUFFER_MODEL_MATRIX_OFFSET = 0;
-    private static final int TRANSFORMS_BUFFER_NORMAL_MATRIX_OFFSET = MATRIX4_SIZEOF;
-
+    private static final ThreadLocal<GLCommandBlock[]> COMMAND_BLOCKS = ThreadLocal.withInitial(() -> new GLCommandBlock[0]);
 
     private final AtomicInteger baseInstance;
     private final GLRenderData renderData;
@@ -36,48 +30,169 @@ public class GLCommandBuilder {
         return baseInstance.getAndSet(0);
     }
 
-    public void buildDrawCommand(GLDrawElementsCommand command, int matricesIndex, MeshView<?> meshView, Mesh mesh) {
+    /**
+     * Returns the calling thread's command block, emptied and ready to be filled
+     */
+    public GLCommandBlock commandBlock() {
+        return commandBlocks(1)[0];
+    }
 
-        final int baseInstance = this.baseInstance.getAndIncrement();
+    /**
+     * Returns at least {@code count} command blocks of the calling thread, emptied and ready to be filled
+     */
+    public GLCommandBlock[] commandBlocks(int count) {
 
-        ManagedMaterial material = (ManagedMaterial) meshView.material();
+        GLCommandBlock[] blocks = COMMAND_BLOCKS.get();
 
-        final int materialIndex = material.storageInfo().bufferIndex();
+        if(blocks.length < count) {
+            final int oldLength = blocks.length;
+            blocks = Arrays.copyOf(blocks, count);
+            for(int i = oldLength; i < count; i++) {
+                blocks[i] = new GLCommandBlock();
+            }
+            COMMAND_BLOCKS.set(blocks);
+        }
 
-        setInstanceData(baseInstance, matricesIndex, materialIndex);
+        for(int i = 0; i < count; i++) {
+            blocks[i].clear();
+        }
 
-        command.count(mesh.indexCount())
-                .primCount(1)
-                .firstIndex(mesh.storageInfo().firstIndex())
-                .baseVertex(mesh.storageInfo().baseVertex())
-                .baseInstance(baseInstance);
+        return blocks;
+    }
 
-        renderData.getCommandBuffer().copy(baseInstance * GLDrawElementsCommand.SIZEOF, command.buffer());
+    /**
+     * Reserves a contiguous range of slots for the whole block with a single atomic operation and writes its
+     * commands and instance data straight into the mapped buffers
+     */
+    public void submit(GLCommandBlock block) {
+        submit(block, baseInstance, 0);
     }
 
-    public void setInstanceTransform(int objectIndex, Matrix4fc modelMatrix, Matrix4fc normalMatrix) {
+    /**
+     * Same as {@link #submit(GLCommandBlock)}, but the slots are reserved from the given counter, relative to the start
+     * of a command buffer region
+     */
+    public void submit(GLCommandBlock block, AtomicInteger regionCounter, int regionOffset) {
+
+        final int count = block.count();
+
+        if(count == 0) {
+            return;
+        }
+
+        final int firstInstance = regionOffset + regionCounter.getAndAdd(count);
+
+        GLBuffer commandBuffer = renderData.getCommandBuffer();
+        GLBuffer instanceBuffer = renderData.getInstanceBuffer();
+        GLBuffer boundsBuffer = renderData.getBoundsBuffer();
+
+        if(outOfRange(commandBuffer, firstInstance + count, GLDrawElementsCommand.SIZEOF)
+                || outOfRange(instanceBuffer, firstInstance + count, INSTANCE_BUFFER_MIN_SIZE)
+                || outOfRange(boundsBuffer, firstInstance + count, GLRenderData.DRAW_BOUNDS_SIZEOF)) {
+            block.clear();
+            return;
+        }
+
+        final int[] draws = block.draws();
+        final float[] bounds = block.bounds();
 
-        try (MemoryStack stack = stackPush()) {
+        long commandPtr = commandBuffer.nmappedMemoryPtr() + (long) firstInstance * GLDrawElementsCommand.SIZEOF;
+        long instancePtr = instanceBuffer.nmappedMemoryPtr() + (long) firstInstance * INSTANCE_BUFFER_MIN_SIZE;
+        long boundsPtr = boundsBuffer.nmappedMemoryPtr() + (long) firstInstance * GLRenderData.DRAW_BOUNDS_SIZEOF;
 
-            ByteBuffer buffer = stack.malloc(MATRIX4_SIZEOF * 2);
+        for(int i = 0, offset = 0, boundsOffset = 0; i < count; i++, offset += STRIDE, boundsOffset += BOUNDS_STRIDE) {
 
-            modelMatrix.get(TRANSFORMS_BUFFER_MODEL_MATRIX_OFFSET, buffer);
-            normalMatrix.get(TRANSFORMS_BUFFER_NORMAL_MATRIX_OFFSET, buffer);
+            memPutInt(commandPtr + COUNT_OFFSET, draws[offset + INDEX_COUNT]);
+            memPutInt(commandPtr + PRIM_COUNT_OFFSET, 1);
+            memPutInt(commandPtr + FIRST_INDEX_OFFSET, draws[offset + FIRST_INDEX]);
+            memPutInt(commandPtr + BASE_VERTEX_OFFSET, draws[offset + BASE_VERTEX]);
+            memPutInt(commandPtr + BASE_INSTANCE_OFFSET, firstInstance + i);
 
-            renderData.getTransformsBuffer().copy(objectIndex * TRANSFORMS_BUFFER_MIN_SIZE, buffer);
+            memPutInt(instancePtr, draws[offset + MATRIX_INDEX]);
+            memPutInt(instancePtr + INT32_SIZEOF, draws[offset + MATERIAL_INDEX]);
+            memPutInt(instancePtr + INT32_SIZEOF * 2, draws[offset + MESH_INDEX]);
+
+            memPutFloat(boundsPtr, bounds[boundsOffset]);
+            memPutFloat(boundsPtr + 4, bounds[boundsOffset + 1]);
+            memPutFloat(boundsPtr + 8, bounds[boundsOffset + 2]);
+            memPutFloat(boundsPtr + 12, bounds[boundsOffset + 3]);
+
+            commandPtr += GLDrawElementsCommand.SIZEOF;
+            instancePtr += INSTANCE_BUFFER_MIN_SIZE;
+            boundsPtr += GLRenderData.DRAW_BOUNDS_SIZEOF;
         }
+
+        block.clear();
     }
 
-    public void setInstanceData(int instanceID, int matrixIndex, int materialIndex) {
+    /**
+     * Same as {@link #submit(GLCommandBlock, AtomicInteger, int)}, but for the draws of a layered view. Each draw is
+     * instanced once per layer of its mask, and its instances are written from {@code layerRegionOffset}, with the
+     * layer in place of the material index
+     */
+    public void submitLayered(GLCommandBlock block, AtomicInteger regionCounter, int regionOffset, int layerRegionOffset, int layerCount) {
 
-        try (MemoryStack stack = stackPush()) {
+        final int count = block.count();
 
-            IntBuffer buffer = stack.mallocInt(2);
+        if(count == 0) {
+            return;
+        }
 
-            buffer.put(0, matrixIndex).put(1, materialIndex);
+        final int firstDraw = regionCounter.getAndAdd(count);
+        final int firstCommand = regionOffset + firstDraw;
+        final int firstInstance = layerRegionOffset + firstDraw * layerCount;
 
-            renderData.getInstanceBuffer().copy(instanceID * INSTANCE_BUFFER_MIN_SIZE, buffer);
+        GLBuffer commandBuffer = renderData.getCommandBuffer();
+        GLBuffer instanceBuffer = renderData.getInstanceBuffer();
+
+        if(outOfRange(commandBuffer, firstCommand + count, GLDrawElementsCommand.SIZEOF)
+                || outOfRange(instanceBuffer, firstInstance + count * layerCount, INSTANCE_BUFFER_MIN_SIZE)) {
+            block.clear();
+            return;
         }
+
+        final int[] draws = block.draws();
+
+        long commandPtr = commandBuffer.nmappedMemoryPtr() + (long) firstCommand * GLDrawElementsCommand.SIZEOF;
+
+        for(int i = 0, offset = 0; i < count; i++, offset += STRIDE) {
+
+            final int baseInstance = firstInstance + i * layerCount;
+            final int layerMask = draws[offset + LAYER_MASK];
+
+            memPutInt(commandPtr + COUNT_OFFSET, draws[offset + INDEX_COUNT]);
+            memPutInt(commandPtr + PRIM_COUNT_OFFSET, Integer.bitCount(layerMask));
+            memPutInt(commandPtr + FIRST_INDEX_OFFSET, draws[offset + FIRST_INDEX]);
+            memPutInt(commandPtr + BASE_VERTEX_OFFSET, draws[offset + BASE_VERTEX]);
+            memPutInt(commandPtr + BASE_INSTANCE_OFFSET, baseInstance);
+
+            long instancePtr = instanceBuffer.nmappedMemoryPtr() + (long) baseInstance * INSTANCE_BUFFER_MIN_SIZE;
+
+            for(int mask = layerMask; mask != 0; mask &= mask - 1) {
+                memPutInt(instancePtr, draws[offset + MATRIX_INDEX]);
+                memPutInt(instancePtr + INT32_SIZEOF, Integer.numberOfTrailingZeros(mask));
+                memPutInt(instancePtr + INT32_SIZEOF * 2, draws[offset + MESH_INDEX]);
+                instancePtr += INSTANCE_BUFFER_MIN_SIZE;
+            }
+
+            commandPtr += GLDrawElementsCommand.SIZEOF;
+        }
+
+        block.clear();
     }
 
+    private static boolean outOfRange(GLBuffer buffer, int slotCount, int slotSize) {
+
+        if(!buffer.mapped()) {
+            Log.fatal("Buffer " + buffer + " is not mapped");
+            return true;
+        }
+
+        if((long) slotCount * slotSize > buffer.size()) {
+            Log.fatal("Command block is out of range: " + (long) slotCount * slotSize + " > " + buffer.size());
+            return true;
+        }
+
+        return false;
+    }
 }
@@ -26,11 +26,11 @@ public final class GLDrawElementsCommand implements GLDrawCommand {
         } DrawElementsIndirectCommand;
     */
 
-    private static final int COUNT_OFFSET = 0;
-    private static final int PRIM_COUNT_OFFSET = COUNT_OFFSET + UINT32_SIZEOF;
-    private static final int FIRST_INDEX_OFFSET = PRIM_COUNT_OFFSET + UINT32_SIZEOF;
-    private static final int BASE_VERTEX_OFFSET = FIRST_INDEX_OFFSET + UINT32_SIZEOF;
-    private static final int BASE_INSTANCE_OFFSET = BASE_VERTEX_OFFSET + INT32_SIZEOF;
+    static final int COUNT_OFFSET = 0;
+    static final int PRIM_COUNT_OFFSET = COUNT_OFFSET + UINT32_SIZEOF;
+    static final int FIRST_INDEX_OFFSET = PRIM_COUNT_OFFSET + UINT32_SIZEOF;
+    static final int BASE_VERTEX_OFFSET = FIRST_INDEX_OFFSET + UINT32_SIZEOF;
+    static final int BASE_INSTANCE_OFFSET = BASE_VERTEX_OFFSET + INT32_SIZEOF;
 
     public static GLDrawElementsCommand callocStack(MemoryStack stack) {
         return new GLDrawElementsCommand(stack.calloc(SIZEOF));
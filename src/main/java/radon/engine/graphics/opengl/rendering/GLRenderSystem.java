@@ -6,14 +6,15 @@ import radon.engine.events.window.WindowResizedEvent;
 import radon.engine.graphics.Graphics;
 import radon.engine.graphics.opengl.GLContext;
 import radon.engine.graphics.opengl.GLShadingPipelineManager;
+import radon.engine.graphics.opengl.rendering.lights.GLLightClusters;
 import radon.engine.graphics.opengl.rendering.renderers.*;
 import radon.engine.graphics.opengl.rendering.shadows.GLShadowRenderer;
 import radon.engine.graphics.opengl.swapchain.GLFramebuffer;
-import radon.engine.graphics.opengl.swapchain.GLRenderbuffer;
 import radon.engine.graphics.opengl.textures.GLTexture2D;
 import radon.engine.graphics.rendering.APIRenderSystem;
 import radon.engine.graphics.window.Window;
 import radon.engine.images.PixelFormat;
+import radon.engine.materials.MaterialManager;
 import radon.engine.scenes.Scene;
 import radon.engine.scenes.SceneRenderInfo;
 import radon.engine.scenes.environment.SceneEnvironment;
@@ -24,7 +25,6 @@ import static java.lang.StrictMath.max;
 import static java.util.Objects.requireNonNull;
 import static org.lwjgl.glfw.GLFW.glfwSwapBuffers;
 import static org.lwjgl.glfw.GLFW.glfwSwapInterval;
-import static org.lwjgl.opengl.GL11.glFinish;
 import static org.lwjgl.opengl.GL11.glViewport;
 import static org.lwjgl.opengl.GL11C.GL_COLOR_BUFFER_BIT;
 import static org.lwjgl.opengl.GL30.*;
@@ -40,11 +40,13 @@ public final class GLRenderSystem implements APIRenderSystem {
     private final GLMeshRenderer meshRenderer;
     private final GLWaterRenderer waterRenderer;
     private final GLSpriteRenderer spriteRenderer;
+    private final GLLightClusters lightClusters;
 
 
     // Shading Pipelines
     private final GLShadingPipelineManager shadingPipelineManager;
     private GLFramebuffer mainFramebuffer;
+    private GLTexture2D mainDepthBuffer;
     private GLShadingPipeline currentShadingPipeline;
 
     private GLRenderSystem() {
@@ -55,8 +57,9 @@ public final class GLRenderSystem implements APIRenderSystem {
 
         skyboxRenderer = new GLSkyboxRenderer(context);
         shadowRenderer = new GLShadowRenderer(context);
-        meshRenderer = new GLMeshRenderer(context, shadowRenderer);
-        waterRenderer = new GLWaterRenderer(context, meshRenderer, skyboxRenderer);
+        lightClusters = new GLLightClusters(context);
+        meshRenderer = new GLMeshRenderer(context, shadowRenderer, lightClusters);
+        waterRenderer = new GLWaterRenderer(context, meshRenderer, skyboxRenderer, lightClusters);
         spriteRenderer = new GLSpriteRenderer(context);
 
         shadingPipelineManager = new GLShadingPipelineManager(context);
@@ -82,6 +85,7 @@ public final class GLRenderSystem implements APIRenderSystem {
         skyboxRenderer.terminate();
         meshRenderer.terminate();
         spriteRenderer.terminate();
+        lightClusters.release();
     }
 
     public GLFramebuffer mainFramebuffer() {
@@ -90,6 +94,7 @@ public final class GLRenderSystem implements APIRenderSystem {
 
     @Override
     public void begin() {
+        context.frameSync().beginFrame();
         Sizec framebufferSize = Window.get().framebufferSize();
         glViewport(0, 0, framebufferSize.width(), framebufferSize.height());
     }
@@ -102,13 +107,25 @@ public final class GLRenderSystem implements APIRenderSystem {
 
         meshRenderer.prepare(scene);
 
-        if (currentShadingPipeline.areShadowsEnabled()) {
+        // Before the water bakes, which move the camera
+        lightClusters.update(scene);
+
+        final boolean shadowsEnabled = currentShadingPipeline.areShadowsEnabled();
+
+        // Every view of the frame is culled at once, before any of them is rendered
+        if (shadowsEnabled) {
+            shadowRenderer.addViews(scene, meshRenderer);
+        }
+
+        waterRenderer.addViews(scene, currentShadingPipeline);
+
+        meshRenderer.performVisibilityCulling(scene);
+
+        if (shadowsEnabled) {
             shadowRenderer.render(scene, meshRenderer);
         }
 
         waterRenderer.bakeWaterTextures(scene, currentShadingPipeline);
-
-        meshRenderer.preComputeFrustumCulling(scene);
     }
 
     @Override
@@ -120,7 +137,7 @@ public final class GLRenderSystem implements APIRenderSystem {
 
         clear(environment.clearColor());
 
-        meshRenderer.renderPreComputedVisibleObjects(scene, currentShadingPipeline);
+        meshRenderer.renderPreComputedVisibleObjects(scene, currentShadingPipeline, mainDepthBuffer);
 
         waterRenderer.render(scene);
 
@@ -136,13 +153,24 @@ public final class GLRenderSystem implements APIRenderSystem {
 
     @Override
     public void end() {
-        glFinish();
         if (!Radon.isEditor()) {
             copyFramebufferToScreen();
         }
+        context.frameSync().endFrame();
         glfwSwapBuffers(context.handle());
     }
 
+    @Override
+    public CharSequence debugReport() {
+
+        StringBuilder builder = new StringBuilder();
+
+        builder.append("\n\t\t").append("[STATIC MESHES]: ").append(meshRenderer.staticMeshRenderer().debugReport());
+        builder.append("\n\t\t").append("[MATERIALS]: ").append(MaterialManager.get().uploadedBytes()).append(" bytes uploaded");
+
+        return builder;
+    }
+
     private void clear(Color color) {
         glClearColor(color.red(), color.green(), color.blue(), color.alpha());
         glClear(GL_COLOR_BUFFER_BIT | GL_DEPTH_BUFFER_BIT);
@@ -166,12 +194,12 @@ public final class GLRenderSystem implements APIRenderSystem {
         GLTexture2D colorBuffer = new GLTexture2D(context);
         colorBuffer.allocate(1, width, height, PixelFormat.RGBA);
 
-        GLRenderbuffer depthStencilBuffer = new GLRenderbuffer(context);
-       // depthStencilBuffer.storageMultisample(width, height, GL_DEPTH24_STENCIL8, MSAA_SAMPLES.get());
-        depthStencilBuffer.storage(width, height, GL_DEPTH24_STENCIL8);
+        // A texture, so the occlusion culling can build its depth pyramid from it
+        mainDepthBuffer = new GLTexture2D(context);
+        mainDepthBuffer.allocate(1, width, height, GL_DEPTH24_STENCIL8);
 
         mainFramebuffer.attach(GL_COLOR_ATTACHMENT0, colorBuffer, 0);
-        mainFramebuffer.attach(GL_DEPTH_STENCIL_ATTACHMENT, depthStencilBuffer);
+        mainFramebuffer.attach(GL_DEPTH_STENCIL_ATTACHMENT, mainDepthBuffer, 0);
 
         mainFramebuffer.freeAttachmentsOnRelease(true);
 
@@ -0,0 +1,173 @@
+package radon.engine.graphics.opengl.rendering.culling;
+
+import org.joml.Matrix4f;
+import org.joml.Matrix4fc;
+import radon.engine.core.RadonFiles;
+import radon.engine.graphics.opengl.GLContext;
+import radon.engine.graphics.opengl.shaders.GLShader;
+import radon.engine.graphics.opengl.shaders.GLShaderProgram;
+import radon.engine.graphics.opengl.textures.GLTexture2D;
+import radon.engine.resource.Resource;
+
+import static java.lang.Integer.highestOneBit;
+import static java.lang.Integer.numberOfTrailingZeros;
+import static java.lang.Math.max;
+import static org.lwjgl.opengl.GL43.*;
+import static radon.engine.graphics.ShaderStage.COMPUTE_STAGE;
+
+/**
+ * Hierarchical depth buffer (Hi-Z). Each level keeps the farthest depth of the 2x2 texels below it, so a single
+ * texel of the right level tells whether something in front of it is hidden. The first level is the biggest power of
+ * two that fits in the depth buffer
+ */
+public final class GLDepthPyramid implements Resource {
+
+    private static final int WORK_GROUP_SIZE = 8;
+
+    private static final int DEPTH_BUFFER_UNIT = 0;
+    private static final int SOURCE_LEVEL_UNIT = 0;
+    private static final int DESTINATION_LEVEL_UNIT = 1;
+
+    private final GLContext context;
+    private final GLShaderProgram shader;
+    private final Matrix4f projectionViewMatrix;
+    private GLTexture2D texture;
+    private GLTexture2D depthBuffer;
+    private int depthBufferWidth;
+    private int depthBufferHeight;
+    private int width;
+    private int height;
+    private int levels;
+    private boolean valid;
+
+    public GLDepthPyramid(GLContext context) {
+        this.context = context;
+        shader = new GLShaderProgram(context, "OpenGL Depth Pyramid shader")
+                .attach(new GLShader(context, COMPUTE_STAGE).source(RadonFiles.getPath("shaders/compute/depth_pyramid.comp")).compile())
+                .link();
+        projectionViewMatrix = new Matrix4f();
+    }
+
+    public GLTexture2D texture() {
+        return texture;
+    }
+
+    public int width() {
+        return width;
+    }
+
+    public int height() {
+        return height;
+    }
+
+    public int levels() {
+        return levels;
+    }
+
+    /**
+     * Returns the projection view matrix the depth of this pyramid was rendered with
+     */
+    public Matrix4fc projectionViewMatrix() {
+        return projectionViewMatrix;
+    }
+
+    /**
+     * Returns whether this pyramid has been built since it was created or invalidated
+     */
+    public boolean valid() {
+        return valid;
+    }
+
+    public void invalidate() {
+        valid = false;
+    }
+
+    /**
+     * Builds every level of the pyramid from the given depth buffer, rendered with the given projection view matrix
+     */
+    public void build(GLTexture2D depthBuffer, Matrix4fc projectionViewMatrix) {
+
+        checkSize(depthBuffer);
+
+        shader.bind();
+
+        depthBuffer.bind(DEPTH_BUFFER_UNIT);
+
+        int sourceWidth = depthBufferWidth;
+        int sourceHeight = depthBufferHeight;
+
+        for (int level = 0; level < levels; level++) {
+
+            final int levelWidth = max(width >> level, 1);
+            final int levelHeight = max(height >> level, 1);
+
+            if (level > 0) {
+                glBindImageTexture(SOURCE_LEVEL_UNIT, texture.handle(), level - 1, false, 0, GL_READ_ONLY, GL_R32F);
+            }
+
+            glBindImageTexture(DESTINATION_LEVEL_UNIT, texture.handle(), level, false, 0, GL_WRITE_ONLY, GL_R32F);
+
+            shader.uniformBool("u_FromDepthBuffer", level == 0);
+            glUniform2i(shader.uniformLocation("u_SourceSize"), sourceWidth, sourceHeight);
+            glUniform2i(shader.uniformLocation("u_DestinationSize"), levelWidth, levelHeight);
+
+            glDispatchCompute((levelWidth + WORK_GROUP_SIZE - 1) / WORK_GROUP_SIZE, (levelHeight + WORK_GROUP_SIZE - 1) / WORK_GROUP_SIZE, 1);
+
+            glMemoryBarrier(GL_SHADER_IMAGE_ACCESS_BARRIER_BIT);
+
+            sourceWidth = levelWidth;
+            sourceHeight = levelHeight;
+        }
+
+        glMemoryBarrier(GL_TEXTURE_FETCH_BARRIER_BIT);
+
+        depthBuffer.unbind(DEPTH_BUFFER_UNIT);
+
+        shader.unbind();
+
+        this.projectionViewMatrix.set(projectionViewMatrix);
+
+        valid = true;
+    }
+
+    @Override
+    public void release() {
+        shader.release();
+        if (texture != null) {
+            texture.release();
+        }
+    }
+
+    private void checkSize(GLTexture2D depthBuffer) {
+
+        if (depthBuffer == this.depthBuffer) {
+            return;
+        }
+
+        // A new depth buffer means the window has been resized
+        this.depthBuffer = depthBuffer;
+
+        depthBufferWidth = depthBuffer.width();
+        depthBufferHeight = depthBuffer.height();
+
+        final int newWidth = highestOneBit(max(depthBufferWidth, 1));
+        final int newHeight = highestOneBit(max(depthBufferHeight, 1));
+
+        if (texture != null && newWidth == width && newHeight == height) {
+            return;
+        }
+
+        width = newWidth;
+        height = newHeight;
+        levels = numberOfTrailingZeros(max(width, height)) + 1;
+
+        if (texture == null) {
+            texture = new GLTexture2D(context);
+            texture.allocate(levels, width, height, GL_R32F);
+        } else {
+            texture.reallocate(levels, width, height, GL_R32F);
+        }
+
+        valid = false;
+    }
+}
@@ -2,47 +2,58 @@ package radon.engine.graphics.opengl.rendering.culling;
 
 import org.joml.FrustumIntersection;
 import org.joml.Matrix4fc;
-import org.joml.Vector3fc;
 import org.joml.Vector4f;
-import org.lwjgl.system.MemoryStack;
+import radon.engine.core.Time;
+import radon.engine.graphics.opengl.commands.GLCommandBlock;
 import radon.engine.graphics.opengl.commands.GLCommandBuilder;
-import radon.engine.graphics.opengl.commands.GLDrawElementsCommand;
 import radon.engine.graphics.opengl.rendering.renderers.data.GLRenderData;
+import radon.engine.graphics.rendering.RenderJobScheduler;
 import radon.engine.graphics.rendering.culling.FrustumCuller;
+import radon.engine.graphics.rendering.culling.FrustumCullingMode;
 import radon.engine.graphics.rendering.culling.FrustumCullingPreCondition;
 import radon.engine.graphics.rendering.culling.FrustumCullingPreConditionState;
-import radon.engine.logging.Log;
+import radon.engine.graphics.rendering.culling.MaskedOcclusionBuffer;
+import radon.engine.graphics.rendering.culling.VisibilitySet;
 import radon.engine.meshes.Mesh;
 import radon.engine.meshes.views.MeshView;
 import radon.engine.scenes.components.meshes.MeshInstance;
 import radon.engine.scenes.components.meshes.MeshInstanceList;
+import radon.engine.scenes.components.meshes.MeshInstanceTree;
 import radon.engine.util.geometry.ISphere;
 
-import java.util.concurrent.CountDownLatch;
-import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
-import java.util.concurrent.TimeUnit;
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicInteger;
 
-import static java.lang.Math.min;
-import static org.lwjgl.system.MemoryStack.stackPush;
-import static radon.engine.core.RadonConfigConstants.GRAPHICS_MULTITHREADING_ENABLED;
+import static radon.engine.core.RadonConfigConstants.RENDERING_DEBUG_REPORT;
 import static radon.engine.graphics.rendering.culling.FrustumCullingPreConditionState.*;
+import static radon.engine.util.Maths.maxScale;
 
 public class GLFrustumCuller implements FrustumCuller {
 
-    private static final int MAX_NUM_BATCHES = 64;
+    // Number of subtrees traversed per worker and view when culling a spatially indexed instance list
+    private static final int SUBTREES_PER_WORKER = 4;
+    // Screen space error allowed to a level of detail, as a fraction of the height of the view. About a pixel at 1080p
+    private static final float LOD_MAX_SCREEN_ERROR = 1.0f / 1024.0f;
+    // Margin taken before switching to a coarser level than the last one drawn, so it does not flicker back and forth
+    private static final float LOD_HYSTERESIS = 0.25f;
 
-
-    private final ExecutorService executor;
     private final GLCommandBuilder commandBuilder;
+    private final CullingDebugReport debugReport;
     // Per run attributes
     private FrustumIntersection frustum;
     private MeshInstanceList<?> instances;
     private FrustumCullingPreCondition preCondition;
+    private VisibilitySet visibilitySet;
+    private AtomicInteger[] viewDrawCounts;
+    private MeshInstanceTree<MeshInstance<?>> tree;
+    private final int[] subtrees;
+    private int subtreeCount;
 
     public GLFrustumCuller(GLRenderData renderData) {
-        this.executor = Executors.newCachedThreadPool();
         commandBuilder = new GLCommandBuilder(renderData);
+        debugReport = RENDERING_DEBUG_REPORT ? new CullingDebugReport() : null;
+        viewDrawCounts = new AtomicInteger[0];
+        subtrees = new int[RenderJobScheduler.PARALLELISM * SUBTREES_PER_WORKER * 2];
     }
 
     @Override
@@ -52,12 +63,17 @@ public class GLFrustumCuller implements FrustumCuller {
 
     @Override
     public void terminate() {
-        executor.shutdown();
-        try {
-            executor.awaitTermination(1000, TimeUnit.MILLISECONDS);
-        } catch (InterruptedException e) {
-            Log.error("Timeout error", e);
-        }
+
+    }
+
+    @Override
+    public FrustumCullingMode mode() {
+        return FrustumCullingMode.CPU;
+    }
+
+    @Override
+    public CharSequence debugReport() {
+        return RENDERING_DEBUG_REPORT ? debugReport.report() : null;
     }
 
     @Override
@@ -72,73 +88,304 @@ public class GLFrustumCuller implements FrustumCuller {
             return 0;
         }
 
+        final long startTime = RENDERING_DEBUG_REPORT ? System.nanoTime() : 0;
+
         setRunAttributes(frustum, instances, preCondition);
 
-        runFrustumCullingCPU();
+        RenderJobScheduler.parallelFor(0, instances.size(), this::performFrustumCullingCPURange);
 
         clearRunAttributes();
 
+        if (RENDERING_DEBUG_REPORT) {
+            debugReport.count(instances.size(), System.nanoTime() - startTime);
+        }
+
         return commandBuilder.count();
     }
 
-    private void runFrustumCullingCPU() {
-        if (GRAPHICS_MULTITHREADING_ENABLED) {
-            runFrustumCullingCPUInParallel();
+    @Override
+    public int performCulling(Matrix4fc projectionViewMatrix, FrustumIntersection frustum,
+                              MeshInstanceList<?> instances, FrustumCullingPreCondition preCondition) {
+        return performCullingCPU(frustum, instances, preCondition);
+    }
+
+    @Override
+    public void performCulling(VisibilitySet visibilitySet, MeshInstanceList<?> instances) {
+
+        final int viewCount = visibilitySet.viewCount();
+        final int regionSize = instances == null ? 0 : instances.numMeshViews();
+
+        if (viewCount == 0 || regionSize == 0) {
+            for (int view = 0; view < viewCount; view++) {
+                visibilitySet.setDrawRange(view, 0, 0);
+            }
+            return;
+        }
+
+        final long startTime = RENDERING_DEBUG_REPORT ? System.nanoTime() : 0;
+
+        resetViewDrawCounts(viewCount);
+
+        this.visibilitySet = visibilitySet;
+        this.instances = instances;
+
+        if (instances.tree() != null) {
+            performHierarchicalCulling(viewCount);
         } else {
-            runFrustumCullingCPUSingleThread();
+            RenderJobScheduler.parallelFor(0, instances.size(), this::performVisibilityCullingRange);
         }
+
+        this.visibilitySet = null;
+        this.instances = null;
+
+        for (int view = 0; view < viewCount; view++) {
+            visibilitySet.setDrawRange(view, view * regionSize, viewDrawCounts[view].get());
+        }
+
+        if (RENDERING_DEBUG_REPORT) {
+            debugReport.count(instances.size(), System.nanoTime() - startTime);
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private void performHierarchicalCulling(int viewCount) {
+
+        tree = (MeshInstanceTree) instances.tree();
+
+        // Every job traverses one subtree for one view
+        subtreeCount = tree.subtrees(RenderJobScheduler.PARALLELISM * SUBTREES_PER_WORKER, subtrees);
+
+        RenderJobScheduler.parallelFor(0, viewCount * subtreeCount, 1, 1, this::performHierarchicalCullingRange);
+
+        tree = null;
+        subtreeCount = 0;
     }
 
-    private void runFrustumCullingCPUInParallel() {
+    private void performHierarchicalCullingRange(int beginJob, int endJob) {
+
+        final int viewCount = visibilitySet.viewCount();
+
+        Vector4f center = new Vector4f();
 
-        final int batchSize = (int) Math.ceil((float) instances.size() / (float) MAX_NUM_BATCHES);
+        GLCommandBlock[] commandBlocks = commandBuilder.commandBlocks(viewCount);
 
-        final CountDownLatch countDownLatch = new CountDownLatch(MAX_NUM_BATCHES);
+        for (int job = beginJob; job < endJob; job++) {
 
-        for (int i = 0; i < MAX_NUM_BATCHES; i++) {
+            final int view = job / subtreeCount;
 
-            final int batchBegin = i * batchSize;
-            final int batchEnd = min(batchBegin + batchSize, instances.size());
+            // Layers are culled along with their layered view
+            if (visibilitySet.isLayer(view)) {
+                continue;
+            }
 
-            executor.execute(() -> performCullingBatch(countDownLatch, batchBegin, batchEnd));
+            final FrustumIntersection frustum = visibilitySet.frustum(view);
+            final FrustumCullingPreCondition preCondition = visibilitySet.preCondition(view);
+            final GLCommandBlock commandBlock = commandBlocks[view];
+
+            tree.cull(frustum, subtrees[job % subtreeCount], (instance, index, inside) ->
+                    addVisibleMeshViews(instance, index, inside, view, preCondition, commandBlock, center));
         }
 
-        waitForFrustumCulling(countDownLatch);
+        submit(commandBlocks, viewCount);
     }
 
-    private void runFrustumCullingCPUSingleThread() {
-        performFrustumCullingCPURange(0, instances.size());
+    private void addVisibleMeshViews(MeshInstance<?> instance, int index, boolean inside, int view,
+                                     FrustumCullingPreCondition preCondition, GLCommandBlock commandBlock, Vector4f center) {
+
+        final Matrix4fc modelMatrix = instance.modelMatrix();
+        final float maxScale = maxScale(modelMatrix);
+
+        for (int i = 0; i < instance.numMeshViews(); i++) {
+
+            final MeshView<?> meshView = instance.meshView(i);
+            final Mesh mesh = meshView.mesh();
+
+            final FrustumCullingPreConditionState preConditionState = preCondition.compute(instance, meshView);
+
+            if (preConditionState == DISCARD) {
+                continue;
+            }
+
+            // The sphere is needed even by the draws that pass, since it goes along with their command
+            final ISphere sphere = mesh.boundingSphere();
+
+            center.set(sphere.center(), 1.0f).mul(modelMatrix);
+
+            final float radius = sphere.radius() * maxScale;
+
+            // Instances whose node is fully inside of the frustum need no further tests, unless they have to be
+            // tested against each layer
+            if (preConditionState == PASS || (inside && visibilitySet.layerCount(view) == 0)) {
+                addVisibleMeshView(view, instance, index, i, modelMatrix, meshView, mesh, PASS, commandBlock, center, radius);
+                continue;
+            }
+
+            addVisibleMeshView(view, instance, index, i, modelMatrix, meshView, mesh, CONTINUE, commandBlock, center, radius);
+        }
     }
 
-    private void performCullingBatch(CountDownLatch countDownLatch, int batchBegin, int batchEnd) {
-        performFrustumCullingCPURange(batchBegin, batchEnd);
-        countDownLatch.countDown();
+    private void performVisibilityCullingRange(int beginIndex, int endIndex) {
+
+        final int viewCount = visibilitySet.viewCount();
+
+        Vector4f center = new Vector4f();
+
+        GLCommandBlock[] commandBlocks = commandBuilder.commandBlocks(viewCount);
+
+        for (int index = beginIndex; index < endIndex; index++) {
+
+            MeshInstance<?> instance = instances.get(index);
+
+            final Matrix4fc modelMatrix = instance.modelMatrix();
+            final float maxScale = maxScale(modelMatrix);
+
+            for (int i = 0; i < instance.numMeshViews(); i++) {
+
+                final MeshView<?> meshView = instance.meshView(i);
+                final Mesh mesh = meshView.mesh();
+                final ISphere sphere = mesh.boundingSphere();
+
+                // The world space bounding sphere is computed only once and then tested against every view
+                center.set(sphere.center(), 1.0f).mul(modelMatrix);
+
+                final float radius = sphere.radius() * maxScale;
+
+                // Layers are culled along with their layered view
+                for (int view = 0; view < viewCount; view += 1 + visibilitySet.layerCount(view)) {
+
+                    final FrustumCullingPreConditionState preConditionState = visibilitySet.preCondition(view).compute(instance, meshView);
+
+                    if (preConditionState == DISCARD) {
+                        continue;
+                    }
+
+                    addVisibleMeshView(view, instance, index, i, modelMatrix, meshView, mesh, preConditionState, commandBlocks[view], center, radius);
+                }
+            }
+        }
+
+        submit(commandBlocks, viewCount);
     }
 
-    private void performFrustumCullingCPURange(int beginIndex, int endIndex) {
+    private void addVisibleMeshView(int view, MeshInstance<?> instance, int index, int meshViewIndex, Matrix4fc modelMatrix,
+                                    MeshView<?> meshView, Mesh mesh, FrustumCullingPreConditionState preConditionState,
+                                    GLCommandBlock commandBlock, Vector4f center, float radius) {
+
+        final int layerCount = visibilitySet.layerCount(view);
+
+        if (layerCount == 0) {
+            if (preConditionState == PASS || visibilitySet.frustum(view).testSphere(center.x, center.y, center.z, radius)) {
+                // Only what survives the frustum is tested against the occluders, with its tighter bounding box
+                final MaskedOcclusionBuffer occlusionBuffer = visibilitySet.occlusionBuffer(view);
+                if (occlusionBuffer == null || occlusionBuffer.testAab(modelMatrix, mesh.bounds())) {
+                    final int lod = selectLOD(view, instance, meshViewIndex, mesh, center, radius);
+                    commandBlock.add(index, meshView, mesh, lod, center, radius);
+                }
+            }
+            return;
+        }
 
-        try (MemoryStack stack = stackPush()) {
+        int layerMask = 0;
 
-            Vector4f sphereCenter = new Vector4f();
+        if (preConditionState == PASS) {
+            layerMask = -1 >>> (Integer.SIZE - layerCount);
+        } else if (visibilitySet.frustum(view).testSphere(center.x, center.y, center.z, radius)) {
+            layerMask = visibilitySet.layerMask(view, center.x, center.y, center.z, radius);
+        }
+
+        if (layerMask != 0) {
+            final int lod = selectLOD(view, instance, meshViewIndex, mesh, center, radius);
+            commandBlock.add(index, meshView, mesh, lod, center, radius, layerMask);
+        }
+    }
 
-            GLDrawElementsCommand command = GLDrawElementsCommand.callocStack(stack);
+    // The coarsest level of detail whose error is below a pixel or so on the screen of the view
+    private int selectLOD(int view, MeshInstance<?> instance, int meshViewIndex, Mesh mesh, Vector4f center, float radius) {
+
+        final int lodCount = mesh.lodCount();
+
+        if (lodCount == 1) {
+            return 0;
+        }
+
+        final float size = visibilitySet.projectedSize(view, center.x, center.y, center.z, radius);
+
+        // Only the levels drawn in the LOD view are remembered, since the instance is culled for several views at once
+        final boolean steady = view == visibilitySet.lodView();
+        final int lastLOD = steady ? instance.lod(meshViewIndex) : lodCount;
+
+        int lod = 0;
+
+        for (int i = 1; i < lodCount; i++) {
+
+            final float maxError = i > lastLOD ? LOD_MAX_SCREEN_ERROR * (1.0f - LOD_HYSTERESIS) : LOD_MAX_SCREEN_ERROR;
+
+            if (mesh.lodError(i) * size > maxError) {
+                break;
+            }
+
+            lod = i;
+        }
+
+        if (steady) {
+            instance.lod(meshViewIndex, lod);
+        }
+
+        return lod;
+    }
 
-            for (int index = beginIndex; index < endIndex; index++) {
+    private void submit(GLCommandBlock[] commandBlocks, int viewCount) {
 
-                MeshInstance<?> instance = instances.get(index);
+        final int regionSize = instances.numMeshViews();
 
-                final Vector3fc scale = instance.transform().scale();
-                final float maxScale = scale.get(scale.maxComponent());
-                final Matrix4fc modelMatrix = instance.modelMatrix();
+        for (int view = 0; view < viewCount; view++) {
 
-                commandBuilder.setInstanceTransform(index, modelMatrix, instance.transform().normalMatrix());
+            final int layerCount = visibilitySet.layerCount(view);
 
-                performFrustumCullingCPU(instance, command, sphereCenter, modelMatrix, index, maxScale);
+            if (layerCount == 0) {
+                commandBuilder.submit(commandBlocks[view], viewDrawCounts[view], view * regionSize);
+            } else {
+                // The instances of the draws go into the regions of the layers
+                commandBuilder.submitLayered(commandBlocks[view], viewDrawCounts[view], view * regionSize, (view + 1) * regionSize, layerCount);
             }
         }
     }
 
-    private void performFrustumCullingCPU(MeshInstance<?> instance, GLDrawElementsCommand command,
+    private void resetViewDrawCounts(int viewCount) {
+
+        if (viewDrawCounts.length < viewCount) {
+            final int oldLength = viewDrawCounts.length;
+            viewDrawCounts = Arrays.copyOf(viewDrawCounts, viewCount);
+            for (int i = oldLength; i < viewCount; i++) {
+                viewDrawCounts[i] = new AtomicInteger();
+            }
+        }
+
+        for (int i = 0; i < viewCount; i++) {
+            viewDrawCounts[i].set(0);
+        }
+    }
+
+    private void performFrustumCullingCPURange(int beginIndex, int endIndex) {
+
+        Vector4f sphereCenter = new Vector4f();
+
+        GLCommandBlock commandBlock = commandBuilder.commandBlock();
+
+        for (int index = beginIndex; index < endIndex; index++) {
+
+            MeshInstance<?> instance = instances.get(index);
+
+            final Matrix4fc modelMatrix = instance.modelMatrix();
+            final float maxScale = maxScale(modelMatrix);
+
+            performFrustumCullingCPU(instance, commandBlock, sphereCenter, modelMatrix, index, maxScale);
+        }
+
+        commandBuilder.submit(commandBlock);
+    }
+
+    private void performFrustumCullingCPU(MeshInstance<?> instance, GLCommandBlock commandBlock,
                                           Vector4f center, Matrix4fc modelMatrix, int matricesIndex,
                                           float maxScale) {
 
@@ -153,27 +400,17 @@ public class GLFrustumCuller implements FrustumCuller {
                 continue;
             }
 
-            if (preConditionState == CONTINUE) {
-                center.set(sphere.center(), 1.0f).mul(modelMatrix);
-            }
+            center.set(sphere.center(), 1.0f).mul(modelMatrix);
 
             final float radius = sphere.radius() * maxScale;
 
             if (preConditionState == PASS || frustum.testSphere(center.x, center.y, center.z, radius)) {
 
-                commandBuilder.buildDrawCommand(command, matricesIndex, meshView, mesh);
+                commandBlock.add(matricesIndex, meshView, mesh, center, radius);
             }
         }
     }
 
-    private void waitForFrustumCulling(CountDownLatch countDownLatch) {
-        try {
-            countDownLatch.await(1000, TimeUnit.MILLISECONDS);
-        } catch (InterruptedException e) {
-            Log.error("Timeout error while waiting for frustum culling", e);
-        }
-    }
-
     private void setRunAttributes(FrustumIntersection frustum, MeshInstanceList<?> instances, FrustumCullingPreCondition preCondition) {
         this.frustum = frustum;
         this.instances = instances;
@@ -185,4 +422,33 @@ public class GLFrustumCuller implements FrustumCuller {
         instances = null;
         preCondition = null;
     }
+
+    private static class CullingDebugReport {
+
+        private int cullCount;
+        private long instanceCount;
+        private long cullTime;
+        private long lastReportFrame;
+
+        private synchronized void count(int instances, long nanos) {
+            ++cullCount;
+            instanceCount += instances;
+            cullTime += nanos;
+        }
+
+        private synchronized String report() {
+
+            final long frames = Math.max(Time.frames() - lastReportFrame, 1);
+
+            final String report = String.format("CPU culling: %.1f culls/frame | %d instances/frame | %.3f ms/frame (%d workers)",
+                    (float) cullCount / frames, instanceCount / frames, cullTime / 1e6 / frames, RenderJobScheduler.PARALLELISM);
+
+            cullCount = 0;
+            instanceCount = 0;
+            cullTime = 0;
+            lastReportFrame = Time.frames();
+
+            return report;
+        }
+    }
 }
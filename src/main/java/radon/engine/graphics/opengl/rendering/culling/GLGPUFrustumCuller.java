@@ -0,0 +1,472 @@
+package radon.engine.graphics.opengl.rendering.culling;
+
+import org.joml.FrustumIntersection;
+import org.joml.Matrix4fc;
+import org.joml.Vector4f;
+import org.lwjgl.opengl.GLCapabilities;
+import org.lwjgl.system.MemoryStack;
+import radon.engine.core.RadonFiles;
+import radon.engine.graphics.opengl.GLContext;
+import radon.engine.graphics.opengl.buffers.GLBuffer;
+import radon.engine.graphics.opengl.commands.GLDrawElementsCommand;
+import radon.engine.graphics.opengl.rendering.renderers.data.GLRenderData;
+import radon.engine.graphics.opengl.shaders.GLShader;
+import radon.engine.graphics.opengl.shaders.GLShaderProgram;
+import radon.engine.graphics.rendering.culling.FrustumCuller;
+import radon.engine.graphics.rendering.culling.FrustumCullingMode;
+import radon.engine.graphics.rendering.culling.FrustumCullingPreCondition;
+import radon.engine.graphics.rendering.culling.VisibilitySet;
+import radon.engine.logging.Log;
+import radon.engine.materials.ManagedMaterial;
+import radon.engine.meshes.Mesh;
+import radon.engine.meshes.MeshManager;
+import radon.engine.meshes.StaticMesh;
+import radon.engine.meshes.views.MeshView;
+import radon.engine.scenes.components.meshes.MeshInstance;
+import radon.engine.scenes.components.meshes.MeshInstanceList;
+import radon.engine.util.geometry.ISphere;
+
+import java.nio.ByteBuffer;
+import java.nio.IntBuffer;
+
+import static org.lwjgl.opengl.ARBIndirectParameters.GL_PARAMETER_BUFFER_ARB;
+import static org.lwjgl.opengl.ARBIndirectParameters.glMultiDrawElementsIndirectCountARB;
+import static org.lwjgl.opengl.GL43.*;
+import static org.lwjgl.opengl.GL46.GL_PARAMETER_BUFFER;
+import static org.lwjgl.opengl.GL46.glMultiDrawElementsIndirectCount;
+import static org.lwjgl.system.MemoryStack.stackPush;
+import static org.lwjgl.system.MemoryUtil.*;
+import static radon.engine.core.RadonConfigConstants.INTERNAL_DEBUG;
+import static radon.engine.graphics.ShaderStage.COMPUTE_STAGE;
+import static radon.engine.util.types.DataType.INT32_SIZEOF;
+import static radon.engine.util.types.DataType.VECTOR4_SIZEOF;
+
+public class GLGPUFrustumCuller implements FrustumCuller {
+
+    private static final int WORK_GROUP_SIZE = 128;
+    private static final int FRUSTUM_PLANES_COUNT = 6;
+
+    private static final int BOUNDING_SPHERE_SIZEOF = VECTOR4_SIZEOF;
+    private static final int DRAW_INFO_SIZEOF = INT32_SIZEOF * 3;
+    // vec4 frustumPlanes[6] + int regionOffset + int preConditionsOffset + int layerCount + 1 int of padding
+    private static final int CULLING_VIEW_SIZEOF = VECTOR4_SIZEOF * 7;
+    private static final int CULLING_VIEW_REGION_OFFSET = VECTOR4_SIZEOF * FRUSTUM_PLANES_COUNT;
+    private static final int CULLING_VIEW_PRECONDITIONS_OFFSET = CULLING_VIEW_REGION_OFFSET + INT32_SIZEOF;
+    private static final int CULLING_VIEW_LAYER_COUNT_OFFSET = CULLING_VIEW_PRECONDITIONS_OFFSET + INT32_SIZEOF;
+
+    private static final int DRAW_TEMPLATES_BINDING = 0;
+    private static final int DRAW_COMMANDS_BINDING = 1;
+    private static final int BOUNDING_SPHERES_BINDING = 2;
+    private static final int TRANSFORMS_BINDING = 3;
+    private static final int DRAW_INFOS_BINDING = 4;
+    private static final int INSTANCE_DATA_BINDING = 5;
+    private static final int PRECONDITIONS_BINDING = 6;
+    private static final int VIEWS_BINDING = 7;
+    private static final int DRAW_COUNTS_BINDING = 8;
+    private static final int DRAW_BOUNDS_BINDING = 9;
+
+    // Checks every GPU cull against the CPU culler output. Very slow, only meant for driver validation
+    private static final boolean VALIDATE_WITH_CPU = INTERNAL_DEBUG;
+
+
+    private final GLContext context;
+    private final GLRenderData renderData;
+    private final GLFrustumCuller cpuFrustumCuller;
+    private final Vector4f frustumPlane;
+    private GLShaderProgram cullingShader;
+    private GLBuffer drawTemplatesBuffer;
+    private GLBuffer boundingSpheresBuffer;
+    private GLBuffer drawInfosBuffer;
+    private GLBuffer preConditionsBuffer;
+    private GLBuffer viewsBuffer;
+    private GLBuffer drawCountsBuffer;
+    private boolean supported;
+    private final VisibilitySet singleView;
+    // Uploaded instances state
+    private MeshInstanceList<?> uploadedInstances;
+    private int uploadedModifications;
+    private int uploadedMeshModifications;
+    private int drawCount;
+
+    public GLGPUFrustumCuller(GLContext context, GLRenderData renderData) {
+        this.context = context;
+        this.renderData = renderData;
+        cpuFrustumCuller = new GLFrustumCuller(renderData);
+        frustumPlane = new Vector4f();
+        singleView = new VisibilitySet();
+    }
+
+    @Override
+    public void init() {
+
+        cpuFrustumCuller.init();
+
+        final GLCapabilities capabilities = context.capabilities();
+
+        supported = capabilities.OpenGL46 || capabilities.GL_ARB_indirect_parameters;
+
+        if (!supported) {
+            Log.warning("GPU frustum culling requires OpenGL 4.6 or GL_ARB_indirect_parameters. Falling back to CPU");
+            return;
+        }
+
+        cullingShader = new GLShaderProgram(context, "OpenGL Frustum Culling shader")
+                .attach(new GLShader(context, COMPUTE_STAGE).source(RadonFiles.getPath("shaders/compute/culling.comp")).compile())
+                .link();
+
+        drawTemplatesBuffer = new GLBuffer(context).name("CULLING_DRAW_TEMPLATES_BUFFER");
+        boundingSpheresBuffer = new GLBuffer(context).name("CULLING_BOUNDING_SPHERES_BUFFER");
+        drawInfosBuffer = new GLBuffer(context).name("CULLING_DRAW_INFOS_BUFFER");
+        preConditionsBuffer = new GLBuffer(context).name("CULLING_PRECONDITIONS_BUFFER");
+        preConditionsBuffer.allocate(INT32_SIZEOF);
+
+        viewsBuffer = new GLBuffer(context).name("CULLING_VIEWS_BUFFER");
+        viewsBuffer.allocate(CULLING_VIEW_SIZEOF);
+
+        drawCountsBuffer = new GLBuffer(context).name("CULLING_DRAW_COUNTS_BUFFER");
+        drawCountsBuffer.allocate(INT32_SIZEOF);
+    }
+
+    @Override
+    public void terminate() {
+        cpuFrustumCuller.terminate();
+        if (supported) {
+            cullingShader.release();
+            drawTemplatesBuffer.release();
+            boundingSpheresBuffer.release();
+            drawInfosBuffer.release();
+            preConditionsBuffer.release();
+            viewsBuffer.release();
+            drawCountsBuffer.release();
+        }
+    }
+
+    @Override
+    public FrustumCullingMode mode() {
+        return supported ? FrustumCullingMode.GPU : FrustumCullingMode.CPU;
+    }
+
+    public boolean supported() {
+        return supported;
+    }
+
+    @Override
+    public int performCullingCPU(FrustumIntersection frustum, MeshInstanceList<?> instances) {
+        return performCullingCPU(frustum, instances, FrustumCullingPreCondition.NO_PRECONDITION);
+    }
+
+    @Override
+    public int performCullingCPU(FrustumIntersection frustum, MeshInstanceList<?> instances, FrustumCullingPreCondition preCondition) {
+
+        // Callers without a projection view matrix cannot be culled in the GPU, so the draw count buffer
+        // is filled with the CPU result in order to keep drawIndirectCount working
+        final int drawCount = cpuFrustumCuller.performCullingCPU(frustum, instances, preCondition);
+
+        if (supported) {
+            setDrawCount(drawCount);
+        }
+
+        return drawCount;
+    }
+
+    @Override
+    public int performCulling(Matrix4fc projectionViewMatrix, FrustumIntersection frustum,
+                              MeshInstanceList<?> instances, FrustumCullingPreCondition preCondition) {
+
+        if (!supported) {
+            return cpuFrustumCuller.performCullingCPU(frustum, instances, preCondition);
+        }
+
+        singleView.clear();
+        singleView.addView(projectionViewMatrix, preCondition);
+
+        performCulling(singleView, instances);
+
+        return singleView.drawCount(0);
+    }
+
+    @Override
+    public void performCulling(VisibilitySet visibilitySet, MeshInstanceList<?> instances) {
+
+        if (!supported) {
+            cpuFrustumCuller.performCulling(visibilitySet, instances);
+            return;
+        }
+
+        final int viewCount = visibilitySet.viewCount();
+
+        if (viewCount == 0) {
+            return;
+        }
+
+        prepareDrawCounts(viewCount);
+
+        if (instances == null || instances.size() == 0) {
+            for (int view = 0; view < viewCount; view++) {
+                visibilitySet.setDrawRange(view, 0, 0);
+            }
+            return;
+        }
+
+        final int[] expectedDrawCounts = VALIDATE_WITH_CPU ? cullWithCPU(visibilitySet, instances) : null;
+
+        uploadInstances(instances);
+
+        updateViews(visibilitySet, instances);
+
+        dispatch(viewCount);
+
+        for (int view = 0; view < viewCount; view++) {
+            visibilitySet.setDrawRange(view, view * drawCount, drawCount);
+        }
+
+        if (VALIDATE_WITH_CPU) {
+            validate(expectedDrawCounts);
+        }
+    }
+
+    /**
+     * Returns the buffer with the actual draw count of every view culled in the last run
+     */
+    public GLBuffer drawCountsBuffer() {
+        return drawCountsBuffer;
+    }
+
+    public void drawIndirectCount(int maxDrawCount) {
+        drawIndirectCount(0, 0, maxDrawCount);
+    }
+
+    /**
+     * Draws the commands of a view, reading its actual draw count from the draw counts buffer
+     */
+    public void drawIndirectCount(int view, int drawOffset, int maxDrawCount) {
+
+        final long indirect = (long) drawOffset * GLDrawElementsCommand.SIZEOF;
+        final long drawCountOffset = (long) view * INT32_SIZEOF;
+
+        if (context.capabilities().OpenGL46) {
+            drawCountsBuffer.bind(GL_PARAMETER_BUFFER);
+            glMultiDrawElementsIndirectCount(GL_TRIANGLES, GL_UNSIGNED_INT, indirect, drawCountOffset, maxDrawCount, 0);
+            drawCountsBuffer.unbind(GL_PARAMETER_BUFFER);
+        } else {
+            drawCountsBuffer.bind(GL_PARAMETER_BUFFER_ARB);
+            glMultiDrawElementsIndirectCountARB(GL_TRIANGLES, GL_UNSIGNED_INT, indirect, drawCountOffset, maxDrawCount, 0);
+            drawCountsBuffer.unbind(GL_PARAMETER_BUFFER_ARB);
+        }
+    }
+
+    private void dispatch(int viewCount) {
+
+        cullingShader.bind();
+
+        cullingShader.uniformInt("u_MaxDrawCount", drawCount);
+        cullingShader.uniformInt("u_ViewCount", viewCount);
+
+        drawTemplatesBuffer.bind(GL_SHADER_STORAGE_BUFFER, DRAW_TEMPLATES_BINDING);
+        renderData.getCommandBuffer().bind(GL_SHADER_STORAGE_BUFFER, DRAW_COMMANDS_BINDING);
+        boundingSpheresBuffer.bind(GL_SHADER_STORAGE_BUFFER, BOUNDING_SPHERES_BINDING);
+        renderData.getTransformsBuffer().bind(GL_SHADER_STORAGE_BUFFER, TRANSFORMS_BINDING);
+        drawInfosBuffer.bind(GL_SHADER_STORAGE_BUFFER, DRAW_INFOS_BINDING);
+        renderData.getInstanceBuffer().bind(GL_SHADER_STORAGE_BUFFER, INSTANCE_DATA_BINDING);
+        preConditionsBuffer.bind(GL_SHADER_STORAGE_BUFFER, PRECONDITIONS_BINDING);
+        viewsBuffer.bind(GL_SHADER_STORAGE_BUFFER, VIEWS_BINDING);
+        drawCountsBuffer.bind(GL_SHADER_STORAGE_BUFFER, DRAW_COUNTS_BINDING);
+        renderData.getBoundsBuffer().bind(GL_SHADER_STORAGE_BUFFER, DRAW_BOUNDS_BINDING);
+
+        glDispatchCompute((drawCount + WORK_GROUP_SIZE - 1) / WORK_GROUP_SIZE, 1, 1);
+
+        glMemoryBarrier(GL_COMMAND_BARRIER_BIT | GL_SHADER_STORAGE_BARRIER_BIT | GL_VERTEX_ATTRIB_ARRAY_BARRIER_BIT);
+
+        cullingShader.unbind();
+    }
+
+    private void uploadInstances(MeshInstanceList<?> instances) {
+
+        final int meshModifications = MeshManager.get().storageHandler(StaticMesh.class).modifications();
+
+        // Draw templates depend on where the meshes are stored too
+        if (uploadedInstances == instances && uploadedModifications == instances.modifications()
+                && uploadedMeshModifications == meshModifications) {
+            return;
+        }
+
+        final int numDraws = instances.numMeshViews();
+
+        ByteBuffer drawTemplates = memCalloc(numDraws * GLDrawElementsCommand.SIZEOF);
+        ByteBuffer boundingSpheres = memAlloc(numDraws * BOUNDING_SPHERE_SIZEOF);
+        ByteBuffer drawInfos = memAlloc(numDraws * DRAW_INFO_SIZEOF);
+
+        try {
+
+            int drawIndex = 0;
+
+            for (int i = 0; i < instances.size(); i++) {
+
+                final MeshInstance<?> instance = instances.get(i);
+
+                for (MeshView<?> meshView : instance) {
+
+                    final Mesh mesh = meshView.mesh();
+                    final ISphere sphere = mesh.boundingSphere();
+                    final ManagedMaterial material = (ManagedMaterial) meshView.material();
+
+                    new GLDrawElementsCommand(drawTemplates.position(drawIndex * GLDrawElementsCommand.SIZEOF))
+                            .count(mesh.indexCount())
+                            .primCount(1)
+                            .firstIndex(mesh.storageInfo().firstIndex())
+                            .baseVertex(mesh.storageInfo().baseVertex())
+                            .baseInstance(0);
+
+                    boundingSpheres.putFloat(sphere.center().x())
+                            .putFloat(sphere.center().y())
+                            .putFloat(sphere.center().z())
+                            .putFloat(sphere.radius());
+
+                    drawInfos.putInt(i).putInt(material.storageInfo().bufferIndex()).putInt(mesh.storageInfo().index());
+
+                    ++drawIndex;
+                }
+            }
+
+            drawTemplatesBuffer.reallocate(drawTemplates.capacity());
+            drawTemplatesBuffer.update(0, drawTemplates.rewind());
+
+            boundingSpheresBuffer.reallocate(boundingSpheres.capacity());
+            boundingSpheresBuffer.update(0, boundingSpheres.rewind());
+
+            drawInfosBuffer.reallocate(drawInfos.capacity());
+            drawInfosBuffer.update(0, drawInfos.rewind());
+
+        } finally {
+            memFree(drawTemplates);
+            memFree(boundingSpheres);
+            memFree(drawInfos);
+        }
+
+        drawCount = numDraws;
+        uploadedInstances = instances;
+        uploadedModifications = instances.modifications();
+        uploadedMeshModifications = meshModifications;
+    }
+
+    private void updateViews(VisibilitySet visibilitySet, MeshInstanceList<?> instances) {
+
+        final int viewCount = visibilitySet.viewCount();
+
+        int preConditionViews = 0;
+
+        for (int view = 0; view < viewCount; view++) {
+            if (visibilitySet.preCondition(view) != FrustumCullingPreCondition.NO_PRECONDITION) {
+                ++preConditionViews;
+            }
+        }
+
+        ByteBuffer views = memAlloc(viewCount * CULLING_VIEW_SIZEOF);
+        IntBuffer preConditions = preConditionViews > 0 ? memAllocInt(preConditionViews * drawCount) : null;
+
+        try {
+
+            for (int view = 0; view < viewCount; view++) {
+
+                final int viewOffset = view * CULLING_VIEW_SIZEOF;
+
+                for (int i = 0; i < FRUSTUM_PLANES_COUNT; i++) {
+                    visibilitySet.projectionViewMatrix(view).frustumPlane(i, frustumPlane);
+                    frustumPlane.get(viewOffset + i * VECTOR4_SIZEOF, views);
+                }
+
+                final FrustumCullingPreCondition preCondition = visibilitySet.preCondition(view);
+
+                final int preConditionsOffset = preCondition == FrustumCullingPreCondition.NO_PRECONDITION ? -1 : preConditions.position();
+
+                if (preConditionsOffset >= 0) {
+                    putPreConditions(instances, preCondition, preConditions);
+                }
+
+                views.putInt(viewOffset + CULLING_VIEW_REGION_OFFSET, view * drawCount);
+                views.putInt(viewOffset + CULLING_VIEW_PRECONDITIONS_OFFSET, preConditionsOffset);
+                views.putInt(viewOffset + CULLING_VIEW_LAYER_COUNT_OFFSET, visibilitySet.layerCount(view));
+            }
+
+            updateBuffer(viewsBuffer, views);
+
+            if (preConditions != null) {
+                updateBuffer(preConditionsBuffer, memByteBuffer(preConditions.rewind()));
+            }
+
+        } finally {
+            memFree(views);
+            memFree(preConditions);
+        }
+    }
+
+    private void putPreConditions(MeshInstanceList<?> instances, FrustumCullingPreCondition preCondition, IntBuffer preConditions) {
+
+        for (int i = 0; i < instances.size(); i++) {
+
+            final MeshInstance<?> instance = instances.get(i);
+
+            for (MeshView<?> meshView : instance) {
+                preConditions.put(preCondition.compute(instance, meshView).ordinal());
+            }
+        }
+    }
+
+    private void updateBuffer(GLBuffer buffer, ByteBuffer data) {
+
+        if (buffer.size() < data.remaining()) {
+            buffer.reallocate(data.remaining());
+        }
+
+        buffer.update(0, data);
+    }
+
+    private void prepareDrawCounts(int viewCount) {
+
+        if (drawCountsBuffer.size() < (long) viewCount * INT32_SIZEOF) {
+            drawCountsBuffer.reallocate((long) viewCount * INT32_SIZEOF);
+        }
+
+        try (MemoryStack stack = stackPush()) {
+            drawCountsBuffer.update(0, stack.calloc(viewCount * INT32_SIZEOF));
+        }
+    }
+
+    private void setDrawCount(int count) {
+        try (MemoryStack stack = stackPush()) {
+            drawCountsBuffer.update(0, stack.ints(count));
+        }
+    }
+
+    private int[] cullWithCPU(VisibilitySet visibilitySet, MeshInstanceList<?> instances) {
+
+        cpuFrustumCuller.performCulling(visibilitySet, instances);
+
+        int[] drawCounts = new int[visibilitySet.viewCount()];
+
+        for (int view = 0; view < drawCounts.length; view++) {
+            drawCounts[view] = visibilitySet.drawCount(view);
+        }
+
+        return drawCounts;
+    }
+
+    private void validate(int[] expectedDrawCounts) {
+        try (MemoryStack stack = stackPush()) {
+
+            glMemoryBarrier(GL_BUFFER_UPDATE_BARRIER_BIT);
+
+            ByteBuffer actualDrawCounts = drawCountsBuffer.get(0, stack.malloc(expectedDrawCounts.length * INT32_SIZEOF));
+
+            for (int view = 0; view < expectedDrawCounts.length; view++) {
+
+                final int actualDrawCount = actualDrawCounts.getInt(view * INT32_SIZEOF);
+
+                if (actualDrawCount != expectedDrawCounts[view]) {
+                    Log.warning("GPU frustum culling mismatch in view " + view + ": GPU draw count = " + actualDrawCount
+                            + ", CPU draw count = " + expectedDrawCounts[view]);
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,239 @@
+package radon.engine.graphics.opengl.rendering.culling;
+
+import org.joml.Matrix4fc;
+import org.lwjgl.system.MemoryStack;
+import radon.engine.core.RadonFiles;
+import radon.engine.core.Time;
+import radon.engine.graphics.opengl.GLContext;
+import radon.engine.graphics.opengl.buffers.GLBuffer;
+import radon.engine.graphics.opengl.buffers.GLBufferRing;
+import radon.engine.graphics.opengl.commands.GLDrawElementsCommand;
+import radon.engine.graphics.opengl.rendering.renderers.data.GLRenderData;
+import radon.engine.graphics.opengl.shaders.GLShader;
+import radon.engine.graphics.opengl.shaders.GLShaderProgram;
+import radon.engine.graphics.opengl.textures.GLTexture2D;
+
+import java.nio.ByteBuffer;
+
+import static org.lwjgl.opengl.GL43.*;
+import static org.lwjgl.system.MemoryStack.stackPush;
+import static radon.engine.core.RadonConfigConstants.RENDERING_DEBUG_REPORT;
+import static radon.engine.graphics.ShaderStage.COMPUTE_STAGE;
+import static radon.engine.util.types.DataType.INT32_SIZEOF;
+
+/**
+ * Two phase occlusion culling of the main view, run on the GPU after the frustum culling. The first phase hides the
+ * commands whose bounding spheres are behind the depth pyramid of the last frame. Once the visible commands have been
+ * drawn, the pyramid is built again from their depth and the second phase tests the hidden commands against it, so
+ * the objects that have just become visible are drawn in the same frame instead of popping in one frame late
+ */
+public final class GLOcclusionCuller {
+
+    private static final int WORK_GROUP_SIZE = 128;
+
+    private static final int DRAW_COMMANDS_BINDING = 0;
+    private static final int OCCLUDED_DRAW_COMMANDS_BINDING = 1;
+    private static final int DRAW_BOUNDS_BINDING = 2;
+    private static final int DRAW_COUNTS_BINDING = 3;
+    private static final int STATS_BINDING = 4;
+    private static final int DEPTH_PYRAMID_UNIT = 0;
+
+    // tested, occluded and disoccluded counts
+    private static final int STATS_COUNT = 3;
+
+    private final GLContext context;
+    private final GLRenderData renderData;
+    private final OcclusionDebugReport debugReport;
+    private GLShaderProgram cullingShader;
+    private GLDepthPyramid depthPyramid;
+    private GLBuffer occludedCommandsBuffer;
+    // One per frame in flight, so the counts of a frame are read once the GPU is done with it
+    private GLBufferRing statsBuffers;
+    // Current run attributes
+    private int drawOffset;
+    private int maxDrawCount;
+    private GLBuffer drawCountsBuffer;
+    private int drawCountIndex;
+    private boolean firstPhaseDone;
+
+    public GLOcclusionCuller(GLContext context, GLRenderData renderData) {
+        this.context = context;
+        this.renderData = renderData;
+        debugReport = RENDERING_DEBUG_REPORT ? new OcclusionDebugReport() : null;
+    }
+
+    public void init() {
+
+        cullingShader = new GLShaderProgram(context, "OpenGL Occlusion Culling shader")
+                .attach(new GLShader(context, COMPUTE_STAGE).source(RadonFiles.getPath("shaders/compute/occlusion_culling.comp")).compile())
+                .link();
+
+        depthPyramid = new GLDepthPyramid(context);
+
+        occludedCommandsBuffer = new GLBuffer(context).name("OCCLUSION_CULLING_OCCLUDED_COMMANDS_BUFFER");
+        occludedCommandsBuffer.allocate(GLDrawElementsCommand.SIZEOF);
+
+        statsBuffers = new GLBufferRing(() -> {
+            GLBuffer buffer = new GLBuffer(context).name("OCCLUSION_CULLING_STATS_BUFFER");
+            buffer.allocate(STATS_COUNT * INT32_SIZEOF);
+            return buffer;
+        });
+    }
+
+    public void terminate() {
+        cullingShader.release();
+        depthPyramid.release();
+        occludedCommandsBuffer.release();
+        statsBuffers.release();
+    }
+
+    public CharSequence debugReport() {
+        return RENDERING_DEBUG_REPORT ? debugReport.report() : null;
+    }
+
+    /**
+     * The depth pyramid is no longer valid for the next frame, for instance because occlusion culling has been
+     * disabled for a while
+     */
+    public void invalidate() {
+        depthPyramid.invalidate();
+        firstPhaseDone = false;
+    }
+
+    /**
+     * First phase: hides the commands of the given range that were occluded in the last frame. They are kept in
+     * {@link #occludedCommandsBuffer()} for the second phase.
+     *
+     * @param drawCountsBuffer the buffer with the actual draw count of the range, or null if it is {@code maxDrawCount}
+     */
+    public void cullOccluded(int drawOffset, int maxDrawCount, GLBuffer drawCountsBuffer, int drawCountIndex) {
+
+        firstPhaseDone = false;
+
+        if (maxDrawCount <= 0 || !depthPyramid.valid()) {
+            return;
+        }
+
+        this.drawOffset = drawOffset;
+        this.maxDrawCount = maxDrawCount;
+        this.drawCountsBuffer = drawCountsBuffer;
+        this.drawCountIndex = drawCountsBuffer == null ? -1 : drawCountIndex;
+
+        if (occludedCommandsBuffer.size() < (long) maxDrawCount * GLDrawElementsCommand.SIZEOF) {
+            occludedCommandsBuffer.reallocate((long) maxDrawCount * GLDrawElementsCommand.SIZEOF);
+        }
+
+        statsBuffers.select(context.frameSync().frameIndex());
+
+        if (RENDERING_DEBUG_REPORT) {
+            debugReport.count(statsBuffers.current());
+        }
+
+        try (MemoryStack stack = stackPush()) {
+            statsBuffers.current().update(0, stack.calloc(STATS_COUNT * INT32_SIZEOF));
+        }
+
+        dispatch(depthPyramid.projectionViewMatrix(), false);
+
+        firstPhaseDone = true;
+    }
+
+    /**
+     * Second phase: builds the depth pyramid from the depth of the commands drawn after the first phase, and then
+     * tests the hidden commands against it. Those that are visible now are left in {@link #occludedCommandsBuffer()}
+     *
+     * @return whether {@link #occludedCommandsBuffer()} has to be drawn
+     */
+    public boolean cullDisoccluded(GLTexture2D depthBuffer, Matrix4fc projectionViewMatrix) {
+
+        if (!firstPhaseDone) {
+            return false;
+        }
+
+        depthPyramid.build(depthBuffer, projectionViewMatrix);
+
+        dispatch(projectionViewMatrix, true);
+
+        return true;
+    }
+
+    /**
+     * Builds the depth pyramid of this frame, for the first phase of the next one
+     */
+    public void buildDepthPyramid(GLTexture2D depthBuffer, Matrix4fc projectionViewMatrix) {
+        depthPyramid.build(depthBuffer, projectionViewMatrix);
+    }
+
+    /**
+     * Returns the commands hidden by the first phase, relative to the first command of the culled range
+     */
+    public GLBuffer occludedCommandsBuffer() {
+        return occludedCommandsBuffer;
+    }
+
+    private void dispatch(Matrix4fc projectionViewMatrix, boolean secondPhase) {
+
+        cullingShader.bind();
+
+        cullingShader.uniformMatrix4f("u_ProjectionViewMatrix", false, projectionViewMatrix);
+        glUniform2i(cullingShader.uniformLocation("u_DepthPyramidSize"), depthPyramid.width(), depthPyramid.height());
+        cullingShader.uniformInt("u_DepthPyramidLevels", depthPyramid.levels());
+        cullingShader.uniformInt("u_DrawOffset", drawOffset);
+        cullingShader.uniformInt("u_MaxDrawCount", maxDrawCount);
+        cullingShader.uniformInt("u_DrawCountIndex", drawCountIndex);
+        cullingShader.uniformBool("u_SecondPhase", secondPhase);
+
+        renderData.getCommandBuffer().bind(GL_SHADER_STORAGE_BUFFER, DRAW_COMMANDS_BINDING);
+        occludedCommandsBuffer.bind(GL_SHADER_STORAGE_BUFFER, OCCLUDED_DRAW_COMMANDS_BINDING);
+        renderData.getBoundsBuffer().bind(GL_SHADER_STORAGE_BUFFER, DRAW_BOUNDS_BINDING);
+        if (drawCountsBuffer != null) {
+            drawCountsBuffer.bind(GL_SHADER_STORAGE_BUFFER, DRAW_COUNTS_BINDING);
+        }
+        statsBuffers.current().bind(GL_SHADER_STORAGE_BUFFER, STATS_BINDING);
+
+        depthPyramid.texture().bind(DEPTH_PYRAMID_UNIT);
+
+        glDispatchCompute((maxDrawCount + WORK_GROUP_SIZE - 1) / WORK_GROUP_SIZE, 1, 1);
+
+        glMemoryBarrier(GL_COMMAND_BARRIER_BIT | GL_SHADER_STORAGE_BARRIER_BIT);
+
+        depthPyramid.texture().unbind(DEPTH_PYRAMID_UNIT);
+
+        cullingShader.unbind();
+    }
+
+    private static class OcclusionDebugReport {
+
+        private long testedCount;
+        private long occludedCount;
+        private long disoccludedCount;
+        private long lastReportFrame;
+
+        // Reads the counts of the last frame that used this buffer, which the GPU has already finished
+        private void count(GLBuffer statsBuffer) {
+            try (MemoryStack stack = stackPush()) {
+
+                ByteBuffer stats = statsBuffer.get(0, stack.malloc(STATS_COUNT * INT32_SIZEOF));
+
+                testedCount += Integer.toUnsignedLong(stats.getInt(0));
+                occludedCount += Integer.toUnsignedLong(stats.getInt(INT32_SIZEOF));
+                disoccludedCount += Integer.toUnsignedLong(stats.getInt(INT32_SIZEOF * 2));
+            }
+        }
+
+        private String report() {
+
+            final long frames = Math.max(Time.frames() - lastReportFrame, 1);
+
+            final String report = String.format("Occlusion culling: %d tested/frame | %d occluded/frame | %d disoccluded/frame",
+                    testedCount / frames, (occludedCount - disoccludedCount) / frames, disoccludedCount / frames);
+
+            testedCount = 0;
+            occludedCount = 0;
+            disoccludedCount = 0;
+            lastReportFrame = Time.frames();
+
+            return report;
+        }
+    }
+}
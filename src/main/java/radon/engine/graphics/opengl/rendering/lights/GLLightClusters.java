@@ -0,0 +1,354 @@
+package radon.engine.graphics.opengl.rendering.lights;
+
+import org.joml.Matrix4fc;
+import org.joml.Vector3fc;
+import radon.engine.core.Radon;
+import radon.engine.graphics.opengl.GLContext;
+import radon.engine.graphics.opengl.buffers.GLBuffer;
+import radon.engine.graphics.opengl.buffers.GLBufferRing;
+import radon.engine.graphics.rendering.RenderJobScheduler;
+import radon.engine.lights.PointLight;
+import radon.engine.lights.SpotLight;
+import radon.engine.resource.Resource;
+import radon.engine.scenes.Camera;
+import radon.engine.scenes.Scene;
+import radon.engine.scenes.environment.SceneEnvironment;
+import radon.engine.scenes.environment.SceneLighting;
+
+import java.nio.ByteBuffer;
+import java.util.List;
+
+import static java.lang.Math.*;
+import static org.lwjgl.opengl.GL43.GL_SHADER_STORAGE_BUFFER;
+import static org.lwjgl.system.MemoryUtil.*;
+import static radon.engine.util.types.DataType.*;
+
+/*
+layout(std430, binding = 7) readonly buffer LightClusters {
+    mat4 u_ClustersProjectionViewMatrix;
+    vec4 u_ClustersDepthPlane;  // xyz: camera forward, w: -dot(forward, camera position)
+    vec4 u_ClustersDepthParams; // x: near plane, y: far plane, z: slice scale, w: slice bias
+    uint u_LightClusters[];     // Offset and count of every cluster, followed by the light indices
+};
+
+layout(std430, binding = 8) readonly buffer SceneLights {
+    Light u_Lights[];
+};
+* */
+
+/**
+ * Froxel grid of the camera, with the point and spot lights that may reach each of its clusters. The screen is split
+ * into {@link #CLUSTERS_X}x{@link #CLUSTERS_Y} tiles, and the depth range of the camera into {@link #CLUSTERS_Z}
+ * exponential slices. Lights are binned every frame on the CPU, one parallel job per range of slices, so shaders only
+ * iterate the lights of the cluster of each fragment
+ */
+public final class GLLightClusters implements Resource {
+
+    public static final int CLUSTERS_X = 16;
+    public static final int CLUSTERS_Y = 9;
+    public static final int CLUSTERS_Z = 24;
+    public static final int CLUSTER_COUNT = CLUSTERS_X * CLUSTERS_Y * CLUSTERS_Z;
+
+    public static final int LIGHT_CLUSTERS_BINDING = 7;
+    public static final int LIGHTS_BINDING = 8;
+
+    private static final int PROJECTION_VIEW_OFFSET = 0;
+    private static final int DEPTH_PLANE_OFFSET = PROJECTION_VIEW_OFFSET + MATRIX4_SIZEOF;
+    private static final int DEPTH_PARAMS_OFFSET = DEPTH_PLANE_OFFSET + VECTOR4_SIZEOF;
+    private static final int CLUSTERS_OFFSET = DEPTH_PARAMS_OFFSET + VECTOR4_SIZEOF;
+    // Light indices start right after the offset and count of every cluster
+    private static final int FIRST_LIGHT_INDEX = CLUSTER_COUNT * 2;
+
+    // min x, max x, min y, max y, min z, max z
+    private static final int BOUNDS_STRIDE = 6;
+    private static final int MIN_SLICES_PER_JOB = 2;
+    private static final int MIN_LIGHTS_PER_JOB = 256;
+
+    private final GLContext context;
+    private final GLBufferRing buffers;
+    private final int[] clusterCounts;
+    private final int[] clusterOffsets;
+    private final int[] clusterCursors;
+    private int[] lightBounds;
+    private ByteBuffer data;
+    private Matrix4fc projectionView;
+    private float depthPlaneX;
+    private float depthPlaneY;
+    private float depthPlaneZ;
+    private float depthPlaneW;
+    private float nearPlane;
+    private float farPlane;
+    private float sliceScale;
+    private float sliceBias;
+    private int lightCount;
+
+    public GLLightClusters(GLContext context) {
+        this.context = context;
+        buffers = new GLBufferRing(() -> new GLBuffer(context).name("LIGHT_CLUSTERS_STORAGE_BUFFER"));
+        clusterCounts = new int[CLUSTER_COUNT];
+        clusterOffsets = new int[CLUSTER_COUNT];
+        clusterCursors = new int[CLUSTER_COUNT];
+        lightBounds = new int[0];
+        data = memAlloc(CLUSTERS_OFFSET + FIRST_LIGHT_INDEX * UINT32_SIZEOF);
+    }
+
+    /**
+     * Bins the lights of the scene into the clusters of its camera, and copies the clusters into the buffer of the
+     * current frame
+     */
+    public void update(Scene scene) {
+
+        final Camera camera = Radon.isEditor() && !Radon.isRuntime() ? scene.editorCamera() : scene.camera();
+        final SceneLighting lighting = scene.environment().lighting();
+        final List<PointLight> pointLights = lighting.pointLights();
+        final List<SpotLight> spotLights = lighting.spotLights();
+
+        setCamera(camera);
+
+        lightCount = pointLights.size() + spotLights.size();
+
+        if (lightBounds.length < lightCount * BOUNDS_STRIDE) {
+            lightBounds = new int[lightCount * BOUNDS_STRIDE * 2];
+        }
+
+        // Same order as in the lights storage buffer: point lights first
+        RenderJobScheduler.parallelFor(0, lightCount, MIN_LIGHTS_PER_JOB * 2, MIN_LIGHTS_PER_JOB, (begin, end) -> {
+            for (int i = begin; i < end; i++) {
+                if (i < pointLights.size()) {
+                    PointLight light = pointLights.get(i);
+                    computeLightBounds(i, light.position(), light.radius());
+                } else {
+                    SpotLight light = spotLights.get(i - pointLights.size());
+                    computeLightBounds(i, light.position(), light.radius());
+                }
+            }
+        });
+
+        RenderJobScheduler.parallelFor(0, CLUSTERS_Z, MIN_SLICES_PER_JOB * 2, MIN_SLICES_PER_JOB, this::countLights);
+
+        int indexCount = 0;
+
+        for (int i = 0; i < CLUSTER_COUNT; i++) {
+            clusterOffsets[i] = FIRST_LIGHT_INDEX + indexCount;
+            indexCount += clusterCounts[i];
+        }
+
+        final int size = CLUSTERS_OFFSET + (FIRST_LIGHT_INDEX + indexCount) * UINT32_SIZEOF;
+
+        if (data.capacity() < size) {
+            data = memRealloc(data, max(size, data.capacity() * 2));
+        }
+
+        storeHeader();
+
+        RenderJobScheduler.parallelFor(0, CLUSTERS_Z, MIN_SLICES_PER_JOB * 2, MIN_SLICES_PER_JOB, this::storeLights);
+
+        buffers.select(context.frameSync().frameIndex());
+
+        final GLBuffer buffer = buffers.current();
+
+        if (buffer.size() < size) {
+            buffer.reallocate(max(size, data.capacity()));
+        }
+
+        if (!buffer.mapped()) {
+            buffer.mapMemory();
+        }
+
+        buffer.copy(0, memAddress0(data), size);
+    }
+
+    /**
+     * Binds the clusters of the current frame and the lights of the scene to the buffer bindings of the shaders
+     */
+    public void bind(SceneEnvironment environment) {
+        final GLBuffer lightsBuffer = environment.lightsStorageBuffer();
+        buffers.current().bind(GL_SHADER_STORAGE_BUFFER, LIGHT_CLUSTERS_BINDING);
+        lightsBuffer.bind(GL_SHADER_STORAGE_BUFFER, LIGHTS_BINDING);
+    }
+
+    @Override
+    public void release() {
+        buffers.release();
+        memFree(data);
+        data = null;
+    }
+
+    private void setCamera(Camera camera) {
+
+        final Vector3fc forward = camera.forward();
+        final Vector3fc position = camera.position();
+
+        projectionView = camera.projectionViewMatrix();
+
+        depthPlaneX = forward.x();
+        depthPlaneY = forward.y();
+        depthPlaneZ = forward.z();
+        depthPlaneW = -forward.dot(position);
+
+        nearPlane = max(camera.nearPlane(), 1e-4f);
+        farPlane = max(camera.farPlane(), nearPlane * 2);
+
+        final float logDepthRange = (float) log(farPlane / nearPlane);
+
+        sliceScale = CLUSTERS_Z / logDepthRange;
+        sliceBias = -CLUSTERS_Z * (float) log(nearPlane) / logDepthRange;
+    }
+
+    private void computeLightBounds(int light, Vector3fc position, float radius) {
+
+        final int bounds = light * BOUNDS_STRIDE;
+
+        // Lights without attenuation reach every cluster
+        if (!Float.isFinite(radius)) {
+            setLightBounds(bounds, 0, CLUSTERS_X - 1, 0, CLUSTERS_Y - 1, 0, CLUSTERS_Z - 1);
+            return;
+        }
+
+        final float x = position.x();
+        final float y = position.y();
+        final float z = position.z();
+
+        final float depth = depthPlaneX * x + depthPlaneY * y + depthPlaneZ * z + depthPlaneW;
+
+        if (depth + radius < nearPlane || depth - radius > farPlane) {
+            setLightBounds(bounds, 0, -1, 0, -1, 0, -1);
+            return;
+        }
+
+        final int minZ = slice(depth - radius);
+        final int maxZ = slice(depth + radius);
+
+        final Matrix4fc m = projectionView;
+
+        float minX = Float.POSITIVE_INFINITY;
+        float minY = Float.POSITIVE_INFINITY;
+        float maxX = Float.NEGATIVE_INFINITY;
+        float maxY = Float.NEGATIVE_INFINITY;
+
+        // Screen rectangle of the corners of the bounding box of the light
+        for (int corner = 0; corner < 8; corner++) {
+
+            final float cx = (corner & 1) == 0 ? x - radius : x + radius;
+            final float cy = (corner & 2) == 0 ? y - radius : y + radius;
+            final float cz = (corner & 4) == 0 ? z - radius : z + radius;
+
+            final float w = m.m03() * cx + m.m13() * cy + m.m23() * cz + m.m33();
+
+            // A corner behind the camera may project anywhere
+            if (w <= 0.0f) {
+                setLightBounds(bounds, 0, CLUSTERS_X - 1, 0, CLUSTERS_Y - 1, minZ, maxZ);
+                return;
+            }
+
+            final float ndcX = (m.m00() * cx + m.m10() * cy + m.m20() * cz + m.m30()) / w;
+            final float ndcY = (m.m01() * cx + m.m11() * cy + m.m21() * cz + m.m31()) / w;
+
+            minX = min(minX, ndcX);
+            minY = min(minY, ndcY);
+            maxX = max(maxX, ndcX);
+            maxY = max(maxY, ndcY);
+        }
+
+        if (maxX < -1.0f || minX > 1.0f || maxY < -1.0f || minY > 1.0f) {
+            setLightBounds(bounds, 0, -1, 0, -1, 0, -1);
+            return;
+        }
+
+        setLightBounds(bounds,
+                tile(minX, CLUSTERS_X), tile(maxX, CLUSTERS_X),
+                tile(minY, CLUSTERS_Y), tile(maxY, CLUSTERS_Y),
+                minZ, maxZ);
+    }
+
+    private void setLightBounds(int bounds, int minX, int maxX, int minY, int maxY, int minZ, int maxZ) {
+        lightBounds[bounds] = minX;
+        lightBounds[bounds + 1] = maxX;
+        lightBounds[bounds + 2] = minY;
+        lightBounds[bounds + 3] = maxY;
+        lightBounds[bounds + 4] = minZ;
+        lightBounds[bounds + 5] = maxZ;
+    }
+
+    private void countLights(int beginSlice, int endSlice) {
+
+        final int[] counts = clusterCounts;
+
+        for (int i = cluster(0, 0, beginSlice); i < cluster(0, 0, endSlice); i++) {
+            counts[i] = 0;
+        }
+
+        for (int light = 0; light < lightCount; light++) {
+
+            final int bounds = light * BOUNDS_STRIDE;
+            final int minZ = max(lightBounds[bounds + 4], beginSlice);
+            final int maxZ = min(lightBounds[bounds + 5], endSlice - 1);
+
+            for (int z = minZ; z <= maxZ; z++) {
+                for (int y = lightBounds[bounds + 2]; y <= lightBounds[bounds + 3]; y++) {
+                    for (int x = lightBounds[bounds]; x <= lightBounds[bounds + 1]; x++) {
+                        ++counts[cluster(x, y, z)];
+                    }
+                }
+            }
+        }
+    }
+
+    private void storeLights(int beginSlice, int endSlice) {
+
+        final long address = memAddress0(data) + CLUSTERS_OFFSET;
+
+        for (int i = cluster(0, 0, beginSlice); i < cluster(0, 0, endSlice); i++) {
+            clusterCursors[i] = clusterOffsets[i];
+            memPutInt(address + (long) i * 2 * UINT32_SIZEOF, clusterOffsets[i]);
+            memPutInt(address + ((long) i * 2 + 1) * UINT32_SIZEOF, clusterCounts[i]);
+        }
+
+        for (int light = 0; light < lightCount; light++) {
+
+            final int bounds = light * BOUNDS_STRIDE;
+            final int minZ = max(lightBounds[bounds + 4], beginSlice);
+            final int maxZ = min(lightBounds[bounds + 5], endSlice - 1);
+
+            for (int z = minZ; z <= maxZ; z++) {
+                for (int y = lightBounds[bounds + 2]; y <= lightBounds[bounds + 3]; y++) {
+                    for (int x = lightBounds[bounds]; x <= lightBounds[bounds + 1]; x++) {
+                        memPutInt(address + (long) clusterCursors[cluster(x, y, z)]++ * UINT32_SIZEOF, light);
+                    }
+                }
+            }
+        }
+    }
+
+    private void storeHeader() {
+
+        final long address = memAddress0(data);
+
+        projectionView.get(PROJECTION_VIEW_OFFSET, data);
+
+        memPutFloat(address + DEPTH_PLANE_OFFSET, depthPlaneX);
+        memPutFloat(address + DEPTH_PLANE_OFFSET + 4, depthPlaneY);
+        memPutFloat(address + DEPTH_PLANE_OFFSET + 8, depthPlaneZ);
+        memPutFloat(address + DEPTH_PLANE_OFFSET + 12, depthPlaneW);
+
+        memPutFloat(address + DEPTH_PARAMS_OFFSET, nearPlane);
+        memPutFloat(address + DEPTH_PARAMS_OFFSET + 4, farPlane);
+        memPutFloat(address + DEPTH_PARAMS_OFFSET + 8, sliceScale);
+        memPutFloat(address + DEPTH_PARAMS_OFFSET + 12, sliceBias);
+    }
+
+    private int slice(float depth) {
+        if (depth <= nearPlane) {
+            return 0;
+        }
+        return min((int) (log(depth) * sliceScale + sliceBias), CLUSTERS_Z - 1);
+    }
+
+    private static int tile(float ndc, int tiles) {
+        return min(max((int) ((ndc * 0.5f + 0.5f) * tiles), 0), tiles - 1);
+    }
+
+    private static int cluster(int x, int y, int z) {
+        return (z * CLUSTERS_Y + y) * CLUSTERS_X + x;
+    }
+}
@@ -1,23 +1,40 @@
 package radon.engine.graphics.opengl.rendering.renderers;
 
 import org.joml.FrustumIntersection;
+import org.joml.Matrix4fc;
+import org.joml.Vector3f;
 import radon.engine.core.Radon;
 import radon.engine.graphics.opengl.GLContext;
 import radon.engine.graphics.opengl.buffers.GLBuffer;
+import radon.engine.graphics.opengl.commands.GLDrawElementsCommand;
 import radon.engine.graphics.opengl.rendering.GLShadingPipeline;
 import radon.engine.graphics.opengl.rendering.culling.GLFrustumCuller;
+import radon.engine.graphics.opengl.rendering.culling.GLGPUFrustumCuller;
+import radon.engine.graphics.opengl.rendering.culling.GLOcclusionCuller;
+import radon.engine.graphics.opengl.rendering.lights.GLLightClusters;
 import radon.engine.graphics.opengl.rendering.renderers.data.GLRenderData;
+import radon.engine.graphics.opengl.rendering.renderers.data.GLTransformStorage;
 import radon.engine.graphics.opengl.rendering.shadows.GLShadowsInfo;
 import radon.engine.graphics.opengl.shaders.GLShaderProgram;
 import radon.engine.graphics.opengl.skyboxpbr.GLSkyboxStruct;
+import radon.engine.graphics.opengl.textures.GLTexture2D;
 import radon.engine.graphics.rendering.ShadingModel;
 import radon.engine.graphics.rendering.culling.FrustumCuller;
+import radon.engine.graphics.rendering.culling.FrustumCullingMode;
 import radon.engine.graphics.rendering.culling.FrustumCullingPreCondition;
+import radon.engine.graphics.rendering.culling.MaskedOcclusionBuffer;
+import radon.engine.graphics.rendering.culling.OcclusionCullingMode;
+import radon.engine.graphics.rendering.culling.VisibilitySet;
 import radon.engine.materials.MaterialManager;
 import radon.engine.materials.MaterialStorageHandler;
+import radon.engine.meshes.StaticMesh;
+import radon.engine.scenes.Camera;
 import radon.engine.scenes.Scene;
+import radon.engine.scenes.components.meshes.MeshInstance;
 import radon.engine.scenes.components.meshes.MeshInstanceList;
+import radon.engine.scenes.components.meshes.StaticMeshInstance;
 import radon.engine.scenes.environment.skybox.Skybox;
+import radon.engine.util.geometry.ISphere;
 
 import java.util.ArrayDeque;
 import java.util.Queue;
@@ -25,33 +42,54 @@ import java.util.function.Consumer;
 
 import static org.lwjgl.opengl.GL11.GL_TRIANGLES;
 import static org.lwjgl.opengl.GL45.*;
-import static org.lwjgl.system.MemoryUtil.NULL;
 import static radon.engine.graphics.rendering.culling.FrustumCullingPreConditionState.CONTINUE;
 import static radon.engine.graphics.rendering.culling.FrustumCullingPreConditionState.DISCARD;
+import static radon.engine.util.Maths.maxScale;
 
 public abstract class GLIndirectRenderer extends GLRenderer {
 
     public static final int FIRST_SKYBOX_TEXTURE_UNIT = 10;
     private static final String SHADOWS_ENABLED_UNIFORM_NAME = "u_ShadowsEnabled";
     private static final String DIR_SHADOW_MAPS_UNIFORM_NAME = "u_DirShadowMaps";
+    private static final int OCCLUSION_BUFFER_WIDTH = 320;
+    private static final int OCCLUSION_BUFFER_HEIGHT = 192;
     private final GLShadowsInfo shadowsInfo;
+    private final GLLightClusters lightClusters;
     private final GLSkyboxStruct skyboxStruct;
     protected GLRenderData renderData;
     protected FrustumCuller frustumCuller;
+    private GLFrustumCuller cpuFrustumCuller;
+    private GLGPUFrustumCuller gpuFrustumCuller;
+    private GLOcclusionCuller occlusionCuller;
+    private MaskedOcclusionBuffer occlusionBuffer;
+    private OcclusionCullingMode occlusionCullingMode;
     private Queue<Consumer<GLShaderProgram>> dynamicState;
-    private int visibleObjects;
+    private VisibilitySet visibilitySet;
+    private int mainView;
+    private final Vector3f center;
 
-    public GLIndirectRenderer(GLContext context, GLShadowsInfo shadowsInfo) {
+    public GLIndirectRenderer(GLContext context, GLShadowsInfo shadowsInfo, GLLightClusters lightClusters) {
         super(context);
         this.shadowsInfo = shadowsInfo;
+        this.lightClusters = lightClusters;
         skyboxStruct = new GLSkyboxStruct(context());
+        center = new Vector3f();
     }
 
     @Override
     public void init() {
         renderData = createRenderData();
-        frustumCuller = new GLFrustumCuller(renderData);
+        cpuFrustumCuller = new GLFrustumCuller(renderData);
+        cpuFrustumCuller.init();
+        gpuFrustumCuller = new GLGPUFrustumCuller(context(), renderData);
+        gpuFrustumCuller.init();
+        occlusionCuller = new GLOcclusionCuller(context(), renderData);
+        occlusionCuller.init();
+        occlusionBuffer = new MaskedOcclusionBuffer(OCCLUSION_BUFFER_WIDTH, OCCLUSION_BUFFER_HEIGHT);
+        occlusionCullingMode = OcclusionCullingMode.DISABLED;
+        frustumCuller = cpuFrustumCuller;
         dynamicState = new ArrayDeque<>();
+        visibilitySet = new VisibilitySet();
     }
 
     protected abstract GLRenderData createRenderData();
@@ -59,7 +97,9 @@ public abstract class GLIndirectRenderer extends GLRenderer {
     @Override
     public void terminate() {
         renderData.release();
-        frustumCuller.terminate();
+        cpuFrustumCuller.terminate();
+        gpuFrustumCuller.terminate();
+        occlusionCuller.terminate();
         skyboxStruct.release();
     }
 
@@ -67,16 +107,65 @@ public abstract class GLIndirectRenderer extends GLRenderer {
         return frustumCuller;
     }
 
+    public CharSequence debugReport() {
+
+        final GLTransformStorage transforms = renderData.getTransformStorage();
+
+        final String transformsReport = String.format("Transforms: %d uploaded | %d skipped | %d ranges",
+                transforms.uploadedCount(), transforms.skippedCount(), transforms.rangeCount());
+
+        CharSequence cullingReport = frustumCuller.debugReport();
+
+        if (occlusionCullingMode == OcclusionCullingMode.GPU && cullingReport != null) {
+            cullingReport = cullingReport + " | " + occlusionCuller.debugReport();
+        }
+
+        return cullingReport == null ? transformsReport : cullingReport + " | " + transformsReport;
+    }
+
+    public VisibilitySet visibilitySet() {
+        return visibilitySet;
+    }
+
     public void prepare(Scene scene) {
+        final OcclusionCullingMode occlusionCullingMode = scene.renderInfo().occlusionCullingMode();
+        // The depth pyramid gets out of date while GPU occlusion culling is disabled
+        if (this.occlusionCullingMode == OcclusionCullingMode.GPU && occlusionCullingMode != OcclusionCullingMode.GPU) {
+            occlusionCuller.invalidate();
+        }
+        this.occlusionCullingMode = occlusionCullingMode;
+        frustumCuller = selectFrustumCuller(scene.renderInfo().frustumCullingMode());
         renderData.update(scene, getInstances(scene));
+        visibilitySet.clear();
+        // The main view is culled with the camera it is rendered with, so the occlusion tests match its depth
+        mainView = visibilitySet.addView(renderCamera(scene).projectionViewMatrix(), FrustumCullingPreCondition.NO_PRECONDITION);
+        visibilitySet.setLODView(mainView);
+        if (occlusionCullingMode == OcclusionCullingMode.CPU) {
+            renderOccluders(scene, mainView);
+            visibilitySet.setOcclusionBuffer(mainView, occlusionBuffer);
+        }
     }
 
-    public void addDynamicState(Consumer<GLShaderProgram> state) {
-        dynamicState.add(state);
+    /**
+     * Culls every view added to the visibility set this frame in a single pass. If GPU occlusion culling is enabled,
+     * the draws of the main view hidden in the last frame are then taken out of it
+     */
+    public void performVisibilityCulling(Scene scene) {
+
+        final MeshInstanceList<?> instances = getInstances(scene);
+
+        renderData.reserveViews(instances, visibilitySet.viewCount());
+
+        frustumCuller.performCulling(visibilitySet, instances);
+
+        if (occlusionCullingMode == OcclusionCullingMode.GPU) {
+            occlusionCuller.cullOccluded(visibilitySet.drawOffset(mainView), visibilitySet.drawCount(mainView),
+                    frustumCuller == gpuFrustumCuller ? gpuFrustumCuller.drawCountsBuffer() : null, mainView);
+        }
     }
 
-    public void preComputeFrustumCulling(Scene scene) {
-        visibleObjects = performFrustumCullingCPU(scene, FrustumCullingPreCondition.NO_PRECONDITION);
+    public void addDynamicState(Consumer<GLShaderProgram> state) {
+        dynamicState.add(state);
     }
 
     public void render(Scene scene, GLShadingPipeline shadingPipeline) {
@@ -87,11 +176,47 @@ public abstract class GLIndirectRenderer extends GLRenderer {
         render(scene, drawCount, shadingPipeline);
     }
 
-    public void renderPreComputedVisibleObjects(Scene scene, GLShadingPipeline shadingPipeline) {
-        render(scene, visibleObjects, shadingPipeline);
+    /**
+     * Renders the main view into the framebuffer of the given depth buffer. If GPU occlusion culling is enabled, the draws
+     * hidden by its first phase that are visible in that depth are drawn too, and then the depth pyramid of the next
+     * frame is built from it
+     */
+    public void renderPreComputedVisibleObjects(Scene scene, GLShadingPipeline shadingPipeline, GLTexture2D depthBuffer) {
+
+        renderView(scene, mainView, shadingPipeline);
+
+        if (occlusionCullingMode != OcclusionCullingMode.GPU) {
+            return;
+        }
+
+        final Matrix4fc projectionViewMatrix = visibilitySet.projectionViewMatrix(mainView);
+
+        if (occlusionCuller.cullDisoccluded(depthBuffer, projectionViewMatrix)) {
+            render(scene, mainView, 0, visibilitySet.drawCount(mainView), shadingPipeline, occlusionCuller.occludedCommandsBuffer());
+        }
+
+        occlusionCuller.buildDepthPyramid(depthBuffer, projectionViewMatrix);
+    }
+
+    public void renderView(Scene scene, int view, GLShadingPipeline shadingPipeline) {
+
+        if (view < 0) {
+            dynamicState.clear();
+            return;
+        }
+
+        render(scene, view, visibilitySet.drawOffset(view), visibilitySet.drawCount(view), shadingPipeline);
     }
 
     public void render(Scene scene, int drawCount, GLShadingPipeline shadingPipeline) {
+        render(scene, 0, 0, drawCount, shadingPipeline);
+    }
+
+    private void render(Scene scene, int view, int drawOffset, int drawCount, GLShadingPipeline shadingPipeline) {
+        render(scene, view, drawOffset, drawCount, shadingPipeline, renderData.getCommandBuffer());
+    }
+
+    private void render(Scene scene, int view, int drawOffset, int drawCount, GLShadingPipeline shadingPipeline, GLBuffer commandBuffer) {
 
         if (drawCount <= 0) {
             dynamicState.clear();
@@ -108,9 +233,15 @@ public abstract class GLIndirectRenderer extends GLRenderer {
 
         setDynamicState(shader);
 
+        commandBuffer.bind(GL_DRAW_INDIRECT_BUFFER);
+
         renderData.getVertexArray().bind();
 
-        glMultiDrawElementsIndirect(GL_TRIANGLES, GL_UNSIGNED_INT, NULL, drawCount, 0);
+        if (frustumCuller == gpuFrustumCuller) {
+            gpuFrustumCuller.drawIndirectCount(view, drawOffset, drawCount);
+        } else {
+            glMultiDrawElementsIndirect(GL_TRIANGLES, GL_UNSIGNED_INT, (long) drawOffset * GLDrawElementsCommand.SIZEOF, drawCount, 0);
+        }
 
         shader.unbind();
     }
@@ -147,13 +278,19 @@ public abstract class GLIndirectRenderer extends GLRenderer {
 
         materialsBuffer.bind(GL_SHADER_STORAGE_BUFFER, 3);
 
+        final GLBuffer meshCentersBuffer = renderData.getMeshCentersBuffer();
+
+        if (meshCentersBuffer != null) {
+            meshCentersBuffer.bind(GL_SHADER_STORAGE_BUFFER, 4);
+        }
+
         shadowsInfo.buffer().bind(GL_UNIFORM_BUFFER, 5);
 
+        lightClusters.bind(scene.environment());
+
         if (shadingModel != ShadingModel.PHONG) {
             skyboxStruct.update(skybox).bind(6);
         }
-
-        renderData.getCommandBuffer().bind(GL_DRAW_INDIRECT_BUFFER);
     }
 
     protected void setDynamicState(GLShaderProgram shader) {
@@ -163,7 +300,57 @@ public abstract class GLIndirectRenderer extends GLRenderer {
     }
 
     private int performFrustumCullingCPU(Scene scene, FrustumCullingPreCondition preCondition) {
-        final FrustumIntersection frustum = scene.camera().frustum();
-        return frustumCuller.performCullingCPU(frustum, getInstances(scene), preCondition);
+        final Camera camera = scene.camera();
+        return frustumCuller.performCulling(camera.projectionViewMatrix(), camera.frustum(), getInstances(scene), preCondition);
+    }
+
+    // Rasterizes the occluders inside the frustum of the given view for its CPU occlusion culling
+    private void renderOccluders(Scene scene, int view) {
+
+        final FrustumIntersection frustum = visibilitySet.frustum(view);
+        final MeshInstanceList<?> instances = getInstances(scene);
+
+        occlusionBuffer.begin(visibilitySet.projectionViewMatrix(view));
+
+        for (int i = 0; i < instances.size(); i++) {
+
+            final MeshInstance<?> instance = instances.get(i);
+
+            if (!(instance instanceof StaticMeshInstance)) {
+                continue;
+            }
+
+            final StaticMesh occluder = ((StaticMeshInstance) instance).occluder();
+
+            if (occluder == null) {
+                continue;
+            }
+
+            final Matrix4fc modelMatrix = instance.modelMatrix();
+            final ISphere sphere = occluder.boundingSphere();
+
+            center.set(sphere.center()).mulPosition(modelMatrix);
+
+            if (frustum.testSphere(center, sphere.radius() * maxScale(modelMatrix))) {
+                occlusionBuffer.addOccluder(modelMatrix, occluder);
+            }
+        }
+
+        occlusionBuffer.render();
+    }
+
+    private Camera renderCamera(Scene scene) {
+        return Radon.isEditor() && !Radon.isRuntime() ? scene.editorCamera() : scene.camera();
+    }
+
+    private FrustumCuller selectFrustumCuller(FrustumCullingMode mode) {
+        // The CPU occlusion test runs in the CPU culling
+        if (occlusionCullingMode == OcclusionCullingMode.CPU) {
+            return cpuFrustumCuller;
+        }
+        if (mode == FrustumCullingMode.GPU && gpuFrustumCuller.supported()) {
+            return gpuFrustumCuller;
+        }
+        return cpuFrustumCuller;
     }
 }
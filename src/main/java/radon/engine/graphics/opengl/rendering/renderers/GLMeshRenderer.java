@@ -2,16 +2,18 @@ package radon.engine.graphics.opengl.rendering.renderers;
 
 import radon.engine.graphics.opengl.GLContext;
 import radon.engine.graphics.opengl.rendering.GLShadingPipeline;
+import radon.engine.graphics.opengl.rendering.lights.GLLightClusters;
 import radon.engine.graphics.opengl.rendering.shadows.GLShadowsInfo;
+import radon.engine.graphics.opengl.textures.GLTexture2D;
 import radon.engine.scenes.Scene;
 
 public class GLMeshRenderer extends GLRenderer {
 
     private final GLStaticMeshRenderer staticMeshRenderer;
 
-    public GLMeshRenderer(GLContext context, GLShadowsInfo shadowsInfo) {
+    public GLMeshRenderer(GLContext context, GLShadowsInfo shadowsInfo, GLLightClusters lightClusters) {
         super(context);
-        this.staticMeshRenderer = new GLStaticMeshRenderer(context, shadowsInfo);
+        this.staticMeshRenderer = new GLStaticMeshRenderer(context, shadowsInfo, lightClusters);
     }
 
     @Override
@@ -23,16 +25,16 @@ public class GLMeshRenderer extends GLRenderer {
         staticMeshRenderer.prepare(scene);
     }
 
-    public void preComputeFrustumCulling(Scene scene) {
-        staticMeshRenderer.preComputeFrustumCulling(scene);
+    public void performVisibilityCulling(Scene scene) {
+        staticMeshRenderer.performVisibilityCulling(scene);
     }
 
     public void render(Scene scene, GLShadingPipeline shadingPipeline) {
         staticMeshRenderer.render(scene, shadingPipeline);
     }
 
-    public void renderPreComputedVisibleObjects(Scene scene, GLShadingPipeline shadingPipeline) {
-        staticMeshRenderer.renderPreComputedVisibleObjects(scene, shadingPipeline);
+    public void renderPreComputedVisibleObjects(Scene scene, GLShadingPipeline shadingPipeline, GLTexture2D depthBuffer) {
+        staticMeshRenderer.renderPreComputedVisibleObjects(scene, shadingPipeline, depthBuffer);
     }
 
     public GLStaticMeshRenderer staticMeshRenderer() {
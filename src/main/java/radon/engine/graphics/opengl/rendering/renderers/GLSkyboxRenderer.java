@@ -73,7 +73,6 @@ public class GLSkyboxRenderer extends GLRenderer {
 
         matricesUniformBuffer = new GLBuffer(context()).name("SKYBOX MATRICES BUFFER");
         matricesUniformBuffer.allocate(MATRICES_BUFFER_SIZE);
-        matricesUniformBuffer.mapMemory();
 
         viewMatrix = new Matrix4f();
     }
@@ -145,7 +144,7 @@ public class GLSkyboxRenderer extends GLRenderer {
             scene.camera().projectionMatrix().get(PROJECTION_MATRIX_OFFSET, buffer);
             viewMatrix.get(VIEW_MATRIX_OFFSET, buffer);
 
-            matricesUniformBuffer.copy(0, buffer);
+            matricesUniformBuffer.update(0, buffer);
         }
     }
 
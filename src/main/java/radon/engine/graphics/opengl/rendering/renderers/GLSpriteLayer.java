@@ -0,0 +1,354 @@
+package radon.engine.graphics.opengl.rendering.renderers;
+
+import org.joml.Matrix4fc;
+import org.joml.Vector2f;
+import radon.engine.graphics.opengl.GLContext;
+import radon.engine.graphics.opengl.GLFrameSync;
+import radon.engine.graphics.opengl.buffers.GLBuffer;
+import radon.engine.graphics.opengl.buffers.GLBufferRing;
+import radon.engine.graphics.opengl.textures.GLTexture;
+import radon.engine.graphics.rendering.RenderJobScheduler;
+import radon.engine.resource.Resource;
+import radon.engine.scenes.components.math.Transform;
+import radon.engine.scenes.components.sprites.SpriteInstance;
+import radon.engine.sprites.Sprite;
+import radon.engine.sprites.TextureAtlas;
+import radon.engine.util.IColor;
+import radon.engine.util.geometry.Rect;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.List;
+
+import static java.lang.Math.max;
+import static org.lwjgl.opengl.GL43.*;
+import static org.lwjgl.system.MemoryUtil.*;
+import static radon.engine.scenes.components.sprites.SpriteInstance.RENDER_SLOT;
+import static radon.engine.util.collections.FastIterableSet.NO_SLOT;
+
+/**
+ * Sprites of one layer order. Every sprite is a single record in a storage buffer, and the quads are expanded in the
+ * vertex shader, so the whole layer is drawn with one instanced draw call. Records are written into a CPU copy first,
+ * and only the modified ones are copied into the buffer of the current frame
+ */
+final class GLSpriteLayer implements Resource, Comparable<GLSpriteLayer> {
+
+    static final int SPRITES_BINDING = 0;
+
+    /*
+     * struct Sprite {
+     *     vec4 axisX;          // xyz: x axis of the model matrix, w: anchor x
+     *     vec4 axisY;          // xyz: y axis of the model matrix, w: anchor y
+     *     vec4 origin;         // xyz: translation of the model matrix
+     *     vec4 texCoords;      // xy: bottom left, zw: top right
+     *     uvec2 textureHandle; // Bindless handle, 0 if the sprite has no texture
+     *     uint color;          // RGBA8
+     *     int layer;
+     * };
+     * */
+    static final int SPRITE_SIZEOF = 80;
+    static final int AXIS_X_OFFSET = 0;
+    static final int AXIS_Y_OFFSET = 16;
+    static final int ORIGIN_OFFSET = 32;
+    static final int TEX_COORDS_OFFSET = 48;
+    static final int TEXTURE_OFFSET = 64;
+    static final int COLOR_OFFSET = 72;
+    static final int LAYER_OFFSET = 76;
+
+    private static final int INITIAL_CAPACITY = 256;
+
+    private final int layerOrder;
+    private final TextureAtlas atlas;
+    private final GLBufferRing buffers;
+    private ByteBuffer records;
+    private SpriteInstance[] instances;
+    private Transform[] transforms;
+    private Sprite[] sprites;
+    private int[] spriteVersions;
+    private long[] textureHandles;
+    private float[] textureCoords;
+    private int[] transformVersions;
+    // Number of frame buffers that do not have the last version of the record yet
+    private byte[] pendingCopies;
+    private int count;
+
+    GLSpriteLayer(GLContext context, int layerOrder, TextureAtlas atlas) {
+        this.layerOrder = layerOrder;
+        this.atlas = atlas;
+        buffers = new GLBufferRing(() -> new GLBuffer(context).name("SPRITES_STORAGE_BUFFER " + layerOrder));
+        instances = new SpriteInstance[0];
+        transforms = new Transform[0];
+        sprites = new Sprite[0];
+        spriteVersions = new int[0];
+        textureHandles = new long[0];
+        textureCoords = new float[0];
+        transformVersions = new int[0];
+        pendingCopies = new byte[0];
+        reserve(INITIAL_CAPACITY);
+    }
+
+    int layerOrder() {
+        return layerOrder;
+    }
+
+    int count() {
+        return count;
+    }
+
+    boolean isEmpty() {
+        return count == 0;
+    }
+
+    void add(SpriteInstance instance) {
+
+        if (RENDER_SLOT.slotOf(instance) != NO_SLOT) {
+            return;
+        }
+
+        if (count == instances.length) {
+            reserve(instances.length * 2);
+        }
+
+        final int slot = count++;
+
+        RENDER_SLOT.setSlot(instance, slot);
+
+        instances[slot] = instance;
+        transforms[slot] = (Transform) instance.get(Transform.class);
+        sprites[slot] = null;
+
+        updateTexture(slot);
+        storeRecord(slot);
+    }
+
+    boolean remove(SpriteInstance instance) {
+
+        final int slot = RENDER_SLOT.slotOf(instance);
+
+        if (slot == NO_SLOT || slot >= count || instances[slot] != instance) {
+            return false;
+        }
+
+        final int last = --count;
+
+        // Move the last sprite into the gap
+        if (slot != last) {
+            instances[slot] = instances[last];
+            transforms[slot] = transforms[last];
+            sprites[slot] = sprites[last];
+            spriteVersions[slot] = spriteVersions[last];
+            textureHandles[slot] = textureHandles[last];
+            System.arraycopy(textureCoords, last * 4, textureCoords, slot * 4, 4);
+            transformVersions[slot] = transformVersions[last];
+            memCopy(memAddress(records, last * SPRITE_SIZEOF), memAddress(records, slot * SPRITE_SIZEOF), SPRITE_SIZEOF);
+            pendingCopies[slot] = GLFrameSync.FRAMES_IN_FLIGHT;
+            RENDER_SLOT.setSlot(instances[slot], slot);
+        }
+
+        instances[last] = null;
+        transforms[last] = null;
+        sprites[last] = null;
+
+        RENDER_SLOT.setSlot(instance, NO_SLOT);
+
+        return true;
+    }
+
+    /**
+     * Collects the sprites whose layer order is not this one anymore, and makes the textures of the sprites that
+     * changed or were packed into an atlas resident. Must be called from the rendering thread
+     */
+    void prepare(List<SpriteInstance> movedSprites) {
+        for (int i = 0; i < count; i++) {
+
+            final SpriteInstance instance = instances[i];
+
+            if (instance.modified() && instance.layerOrder() != layerOrder) {
+                movedSprites.add(instance);
+                continue;
+            }
+
+            final Sprite sprite = instance.sprite();
+
+            if (sprite != sprites[i] || (sprite != null && sprite.version() != spriteVersions[i])) {
+                updateTexture(i);
+                storeRecord(i);
+            }
+        }
+    }
+
+    /**
+     * Rewrites the records of the modified sprites, and copies the records the buffer of this frame is missing
+     */
+    void update(int frameIndex) {
+
+        RenderJobScheduler.parallelFor(0, count, this::updateRecords);
+
+        buffers.select(frameIndex);
+
+        final GLBuffer buffer = buffers.current();
+
+        if (buffer.size() < (long) count * SPRITE_SIZEOF) {
+            // A new buffer has none of the records
+            buffer.reallocate((long) instances.length * SPRITE_SIZEOF);
+            if (!buffer.mapped()) {
+                buffer.mapMemory();
+            }
+            buffer.copy(0, memAddress(records), (long) count * SPRITE_SIZEOF);
+        }
+
+        copyPendingRecords(buffer);
+    }
+
+    void render() {
+
+        if (count == 0) {
+            return;
+        }
+
+        buffers.current().bind(GL_SHADER_STORAGE_BUFFER, SPRITES_BINDING);
+
+        glDrawArraysInstanced(GL_TRIANGLE_STRIP, 0, 4, count);
+    }
+
+    @Override
+    public void release() {
+        for (int i = 0; i < count; i++) {
+            RENDER_SLOT.setSlot(instances[i], NO_SLOT);
+        }
+        count = 0;
+        buffers.release();
+        memFree(records);
+        records = null;
+    }
+
+    @Override
+    public int compareTo(GLSpriteLayer other) {
+        return Integer.compare(layerOrder, other.layerOrder);
+    }
+
+    private void updateRecords(int beginIndex, int endIndex) {
+        for (int i = beginIndex; i < endIndex; i++) {
+            if (instances[i].modified() || transformVersions[i] != transforms[i].version()) {
+                storeRecord(i);
+            }
+        }
+    }
+
+    private void storeRecord(int slot) {
+
+        final SpriteInstance instance = instances[slot];
+        final Transform transform = transforms[slot];
+
+        final Matrix4fc model = transform.modelMatrix();
+        final Vector2f anchor = instance.anchor();
+        final IColor color = instance.color();
+
+        final long address = memAddress(records, slot * SPRITE_SIZEOF);
+
+        memPutFloat(address + AXIS_X_OFFSET, model.m00());
+        memPutFloat(address + AXIS_X_OFFSET + 4, model.m01());
+        memPutFloat(address + AXIS_X_OFFSET + 8, model.m02());
+        memPutFloat(address + AXIS_X_OFFSET + 12, anchor.x);
+
+        memPutFloat(address + AXIS_Y_OFFSET, model.m10());
+        memPutFloat(address + AXIS_Y_OFFSET + 4, model.m11());
+        memPutFloat(address + AXIS_Y_OFFSET + 8, model.m12());
+        memPutFloat(address + AXIS_Y_OFFSET + 12, anchor.y);
+
+        memPutFloat(address + ORIGIN_OFFSET, model.m30());
+        memPutFloat(address + ORIGIN_OFFSET + 4, model.m31());
+        memPutFloat(address + ORIGIN_OFFSET + 8, model.m32());
+        memPutFloat(address + ORIGIN_OFFSET + 12, 1.0f);
+
+        memPutFloat(address + TEX_COORDS_OFFSET, textureCoords[slot * 4]);
+        memPutFloat(address + TEX_COORDS_OFFSET + 4, textureCoords[slot * 4 + 1]);
+        memPutFloat(address + TEX_COORDS_OFFSET + 8, textureCoords[slot * 4 + 2]);
+        memPutFloat(address + TEX_COORDS_OFFSET + 12, textureCoords[slot * 4 + 3]);
+
+        memPutLong(address + TEXTURE_OFFSET, textureHandles[slot]);
+        memPutInt(address + COLOR_OFFSET, packRGBA8(color));
+        memPutInt(address + LAYER_OFFSET, layerOrder);
+
+        transformVersions[slot] = transform.version();
+        pendingCopies[slot] = GLFrameSync.FRAMES_IN_FLIGHT;
+    }
+
+    private void copyPendingRecords(GLBuffer buffer) {
+
+        final long src = memAddress(records);
+        final long dst = buffer.nmappedMemoryPtr();
+
+        int i = 0;
+
+        while (i < count) {
+
+            if (pendingCopies[i] == 0) {
+                ++i;
+                continue;
+            }
+
+            // Copy contiguous runs of pending records at once
+            final int first = i;
+
+            while (i < count && pendingCopies[i] != 0) {
+                --pendingCopies[i];
+                ++i;
+            }
+
+            memCopy(src + (long) first * SPRITE_SIZEOF, dst + (long) first * SPRITE_SIZEOF, (long) (i - first) * SPRITE_SIZEOF);
+        }
+    }
+
+    private void updateTexture(int slot) {
+
+        final Sprite sprite = instances[slot].sprite();
+
+        if (atlas != null) {
+            atlas.add(sprite);
+        }
+
+        final GLTexture texture = sprite == null ? null : sprite.texture();
+
+        sprites[slot] = sprite;
+        spriteVersions[slot] = sprite == null ? 0 : sprite.version();
+
+        if (texture == null) {
+            textureHandles[slot] = NULL;
+            Arrays.fill(textureCoords, slot * 4, slot * 4 + 4, 0.0f);
+            return;
+        }
+
+        // Querying the size of the texture is a GL call, so it cannot be done when the records are built
+        final Rect bounds = sprite.bounds();
+        final float width = texture.width();
+        final float height = texture.height();
+
+        textureHandles[slot] = texture.makeResident();
+        textureCoords[slot * 4] = bounds.left() / width;
+        textureCoords[slot * 4 + 1] = bounds.bottom() / height;
+        textureCoords[slot * 4 + 2] = bounds.right() / width;
+        textureCoords[slot * 4 + 3] = bounds.top() / height;
+    }
+
+    private void reserve(int newCapacity) {
+        newCapacity = max(newCapacity, INITIAL_CAPACITY);
+        records = records == null ? memCalloc(newCapacity * SPRITE_SIZEOF) : memRealloc(records, newCapacity * SPRITE_SIZEOF);
+        instances = Arrays.copyOf(instances, newCapacity);
+        transforms = Arrays.copyOf(transforms, newCapacity);
+        sprites = Arrays.copyOf(sprites, newCapacity);
+        spriteVersions = Arrays.copyOf(spriteVersions, newCapacity);
+        textureHandles = Arrays.copyOf(textureHandles, newCapacity);
+        textureCoords = Arrays.copyOf(textureCoords, newCapacity * 4);
+        transformVersions = Arrays.copyOf(transformVersions, newCapacity);
+        pendingCopies = Arrays.copyOf(pendingCopies, newCapacity);
+    }
+
+    static int packRGBA8(IColor color) {
+        return pack(color.red()) | pack(color.green()) << 8 | pack(color.blue()) << 16 | pack(color.alpha()) << 24;
+    }
+
+    private static int pack(float value) {
+        return Math.round(Math.min(Math.max(value, 0.0f), 1.0f) * 255.0f);
+    }
+}
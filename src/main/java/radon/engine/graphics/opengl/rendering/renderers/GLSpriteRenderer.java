@@ -1,124 +1,222 @@
 package radon.engine.graphics.opengl.rendering.renderers;
 
-import org.lwjgl.opengl.GLUtil;
+import org.joml.Matrix4f;
+import org.joml.Matrix4fc;
 import radon.engine.core.RadonFiles;
-import radon.engine.graphics.Graphics;
 import radon.engine.graphics.opengl.GLContext;
 import radon.engine.graphics.opengl.shaders.GLShader;
 import radon.engine.graphics.opengl.shaders.GLShaderProgram;
-import radon.engine.graphics.opengl.textures.GLTexture;
-import radon.engine.graphics.textures.Texture;
-import radon.engine.logging.Log;
+import radon.engine.graphics.opengl.vertex.GLVertexArray;
 import radon.engine.scenes.Camera;
 import radon.engine.scenes.Scene;
 import radon.engine.scenes.components.sprites.SpriteInstance;
+import radon.engine.scenes.components.tilemap.TileMap;
 import radon.engine.sprites.SceneSpriteInfo;
-import radon.engine.sprites.Sprite;
+import radon.engine.sprites.TextureAtlas;
+import radon.engine.tiles.SceneTileMapInfo;
 
 import java.nio.file.Path;
-import java.util.ArrayList;
-import java.util.Collections;
-import java.util.List;
+import java.util.*;
 
 import static org.lwjgl.opengl.GL11.*;
+import static radon.engine.core.RadonConfigConstants.SPRITE_TEXTURE_ATLAS;
+import static radon.engine.core.RadonConfigConstants.SPRITE_TEXTURE_ATLAS_LAYOUT;
 import static radon.engine.graphics.ShaderStage.FRAGMENT_STAGE;
 import static radon.engine.graphics.ShaderStage.VERTEX_STAGE;
-import static radon.engine.graphics.opengl.rendering.renderers.GLSpriteBatch.TEXTURES_SLOTS;
 
+/**
+ * Draws the sprites and tile maps of a scene, one instanced draw call per sprite layer order and per visible tile
+ * chunk, from the lowest layer order to the highest
+ */
 public class GLSpriteRenderer extends GLRenderer {
 
     public static final Path SPRITE_VERTEX_SHADER_PATH = RadonFiles.getPath("shaders/sprite/sprite.vert");
     public static final Path SPRITE_FRAGMENT_SHADER_PATH = RadonFiles.getPath("shaders/sprite/sprite.frag");
-    private static final int MAX_BATCH_SIZE = 256;
 
-    private final List<GLSpriteBatch> batches;
+    private static final Matrix4fc IDENTITY = new Matrix4f();
+
+    private final Map<Integer, GLSpriteLayer> layers;
+    // Layer of every sprite, sprites are removed from the layer they were added to
+    private final Map<SpriteInstance, GLSpriteLayer> instanceLayers;
+    private final List<SpriteInstance> movedSprites;
+    private final Map<TileMap, GLTileMapMesh> tileMapMeshes;
+    private final List<GLTileMapMesh> sortedTileMapMeshes;
+    // Textures of the drawn sprites and tiles, null if disabled
+    private final TextureAtlas atlas;
     private GLShaderProgram shader;
+    private GLVertexArray vertexArray;
 
     public GLSpriteRenderer(GLContext context) {
         super(context);
-        batches = new ArrayList<>();
+        layers = new TreeMap<>();
+        instanceLayers = new IdentityHashMap<>();
+        movedSprites = new ArrayList<>();
+        tileMapMeshes = new IdentityHashMap<>();
+        sortedTileMapMeshes = new ArrayList<>();
+        atlas = SPRITE_TEXTURE_ATLAS ? new TextureAtlas() : null;
     }
 
     @Override
     public void init() {
-        this.shader = createShader();
+        shader = createShader();
+        // Vertices are generated in the vertex shader, but a vertex array must be bound to draw
+        vertexArray = new GLVertexArray(context());
     }
 
     public void add(SpriteInstance instance) {
-        boolean added = false;
-
-        Sprite sprite = instance.sprite();
-        for (GLSpriteBatch batch : batches) {
-            if (batch.hasRoom() && batch.layerOrder() == instance.layerOrder()) {
-                GLTexture tex = sprite.texture();
-                if (tex == null || (batch.hasTexture(tex) || batch.hasTextureRoom())) {
-                    batch.addSprite(instance);
-                    added = true;
-                    break;
-                }
-            }
-        }
-
-        if (!added) {
-            GLSpriteBatch newBatch = new GLSpriteBatch(this, MAX_BATCH_SIZE, instance.layerOrder());
-            newBatch.init();
-            batches.add(newBatch);
-            newBatch.addSprite(instance);
-            Collections.sort(batches);
-        }
+        GLSpriteLayer layer = layers.computeIfAbsent(instance.layerOrder(), layerOrder -> new GLSpriteLayer(context(), layerOrder, atlas));
+        layer.add(instance);
+        instanceLayers.put(instance, layer);
     }
 
     public void remove(SpriteInstance instance) {
-        for (GLSpriteBatch batch : batches) {
-            if (batch.removeSprite(instance)) {
-                return;
-            }
+        GLSpriteLayer layer = instanceLayers.remove(instance);
+        if (layer != null) {
+            layer.remove(instance);
         }
     }
 
     public void render(Scene scene) {
-        SceneSpriteInfo spriteInfo = scene.spriteInfo();
-        boolean added = false;
 
-        for (SpriteInstance instance : spriteInfo.newInstances()) {
-            add(instance);
-            added = true;
-        }
-        if (added) {
-            spriteInfo.onAdded();
-        }
+        buildAtlas();
 
-        boolean removed = false;
-        for (SpriteInstance instance : spriteInfo.removeInstances()) {
-            remove(instance);
-            removed = true;
-        }
-        if (removed) {
-            spriteInfo.onRemoved();
-        }
+        update(scene.spriteInfo());
+        updateTileMaps(scene.tileMapInfo());
 
+        if (layers.isEmpty() && sortedTileMapMeshes.isEmpty()) {
+            return;
+        }
 
         Camera camera = scene.camera();
+
         shader.bind();
         shader.uniformMatrix4f("uProjection", false, camera.projectionMatrix());
         shader.uniformMatrix4f("uView", false, camera.viewMatrix());
-        shader.uniformArrayInt("uTextures", TEXTURES_SLOTS);
+
+        vertexArray.bind();
 
         glEnable(GL_BLEND);
         glBlendFunc(GL_SRC_ALPHA, GL_ONE_MINUS_SRC_ALPHA);
 
-        for (GLSpriteBatch batch : batches) {
-            batch.render();
+        int tileMapIndex = 0;
+
+        for (GLSpriteLayer layer : layers.values()) {
+
+            // Tile maps below this layer
+            while (tileMapIndex < sortedTileMapMeshes.size() && sortedTileMapMeshes.get(tileMapIndex).layerOrder() <= layer.layerOrder()) {
+                sortedTileMapMeshes.get(tileMapIndex++).render(shader, camera.frustum());
+            }
+
+            // Sprite records are already in world space
+            shader.uniformMatrix4f("uModel", false, IDENTITY);
+
+            layer.render();
+        }
+
+        while (tileMapIndex < sortedTileMapMeshes.size()) {
+            sortedTileMapMeshes.get(tileMapIndex++).render(shader, camera.frustum());
         }
 
         glDisable(GL_BLEND);
 
+        vertexArray.unbind();
+
         shader.unbind();
     }
 
     @Override
     public void terminate() {
-        this.shader.deleteShaders();
+        layers.values().forEach(GLSpriteLayer::release);
+        layers.clear();
+        instanceLayers.clear();
+        tileMapMeshes.values().forEach(GLTileMapMesh::release);
+        tileMapMeshes.clear();
+        sortedTileMapMeshes.clear();
+        vertexArray.release();
+        shader.release();
+        if (atlas != null) {
+            atlas.release();
+        }
+    }
+
+    // Packs the textures of the sprites and tiles first drawn in the last frame. Moved sprites are picked up by their
+    // layers, but the records of the tile chunks have to be built again. Only the first build can reuse a cached layout
+    private void buildAtlas() {
+
+        if (atlas == null || !atlas.hasPendingSprites()) {
+            return;
+        }
+
+        atlas.build(atlas.pages().isEmpty() ? SPRITE_TEXTURE_ATLAS_LAYOUT : null);
+
+        tileMapMeshes.values().forEach(GLTileMapMesh::invalidate);
+    }
+
+    private void update(SceneSpriteInfo spriteInfo) {
+
+        if (!spriteInfo.removeInstances().isEmpty()) {
+            spriteInfo.removeInstances().forEach(this::remove);
+            spriteInfo.onRemoved();
+        }
+
+        if (!spriteInfo.newInstances().isEmpty()) {
+            spriteInfo.newInstances().forEach(this::add);
+            spriteInfo.onAdded();
+        }
+
+        for (GLSpriteLayer layer : layers.values()) {
+            layer.prepare(movedSprites);
+        }
+
+        for (SpriteInstance instance : movedSprites) {
+            remove(instance);
+            add(instance);
+        }
+
+        movedSprites.clear();
+
+        final int frameIndex = context().frameSync().frameIndex();
+
+        Iterator<GLSpriteLayer> iterator = layers.values().iterator();
+
+        while (iterator.hasNext()) {
+
+            GLSpriteLayer layer = iterator.next();
+
+            if (layer.isEmpty()) {
+                layer.release();
+                iterator.remove();
+            } else {
+                layer.update(frameIndex);
+            }
+        }
+    }
+
+    private void updateTileMaps(SceneTileMapInfo tileMapInfo) {
+
+        tileMapInfo.onAdded();
+
+        sortedTileMapMeshes.clear();
+
+        for (TileMap tileMap : tileMapInfo.allMaps()) {
+            GLTileMapMesh mesh = tileMapMeshes.computeIfAbsent(tileMap, map -> new GLTileMapMesh(context(), map, atlas));
+            mesh.update();
+            sortedTileMapMeshes.add(mesh);
+        }
+
+        // Tile maps removed from the scene
+        if (tileMapMeshes.size() != sortedTileMapMeshes.size()) {
+            Iterator<GLTileMapMesh> iterator = tileMapMeshes.values().iterator();
+            while (iterator.hasNext()) {
+                GLTileMapMesh mesh = iterator.next();
+                if (!sortedTileMapMeshes.contains(mesh)) {
+                    mesh.release();
+                    iterator.remove();
+                }
+            }
+        }
+
+        sortedTileMapMeshes.sort(Comparator.comparingInt(GLTileMapMesh::layerOrder));
     }
 
     private GLShaderProgram createShader() {
@@ -127,6 +225,4 @@ public class GLSpriteRenderer extends GLRenderer {
                 .attach(new GLShader(context(), FRAGMENT_STAGE).source(SPRITE_FRAGMENT_SHADER_PATH).compile())
                 .link();
     }
-
-
 }
@@ -1,6 +1,7 @@
 package radon.engine.graphics.opengl.rendering.renderers;
 
 import radon.engine.graphics.opengl.GLContext;
+import radon.engine.graphics.opengl.rendering.lights.GLLightClusters;
 import radon.engine.graphics.opengl.rendering.renderers.data.GLRenderData;
 import radon.engine.graphics.opengl.rendering.renderers.data.GLStaticRenderData;
 import radon.engine.graphics.opengl.rendering.shadows.GLShadowsInfo;
@@ -10,8 +11,8 @@ import radon.engine.scenes.components.meshes.StaticMeshInstance;
 
 public final class GLStaticMeshRenderer extends GLIndirectRenderer {
 
-    public GLStaticMeshRenderer(GLContext context, GLShadowsInfo shadowsInfo) {
-        super(context, shadowsInfo);
+    public GLStaticMeshRenderer(GLContext context, GLShadowsInfo shadowsInfo, GLLightClusters lightClusters) {
+        super(context, shadowsInfo, lightClusters);
     }
 
     @Override
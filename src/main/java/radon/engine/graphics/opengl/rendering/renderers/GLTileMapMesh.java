@@ -0,0 +1,240 @@
+package radon.engine.graphics.opengl.rendering.renderers;
+
+import org.joml.FrustumIntersection;
+import org.joml.Matrix4fc;
+import org.joml.Vector2i;
+import org.joml.Vector3f;
+import radon.engine.graphics.opengl.GLContext;
+import radon.engine.graphics.opengl.buffers.GLBuffer;
+import radon.engine.graphics.opengl.shaders.GLShaderProgram;
+import radon.engine.graphics.opengl.textures.GLTexture;
+import radon.engine.resource.Resource;
+import radon.engine.scenes.components.math.Transform;
+import radon.engine.scenes.components.tilemap.TileChunk;
+import radon.engine.scenes.components.tilemap.TileMap;
+import radon.engine.sprites.Sprite;
+import radon.engine.sprites.TextureAtlas;
+import radon.engine.tiles.properties.TileProperty;
+import radon.engine.util.geometry.Rect;
+
+import java.nio.ByteBuffer;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.Map;
+
+import static java.lang.Math.max;
+import static java.lang.Math.min;
+import static org.lwjgl.opengl.GL43.*;
+import static org.lwjgl.system.MemoryUtil.*;
+import static radon.engine.graphics.opengl.rendering.renderers.GLSpriteLayer.*;
+
+/**
+ * Cached sprite records of the chunks of a {@link TileMap}, in the space of the map. The records of a chunk are only
+ * built again when the chunk changes, and chunks outside the frustum are not drawn
+ */
+final class GLTileMapMesh implements Resource {
+
+    private static final int WHITE = 0xFFFFFFFF;
+
+    private final GLContext context;
+    private final TileMap tileMap;
+    private final TextureAtlas atlas;
+    private final Map<TileChunk, ChunkMesh> chunkMeshes;
+    // Texture sizes looked up while building chunks
+    private final Map<GLTexture, Vector2i> textureSizes;
+    private final Vector3f min;
+    private final Vector3f max;
+    private int frame;
+
+    GLTileMapMesh(GLContext context, TileMap tileMap, TextureAtlas atlas) {
+        this.context = context;
+        this.tileMap = tileMap;
+        this.atlas = atlas;
+        chunkMeshes = new IdentityHashMap<>();
+        textureSizes = new IdentityHashMap<>();
+        min = new Vector3f();
+        max = new Vector3f();
+    }
+
+    TileMap tileMap() {
+        return tileMap;
+    }
+
+    int layerOrder() {
+        return tileMap.layerOrder();
+    }
+
+    void update() {
+
+        ++frame;
+
+        for (TileChunk chunk : tileMap.chunks()) {
+            ChunkMesh mesh = chunkMeshes.computeIfAbsent(chunk, k -> new ChunkMesh(context));
+            if (mesh.version != chunk.version() || mesh.count < 0) {
+                build(chunk, mesh);
+            }
+            mesh.frame = frame;
+        }
+
+        // Chunks removed from the map
+        Iterator<ChunkMesh> iterator = chunkMeshes.values().iterator();
+
+        while (iterator.hasNext()) {
+            ChunkMesh mesh = iterator.next();
+            if (mesh.frame != frame) {
+                mesh.buffer.release();
+                iterator.remove();
+            }
+        }
+
+        textureSizes.clear();
+    }
+
+    /**
+     * Builds the records of every chunk again in the next update, like when their sprites were moved to an atlas
+     */
+    void invalidate() {
+        for (ChunkMesh mesh : chunkMeshes.values()) {
+            mesh.count = -1;
+        }
+    }
+
+    void render(GLShaderProgram shader, FrustumIntersection frustum) {
+
+        final Matrix4fc modelMatrix = ((Transform) tileMap.get(Transform.class)).modelMatrix();
+
+        shader.uniformMatrix4f("uModel", false, modelMatrix);
+
+        for (ChunkMesh mesh : chunkMeshes.values()) {
+
+            if (mesh.count == 0) {
+                continue;
+            }
+
+            modelMatrix.transformAab(mesh.min, mesh.max, min, max);
+
+            if (!frustum.testAab(min, max)) {
+                continue;
+            }
+
+            mesh.buffer.bind(GL_SHADER_STORAGE_BUFFER, SPRITES_BINDING);
+
+            glDrawArraysInstanced(GL_TRIANGLE_STRIP, 0, 4, mesh.count);
+        }
+    }
+
+    @Override
+    public void release() {
+        chunkMeshes.values().forEach(mesh -> mesh.buffer.release());
+        chunkMeshes.clear();
+    }
+
+    private void build(TileChunk chunk, ChunkMesh mesh) {
+
+        final float tileSize = tileMap.tileSize();
+        final float z = tileMap.layerOrder();
+
+        final ByteBuffer records = memAlloc(chunk.tileCount() * SPRITE_SIZEOF);
+
+        mesh.min.set(Float.POSITIVE_INFINITY);
+        mesh.max.set(Float.NEGATIVE_INFINITY);
+
+        int count = 0;
+
+        for (int cell = 0; cell < TileChunk.CELL_COUNT; cell++) {
+
+            if (!chunk.contains(cell)) {
+                continue;
+            }
+
+            Vector2i size = chunk.tile(cell).getPropertyValue(TileProperty.MULTI_TILE_SIZE);
+
+            final float x = chunk.tileX(cell) * tileSize;
+            final float y = chunk.tileY(cell) * tileSize;
+            final float width = size == null ? tileSize : tileSize * size.x;
+            final float height = size == null ? tileSize : tileSize * size.y;
+
+            final long address = memAddress(records, count * SPRITE_SIZEOF);
+
+            memPutFloat(address + AXIS_X_OFFSET, width);
+            memPutFloat(address + AXIS_X_OFFSET + 4, 0.0f);
+            memPutFloat(address + AXIS_X_OFFSET + 8, 0.0f);
+            memPutFloat(address + AXIS_X_OFFSET + 12, 0.0f);
+
+            memPutFloat(address + AXIS_Y_OFFSET, 0.0f);
+            memPutFloat(address + AXIS_Y_OFFSET + 4, height);
+            memPutFloat(address + AXIS_Y_OFFSET + 8, 0.0f);
+            memPutFloat(address + AXIS_Y_OFFSET + 12, 0.0f);
+
+            memPutFloat(address + ORIGIN_OFFSET, x);
+            memPutFloat(address + ORIGIN_OFFSET + 4, y);
+            memPutFloat(address + ORIGIN_OFFSET + 8, z);
+            memPutFloat(address + ORIGIN_OFFSET + 12, 1.0f);
+
+            putTexture(address, chunk.sprite(cell));
+
+            memPutInt(address + COLOR_OFFSET, WHITE);
+            memPutInt(address + LAYER_OFFSET, tileMap.layerOrder());
+
+            mesh.min.set(min(mesh.min.x, x), min(mesh.min.y, y), z);
+            mesh.max.set(max(mesh.max.x, x + width), max(mesh.max.y, y + height), z);
+
+            ++count;
+        }
+
+        // The buffer may still be read by the frames in flight, so the driver takes care of the synchronization
+        if (mesh.buffer.size() < (long) count * SPRITE_SIZEOF) {
+            mesh.buffer.reallocate((long) TileChunk.CELL_COUNT * SPRITE_SIZEOF);
+        }
+
+        if (count > 0) {
+            mesh.buffer.update(0, records.limit(count * SPRITE_SIZEOF));
+        }
+
+        memFree(records);
+
+        mesh.count = count;
+        mesh.version = chunk.version();
+    }
+
+    private void putTexture(long address, Sprite sprite) {
+
+        if (atlas != null) {
+            atlas.add(sprite);
+        }
+
+        final GLTexture texture = sprite == null ? null : sprite.texture();
+
+        if (texture == null) {
+            memSet(address + TEX_COORDS_OFFSET, 0, 16);
+            memPutLong(address + TEXTURE_OFFSET, NULL);
+            return;
+        }
+
+        final Vector2i size = textureSizes.computeIfAbsent(texture, t -> new Vector2i(t.width(), t.height()));
+        final Rect bounds = sprite.bounds();
+
+        memPutFloat(address + TEX_COORDS_OFFSET, bounds.left() / (float) size.x);
+        memPutFloat(address + TEX_COORDS_OFFSET + 4, bounds.bottom() / (float) size.y);
+        memPutFloat(address + TEX_COORDS_OFFSET + 8, bounds.right() / (float) size.x);
+        memPutFloat(address + TEX_COORDS_OFFSET + 12, bounds.top() / (float) size.y);
+        memPutLong(address + TEXTURE_OFFSET, texture.makeResident());
+    }
+
+    private static final class ChunkMesh {
+
+        private final GLBuffer buffer;
+        private final Vector3f min;
+        private final Vector3f max;
+        private int version;
+        private int count;
+        private int frame;
+
+        private ChunkMesh(GLContext context) {
+            buffer = new GLBuffer(context).name("TILE_CHUNK_STORAGE_BUFFER");
+            min = new Vector3f();
+            max = new Vector3f();
+            count = -1;
+        }
+    }
+}
@@ -1,26 +1,32 @@
 package radon.engine.graphics.opengl.rendering.renderers;
 
+import org.joml.Matrix4f;
+import org.joml.Matrix4fc;
 import org.joml.Vector2fc;
+import org.joml.Vector3f;
 import org.joml.Vector3fc;
 import org.joml.Vector4f;
+import org.joml.Vector4fc;
 import org.lwjgl.system.MemoryStack;
 import radon.engine.core.RadonFiles;
-import radon.engine.events.EventManager;
-import radon.engine.events.window.WindowResizedEvent;
+import radon.engine.core.Time;
 import radon.engine.graphics.opengl.GLContext;
 import radon.engine.graphics.opengl.buffers.GLBuffer;
 import radon.engine.graphics.opengl.rendering.GLShadingPipeline;
+import radon.engine.graphics.opengl.rendering.lights.GLLightClusters;
 import radon.engine.graphics.opengl.shaders.GLShader;
 import radon.engine.graphics.opengl.shaders.GLShaderProgram;
 import radon.engine.graphics.opengl.swapchain.GLFramebuffer;
 import radon.engine.graphics.opengl.textures.GLTexture2D;
 import radon.engine.graphics.opengl.vertex.GLVertexArray;
-import radon.engine.graphics.textures.Texture2D;
+import radon.engine.graphics.rendering.culling.FrustumCullingPreCondition;
+import radon.engine.graphics.rendering.culling.VisibilitySet;
 import radon.engine.graphics.window.Window;
 import radon.engine.images.PixelFormat;
 import radon.engine.materials.WaterMaterial;
 import radon.engine.meshes.StaticMesh;
 import radon.engine.meshes.views.WaterMeshView;
+import radon.engine.resource.Resource;
 import radon.engine.scenes.Camera;
 import radon.engine.scenes.Scene;
 import radon.engine.scenes.components.meshes.MeshInstanceList;
@@ -29,9 +35,12 @@ import radon.engine.scenes.environment.SceneEnhancedWater;
 import radon.engine.util.IColor;
 
 import java.nio.FloatBuffer;
-import java.util.Objects;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
 import java.util.function.Consumer;
 
+import static java.lang.Math.signum;
 import static java.lang.StrictMath.max;
 import static org.lwjgl.opengl.GL11C.GL_COLOR_BUFFER_BIT;
 import static org.lwjgl.opengl.GL30.*;
@@ -39,31 +48,49 @@ import static org.lwjgl.opengl.GL31C.GL_UNIFORM_BUFFER;
 import static org.lwjgl.system.MemoryStack.stackPush;
 import static radon.engine.graphics.ShaderStage.FRAGMENT_STAGE;
 import static radon.engine.graphics.ShaderStage.VERTEX_STAGE;
+import static radon.engine.graphics.rendering.culling.FrustumCullingPreConditionState.CONTINUE;
+import static radon.engine.graphics.rendering.culling.FrustumCullingPreConditionState.DISCARD;
 import static radon.engine.graphics.opengl.shaders.UniformUtils.uniformStructMember;
 import static radon.engine.meshes.vertices.VertexLayouts.VERTEX_LAYOUT_3D;
 import static radon.engine.util.handles.IntHandle.NULL;
 
+/**
+ * Draws the water of a scene. Water instances at the same level and with the same clip plane share a single
+ * reflection and refraction texture pair, which is only rendered again when it is due, according to the
+ * {@link SceneEnhancedWater} settings of the scene
+ */
 public class GLWaterRenderer extends GLRenderer {
 
     public static final int QUAD_INDEX_COUNT = 6;
     private final GLMeshRenderer meshRenderer;
     private final GLSkyboxRenderer skyboxRenderer;
+    private final GLLightClusters lightClusters;
+    private final List<WaterPlane> planes;
     private GLShadingPipeline waterShadingPipeline;
     private GLShadingPipeline sceneShadingPipeline;
     private GLVertexArray vertexArray;
     private GLBuffer vertexBuffer;
     private GLBuffer indexBuffer;
-    private GLFramebuffer reflectionFramebuffer;
-    private GLFramebuffer refractionFramebuffer;
-    private GLTexture2D depthTexture;
+    // Reflections do not need to keep their depth, so all planes share the same depth texture
+    private GLTexture2D reflectionDepthTexture;
+    private int reflectionDepthWidth;
+    private int reflectionDepthHeight;
     private StaticMesh quadMesh;
     private Vector4f clipPlane;
     private Consumer<GLShaderProgram> setClipPlaneUniform;
-
-    public GLWaterRenderer(GLContext context, GLMeshRenderer meshRenderer, GLSkyboxRenderer skyboxRenderer) {
+    private FrustumCullingPreCondition sceneShadingPipelineFilter;
+    private Matrix4f cullingMatrix;
+    private Matrix4f obliqueProjection;
+    private Vector3f viewClipPlaneNormal;
+    private Vector4f viewClipPlane;
+    private Vector4f corner;
+
+    public GLWaterRenderer(GLContext context, GLMeshRenderer meshRenderer, GLSkyboxRenderer skyboxRenderer, GLLightClusters lightClusters) {
         super(context);
         this.meshRenderer = meshRenderer;
         this.skyboxRenderer = skyboxRenderer;
+        this.lightClusters = lightClusters;
+        planes = new ArrayList<>();
     }
 
     @Override
@@ -73,6 +100,15 @@ public class GLWaterRenderer extends GLRenderer {
 
         setClipPlaneUniform = shader -> shader.uniformVector4f("u_ClipPlane", clipPlane);
 
+        sceneShadingPipelineFilter = (instance, meshView) ->
+                sceneShadingPipeline.accept(meshView.material().shadingModel()) ? CONTINUE : DISCARD;
+
+        cullingMatrix = new Matrix4f();
+        obliqueProjection = new Matrix4f();
+        viewClipPlaneNormal = new Vector3f();
+        viewClipPlane = new Vector4f();
+        corner = new Vector4f();
+
         waterShadingPipeline = createWaterShadingPipeline();
 
         quadMesh = StaticMesh.quad();
@@ -88,9 +124,7 @@ public class GLWaterRenderer extends GLRenderer {
         vertexArray.addVertexBuffer(0, VERTEX_LAYOUT_3D.attributeList(0), vertexBuffer);
         vertexArray.setIndexBuffer(indexBuffer);
 
-        createFramebuffers();
-
-        EventManager.addEventCallback(WindowResizedEvent.class, this::recreateFramebuffers);
+        reflectionDepthTexture = new GLTexture2D(context());
     }
 
     @Override
@@ -99,9 +133,9 @@ public class GLWaterRenderer extends GLRenderer {
         vertexArray.release();
         vertexBuffer.release();
         indexBuffer.release();
-        reflectionFramebuffer.release();
-        refractionFramebuffer.release();
-        depthTexture.release();
+        planes.forEach(WaterPlane::release);
+        planes.clear();
+        reflectionDepthTexture.release();
         quadMesh = null;
     }
 
@@ -127,7 +161,11 @@ public class GLWaterRenderer extends GLRenderer {
 
             for (WaterMeshInstance instance : waterInstances) {
 
-                renderWater(modelMatrixBuffer, instance);
+                final WaterPlane plane = findPlane(instance);
+
+                if (plane != null) {
+                    renderWater(modelMatrixBuffer, instance, plane);
+                }
             }
         }
 
@@ -136,21 +174,24 @@ public class GLWaterRenderer extends GLRenderer {
         glDisable(GL_BLEND);
     }
 
-    private void renderWater(FloatBuffer modelMatrixBuffer, WaterMeshInstance instance) {
+    private void renderWater(FloatBuffer modelMatrixBuffer, WaterMeshInstance instance, WaterPlane plane) {
 
         final WaterMeshView view = instance.meshView();
         final WaterMaterial material = view.material();
+        final GLShaderProgram shader = waterShadingPipeline.getShader();
 
         modelMatrixBuffer = instance.modelMatrix().get(modelMatrixBuffer);
 
-        waterShadingPipeline.getShader().uniformMatrix4f("u_ModelMatrix", false, modelMatrixBuffer);
+        shader.uniformMatrix4f("u_ModelMatrix", false, modelMatrixBuffer);
+
+        shader.uniformSampler("u_DepthMap", plane.refractionDepthTexture, 0);
 
-        setMaterialUniforms(material);
+        setMaterialUniforms(material, plane);
 
         glDrawElements(GL_TRIANGLES, QUAD_INDEX_COUNT, GL_UNSIGNED_INT, NULL);
     }
 
-    private void setMaterialUniforms(WaterMaterial material) {
+    private void setMaterialUniforms(WaterMaterial material, WaterPlane plane) {
 
         final GLShaderProgram shader = waterShadingPipeline.getShader();
 
@@ -158,8 +199,6 @@ public class GLWaterRenderer extends GLRenderer {
 
         IColor color = material.getColor();
 
-        GLTexture2D reflectionMap = (GLTexture2D) material.getReflectionMap();
-        GLTexture2D refractionMap = (GLTexture2D) material.getRefractionMap();
         GLTexture2D dudvMap = (GLTexture2D) material.getDudvMap();
         GLTexture2D normalMap = (GLTexture2D) material.getNormalMap();
 
@@ -173,8 +212,8 @@ public class GLWaterRenderer extends GLRenderer {
 
         shader.uniformColorRGBA(uniformStructMember(matName, "color"), color);
 
-        shader.uniformSampler(uniformStructMember(matName, "reflectionMap"), reflectionMap, 1);
-        shader.uniformSampler(uniformStructMember(matName, "refractionMap"), refractionMap, 2);
+        shader.uniformSampler(uniformStructMember(matName, "reflectionMap"), plane.reflectionTexture, 1);
+        shader.uniformSampler(uniformStructMember(matName, "refractionMap"), plane.refractionTexture, 2);
         shader.uniformSampler(uniformStructMember(matName, "dudvMap"), dudvMap, 3);
         shader.uniformSampler(uniformStructMember(matName, "normalMap"), normalMap, 4);
 
@@ -203,72 +242,129 @@ public class GLWaterRenderer extends GLRenderer {
 
         lightsBuffer.bind(GL_UNIFORM_BUFFER, 1);
 
-        shader.uniformSampler("u_DepthMap", depthTexture, 0);
+        lightClusters.bind(scene.environment());
+
         shader.uniformFloat("u_NearPlane", camera.nearPlane());
         shader.uniformFloat("u_FarPlane", camera.farPlane());
     }
 
-    public void bakeWaterTextures(Scene scene, GLShadingPipeline sceneShadingPipeline) {
+    /**
+     * Groups the water instances by plane, decides which planes are rendered this frame, and adds their views to the
+     * static meshes visibility set, so they can be culled along with the rest of the views
+     */
+    public void addViews(Scene scene, GLShadingPipeline sceneShadingPipeline) {
 
         this.sceneShadingPipeline = sceneShadingPipeline;
 
-        glEnable(GL_CLIP_DISTANCE0);
-
-        final Camera camera = scene.camera();
-
         final MeshInstanceList<WaterMeshInstance> waterInstances = scene.meshInfo().getWaterMeshInstances();
 
         if (waterInstances == null) {
+            releasePlanes(false);
             return;
         }
 
+        final Camera camera = scene.camera();
         final SceneEnhancedWater enhancedWater = scene.enhancedWater();
+        final VisibilitySet visibilitySet = meshRenderer.staticMeshRenderer().visibilitySet();
 
-        for (WaterMeshInstance instance : waterInstances) {
+        updatePlanes(waterInstances, enhancedWater);
 
-            final boolean underWater = camera.position().y() - instance.transform().position().y() < 0.0f;
+        final long frame = Time.frames();
+        final int width = max((int) (Window.get().width() * enhancedWater.texturesScale()), 1);
+        final int height = max((int) (Window.get().height() * enhancedWater.texturesScale()), 1);
 
-            if (underWater) {
-                bakeWaterTexturesUnderWater(scene, enhancedWater, instance);
-            } else {
-                bakeWaterTexturesNormally(scene, camera, enhancedWater, instance);
+        for (int i = 0; i < planes.size(); i++) {
+
+            final WaterPlane plane = planes.get(i);
+
+            plane.bake = mustBake(plane, i, frame, camera, enhancedWater, width, height);
+            plane.reflectionView = -1;
+            plane.refractionView = -1;
+
+            if (!plane.bake) {
+                continue;
             }
+
+            plane.underWater = camera.position().y() - plane.level < 0.0f;
+
+            if (!plane.enhanced) {
+                continue;
+            }
+
+            if (plane.underWater) {
+                plane.refractionView = visibilitySet.addView(camera.projectionViewMatrix(), sceneShadingPipelineFilter);
+                continue;
+            }
+
+            // Same camera changes as in bakeWaterTextures, which leave the camera as it was
+            final float displacement = 2 * (camera.position().y() - plane.level);
+
+            prepareCameraToRenderWithReflectionPerspective(camera, plane, displacement);
+            plane.reflectionView = visibilitySet.addView(restrictToClipPlane(camera), sceneShadingPipelineFilter);
+
+            prepareCameraToRenderWithRefractionPerspective(camera, plane, displacement);
+            plane.refractionView = visibilitySet.addView(restrictToClipPlane(camera), sceneShadingPipelineFilter);
         }
 
         clipPlane.set(0, 0, 0, 0);
-
-        glDisable(GL_CLIP_DISTANCE0);
     }
 
-    private void bakeWaterTexturesUnderWater(Scene scene, SceneEnhancedWater enhancedWater, WaterMeshInstance instance) {
+    public void bakeWaterTextures(Scene scene, GLShadingPipeline sceneShadingPipeline) {
 
-        WaterMeshView waterView = instance.meshView();
+        this.sceneShadingPipeline = sceneShadingPipeline;
 
-        bakeWaterTexture(scene, enhancedWater, instance.meshView(), refractionFramebuffer, waterView.material().getRefractionMap(), true);
-    }
+        final MeshInstanceList<WaterMeshInstance> waterInstances = scene.meshInfo().getWaterMeshInstances();
 
-    private void bakeWaterTexturesNormally(Scene scene, Camera camera, SceneEnhancedWater enhancedWater, WaterMeshInstance instance) {
+        if (waterInstances == null) {
+            return;
+        }
 
-        WaterMeshView waterView = instance.meshView();
+        final Camera camera = scene.camera();
+        final SceneEnhancedWater enhancedWater = scene.enhancedWater();
+        final long frame = Time.frames();
+        final int width = max((int) (Window.get().width() * enhancedWater.texturesScale()), 1);
+        final int height = max((int) (Window.get().height() * enhancedWater.texturesScale()), 1);
 
-        final float displacement = 2 * (camera.position().y() - instance.transform().position().y());
+        glEnable(GL_CLIP_DISTANCE0);
 
-        bakeReflectionTexture(scene, camera, enhancedWater, waterView, displacement);
+        for (WaterPlane plane : planes) {
 
-        bakeRefractionTexture(scene, camera, enhancedWater, waterView, displacement);
-    }
+            if (!plane.bake) {
+                continue;
+            }
 
-    private void bakeReflectionTexture(Scene scene, Camera camera, SceneEnhancedWater enhancedWater, WaterMeshView waterView, float displacement) {
-        prepareCameraToRenderWithReflectionPerspective(camera, waterView, displacement);
-        bakeWaterTexture(scene, enhancedWater, waterView, reflectionFramebuffer, waterView.material().getReflectionMap(), true);
+            plane.resize(width, height);
+
+            if (plane.underWater) {
+                bakeWaterTexture(scene, plane, plane.refractionFramebuffer, plane.refractionView, true);
+            } else {
+                bakeWaterTexturesNormally(scene, camera, plane);
+            }
+
+            plane.lastBakeFrame = frame;
+            plane.lastBakeMatrix.set(camera.projectionViewMatrix());
+            plane.baked = true;
+        }
+
+        clipPlane.set(0, 0, 0, 0);
+
+        glDisable(GL_CLIP_DISTANCE0);
     }
 
-    private void bakeRefractionTexture(Scene scene, Camera camera, SceneEnhancedWater enhancedWater, WaterMeshView waterView, float displacement) {
-        prepareCameraToRenderWithRefractionPerspective(camera, waterView, displacement);
-        bakeWaterTexture(scene, enhancedWater, waterView, refractionFramebuffer, waterView.material().getRefractionMap(), false);
+    private void bakeWaterTexturesNormally(Scene scene, Camera camera, WaterPlane plane) {
+
+        final float displacement = 2 * (camera.position().y() - plane.level);
+
+        prepareReflectionDepthTexture(plane);
+
+        prepareCameraToRenderWithReflectionPerspective(camera, plane, displacement);
+        bakeWaterTexture(scene, plane, plane.reflectionFramebuffer, plane.reflectionView, true);
+
+        prepareCameraToRenderWithRefractionPerspective(camera, plane, displacement);
+        bakeWaterTexture(scene, plane, plane.refractionFramebuffer, plane.refractionView, false);
     }
 
-    private void prepareCameraToRenderWithReflectionPerspective(Camera camera, WaterMeshView waterView, float displacement) {
+    private void prepareCameraToRenderWithReflectionPerspective(Camera camera, WaterPlane plane, float displacement) {
 
         Vector3fc position = camera.position();
 
@@ -278,11 +374,11 @@ public class GLWaterRenderer extends GLRenderer {
 
         camera.updateMatrices();
 
-        clipPlane.set(waterView.clipPlane());
+        clipPlane.set(plane.clipPlane);
         clipPlane.w *= -1;
     }
 
-    private void prepareCameraToRenderWithRefractionPerspective(Camera camera, WaterMeshView waterView, float displacement) {
+    private void prepareCameraToRenderWithRefractionPerspective(Camera camera, WaterPlane plane, float displacement) {
 
         Vector3fc position = camera.position();
 
@@ -292,90 +388,159 @@ public class GLWaterRenderer extends GLRenderer {
 
         camera.updateMatrices();
 
-        clipPlane.set(waterView.clipPlane());
+        clipPlane.set(plane.clipPlane);
         clipPlane.y *= -1;
     }
 
-    private void bakeWaterTexture(Scene scene, SceneEnhancedWater enhancedWater, WaterMeshView waterView,
-                                  GLFramebuffer framebuffer, Texture2D texture, boolean renderSkybox) {
+    private void bakeWaterTexture(Scene scene, WaterPlane plane, GLFramebuffer framebuffer, int view, boolean renderSkybox) {
 
-        prepareFramebuffer(framebuffer, (GLTexture2D) texture);
+        framebuffer.bind();
+
+        glViewport(0, 0, plane.width, plane.height);
+        glClear(GL_COLOR_BUFFER_BIT | GL_DEPTH_BUFFER_BIT);
 
-        if (enhancedWater.isEnhanced(waterView)) {
-            renderMeshes(scene, meshRenderer.staticMeshRenderer());
+        if (plane.enhanced) {
+            renderMeshes(scene, meshRenderer.staticMeshRenderer(), view);
         }
 
         if (renderSkybox) {
             renderSkybox(scene);
         }
-
-        glFinish();
     }
 
-    private void renderMeshes(Scene scene, GLIndirectRenderer renderer) {
+    private void renderMeshes(Scene scene, GLIndirectRenderer renderer, int view) {
         renderer.addDynamicState(setClipPlaneUniform);
-        renderer.render(scene, sceneShadingPipeline);
+        renderer.renderView(scene, view, sceneShadingPipeline);
     }
 
     private void renderSkybox(Scene scene) {
         skyboxRenderer.render(scene);
     }
 
-    private void prepareFramebuffer(GLFramebuffer framebuffer, GLTexture2D colorTexture) {
+    private boolean mustBake(WaterPlane plane, int index, long frame, Camera camera, SceneEnhancedWater enhancedWater,
+                             int width, int height) {
 
-        final int width = max(Window.get().width(), 1);
-        final int height = max(Window.get().height(), 1);
+        if (!plane.baked || plane.width != width || plane.height != height) {
+            return true;
+        }
+
+        // The planes take turns, so that they are not all rendered in the same frame
+        final int interval = enhancedWater.texturesUpdateInterval();
 
-        if (colorTexture.width() != width || colorTexture.height() != height) {
-            colorTexture.reallocate(1, width, height, PixelFormat.RGBA);
+        if (frame - plane.lastBakeFrame < interval && (frame + index) % interval != 0) {
+            return false;
         }
 
-        if (!Objects.equals(framebuffer.get(GL_COLOR_ATTACHMENT0), colorTexture)) {
-            framebuffer.attach(GL_COLOR_ATTACHMENT0, colorTexture, 0);
-            framebuffer.ensureComplete();
+        return !enhancedWater.texturesUpdatedOnlyOnCameraMovement() || !plane.lastBakeMatrix.equals(camera.projectionViewMatrix());
+    }
+
+    /**
+     * Replaces the near plane of the camera frustum with the current clip plane, so the culling discards what the clip
+     * plane would discard. Only perspective cameras behind the clip plane are restricted
+     */
+    private Matrix4fc restrictToClipPlane(Camera camera) {
+
+        cullingMatrix.set(camera.projectionViewMatrix());
+
+        if (camera.projectionType() != Camera.ProjectionType.PERSPECTIVE) {
+            return cullingMatrix;
         }
 
-        framebuffer.bind();
+        final Matrix4fc view = camera.viewMatrix();
 
-        glViewport(0, 0, width, height);
-        glClear(GL_COLOR_BUFFER_BIT | GL_DEPTH_BUFFER_BIT);
+        // The view matrix is a rigid transformation
+        view.transformDirection(viewClipPlaneNormal.set(clipPlane.x, clipPlane.y, clipPlane.z));
+
+        viewClipPlane.set(viewClipPlaneNormal, clipPlane.w - viewClipPlaneNormal.dot(view.m30(), view.m31(), view.m32()));
+
+        if (viewClipPlane.w >= 0.0f) {
+            return cullingMatrix;
+        }
+
+        // Oblique near plane, from Lengyel's "Oblique View Frustum Depth Projection and Clipping"
+        final Matrix4f projection = obliqueProjection.set(camera.projectionMatrix());
+
+        corner.set(
+                (signum(viewClipPlane.x) + projection.m20()) / projection.m00(),
+                (signum(viewClipPlane.y) + projection.m21()) / projection.m11(),
+                -1.0f,
+                (1.0f + projection.m22()) / projection.m32());
+
+        viewClipPlane.mul(2.0f / viewClipPlane.dot(corner));
+
+        projection.m02(viewClipPlane.x);
+        projection.m12(viewClipPlane.y);
+        projection.m22(viewClipPlane.z + 1.0f);
+        projection.m32(viewClipPlane.w);
+
+        return projection.mul(view, cullingMatrix);
     }
 
-    private void recreateFramebuffers(WindowResizedEvent e) {
+    private void updatePlanes(MeshInstanceList<WaterMeshInstance> waterInstances, SceneEnhancedWater enhancedWater) {
 
-        if (depthTexture != null) {
+        for (WaterPlane plane : planes) {
+            plane.used = false;
+            plane.enhanced = false;
+        }
 
-            depthTexture.release();
-            reflectionFramebuffer.release();
-            refractionFramebuffer.release();
+        for (WaterMeshInstance instance : waterInstances) {
+
+            WaterPlane plane = findPlane(instance);
+
+            if (plane == null) {
+                plane = new WaterPlane(context(), waterLevel(instance), instance.meshView().clipPlane());
+                planes.add(plane);
+            }
 
-            createFramebuffers();
+            plane.used = true;
+            plane.enhanced |= enhancedWater.isEnhanced(instance.meshView());
         }
-    }
 
-    private void createFramebuffers() {
+        releasePlanes(true);
+    }
 
-        final int width = max(Window.get().width(), 1);
-        final int height = max(Window.get().height(), 1);
+    private void releasePlanes(boolean unusedOnly) {
 
-        createDepthTexture(width, height);
+        Iterator<WaterPlane> iterator = planes.iterator();
 
-        reflectionFramebuffer = createFramebuffer();
-        refractionFramebuffer = createFramebuffer();
+        while (iterator.hasNext()) {
+            WaterPlane plane = iterator.next();
+            if (!unusedOnly || !plane.used) {
+                plane.release();
+                iterator.remove();
+            }
+        }
     }
 
-    private void createDepthTexture(int width, int height) {
-        depthTexture = new GLTexture2D(context());
-        depthTexture.reallocate(1, width, height, GL_DEPTH_COMPONENT24);
+    private WaterPlane findPlane(WaterMeshInstance instance) {
+
+        final float level = waterLevel(instance);
+        final Vector4fc clipPlane = instance.meshView().clipPlane();
+
+        for (WaterPlane plane : planes) {
+            if (plane.level == level && plane.clipPlane.equals(clipPlane.x(), clipPlane.y(), clipPlane.z(), clipPlane.w())) {
+                return plane;
+            }
+        }
+
+        return null;
     }
 
-    private GLFramebuffer createFramebuffer() {
+    // World space height of the water, its transform may be relative to a parent
+    private float waterLevel(WaterMeshInstance instance) {
+        return instance.modelMatrix().m31();
+    }
 
-        GLFramebuffer framebuffer = new GLFramebuffer(context());
+    private void prepareReflectionDepthTexture(WaterPlane plane) {
 
-        framebuffer.attach(GL_DEPTH_ATTACHMENT, depthTexture, 0);
+        if (reflectionDepthWidth != plane.width || reflectionDepthHeight != plane.height) {
+            reflectionDepthTexture.reallocate(1, plane.width, plane.height, GL_DEPTH_COMPONENT24);
+            reflectionDepthWidth = plane.width;
+            reflectionDepthHeight = plane.height;
+        }
 
-        return framebuffer;
+        plane.reflectionFramebuffer.attach(GL_DEPTH_ATTACHMENT, reflectionDepthTexture, 0);
+        plane.reflectionFramebuffer.ensureComplete();
     }
 
     private GLShadingPipeline createWaterShadingPipeline() {
@@ -388,4 +553,67 @@ public class GLWaterRenderer extends GLRenderer {
                 .attach(new GLShader(context(), FRAGMENT_STAGE).source(RadonFiles.getPath("shaders/water/water.frag")).compile())
                 .link();
     }
+
+    private final class WaterPlane implements Resource {
+
+        private final float level;
+        private final Vector4f clipPlane;
+        private final GLTexture2D reflectionTexture;
+        private final GLTexture2D refractionTexture;
+        private final GLTexture2D refractionDepthTexture;
+        private final GLFramebuffer reflectionFramebuffer;
+        private final GLFramebuffer refractionFramebuffer;
+        private final Matrix4f lastBakeMatrix;
+        private long lastBakeFrame;
+        private int width;
+        private int height;
+        private int reflectionView;
+        private int refractionView;
+        private boolean baked;
+        private boolean bake;
+        private boolean underWater;
+        private boolean enhanced;
+        private boolean used;
+
+        private WaterPlane(GLContext context, float level, Vector4fc clipPlane) {
+            this.level = level;
+            this.clipPlane = new Vector4f(clipPlane);
+            reflectionTexture = new GLTexture2D(context);
+            refractionTexture = new GLTexture2D(context);
+            refractionDepthTexture = new GLTexture2D(context);
+            reflectionFramebuffer = new GLFramebuffer(context);
+            refractionFramebuffer = new GLFramebuffer(context);
+            lastBakeMatrix = new Matrix4f();
+        }
+
+        private void resize(int width, int height) {
+
+            if (this.width == width && this.height == height) {
+                return;
+            }
+
+            reflectionTexture.reallocate(1, width, height, PixelFormat.RGBA);
+            refractionTexture.reallocate(1, width, height, PixelFormat.RGBA);
+            refractionDepthTexture.reallocate(1, width, height, GL_DEPTH_COMPONENT24);
+
+            // Textures get a new name when they are reallocated
+            reflectionFramebuffer.attach(GL_COLOR_ATTACHMENT0, reflectionTexture, 0);
+
+            refractionFramebuffer.attach(GL_COLOR_ATTACHMENT0, refractionTexture, 0);
+            refractionFramebuffer.attach(GL_DEPTH_ATTACHMENT, refractionDepthTexture, 0);
+            refractionFramebuffer.ensureComplete();
+
+            this.width = width;
+            this.height = height;
+        }
+
+        @Override
+        public void release() {
+            reflectionFramebuffer.release();
+            refractionFramebuffer.release();
+            reflectionTexture.release();
+            refractionTexture.release();
+            refractionDepthTexture.release();
+        }
+    }
 }
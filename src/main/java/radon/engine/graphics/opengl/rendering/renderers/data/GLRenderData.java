@@ -3,6 +3,7 @@ package radon.engine.graphics.opengl.rendering.renderers.data;
 import radon.engine.graphics.buffers.MappedGraphicsBuffer;
 import radon.engine.graphics.opengl.GLContext;
 import radon.engine.graphics.opengl.buffers.GLBuffer;
+import radon.engine.graphics.opengl.buffers.GLBufferRing;
 import radon.engine.graphics.opengl.commands.GLDrawElementsCommand;
 import radon.engine.graphics.opengl.vertex.GLVertexArray;
 import radon.engine.resource.Resource;
@@ -11,24 +12,30 @@ import radon.engine.scenes.components.meshes.MeshInstanceList;
 
 import static java.util.Objects.requireNonNull;
 import static radon.engine.util.types.DataType.INT32_SIZEOF;
-import static radon.engine.util.types.DataType.MATRIX4_SIZEOF;
+import static radon.engine.util.types.DataType.VECTOR4_SIZEOF;
 
 public abstract class GLRenderData implements Resource {
 
     protected static final int VERTEX_BUFFER_BINDING = 0;
     protected static final int INSTANCE_BUFFER_BINDING = 1;
 
-    private static final int INSTANCE_BUFFER_MIN_SIZE = INT32_SIZEOF * 2;
-    private static final int TRANSFORMS_BUFFER_MIN_SIZE = MATRIX4_SIZEOF * 2;
+    // Matrix index + material index + mesh index of each command
+    public static final int INSTANCE_BUFFER_MIN_SIZE = INT32_SIZEOF * 3;
+
+    // World space bounding sphere of each command, as center xyz + radius
+    public static final int DRAW_BOUNDS_SIZEOF = VECTOR4_SIZEOF;
 
 
     private final GLContext context;
 
     private GLVertexArray vertexArray;
 
-    private GLBuffer instanceBuffer; // model matrix + material
+    // Rewritten by the CPU every frame, so there is one of them per frame in flight
+    private GLBufferRing instanceBuffers; // model matrix + material + mesh
+    private GLBufferRing commandBuffers;
+    private GLBufferRing boundsBuffers;
     private GLBuffer transformsBuffer;
-    private GLBuffer commandBuffer;
+    private GLTransformStorage transformStorage;
     private GLBuffer meshIndicesBuffer;
     private GLBuffer vertexBuffer;
     private GLBuffer indexBuffer;
@@ -38,11 +45,14 @@ public abstract class GLRenderData implements Resource {
         this.context = requireNonNull(context);
 
         transformsBuffer = new GLBuffer(context).name("TRANSFORMS_STORAGE_BUFFER");
-        commandBuffer = new GLBuffer(context).name("INSTANCE_COMMAND_BUFFER");
+        commandBuffers = new GLBufferRing(() -> new GLBuffer(context).name("INSTANCE_COMMAND_BUFFER"));
+        boundsBuffers = new GLBufferRing(() -> new GLBuffer(context).name("DRAW_BOUNDS_BUFFER"));
         meshIndicesBuffer = new GLBuffer(context).name("MESH_INDICES_STORAGE_BUFFER");
 
+        transformStorage = new GLTransformStorage(transformsBuffer);
+
         vertexArray = initVertexArray();
-        instanceBuffer = initInstanceBuffer();
+        instanceBuffers = new GLBufferRing(this::initInstanceBuffer);
         vertexBuffer = initVertexBuffer();
         indexBuffer = initIndexBuffer();
     }
@@ -54,9 +64,11 @@ public abstract class GLRenderData implements Resource {
     @Override
     public void release() {
         vertexArray.release();
-        instanceBuffer.release();
+        instanceBuffers.release();
         transformsBuffer.release();
-        commandBuffer.release();
+        transformStorage.release();
+        commandBuffers.release();
+        boundsBuffers.release();
         meshIndicesBuffer.release();
     }
 
@@ -65,7 +77,7 @@ public abstract class GLRenderData implements Resource {
     }
 
     public GLBuffer getInstanceBuffer() {
-        return instanceBuffer;
+        return instanceBuffers.current();
     }
 
     public GLBuffer getVertexBuffer() {
@@ -80,22 +92,63 @@ public abstract class GLRenderData implements Resource {
         return transformsBuffer;
     }
 
+    public GLTransformStorage getTransformStorage() {
+        return transformStorage;
+    }
+
     public GLBuffer getCommandBuffer() {
-        return commandBuffer;
+        return commandBuffers.current();
+    }
+
+    /**
+     * Returns the buffer with the world space bounding sphere of every command of the command buffer
+     */
+    public GLBuffer getBoundsBuffer() {
+        return boundsBuffers.current();
     }
 
     public GLBuffer getMeshIndicesBuffer() {
         return meshIndicesBuffer;
     }
 
+    /**
+     * Returns the buffer with the center of each mesh, indexed by the mesh index of the instances, or null if the
+     * vertices do not need it
+     */
+    public GLBuffer getMeshCentersBuffer() {
+        return null;
+    }
+
     public void update(Scene scene, MeshInstanceList<?> instances) {
+        final int frameIndex = context.frameSync().frameIndex();
+        commandBuffers.select(frameIndex);
+        boundsBuffers.select(frameIndex);
+        instanceBuffers.select(frameIndex);
         updateVertexArrayVertexBuffer();
         prepareInstanceBuffer(scene, instances);
+        transformStorage.update(instances);
+    }
+
+    /**
+     * Makes room in the command and instance buffers for one region of draws per view
+     */
+    public void reserveViews(MeshInstanceList<?> instances, int viewCount) {
+
+        final int numDraws = instances == null ? 0 : instances.numMeshViews() * viewCount;
+
+        if (numDraws == 0) {
+            return;
+        }
+
+        checkCommandBuffer(numDraws);
+
+        checkPerInstanceDataBuffer(numDraws);
     }
 
     protected void updateVertexArrayVertexBuffer() {
         final int stride = getStride();
         vertexArray.setVertexBuffer(VERTEX_BUFFER_BINDING, vertexBuffer, stride);
+        vertexArray.setVertexBuffer(INSTANCE_BUFFER_BINDING, getInstanceBuffer(), INSTANCE_BUFFER_MIN_SIZE);
         vertexArray.setIndexBuffer(indexBuffer);
     }
 
@@ -128,10 +181,11 @@ public abstract class GLRenderData implements Resource {
 
     private void checkTransformsBuffer(int numObjects) {
 
-        final int transformsMinSize = numObjects * TRANSFORMS_BUFFER_MIN_SIZE;
+        final int transformsMinSize = numObjects * GLTransformStorage.SLOT_SIZE;
 
         if (transformsBuffer.size() < transformsMinSize) {
             reallocateBuffer(transformsBuffer, transformsMinSize);
+            transformStorage.invalidate();
         }
     }
 
@@ -139,6 +193,8 @@ public abstract class GLRenderData implements Resource {
 
         final int instancesMinSize = numObjects * INSTANCE_BUFFER_MIN_SIZE;
 
+        final GLBuffer instanceBuffer = getInstanceBuffer();
+
         if (instanceBuffer.size() < instancesMinSize) {
             reallocateBuffer(instanceBuffer, instancesMinSize);
             vertexArray.setVertexBuffer(INSTANCE_BUFFER_BINDING, instanceBuffer, INSTANCE_BUFFER_MIN_SIZE);
@@ -149,9 +205,19 @@ public abstract class GLRenderData implements Resource {
 
         final int commandBufferMinSize = numObjects * GLDrawElementsCommand.SIZEOF;
 
+        final GLBuffer commandBuffer = getCommandBuffer();
+
         if (commandBuffer.size() < commandBufferMinSize) {
             reallocateBuffer(commandBuffer, commandBufferMinSize);
         }
+
+        final int boundsBufferMinSize = numObjects * DRAW_BOUNDS_SIZEOF;
+
+        final GLBuffer boundsBuffer = getBoundsBuffer();
+
+        if (boundsBuffer.size() < boundsBufferMinSize) {
+            reallocateBuffer(boundsBuffer, boundsBufferMinSize);
+        }
     }
 
     private void reallocateBuffer(MappedGraphicsBuffer buffer, long size) {
@@ -5,16 +5,30 @@ import radon.engine.graphics.opengl.buffers.GLBuffer;
 import radon.engine.graphics.opengl.vertex.GLVertexArray;
 import radon.engine.meshes.MeshManager;
 import radon.engine.meshes.StaticMesh;
+import radon.engine.meshes.StaticMeshStorageHandler;
 import radon.engine.meshes.vertices.VertexLayout;
+import radon.engine.scenes.Scene;
+import radon.engine.scenes.components.meshes.MeshInstanceList;
 
+import static radon.engine.core.RadonConfigConstants.COMPACT_VERTEX_FORMAT;
 import static radon.engine.meshes.vertices.VertexLayouts.VERTEX_LAYOUT_3D_INDIRECT;
+import static radon.engine.meshes.vertices.VertexLayouts.VERTEX_LAYOUT_3D_INDIRECT_COMPACT;
 
 public class GLStaticRenderData extends GLRenderData {
 
+    private static final long DEFRAGMENT_BYTES_PER_FRAME = 256 * 1024;
+
     public GLStaticRenderData(GLContext context) {
         super(context);
     }
 
+    @Override
+    public void update(Scene scene, MeshInstanceList<?> instances) {
+        // Compact the mesh buffers a little every frame, before any draw command is built
+        MeshManager.get().storageHandler(StaticMesh.class).defragment(DEFRAGMENT_BYTES_PER_FRAME);
+        super.update(scene, instances);
+    }
+
     @Override
     protected GLBuffer initVertexBuffer() {
         return MeshManager.get().storageHandler(StaticMesh.class).vertexBuffer();
@@ -25,9 +39,14 @@ public class GLStaticRenderData extends GLRenderData {
         return MeshManager.get().storageHandler(StaticMesh.class).indexBuffer();
     }
 
+    @Override
+    public GLBuffer getMeshCentersBuffer() {
+        return MeshManager.get().<StaticMesh, StaticMeshStorageHandler>storageHandler(StaticMesh.class).meshCentersBuffer();
+    }
+
     @Override
     protected int getStride() {
-        return StaticMesh.VERTEX_DATA_SIZE;
+        return COMPACT_VERTEX_FORMAT ? StaticMeshStorageHandler.COMPACT_VERTEX_DATA_SIZE : StaticMesh.VERTEX_DATA_SIZE;
     }
 
     @Override
@@ -35,7 +54,7 @@ public class GLStaticRenderData extends GLRenderData {
 
         GLVertexArray vertexArray = new GLVertexArray(context());
 
-        VertexLayout vertexLayout = VERTEX_LAYOUT_3D_INDIRECT;
+        VertexLayout vertexLayout = COMPACT_VERTEX_FORMAT ? VERTEX_LAYOUT_3D_INDIRECT_COMPACT : VERTEX_LAYOUT_3D_INDIRECT;
 
         for (int i = 0; i < vertexLayout.bindings(); i++) {
             vertexArray.setVertexAttributes(i, vertexLayout.attributeList(i));
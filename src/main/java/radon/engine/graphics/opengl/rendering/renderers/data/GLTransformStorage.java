@@ -0,0 +1,193 @@
+package radon.engine.graphics.opengl.rendering.renderers.data;
+
+import radon.engine.graphics.opengl.buffers.GLBuffer;
+import radon.engine.graphics.rendering.RenderJobScheduler;
+import radon.engine.resource.Resource;
+import radon.engine.scenes.components.math.Transform;
+import radon.engine.scenes.components.meshes.MeshInstanceList;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+import static java.lang.Math.max;
+import static org.lwjgl.system.MemoryUtil.memAlloc;
+import static org.lwjgl.system.MemoryUtil.memFree;
+import static radon.engine.util.types.DataType.MATRIX4_SIZEOF;
+
+/**
+ * Persistent per instance slots of model and normal matrices. A slot is only written when its transform has changed
+ * since the last upload, and the dirty slots are uploaded in contiguous ranges
+ */
+public final class GLTransformStorage implements Resource {
+
+    public static final int SLOT_SIZE = MATRIX4_SIZEOF * 2;
+
+    private static final int MODEL_MATRIX_OFFSET = 0;
+    private static final int NORMAL_MATRIX_OFFSET = MATRIX4_SIZEOF;
+    // Clean slots between two dirty ones are uploaded with them rather than splitting the range
+    private static final int MAX_RANGE_GAP = 4;
+
+    private final GLBuffer buffer;
+    private ByteBuffer slots;
+    private Transform[] owners;
+    private int[] versions;
+    private boolean[] dirty;
+    private int capacity;
+    private int count;
+    // Per run attributes
+    private MeshInstanceList<?> instances;
+    // Last update stats
+    private int uploadedCount;
+    private int skippedCount;
+    private int rangeCount;
+
+    public GLTransformStorage(GLBuffer buffer) {
+        this.buffer = buffer;
+        owners = new Transform[0];
+        versions = new int[0];
+        dirty = new boolean[0];
+    }
+
+    public GLBuffer buffer() {
+        return buffer;
+    }
+
+    public int uploadedCount() {
+        return uploadedCount;
+    }
+
+    public int skippedCount() {
+        return skippedCount;
+    }
+
+    public int rangeCount() {
+        return rangeCount;
+    }
+
+    public void update(MeshInstanceList<?> instances) {
+
+        final int newCount = instances == null ? 0 : instances.size();
+
+        uploadedCount = 0;
+        skippedCount = 0;
+        rangeCount = 0;
+
+        reserve(newCount);
+
+        if (newCount < count) {
+            Arrays.fill(owners, newCount, count, null);
+        }
+
+        count = newCount;
+
+        if (count == 0) {
+            return;
+        }
+
+        this.instances = instances;
+
+        RenderJobScheduler.parallelFor(0, count, this::updateSlots);
+
+        this.instances = null;
+
+        uploadDirtyRanges();
+    }
+
+    /**
+     * Forces every slot to be uploaded again on the next update. Must be called whenever the buffer is reallocated
+     */
+    public void invalidate() {
+        Arrays.fill(owners, 0, count, null);
+    }
+
+    @Override
+    public void release() {
+        memFree(slots);
+        slots = null;
+        owners = null;
+        versions = null;
+        dirty = null;
+        capacity = 0;
+        count = 0;
+    }
+
+    private void updateSlots(int beginIndex, int endIndex) {
+
+        for (int index = beginIndex; index < endIndex; index++) {
+
+            final Transform transform = instances.get(index).transform();
+            final int version = transform.version();
+
+            if (owners[index] == transform && versions[index] == version) {
+                dirty[index] = false;
+                continue;
+            }
+
+            final int offset = index * SLOT_SIZE;
+
+            transform.modelMatrix().get(offset + MODEL_MATRIX_OFFSET, slots);
+            transform.normalMatrix().get(offset + NORMAL_MATRIX_OFFSET, slots);
+
+            owners[index] = transform;
+            versions[index] = version;
+            dirty[index] = true;
+        }
+    }
+
+    private void uploadDirtyRanges() {
+
+        int rangeBegin = -1;
+        int lastDirty = -1;
+
+        for (int index = 0; index < count; index++) {
+
+            if (!dirty[index]) {
+                continue;
+            }
+
+            ++uploadedCount;
+
+            if (rangeBegin < 0) {
+                rangeBegin = index;
+            } else if (index - lastDirty > MAX_RANGE_GAP + 1) {
+                upload(rangeBegin, lastDirty + 1);
+                rangeBegin = index;
+            }
+
+            lastDirty = index;
+        }
+
+        if (rangeBegin >= 0) {
+            upload(rangeBegin, lastDirty + 1);
+        }
+
+        skippedCount = count - uploadedCount;
+    }
+
+    private void upload(int beginIndex, int endIndex) {
+        buffer.update((long) beginIndex * SLOT_SIZE, slots.slice(beginIndex * SLOT_SIZE, (endIndex - beginIndex) * SLOT_SIZE));
+        ++rangeCount;
+    }
+
+    private void reserve(int minCapacity) {
+
+        if (minCapacity <= capacity) {
+            return;
+        }
+
+        final int newCapacity = max(minCapacity, capacity + (capacity >> 1));
+
+        ByteBuffer newSlots = memAlloc(newCapacity * SLOT_SIZE);
+
+        if (slots != null) {
+            newSlots.put(0, slots, 0, count * SLOT_SIZE);
+            memFree(slots);
+        }
+
+        slots = newSlots;
+        owners = Arrays.copyOf(owners, newCapacity);
+        versions = Arrays.copyOf(versions, newCapacity);
+        dirty = Arrays.copyOf(dirty, newCapacity);
+        capacity = newCapacity;
+    }
+}
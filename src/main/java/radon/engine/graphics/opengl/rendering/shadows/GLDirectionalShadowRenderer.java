@@ -1,69 +1,131 @@
 package radon.engine.graphics.opengl.rendering.shadows;
 
+import org.joml.Matrix4fc;
+import org.lwjgl.opengl.GLCapabilities;
+import org.lwjgl.system.MemoryStack;
 import radon.engine.core.RadonFiles;
+import radon.engine.core.Time;
 import radon.engine.graphics.opengl.GLContext;
 import radon.engine.graphics.opengl.rendering.GLShadingPipeline;
+import radon.engine.graphics.opengl.rendering.renderers.GLIndirectRenderer;
 import radon.engine.graphics.opengl.rendering.renderers.GLMeshRenderer;
 import radon.engine.graphics.opengl.shaders.GLShader;
 import radon.engine.graphics.opengl.shaders.GLShaderProgram;
-import radon.engine.graphics.opengl.textures.GLTexture2D;
+import radon.engine.graphics.opengl.swapchain.GLFramebuffer;
+import radon.engine.graphics.opengl.textures.GLTexture2DArray;
+import radon.engine.graphics.rendering.culling.FrustumCullingPreCondition;
+import radon.engine.graphics.rendering.culling.FrustumCullingPreConditionState;
 import radon.engine.graphics.rendering.shadows.ShadowCascade;
+import radon.engine.graphics.textures.Sampler;
 import radon.engine.lights.DirectionalLight;
+import radon.engine.meshes.TerrainMesh;
+import radon.engine.meshes.views.MeshView;
 import radon.engine.scenes.Camera;
 import radon.engine.scenes.Scene;
+import radon.engine.scenes.components.meshes.MeshInstance;
+import radon.engine.scenes.components.meshes.MeshInstanceList;
+import radon.engine.scenes.environment.SceneLighting;
 
+import java.nio.FloatBuffer;
 import java.util.Arrays;
 
+import static java.lang.Math.max;
 import static java.lang.Math.min;
 import static java.lang.Math.pow;
 import static java.util.Objects.requireNonNull;
+import static org.lwjgl.opengl.GL11C.*;
+import static org.lwjgl.opengl.GL14C.GL_DEPTH_COMPONENT32;
+import static org.lwjgl.opengl.GL30C.GL_DEPTH_ATTACHMENT;
+import static org.lwjgl.opengl.GL30C.GL_TEXTURE_2D_ARRAY;
+import static org.lwjgl.opengl.GL43C.glCopyImageSubData;
+import static org.lwjgl.opengl.GL44C.glClearTexSubImage;
 import static radon.engine.graphics.ShaderStage.FRAGMENT_STAGE;
+import static radon.engine.graphics.ShaderStage.GEOMETRY_STAGE;
 import static radon.engine.graphics.ShaderStage.VERTEX_STAGE;
 import static radon.engine.graphics.opengl.rendering.shadows.GLShadowsInfo.MAX_SHADOW_CASCADES_COUNT;
+import static radon.engine.graphics.rendering.culling.FrustumCullingPreConditionState.CONTINUE;
+import static radon.engine.graphics.rendering.culling.FrustumCullingPreConditionState.DISCARD;
 import static radon.engine.util.Maths.lerp;
-
+import static radon.engine.util.types.DataType.MATRIX4_SIZEOF;
+
+/**
+ * Renders the shadow cascades of the directional light in a single pass. The cascades are culled together as one
+ * layered view, and each visible draw is instanced once per cascade it touches into the layers of a depth texture array.
+ * <p>
+ * With shadows caching, static instances are rendered into a separate cache that is only rendered again when a cascade
+ * moves or a static instance changes. Every frame the cache is copied into the shadow map and the rest of the instances
+ * are rendered on top of it
+ */
 public class GLDirectionalShadowRenderer {
 
+    private static final String LIGHT_MATRICES_UNIFORM_NAME = "u_LightProjectionViewMatrices";
+    private static final String LAYERS_UNIFORM_NAME = "u_Layers";
+
+    // Extra size of the cascades when caching, so they do not have to move every time the camera does
+    private static final float CACHED_CASCADE_MARGIN = 0.25f;
+
     private final GLContext context;
     private final GLShadingPipeline shadingPipeline;
-    private final GLShadowCascadeRenderer[] shadowCascadeRenderers;
-    private GLTexture2D[] directionalDepthTextures;
-    private ShadowCascade[] shadowCascades;
+    private final GLTexture2DArray depthTexture;
+    private final GLFramebuffer framebuffer;
+    private final GLTexture2DArray staticDepthTexture;
+    private final GLFramebuffer staticFramebuffer;
+    private final ShadowCascade[] shadowCascades;
+    private final CascadeLayers staticLayers;
+    private final CascadeLayers dynamicLayers;
+    // Whether each cascade has been rendered since the shadow map was allocated
+    private final boolean[] rendered;
+    // Static instances state each cascade cache was rendered with
+    private final int[] cachedStaticStates;
+    private final boolean[] cached;
+    private int shadowMapSize;
+    private int staticShadowMapSize;
+    private long lastFrame;
 
     public GLDirectionalShadowRenderer(GLContext context) {
 
         this.context = requireNonNull(context);
 
         shadingPipeline = createShadingPipeline();
-        shadowCascadeRenderers = createShadowCascadeRenderers();
-        directionalDepthTextures = getDirectionalDepthTextures();
-        shadowCascades = getShadowCascades();
-    }
 
-    private ShadowCascade[] getShadowCascades() {
+        depthTexture = new GLTexture2DArray(context);
+        framebuffer = new GLFramebuffer(context);
+        framebuffer.setAsDepthOnlyFramebuffer();
 
-        ShadowCascade[] shadowCascades = new ShadowCascade[MAX_SHADOW_CASCADES_COUNT];
+        staticDepthTexture = new GLTexture2DArray(context);
+        staticFramebuffer = new GLFramebuffer(context);
+        staticFramebuffer.setAsDepthOnlyFramebuffer();
+
+        shadowCascades = new ShadowCascade[MAX_SHADOW_CASCADES_COUNT];
 
         for (int i = 0; i < MAX_SHADOW_CASCADES_COUNT; i++) {
-            shadowCascades[i] = shadowCascadeRenderers[i].shadowCascade();
+            shadowCascades[i] = new ShadowCascade();
         }
 
-        return shadowCascades;
+        staticLayers = new CascadeLayers();
+        dynamicLayers = new CascadeLayers();
+        rendered = new boolean[MAX_SHADOW_CASCADES_COUNT];
+        cachedStaticStates = new int[MAX_SHADOW_CASCADES_COUNT];
+        cached = new boolean[MAX_SHADOW_CASCADES_COUNT];
+        lastFrame = -1;
     }
 
-    public GLTexture2D[] dirShadowMaps() {
-        return directionalDepthTextures;
+    public GLTexture2DArray dirShadowMap() {
+        return depthTexture;
     }
 
     public ShadowCascade[] shadowCascades() {
         return shadowCascades;
     }
 
-    public void bakeDirectionalShadows(Scene scene, GLMeshRenderer meshRenderer) {
+    public void addViews(Scene scene, GLMeshRenderer meshRenderer) {
 
-        shadingPipeline.setShadingModel(scene.renderInfo().shadingModel());
+        staticLayers.clear();
+        dynamicLayers.clear();
+
+        final SceneLighting lighting = scene.environment().lighting();
 
-        DirectionalLight light = scene.environment().lighting().directionalLight();
+        DirectionalLight light = lighting.directionalLight();
 
         Camera camera = scene.camera();
 
@@ -71,16 +133,179 @@ public class GLDirectionalShadowRenderer {
             return;
         }
 
+        final int shadowMapSize = max(lighting.shadowMapSize(), 1);
+        final boolean caching = lighting.shadowsCaching();
+        final long frame = Time.frames();
+
+        // The shadow map is outdated if it was not rendered in the last frame
+        if (shadowMapSize != this.shadowMapSize || frame != lastFrame + 1) {
+            Arrays.fill(rendered, false);
+        }
+
+        if (!caching || shadowMapSize != staticShadowMapSize) {
+            Arrays.fill(cached, false);
+        }
+
+        lastFrame = frame;
+
+        final int staticState = caching ? staticState(meshRenderer.staticMeshRenderer().getInstances(scene)) : 0;
+
         final float[] cascadeRanges = calculateCascadeRanges(scene, camera);
 
         for (int i = 0; i < MAX_SHADOW_CASCADES_COUNT; i++) {
 
-            GLShadowCascadeRenderer shadowCascadeRenderer = shadowCascadeRenderers[i];
+            if (rendered[i] && !mustUpdate(i, frame, lighting.shadowCascadesUpdateInterval())) {
+                continue;
+            }
+
+            final ShadowCascade shadowCascade = shadowCascades[i].margin(caching ? CACHED_CASCADE_MARGIN : 0.0f);
+
+            final boolean moved = shadowCascade.update(camera, cascadeRanges[i], cascadeRanges[i + 1], light, shadowMapSize);
+
+            if (caching && (moved || !cached[i] || cachedStaticStates[i] != staticState)) {
+                staticLayers.add(i, shadowCascade.lightProjectionViewMatrix());
+                cachedStaticStates[i] = staticState;
+                cached[i] = true;
+            }
+
+            dynamicLayers.add(i, shadowCascade.lightProjectionViewMatrix());
+
+            rendered[i] = true;
+        }
+
+        staticLayers.addView(meshRenderer, this::staticCasters);
+        dynamicLayers.addView(meshRenderer, caching ? this::dynamicCasters : this::discardTerrain);
+    }
+
+    public void bakeDirectionalShadows(Scene scene, GLMeshRenderer meshRenderer) {
+
+        shadingPipeline.setShadingModel(scene.renderInfo().shadingModel());
+
+        final SceneLighting lighting = scene.environment().lighting();
+
+        if (lighting.directionalLight() == null || dynamicLayers.count == 0) {
+            return;
+        }
+
+        final int shadowMapSize = max(lighting.shadowMapSize(), 1);
+
+        if (this.shadowMapSize != shadowMapSize) {
+            this.shadowMapSize = setupFramebuffer(depthTexture, framebuffer, shadowMapSize);
+        }
+
+        if (staticLayers.count > 0) {
+
+            if (staticShadowMapSize != shadowMapSize) {
+                staticShadowMapSize = setupFramebuffer(staticDepthTexture, staticFramebuffer, shadowMapSize);
+            }
+
+            clearLayers(staticDepthTexture, staticLayers);
+
+            renderLayers(scene, meshRenderer.staticMeshRenderer(), staticFramebuffer, staticLayers);
+        }
+
+        if (lighting.shadowsCaching()) {
+            copyLayers(staticDepthTexture, depthTexture, dynamicLayers);
+        } else {
+            clearLayers(depthTexture, dynamicLayers);
+        }
+
+        renderLayers(scene, meshRenderer.staticMeshRenderer(), framebuffer, dynamicLayers);
+    }
+
+    // The nearest cascade is updated every frame, and the rest take turns
+    private boolean mustUpdate(int cascade, long frame, int updateInterval) {
+        return cascade == 0 || (frame + cascade) % updateInterval == 0;
+    }
+
+    private int staticState(MeshInstanceList<?> instances) {
+
+        if (instances == null) {
+            return 0;
+        }
+
+        int state = instances.modifications();
+
+        for (int i = 0; i < instances.size(); i++) {
+
+            final MeshInstance<?> instance = instances.get(i);
+
+            if (instance.staticShadows()) {
+                state = 31 * (31 * state + i) + instance.transform().version();
+            }
+        }
+
+        return state;
+    }
+
+    private void renderLayers(Scene scene, GLIndirectRenderer renderer, GLFramebuffer framebuffer, CascadeLayers layers) {
+
+        framebuffer.bind();
+
+        glViewport(0, 0, shadowMapSize, shadowMapSize);
+
+        renderer.addDynamicState(shader -> setUniforms(shader, layers));
 
-            shadowCascadeRenderer.render(scene, meshRenderer, light, cascadeRanges[i], cascadeRanges[i + 1]);
+        renderer.renderView(scene, layers.view, shadingPipeline);
+    }
+
+    private FrustumCullingPreConditionState discardTerrain(MeshInstance<?> instance, MeshView<?> meshView) {
+        return meshView.mesh().getClass() == TerrainMesh.class ? DISCARD : CONTINUE;
+    }
+
+    private FrustumCullingPreConditionState staticCasters(MeshInstance<?> instance, MeshView<?> meshView) {
+        return instance.staticShadows() ? discardTerrain(instance, meshView) : DISCARD;
+    }
+
+    private FrustumCullingPreConditionState dynamicCasters(MeshInstance<?> instance, MeshView<?> meshView) {
+        return instance.staticShadows() ? DISCARD : discardTerrain(instance, meshView);
+    }
+
+    private void setUniforms(GLShaderProgram shader, CascadeLayers layers) {
+        try (MemoryStack stack = MemoryStack.stackPush()) {
+
+            FloatBuffer buffer = stack.mallocFloat(MAX_SHADOW_CASCADES_COUNT * MATRIX4_SIZEOF / Float.BYTES);
+
+            for (int i = 0; i < layers.count; i++) {
+                layers.matrices[i].get(i * 16, buffer);
+            }
+
+            buffer.limit(layers.count * 16);
+
+            shader.uniformMatrix4f(LIGHT_MATRICES_UNIFORM_NAME, false, buffer);
+            shader.uniformArrayInt(LAYERS_UNIFORM_NAME, layers.layers);
         }
     }
 
+    private void clearLayers(GLTexture2DArray texture, CascadeLayers layers) {
+        try (MemoryStack stack = MemoryStack.stackPush()) {
+            for (int i = 0; i < layers.count; i++) {
+                glClearTexSubImage(texture.handle(), 0, 0, 0, layers.layers[i],
+                        shadowMapSize, shadowMapSize, 1, GL_DEPTH_COMPONENT, GL_FLOAT, stack.floats(1.0f));
+            }
+        }
+    }
+
+    private void copyLayers(GLTexture2DArray src, GLTexture2DArray dst, CascadeLayers layers) {
+        for (int i = 0; i < layers.count; i++) {
+            final int layer = layers.layers[i];
+            glCopyImageSubData(src.handle(), GL_TEXTURE_2D_ARRAY, 0, 0, 0, layer,
+                    dst.handle(), GL_TEXTURE_2D_ARRAY, 0, 0, 0, layer, shadowMapSize, shadowMapSize, 1);
+        }
+    }
+
+    private int setupFramebuffer(GLTexture2DArray depthTexture, GLFramebuffer framebuffer, int shadowMapSize) {
+
+        depthTexture.reallocate(1, shadowMapSize, shadowMapSize, MAX_SHADOW_CASCADES_COUNT, GL_DEPTH_COMPONENT32);
+        depthTexture.wrapMode(Sampler.WrapMode.REPEAT).magFilter(Sampler.MagFilter.LINEAR).minFilter(Sampler.MinFilter.LINEAR_MIPMAP_LINEAR);
+
+        // A whole texture array is attached as a layered attachment
+        framebuffer.attach(GL_DEPTH_ATTACHMENT, depthTexture, 0);
+        framebuffer.ensureComplete();
+
+        return shadowMapSize;
+    }
+
     private float[] calculateCascadeRanges(Scene scene, Camera camera) {
 
         final float maxDistance = scene.environment().lighting().shadowsMaxDistance();
@@ -111,40 +336,58 @@ public class GLDirectionalShadowRenderer {
         return ranges;
     }
 
-    private GLShadowCascadeRenderer[] createShadowCascadeRenderers() {
-
-        GLShadowCascadeRenderer[] shadowCascadeRenderers = new GLShadowCascadeRenderer[MAX_SHADOW_CASCADES_COUNT];
-
-        for (int i = 0; i < MAX_SHADOW_CASCADES_COUNT; i++) {
-            shadowCascadeRenderers[i] = new GLShadowCascadeRenderer(context, shadingPipeline);
-        }
+    public void terminate() {
+        depthTexture.release();
+        framebuffer.release();
+        staticDepthTexture.release();
+        staticFramebuffer.release();
+        shadingPipeline.release();
+    }
 
-        return shadowCascadeRenderers;
+    private GLShadingPipeline createShadingPipeline() {
+        return new GLShadingPipeline(createShader());
     }
 
-    private GLTexture2D[] getDirectionalDepthTextures() {
+    private GLShaderProgram createShader() {
+
+        GLShaderProgram shader = new GLShaderProgram(context, "OpenGL dir shadows shader")
+                .attach(new GLShader(context, VERTEX_STAGE).source(RadonFiles.getPath("shaders/depth/directional_depth.vert")).compile())
+                .attach(new GLShader(context, FRAGMENT_STAGE).source(RadonFiles.getPath("shaders/depth/depth.frag")).compile());
 
-        GLTexture2D[] textures = new GLTexture2D[shadowCascadeRenderers.length];
+        final GLCapabilities capabilities = context.capabilities();
 
-        for (int i = 0; i < textures.length; i++) {
-            textures[i] = shadowCascadeRenderers[i].depthTexture();
+        // Without these extensions the layer of each instance can only be selected in a geometry shader
+        if (!capabilities.GL_ARB_shader_viewport_layer_array && !capabilities.GL_AMD_vertex_shader_layer) {
+            shader.attach(new GLShader(context, GEOMETRY_STAGE).source(RadonFiles.getPath("shaders/depth/directional_depth.geom")).compile());
         }
 
-        return textures;
+        return shader.link();
     }
 
-    public void terminate() {
-        Arrays.stream(shadowCascadeRenderers).forEach(GLShadowCascadeRenderer::terminate);
-    }
+    /**
+     * The cascades drawn by a layered view, in the order of its layers
+     */
+    private static final class CascadeLayers {
 
-    private GLShadingPipeline createShadingPipeline() {
-        return new GLShadingPipeline(createShader());
-    }
+        private final Matrix4fc[] matrices = new Matrix4fc[MAX_SHADOW_CASCADES_COUNT];
+        private final int[] layers = new int[MAX_SHADOW_CASCADES_COUNT];
+        private int count;
+        private int view = -1;
 
-    private GLShaderProgram createShader() {
-        return new GLShaderProgram(context, "OpenGL dir shadows shader")
-                .attach(new GLShader(context, VERTEX_STAGE).source(RadonFiles.getPath("shaders/depth/directional_depth.vert")).compile())
-                .attach(new GLShader(context, FRAGMENT_STAGE).source(RadonFiles.getPath("shaders/depth/depth.frag")).compile())
-                .link();
+        private void add(int cascade, Matrix4fc lightProjectionViewMatrix) {
+            matrices[count] = lightProjectionViewMatrix;
+            layers[count++] = cascade;
+        }
+
+        private void addView(GLMeshRenderer meshRenderer, FrustumCullingPreCondition preCondition) {
+            if (count > 0) {
+                view = meshRenderer.staticMeshRenderer().visibilitySet().addLayeredView(matrices, count, preCondition);
+            }
+        }
+
+        private void clear() {
+            count = 0;
+            view = -1;
+        }
     }
 }
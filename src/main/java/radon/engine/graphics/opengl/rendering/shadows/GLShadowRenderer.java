@@ -5,7 +5,7 @@ import radon.engine.graphics.opengl.GLContext;
 import radon.engine.graphics.opengl.buffers.GLBuffer;
 import radon.engine.graphics.opengl.rendering.renderers.GLMeshRenderer;
 import radon.engine.graphics.opengl.rendering.renderers.GLRenderer;
-import radon.engine.graphics.opengl.textures.GLTexture2D;
+import radon.engine.graphics.opengl.textures.GLTexture2DArray;
 import radon.engine.graphics.rendering.shadows.ShadowCascade;
 import radon.engine.scenes.Scene;
 import radon.engine.scenes.environment.SceneLighting;
@@ -30,7 +30,10 @@ public class GLShadowRenderer extends GLRenderer implements GLShadowsInfo {
         directionalShadowRenderer = new GLDirectionalShadowRenderer(context());
         shadowsBuffer = new GLBuffer(context()).name("SHADOWS BUFFER");
         shadowsBuffer.allocate(SHADOWS_BUFFER_SIZE);
-        shadowsBuffer.mapMemory();
+    }
+
+    public void addViews(Scene scene, GLMeshRenderer meshRenderer) {
+        directionalShadowRenderer.addViews(scene, meshRenderer);
     }
 
     public void render(Scene scene, GLMeshRenderer meshRenderer) {
@@ -58,8 +61,8 @@ public class GLShadowRenderer extends GLRenderer implements GLShadowsInfo {
     }
 
     @Override
-    public GLTexture2D[] dirShadowMaps() {
-        return directionalShadowRenderer.dirShadowMaps();
+    public GLTexture2DArray dirShadowMap() {
+        return directionalShadowRenderer.dirShadowMap();
     }
 
     private void updateShadowsBuffer(Scene scene) {
@@ -78,7 +81,7 @@ public class GLShadowRenderer extends GLRenderer implements GLShadowsInfo {
 
             buffer.putInt(SHADOWS_ENABLED_OFFSET, scene.renderInfo().shadowsEnabled() ? 1 : 0);
 
-            shadowsBuffer.copy(0, buffer.rewind());
+            shadowsBuffer.update(0, buffer.rewind());
         }
     }
 
@@ -87,7 +90,7 @@ public class GLShadowRenderer extends GLRenderer implements GLShadowsInfo {
         final ShadowCascade shadowCascade = directionalShadowRenderer.shadowCascades()[index];
 
         shadowCascade.lightProjectionViewMatrix().get(buffer).position(buffer.position() + MATRIX4_SIZEOF);
-        buffer.putLong(makeResident(directionalShadowRenderer.dirShadowMaps()[index]))
+        buffer.putLong(makeResident(directionalShadowRenderer.dirShadowMap()))
                 .putFloat(shadowCascade.farPlane())
                 .putFloat(0.0f); // Padding
     }
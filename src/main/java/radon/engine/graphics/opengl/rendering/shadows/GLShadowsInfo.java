@@ -1,14 +1,14 @@
 package radon.engine.graphics.opengl.rendering.shadows;
 
 import radon.engine.graphics.opengl.buffers.GLBuffer;
-import radon.engine.graphics.opengl.textures.GLTexture2D;
+import radon.engine.graphics.opengl.textures.GLTexture2DArray;
 
 import static radon.engine.util.types.DataType.*;
 
 /*
 struct ShadowCascade {
     mat4 lightMatrix;
-    layout(bindless_sampler) sampler2D shadowMap;
+    layout(bindless_sampler) sampler2DArray shadowMap;
     float farPlane;
     float _padding;
 };
@@ -31,6 +31,6 @@ public interface GLShadowsInfo {
 
     GLBuffer buffer();
 
-    GLTexture2D[] dirShadowMaps();
+    GLTexture2DArray dirShadowMap();
 
 }
@@ -40,7 +40,6 @@ public final class GLSkyboxStruct implements Resource {
     public GLSkyboxStruct(GLContext context) {
         this.uniformBuffer = new GLBuffer(context).name("Skybox Struct Uniform Buffer");
         uniformBuffer.allocate(SKYBOX_UNIFORM_BUFFER_SIZE);
-        uniformBuffer.mapMemory();
     }
 
     public GLSkyboxStruct update(Skybox skybox) {
@@ -64,7 +63,7 @@ public final class GLSkyboxStruct implements Resource {
 
             buffer.putInt(SKYBOX_PRESENT_OFFSET, skyboxPresent ? 1 : 0);
 
-            uniformBuffer.copy(0, buffer.rewind());
+            uniformBuffer.update(0, buffer.rewind());
         }
 
         return this;
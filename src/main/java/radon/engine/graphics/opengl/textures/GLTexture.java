@@ -276,6 +276,9 @@ public abstract class GLTexture extends GLObject implements Texture, Sampler {
 
         glDeleteTextures(handle());
 
+        // A reallocated texture gets a new handle, so it must be made resident again
+        residentHandle = NULL;
+
         allocated = false;
 
         setHandle(NULL);
@@ -0,0 +1,52 @@
+package radon.engine.graphics.opengl.textures;
+
+import radon.engine.graphics.opengl.GLContext;
+import radon.engine.graphics.textures.Texture2DArray;
+import radon.engine.images.PixelFormat;
+import radon.engine.logging.Log;
+
+import static org.lwjgl.opengl.GL30C.GL_TEXTURE_2D_ARRAY;
+import static org.lwjgl.opengl.GL45C.glCreateTextures;
+import static org.lwjgl.opengl.GL45C.glTextureStorage3D;
+
+public final class GLTexture2DArray extends GLTexture implements Texture2DArray {
+
+    private int layers;
+
+    public GLTexture2DArray(GLContext context) {
+        super(context, GL_TEXTURE_2D_ARRAY);
+    }
+
+    @Override
+    public int layers() {
+        return layers;
+    }
+
+    public void allocate(int mipLevels, int width, int height, int layers, int internalFormat) {
+        if(allocated) {
+            Log.warning("Texture has been already allocated. Use reallocate instead");
+            return;
+        }
+        glTextureStorage3D(handle(), mipLevels, internalFormat, width, height, layers);
+        this.layers = layers;
+        allocated = true;
+    }
+
+    @Override
+    public void allocate(int mipLevels, int width, int height, int layers, PixelFormat internalFormat) {
+        allocate(mipLevels, width, height, layers, mapper().mapToSizedInternalFormat(internalFormat));
+    }
+
+    public void reallocate(int mipLevels, int width, int height, int layers, int internalPixelFormat) {
+        if(allocated) {
+            free();
+            setHandle(glCreateTextures(target));
+        }
+        allocate(mipLevels, width, height, layers, internalPixelFormat);
+    }
+
+    @Override
+    public void reallocate(int mipLevels, int width, int height, int layers, PixelFormat internalPixelFormat) {
+        reallocate(mipLevels, width, height, layers, mapper().mapToSizedInternalFormat(internalPixelFormat));
+    }
+}
@@ -10,6 +10,7 @@ import radon.engine.meshes.vertices.VertexAttributeList.VertexAttributeIterator;
 import static org.lwjgl.opengl.GL30.glDeleteVertexArrays;
 import static org.lwjgl.opengl.GL45.*;
 import static radon.engine.meshes.vertices.VertexAttribute.MATRIX4F;
+import static radon.engine.util.types.DataType.FLOAT16;
 import static radon.engine.util.types.DataType.FLOAT32_SIZEOF;
 
 public final class GLVertexArray extends GLObject {
@@ -57,7 +58,7 @@ public final class GLVertexArray extends GLObject {
 
     private void setVertexAttribute(int binding, VertexAttribute attribute, int location, int offset, int stride) {
 
-        if (attribute.dataType().decimal()) {
+        if (attribute.dataType().decimal() || attribute.normalized()) {
             setAttributef(binding, location, attribute, offset);
         } else {
             setAttributei(binding, location, attribute, offset);
@@ -90,7 +91,10 @@ public final class GLVertexArray extends GLObject {
 
             glEnableVertexArrayAttrib(handle(), location);
             glVertexArrayAttribBinding(handle(), location, binding);
-            glVertexArrayAttribFormat(handle(), location, attribute.size(), mapToAPI(attribute.dataType()), false, offset);
+            // Half floats are uploaded from floats everywhere else, so they map to GL_FLOAT
+            final int dataType = attribute.dataType() == FLOAT16 ? GL_HALF_FLOAT : mapToAPI(attribute.dataType());
+
+            glVertexArrayAttribFormat(handle(), location, attribute.size(), dataType, attribute.normalized(), offset);
         }
     }
 
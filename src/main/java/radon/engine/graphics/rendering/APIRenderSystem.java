@@ -15,4 +15,8 @@ public interface APIRenderSystem {
     void render(Scene scene);
 
     void end();
+
+    default CharSequence debugReport() {
+        return null;
+    }
 }
@@ -0,0 +1,95 @@
+package radon.engine.graphics.rendering;
+
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinWorkerThread;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static java.lang.Math.max;
+import static radon.engine.core.RadonConfigConstants.GRAPHICS_MULTITHREADING_ENABLED;
+
+/**
+ * Core sized work stealing pool for CPU side rendering jobs. Jobs always run to completion before returning
+ */
+public final class RenderJobScheduler {
+
+    public static final int PARALLELISM = Runtime.getRuntime().availableProcessors();
+    public static final int DEFAULT_PARALLEL_THRESHOLD = 1024;
+    public static final int DEFAULT_MIN_CHUNK_SIZE = 256;
+
+    private static final int CHUNKS_PER_WORKER = 4;
+    private static final AtomicInteger WORKER_COUNT = new AtomicInteger();
+    private static final ForkJoinPool POOL = new ForkJoinPool(PARALLELISM, RenderJobScheduler::newWorkerThread, null, false);
+
+    public static boolean parallel(int count, int threshold) {
+        return GRAPHICS_MULTITHREADING_ENABLED && PARALLELISM > 1 && count >= threshold;
+    }
+
+    public static void parallelFor(int begin, int end, RangeJob job) {
+        parallelFor(begin, end, DEFAULT_PARALLEL_THRESHOLD, DEFAULT_MIN_CHUNK_SIZE, job);
+    }
+
+    public static void parallelFor(int begin, int end, int threshold, int minChunkSize, RangeJob job) {
+
+        final int count = end - begin;
+
+        if (count <= 0) {
+            return;
+        }
+
+        if (!parallel(count, threshold)) {
+            job.run(begin, end);
+            return;
+        }
+
+        POOL.invoke(new RangeTask(job, begin, end, chunkSize(count, minChunkSize)));
+    }
+
+    public static int chunkSize(int count, int minChunkSize) {
+        final int chunks = PARALLELISM * CHUNKS_PER_WORKER;
+        return max((count + chunks - 1) / chunks, max(minChunkSize, 1));
+    }
+
+    private static ForkJoinWorkerThread newWorkerThread(ForkJoinPool pool) {
+        ForkJoinWorkerThread thread = ForkJoinPool.defaultForkJoinWorkerThreadFactory.newThread(pool);
+        thread.setName("Radon Render Worker " + WORKER_COUNT.getAndIncrement());
+        thread.setDaemon(true);
+        return thread;
+    }
+
+    private RenderJobScheduler() {}
+
+    @FunctionalInterface
+    public interface RangeJob {
+
+        void run(int begin, int end);
+    }
+
+    private static final class RangeTask extends RecursiveAction {
+
+        private final RangeJob job;
+        private final int begin;
+        private final int end;
+        private final int chunkSize;
+
+        private RangeTask(RangeJob job, int begin, int end, int chunkSize) {
+            this.job = job;
+            this.begin = begin;
+            this.end = end;
+            this.chunkSize = chunkSize;
+        }
+
+        @Override
+        protected void compute() {
+
+            if (end - begin <= chunkSize) {
+                job.run(begin, end);
+                return;
+            }
+
+            final int middle = (begin + end) >>> 1;
+
+            invokeAll(new RangeTask(job, begin, middle, chunkSize), new RangeTask(job, middle, end, chunkSize));
+        }
+    }
+}
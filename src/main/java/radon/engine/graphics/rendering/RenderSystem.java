@@ -41,4 +41,9 @@ public final class RenderSystem extends RadonSystem {
         apiRenderSystem.terminate();
         apiRenderSystem = null;
     }
+
+    @Override
+    public CharSequence debugReport() {
+        return apiRenderSystem.debugReport();
+    }
 }
@@ -1,6 +1,7 @@
 package radon.engine.graphics.rendering.culling;
 
 import org.joml.FrustumIntersection;
+import org.joml.Matrix4fc;
 import radon.engine.scenes.components.meshes.MeshInstanceList;
 
 public interface FrustumCuller {
@@ -9,8 +10,26 @@ public interface FrustumCuller {
 
     void terminate();
 
+    FrustumCullingMode mode();
+
+    default CharSequence debugReport() {
+        return null;
+    }
+
     int performCullingCPU(FrustumIntersection frustum, MeshInstanceList<?> instances);
 
     int performCullingCPU(FrustumIntersection frustum, MeshInstanceList<?> instances, FrustumCullingPreCondition preCondition);
 
+    /**
+     * Returns the maximum number of draw commands written into the command buffer
+     */
+    int performCulling(Matrix4fc projectionViewMatrix, FrustumIntersection frustum,
+                       MeshInstanceList<?> instances, FrustumCullingPreCondition preCondition);
+
+    /**
+     * Culls the instances against every view of the set in a single sweep, storing the draw range of each view in it.
+     * The command buffer must have room for {@code instances.numMeshViews()} draws per view
+     */
+    void performCulling(VisibilitySet visibilitySet, MeshInstanceList<?> instances);
+
 }
@@ -0,0 +1,7 @@
+package radon.engine.graphics.rendering.culling;
+
+public enum FrustumCullingMode {
+
+    CPU,
+    GPU
+}
@@ -0,0 +1,547 @@
+package radon.engine.graphics.rendering.culling;
+
+import org.joml.Matrix4f;
+import org.joml.Matrix4fc;
+import org.joml.Vector3fc;
+import radon.engine.graphics.rendering.RenderJobScheduler;
+import radon.engine.meshes.Mesh;
+import radon.engine.util.geometry.IAABB;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+import static java.lang.Math.*;
+import static radon.engine.util.types.DataType.UINT32_SIZEOF;
+
+/**
+ * Small software depth buffer of the occluders of a view, to cull what they hide on the CPU. It follows the masked
+ * occlusion culling algorithm: the screen is split into tiles of {@link #TILE_WIDTH}x{@link #TILE_HEIGHT} pixels, and
+ * instead of a depth per pixel, each tile keeps a working layer, made of a coverage mask and the farthest depth of the
+ * triangles drawn into it, and a reference layer with the farthest depth of the whole tile. Each row of a tile is a
+ * 32 bit mask, so a triangle covers a row of 32 pixels with a few integer operations.
+ * <p>
+ * Occluders are transformed in parallel, and then rasterized in parallel too, one band of tile rows per job. Tests
+ * only read the buffer, so they can be run from any thread once it has been rendered
+ */
+public final class MaskedOcclusionBuffer {
+
+    public static final int TILE_WIDTH = Integer.SIZE;
+    public static final int TILE_HEIGHT = 8;
+
+    private static final int FULL_ROW = -1;
+    private static final float FAR_DEPTH = 1.0f;
+    // x, y and depth of the 3 vertices of each screen space triangle
+    private static final int TRIANGLE_STRIDE = 9;
+    // A triangle clipped by the near plane becomes 2 triangles at most
+    private static final int MAX_CLIPPED_TRIANGLES = 2;
+    private static final int CLIPPED_VERTICES_COUNT = 4;
+    private static final int INITIAL_OCCLUDERS_CAPACITY = 64;
+    private static final int MIN_OCCLUDERS_PER_JOB = 8;
+    private static final int MIN_TILE_ROWS_PER_JOB = 2;
+
+    private static final ThreadLocal<Scratch> SCRATCH = ThreadLocal.withInitial(Scratch::new);
+
+    private final int width;
+    private final int height;
+    private final int tilesX;
+    private final int tilesY;
+    // TILE_HEIGHT row masks of the working layer of every tile
+    private final int[] masks;
+    private final float[] layerDepths;
+    private final float[] referenceDepths;
+    private final Matrix4f projectionViewMatrix;
+    private final float[] projectionView;
+    private Matrix4fc[] occluderMatrices;
+    private Mesh[] occluderMeshes;
+    private int[] triangleOffsets;
+    private int[] triangleCounts;
+    private int occluderCount;
+    private float[] triangles;
+
+    /**
+     * Creates a buffer of at least the given size, rounded up to whole tiles
+     */
+    public MaskedOcclusionBuffer(int width, int height) {
+        tilesX = max((width + TILE_WIDTH - 1) / TILE_WIDTH, 1);
+        tilesY = max((height + TILE_HEIGHT - 1) / TILE_HEIGHT, 1);
+        this.width = tilesX * TILE_WIDTH;
+        this.height = tilesY * TILE_HEIGHT;
+        masks = new int[tilesX * tilesY * TILE_HEIGHT];
+        layerDepths = new float[tilesX * tilesY];
+        referenceDepths = new float[tilesX * tilesY];
+        projectionViewMatrix = new Matrix4f();
+        projectionView = new float[16];
+        occluderMatrices = new Matrix4fc[INITIAL_OCCLUDERS_CAPACITY];
+        occluderMeshes = new Mesh[INITIAL_OCCLUDERS_CAPACITY];
+        triangleOffsets = new int[INITIAL_OCCLUDERS_CAPACITY];
+        triangleCounts = new int[INITIAL_OCCLUDERS_CAPACITY];
+        triangles = new float[0];
+    }
+
+    public int width() {
+        return width;
+    }
+
+    public int height() {
+        return height;
+    }
+
+    public int occluderCount() {
+        return occluderCount;
+    }
+
+    public Matrix4fc projectionViewMatrix() {
+        return projectionViewMatrix;
+    }
+
+    /**
+     * Clears this buffer and its occluders, and sets the view the next ones will be rendered from
+     */
+    public void begin(Matrix4fc projectionViewMatrix) {
+
+        this.projectionViewMatrix.set(projectionViewMatrix);
+        projectionViewMatrix.get(projectionView);
+
+        Arrays.fill(masks, 0);
+        Arrays.fill(layerDepths, 0.0f);
+        Arrays.fill(referenceDepths, FAR_DEPTH);
+        Arrays.fill(occluderMatrices, 0, occluderCount, null);
+        Arrays.fill(occluderMeshes, 0, occluderCount, null);
+
+        occluderCount = 0;
+    }
+
+    /**
+     * Adds an occluder to be drawn in the next {@link #render()}. The model matrix is read when it is rendered
+     */
+    public void addOccluder(Matrix4fc modelMatrix, Mesh mesh) {
+
+        if (occluderCount == occluderMeshes.length) {
+            final int capacity = occluderCount * 2;
+            occluderMatrices = Arrays.copyOf(occluderMatrices, capacity);
+            occluderMeshes = Arrays.copyOf(occluderMeshes, capacity);
+            triangleOffsets = Arrays.copyOf(triangleOffsets, capacity);
+            triangleCounts = Arrays.copyOf(triangleCounts, capacity);
+        }
+
+        occluderMatrices[occluderCount] = modelMatrix;
+        occluderMeshes[occluderCount] = mesh;
+
+        ++occluderCount;
+    }
+
+    /**
+     * Rasterizes the occluders added since the last {@link #begin(Matrix4fc)}
+     */
+    public void render() {
+
+        if (occluderCount == 0) {
+            return;
+        }
+
+        int triangleCount = 0;
+
+        for (int i = 0; i < occluderCount; i++) {
+            triangleOffsets[i] = triangleCount * TRIANGLE_STRIDE;
+            triangleCount += occluderMeshes[i].indexCount() / 3 * MAX_CLIPPED_TRIANGLES;
+        }
+
+        if (triangles.length < triangleCount * TRIANGLE_STRIDE) {
+            triangles = new float[triangleCount * TRIANGLE_STRIDE];
+        }
+
+        RenderJobScheduler.parallelFor(0, occluderCount, MIN_OCCLUDERS_PER_JOB * 2, MIN_OCCLUDERS_PER_JOB, this::transformOccluders);
+
+        RenderJobScheduler.parallelFor(0, tilesY, MIN_TILE_ROWS_PER_JOB * 2, MIN_TILE_ROWS_PER_JOB, this::rasterizeTileRows);
+    }
+
+    /**
+     * Returns whether the given box, in the space of the model matrix, may be visible. It is hidden only if it is
+     * behind the reference layer of every tile it covers
+     */
+    public boolean testAab(Matrix4fc modelMatrix, IAABB bounds) {
+
+        final Vector3fc min = bounds.min();
+        final Vector3fc max = bounds.max();
+        final float[] pv = projectionView;
+
+        float minX = Float.POSITIVE_INFINITY;
+        float minY = Float.POSITIVE_INFINITY;
+        float maxX = Float.NEGATIVE_INFINITY;
+        float maxY = Float.NEGATIVE_INFINITY;
+        float minDepth = Float.POSITIVE_INFINITY;
+
+        for (int i = 0; i < 8; i++) {
+
+            final float localX = (i & 1) == 0 ? min.x() : max.x();
+            final float localY = (i & 2) == 0 ? min.y() : max.y();
+            final float localZ = (i & 4) == 0 ? min.z() : max.z();
+
+            final float x = modelMatrix.m00() * localX + modelMatrix.m10() * localY + modelMatrix.m20() * localZ + modelMatrix.m30();
+            final float y = modelMatrix.m01() * localX + modelMatrix.m11() * localY + modelMatrix.m21() * localZ + modelMatrix.m31();
+            final float z = modelMatrix.m02() * localX + modelMatrix.m12() * localY + modelMatrix.m22() * localZ + modelMatrix.m32();
+
+            final float clipX = pv[0] * x + pv[4] * y + pv[8] * z + pv[12];
+            final float clipY = pv[1] * x + pv[5] * y + pv[9] * z + pv[13];
+            final float clipZ = pv[2] * x + pv[6] * y + pv[10] * z + pv[14];
+            final float clipW = pv[3] * x + pv[7] * y + pv[11] * z + pv[15];
+
+            // Crosses the near plane
+            if (clipZ < -clipW || clipW <= 0.0f) {
+                return true;
+            }
+
+            final float invW = 1.0f / clipW;
+
+            final float screenX = (clipX * invW * 0.5f + 0.5f) * width;
+            final float screenY = (clipY * invW * 0.5f + 0.5f) * height;
+
+            minX = min(minX, screenX);
+            minY = min(minY, screenY);
+            maxX = max(maxX, screenX);
+            maxY = max(maxY, screenY);
+            minDepth = min(minDepth, clipZ * invW * 0.5f + 0.5f);
+        }
+
+        // Out of the screen, where there are no occluders
+        if (maxX < 0.0f || maxY < 0.0f || minX > width || minY > height) {
+            return true;
+        }
+
+        final int firstTileX = clamp((int) minX / TILE_WIDTH, 0, tilesX - 1);
+        final int lastTileX = clamp((int) maxX / TILE_WIDTH, 0, tilesX - 1);
+        final int firstTileY = clamp((int) minY / TILE_HEIGHT, 0, tilesY - 1);
+        final int lastTileY = clamp((int) maxY / TILE_HEIGHT, 0, tilesY - 1);
+
+        for (int tileY = firstTileY; tileY <= lastTileY; tileY++) {
+            for (int tileX = firstTileX; tileX <= lastTileX; tileX++) {
+                if (minDepth <= referenceDepths[tileY * tilesX + tileX]) {
+                    return true;
+                }
+            }
+        }
+
+        return false;
+    }
+
+    private void transformOccluders(int begin, int end) {
+
+        final Scratch scratch = SCRATCH.get();
+
+        for (int i = begin; i < end; i++) {
+
+            final Mesh mesh = occluderMeshes[i];
+
+            final float[] vertices = scratch.clipVertices(mesh.vertexCount());
+
+            projectionViewMatrix.mul(occluderMatrices[i], scratch.modelViewProjection);
+
+            transformVertices(mesh, scratch.modelViewProjection, vertices);
+
+            final ByteBuffer indices = mesh.indexData();
+            final int indexCount = mesh.indexCount();
+
+            int offset = triangleOffsets[i];
+
+            for (int index = 0; index + 2 < indexCount; index += 3) {
+
+                final int a = indices.getInt(index * UINT32_SIZEOF);
+                final int b = indices.getInt((index + 1) * UINT32_SIZEOF);
+                final int c = indices.getInt((index + 2) * UINT32_SIZEOF);
+
+                offset = clipTriangle(vertices, a, b, c, offset, scratch.clippedVertices);
+            }
+
+            triangleCounts[i] = (offset - triangleOffsets[i]) / TRIANGLE_STRIDE;
+        }
+    }
+
+    private void transformVertices(Mesh mesh, Matrix4fc m, float[] vertices) {
+
+        final ByteBuffer vertexData = mesh.vertexData();
+        final int stride = mesh.stride();
+        final int vertexCount = mesh.vertexCount();
+
+        for (int i = 0, offset = 0; i < vertexCount; i++, offset += 4) {
+
+            final int position = i * stride + Mesh.VERTEX_POSITION_OFFSET;
+
+            final float x = vertexData.getFloat(position);
+            final float y = vertexData.getFloat(position + 4);
+            final float z = vertexData.getFloat(position + 8);
+
+            vertices[offset] = m.m00() * x + m.m10() * y + m.m20() * z + m.m30();
+            vertices[offset + 1] = m.m01() * x + m.m11() * y + m.m21() * z + m.m31();
+            vertices[offset + 2] = m.m02() * x + m.m12() * y + m.m22() * z + m.m32();
+            vertices[offset + 3] = m.m03() * x + m.m13() * y + m.m23() * z + m.m33();
+        }
+    }
+
+    // Clips the triangle against the near plane and writes the resulting screen space triangles from the given offset
+    private int clipTriangle(float[] vertices, int a, int b, int c, int offset, float[] clipped) {
+
+        final int[] corners = {a * 4, b * 4, c * 4};
+
+        int count = 0;
+
+        for (int i = 0; i < 3; i++) {
+
+            final int current = corners[i];
+            final int next = corners[(i + 1) % 3];
+
+            // Distance to the near plane, z >= -w
+            final float currentDistance = vertices[current + 2] + vertices[current + 3];
+            final float nextDistance = vertices[next + 2] + vertices[next + 3];
+
+            if (currentDistance >= 0.0f) {
+                System.arraycopy(vertices, current, clipped, count++ * 4, 4);
+            }
+
+            if ((currentDistance >= 0.0f) != (nextDistance >= 0.0f)) {
+
+                final float t = currentDistance / (currentDistance - nextDistance);
+
+                for (int j = 0; j < 4; j++) {
+                    clipped[count * 4 + j] = vertices[current + j] + (vertices[next + j] - vertices[current + j]) * t;
+                }
+
+                ++count;
+            }
+        }
+
+        for (int i = 2; i < count; i++) {
+            offset = projectTriangle(clipped, 0, (i - 1) * 4, i * 4, offset);
+        }
+
+        return offset;
+    }
+
+    private int projectTriangle(float[] clipped, int a, int b, int c, int offset) {
+
+        if (clipped[a + 3] <= 0.0f || clipped[b + 3] <= 0.0f || clipped[c + 3] <= 0.0f) {
+            return offset;
+        }
+
+        final float[] t = triangles;
+
+        project(clipped, a, t, offset);
+        project(clipped, b, t, offset + 3);
+        project(clipped, c, t, offset + 6);
+
+        final float area = (t[offset + 3] - t[offset]) * (t[offset + 7] - t[offset + 1])
+                - (t[offset + 6] - t[offset]) * (t[offset + 4] - t[offset + 1]);
+
+        if (area == 0.0f) {
+            return offset;
+        }
+
+        // Both faces occlude, but the rasterizer expects counterclockwise triangles
+        if (area < 0.0f) {
+            for (int i = 0; i < 3; i++) {
+                final float swap = t[offset + 3 + i];
+                t[offset + 3 + i] = t[offset + 6 + i];
+                t[offset + 6 + i] = swap;
+            }
+        }
+
+        final float minX = min(t[offset], min(t[offset + 3], t[offset + 6]));
+        final float maxX = max(t[offset], max(t[offset + 3], t[offset + 6]));
+        final float minY = min(t[offset + 1], min(t[offset + 4], t[offset + 7]));
+        final float maxY = max(t[offset + 1], max(t[offset + 4], t[offset + 7]));
+        final float minDepth = min(t[offset + 2], min(t[offset + 5], t[offset + 8]));
+
+        if (maxX < 0.0f || maxY < 0.0f || minX > width || minY > height || minDepth >= FAR_DEPTH) {
+            return offset;
+        }
+
+        return offset + TRIANGLE_STRIDE;
+    }
+
+    private void project(float[] clipped, int vertex, float[] dest, int offset) {
+        final float invW = 1.0f / clipped[vertex + 3];
+        dest[offset] = (clipped[vertex] * invW * 0.5f + 0.5f) * width;
+        dest[offset + 1] = (clipped[vertex + 1] * invW * 0.5f + 0.5f) * height;
+        dest[offset + 2] = clipped[vertex + 2] * invW * 0.5f + 0.5f;
+    }
+
+    private void rasterizeTileRows(int beginTileRow, int endTileRow) {
+
+        final Scratch scratch = SCRATCH.get();
+
+        for (int i = 0; i < occluderCount; i++) {
+
+            final int end = triangleOffsets[i] + triangleCounts[i] * TRIANGLE_STRIDE;
+
+            for (int triangle = triangleOffsets[i]; triangle < end; triangle += TRIANGLE_STRIDE) {
+                rasterizeTriangle(triangle, beginTileRow, endTileRow, scratch);
+            }
+        }
+    }
+
+    private void rasterizeTriangle(int triangle, int beginTileRow, int endTileRow, Scratch scratch) {
+
+        final float[] t = triangles;
+
+        final float x0 = t[triangle], y0 = t[triangle + 1], z0 = t[triangle + 2];
+        final float x1 = t[triangle + 3], y1 = t[triangle + 4], z1 = t[triangle + 5];
+        final float x2 = t[triangle + 6], y2 = t[triangle + 7], z2 = t[triangle + 8];
+
+        // Pixel rows and columns whose centers may be inside of the triangle
+        final int firstRow = max((int) ceil(min(y0, min(y1, y2)) - 0.5f), beginTileRow * TILE_HEIGHT);
+        final int lastRow = min((int) floor(max(y0, max(y1, y2)) - 0.5f), endTileRow * TILE_HEIGHT - 1);
+        final int firstColumn = max((int) ceil(min(x0, min(x1, x2)) - 0.5f), 0);
+        final int lastColumn = min((int) floor(max(x0, max(x1, x2)) - 0.5f), width - 1);
+
+        if (firstRow > lastRow || firstColumn > lastColumn) {
+            return;
+        }
+
+        // Edge functions a * x + b * y + c, positive inside of the triangle
+        final float a0 = y0 - y1, b0 = x1 - x0, c0 = -(a0 * x0 + b0 * y0);
+        final float a1 = y1 - y2, b1 = x2 - x1, c1 = -(a1 * x1 + b1 * y1);
+        final float a2 = y2 - y0, b2 = x0 - x2, c2 = -(a2 * x2 + b2 * y2);
+
+        // Depth plane, depth = dzdx * x + dzdy * y + zc
+        final float area = (x1 - x0) * (y2 - y0) - (x2 - x0) * (y1 - y0);
+        final float dzdx = ((z1 - z0) * (y2 - y0) - (z2 - z0) * (y1 - y0)) / area;
+        final float dzdy = ((x1 - x0) * (z2 - z0) - (x2 - x0) * (z1 - z0)) / area;
+        final float zc = z0 - dzdx * x0 - dzdy * y0;
+        final float maxDepth = max(z0, max(z1, z2));
+
+        final int[] spanBegins = scratch.spanBegins;
+        final int[] spanEnds = scratch.spanEnds;
+        final int[] rowMasks = scratch.rowMasks;
+
+        for (int tileY = firstRow / TILE_HEIGHT; tileY <= lastRow / TILE_HEIGHT; tileY++) {
+
+            final int tileRow0 = tileY * TILE_HEIGHT;
+
+            // The span of each pixel row is computed once for all the tiles of the row
+            for (int row = 0; row < TILE_HEIGHT; row++) {
+
+                final int pixelRow = tileRow0 + row;
+
+                spanBegins[row] = 1;
+                spanEnds[row] = 0;
+
+                if (pixelRow < firstRow || pixelRow > lastRow) {
+                    continue;
+                }
+
+                final float y = pixelRow + 0.5f;
+
+                float left = Float.NEGATIVE_INFINITY;
+                float right = Float.POSITIVE_INFINITY;
+
+                left = edgeLeft(a0, -(b0 * y + c0), left);
+                left = edgeLeft(a1, -(b1 * y + c1), left);
+                left = edgeLeft(a2, -(b2 * y + c2), left);
+                right = edgeRight(a0, -(b0 * y + c0), right);
+                right = edgeRight(a1, -(b1 * y + c1), right);
+                right = edgeRight(a2, -(b2 * y + c2), right);
+
+                spanBegins[row] = max((int) ceil(left - 0.5f), firstColumn);
+                spanEnds[row] = min((int) floor(right - 0.5f), lastColumn);
+            }
+
+            final float tileY0 = tileRow0;
+
+            for (int tileX = firstColumn / TILE_WIDTH; tileX <= lastColumn / TILE_WIDTH; tileX++) {
+
+                final int tileX0 = tileX * TILE_WIDTH;
+
+                int coverage = 0;
+
+                for (int row = 0; row < TILE_HEIGHT; row++) {
+
+                    final int begin = max(spanBegins[row] - tileX0, 0);
+                    final int end = min(spanEnds[row] - tileX0, TILE_WIDTH - 1);
+
+                    rowMasks[row] = begin <= end ? (FULL_ROW >>> (TILE_WIDTH - 1 - end)) & (FULL_ROW << begin) : 0;
+
+                    coverage |= rowMasks[row];
+                }
+
+                if (coverage == 0) {
+                    continue;
+                }
+
+                // Farthest depth of the triangle plane over the tile
+                final float tileDepth = min(zc
+                        + dzdx * (dzdx > 0.0f ? tileX0 + TILE_WIDTH : tileX0)
+                        + dzdy * (dzdy > 0.0f ? tileY0 + TILE_HEIGHT : tileY0), maxDepth);
+
+                updateTile(tileY * tilesX + tileX, rowMasks, tileDepth);
+            }
+        }
+    }
+
+    // a * x >= rhs
+    private static float edgeLeft(float a, float rhs, float left) {
+        return a > 0.0f ? max(left, rhs / a) : a == 0.0f && rhs > 0.0f ? Float.POSITIVE_INFINITY : left;
+    }
+
+    private static float edgeRight(float a, float rhs, float right) {
+        return a < 0.0f ? min(right, rhs / a) : right;
+    }
+
+    private void updateTile(int tile, int[] rowMasks, float depth) {
+
+        float referenceDepth = referenceDepths[tile];
+
+        // Behind every pixel of the tile already
+        if (depth >= referenceDepth) {
+            return;
+        }
+
+        float layerDepth = layerDepths[tile];
+
+        final int maskOffset = tile * TILE_HEIGHT;
+
+        // Much closer than the working layer, which is discarded, so it does not hold back the new occluders
+        if (layerDepth - depth > referenceDepth - layerDepth) {
+            Arrays.fill(masks, maskOffset, maskOffset + TILE_HEIGHT, 0);
+            layerDepth = 0.0f;
+        }
+
+        layerDepth = max(layerDepth, depth);
+
+        boolean full = true;
+
+        for (int row = 0; row < TILE_HEIGHT; row++) {
+            masks[maskOffset + row] |= rowMasks[row];
+            full &= masks[maskOffset + row] == FULL_ROW;
+        }
+
+        // The working layer covers the whole tile, so it becomes the reference layer
+        if (full) {
+            referenceDepth = min(referenceDepth, layerDepth);
+            layerDepth = 0.0f;
+            Arrays.fill(masks, maskOffset, maskOffset + TILE_HEIGHT, 0);
+        }
+
+        referenceDepths[tile] = referenceDepth;
+        layerDepths[tile] = layerDepth;
+    }
+
+    private static int clamp(int value, int min, int max) {
+        return max(min, min(value, max));
+    }
+
+    private static final class Scratch {
+
+        private final Matrix4f modelViewProjection = new Matrix4f();
+        private final float[] clippedVertices = new float[CLIPPED_VERTICES_COUNT * 4];
+        private final int[] spanBegins = new int[TILE_HEIGHT];
+        private final int[] spanEnds = new int[TILE_HEIGHT];
+        private final int[] rowMasks = new int[TILE_HEIGHT];
+        private float[] clipVertices = new float[0];
+
+        private float[] clipVertices(int vertexCount) {
+            if (clipVertices.length < vertexCount * 4) {
+                clipVertices = new float[vertexCount * 4];
+            }
+            return clipVertices;
+        }
+    }
+}
@@ -0,0 +1,8 @@
+package radon.engine.graphics.rendering.culling;
+
+public enum OcclusionCullingMode {
+
+    DISABLED,
+    GPU,
+    CPU
+}
@@ -0,0 +1,285 @@
+package radon.engine.graphics.rendering.culling;
+
+import org.joml.FrustumIntersection;
+import org.joml.Matrix4f;
+import org.joml.Matrix4fc;
+import org.joml.Vector3f;
+import radon.engine.logging.Log;
+
+import java.util.Arrays;
+
+import static java.lang.Math.max;
+import static java.lang.Math.min;
+import static java.util.Objects.requireNonNull;
+
+/**
+ * The views that have to be culled in a frame. All of them are culled together in a single sweep over the instances,
+ * and each view gets its own compacted draw list in a separate region of the command buffer
+ */
+public final class VisibilitySet {
+
+    public static final int MAX_LAYER_COUNT = Integer.SIZE;
+
+    private static final int INITIAL_CAPACITY = 8;
+    private static final int FRUSTUM_CORNERS_COUNT = 8;
+    private static final float MIN_UNION_SIZE = 1e-6f;
+
+    private Matrix4f[] projectionViewMatrices;
+    private FrustumIntersection[] frustums;
+    private FrustumCullingPreCondition[] preConditions;
+    private int[] drawOffsets;
+    private int[] drawCounts;
+    private int[] layerCounts;
+    private boolean[] layers;
+    private MaskedOcclusionBuffer[] occlusionBuffers;
+    private float[] lodScales;
+    private int viewCount;
+    private int lodView;
+    private final Vector3f corner;
+    private final Vector3f unionMin;
+    private final Vector3f unionMax;
+    private final Matrix4f union;
+
+    public VisibilitySet() {
+        projectionViewMatrices = new Matrix4f[0];
+        frustums = new FrustumIntersection[0];
+        preConditions = new FrustumCullingPreCondition[0];
+        drawOffsets = new int[0];
+        drawCounts = new int[0];
+        layerCounts = new int[0];
+        layers = new boolean[0];
+        occlusionBuffers = new MaskedOcclusionBuffer[0];
+        lodScales = new float[0];
+        lodView = -1;
+        corner = new Vector3f();
+        unionMin = new Vector3f();
+        unionMax = new Vector3f();
+        union = new Matrix4f();
+        reserve(INITIAL_CAPACITY);
+    }
+
+    /**
+     * Adds a view to this set and returns its index
+     */
+    public int addView(Matrix4fc projectionViewMatrix, FrustumCullingPreCondition preCondition) {
+
+        if (viewCount == projectionViewMatrices.length) {
+            reserve(viewCount * 2);
+        }
+
+        final int view = viewCount++;
+
+        projectionViewMatrices[view].set(projectionViewMatrix);
+        frustums[view].set(projectionViewMatrix);
+        preConditions[view] = requireNonNull(preCondition);
+        drawOffsets[view] = 0;
+        drawCounts[view] = 0;
+        layerCounts[view] = 0;
+        layers[view] = false;
+        occlusionBuffers[view] = null;
+        // The y row of the projection, which scales the y axis of the view into clip space
+        lodScales[view] = (float) Math.sqrt(projectionViewMatrix.m01() * projectionViewMatrix.m01()
+                + projectionViewMatrix.m11() * projectionViewMatrix.m11()
+                + projectionViewMatrix.m21() * projectionViewMatrix.m21());
+
+        return view;
+    }
+
+    /**
+     * Adds a view that is drawn into several layers at once, like the cascades of a shadow map, and returns its index.
+     * It is culled against the union of the layer frustums, and every draw is tagged with the mask of the layers it
+     * is visible in. The layers take the next view indices, and their regions of the command buffer hold the
+     * instances of the draws, one per visible layer. Layers must be orthographic
+     */
+    public int addLayeredView(Matrix4fc[] layerProjectionViewMatrices, int layerCount, FrustumCullingPreCondition preCondition) {
+
+        if (layerCount <= 0 || layerCount > MAX_LAYER_COUNT) {
+            Log.error("Layered views must have between 1 and " + MAX_LAYER_COUNT + " layers, but got " + layerCount);
+            return -1;
+        }
+
+        final int view = addView(unionOf(layerProjectionViewMatrices, layerCount), preCondition);
+
+        layerCounts[view] = layerCount;
+
+        for (int i = 0; i < layerCount; i++) {
+            final int layer = addView(layerProjectionViewMatrices[i], FrustumCullingPreCondition.NO_PRECONDITION);
+            layers[layer] = true;
+        }
+
+        return view;
+    }
+
+    public int viewCount() {
+        return viewCount;
+    }
+
+    public boolean isEmpty() {
+        return viewCount == 0;
+    }
+
+    /**
+     * Returns the number of layers of the view, or 0 if it is not a layered view
+     */
+    public int layerCount(int view) {
+        return layerCounts[view];
+    }
+
+    /**
+     * Returns whether the view is one of the layers of a layered view. Layers are culled with the view they belong to
+     */
+    public boolean isLayer(int view) {
+        return layers[view];
+    }
+
+    /**
+     * Returns the mask of the layers of the view that the given sphere intersects
+     */
+    public int layerMask(int view, float x, float y, float z, float radius) {
+
+        final int layerCount = layerCounts[view];
+
+        int mask = 0;
+
+        for (int i = 0; i < layerCount; i++) {
+            if (frustums[view + 1 + i].testSphere(x, y, z, radius)) {
+                mask |= 1 << i;
+            }
+        }
+
+        return mask;
+    }
+
+    public Matrix4fc projectionViewMatrix(int view) {
+        return projectionViewMatrices[view];
+    }
+
+    public FrustumIntersection frustum(int view) {
+        return frustums[view];
+    }
+
+    public FrustumCullingPreCondition preCondition(int view) {
+        return preConditions[view];
+    }
+
+    /**
+     * Returns the index of the first draw command of the view in the command buffer
+     */
+    public int drawOffset(int view) {
+        return drawOffsets[view];
+    }
+
+    /**
+     * Returns the maximum number of draw commands written for the view
+     */
+    public int drawCount(int view) {
+        return drawCounts[view];
+    }
+
+    public void setDrawRange(int view, int drawOffset, int drawCount) {
+        drawOffsets[view] = drawOffset;
+        drawCounts[view] = drawCount;
+    }
+
+    /**
+     * Returns the buffer the instances of the view are tested against after the frustum, or null if the view has no
+     * occlusion culling on the CPU
+     */
+    public MaskedOcclusionBuffer occlusionBuffer(int view) {
+        return occlusionBuffers[view];
+    }
+
+    /**
+     * Sets the rendered occluders of the view. Layered views are not tested against it
+     */
+    public void setOcclusionBuffer(int view, MaskedOcclusionBuffer occlusionBuffer) {
+        occlusionBuffers[view] = occlusionBuffer;
+    }
+
+    /**
+     * Returns the fraction of the height of the view covered by the given sphere. Works for both perspective and
+     * orthographic views
+     */
+    public float projectedSize(int view, float x, float y, float z, float radius) {
+
+        final Matrix4fc m = projectionViewMatrices[view];
+
+        final float w = m.m03() * x + m.m13() * y + m.m23() * z + m.m33();
+
+        // Behind the eye
+        if (w <= 0.0f) {
+            return Float.POSITIVE_INFINITY;
+        }
+
+        // The view spans 2 units of normalized device coordinates from bottom to top
+        return radius * lodScales[view] / (2.0f * w);
+    }
+
+    /**
+     * Returns the view whose levels of detail are remembered from frame to frame, or -1 if there is none. The others
+     * select theirs from scratch
+     */
+    public int lodView() {
+        return lodView;
+    }
+
+    public void setLODView(int lodView) {
+        this.lodView = lodView;
+    }
+
+    public void clear() {
+        Arrays.fill(preConditions, 0, viewCount, null);
+        Arrays.fill(occlusionBuffers, 0, viewCount, null);
+        lodView = -1;
+        viewCount = 0;
+    }
+
+    private void reserve(int capacity) {
+
+        final int oldCapacity = projectionViewMatrices.length;
+
+        projectionViewMatrices = Arrays.copyOf(projectionViewMatrices, capacity);
+        frustums = Arrays.copyOf(frustums, capacity);
+        preConditions = Arrays.copyOf(preConditions, capacity);
+        drawOffsets = Arrays.copyOf(drawOffsets, capacity);
+        drawCounts = Arrays.copyOf(drawCounts, capacity);
+        layerCounts = Arrays.copyOf(layerCounts, capacity);
+        layers = Arrays.copyOf(layers, capacity);
+        occlusionBuffers = Arrays.copyOf(occlusionBuffers, capacity);
+        lodScales = Arrays.copyOf(lodScales, capacity);
+
+        for (int i = oldCapacity; i < capacity; i++) {
+            projectionViewMatrices[i] = new Matrix4f();
+            frustums[i] = new FrustumIntersection();
+        }
+    }
+
+    // The first layer projected into clip space, scaled down to the bounds of every layer
+    private Matrix4fc unionOf(Matrix4fc[] layerProjectionViewMatrices, int layerCount) {
+
+        final Matrix4fc first = layerProjectionViewMatrices[0];
+
+        unionMin.set(Float.POSITIVE_INFINITY);
+        unionMax.set(Float.NEGATIVE_INFINITY);
+
+        for (int i = 0; i < layerCount; i++) {
+            for (int j = 0; j < FRUSTUM_CORNERS_COUNT; j++) {
+
+                layerProjectionViewMatrices[i].frustumCorner(j, corner);
+
+                first.transformProject(corner);
+
+                unionMin.set(min(unionMin.x, corner.x), min(unionMin.y, corner.y), min(unionMin.z, corner.z));
+                unionMax.set(max(unionMax.x, corner.x), max(unionMax.y, corner.y), max(unionMax.z, corner.z));
+            }
+        }
+
+        final float sizeX = max(unionMax.x - unionMin.x, MIN_UNION_SIZE);
+        final float sizeY = max(unionMax.y - unionMin.y, MIN_UNION_SIZE);
+        final float sizeZ = max(unionMax.z - unionMin.z, MIN_UNION_SIZE);
+
+        return union.translation(-(unionMax.x + unionMin.x) / sizeX, -(unionMax.y + unionMin.y) / sizeY, -(unionMax.z + unionMin.z) / sizeZ)
+                .scale(2.0f / sizeX, 2.0f / sizeY, 2.0f / sizeZ)
+                .mul(first);
+    }
+}
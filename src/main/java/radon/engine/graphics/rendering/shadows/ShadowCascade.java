@@ -4,16 +4,18 @@ import org.joml.*;
 import radon.engine.lights.DirectionalLight;
 import radon.engine.scenes.Camera;
 
+import static java.lang.Math.abs;
 import static java.lang.Math.max;
-import static java.lang.Math.min;
 import static java.util.stream.IntStream.range;
-import static radon.engine.util.Maths.acos;
-import static radon.engine.util.Maths.asin;
 
 
 public class ShadowCascade {
 
     private static final int FRUSTUM_CORNERS_COUNT = 8;
+    // The radius of a cascade is rounded up to this fraction of a unit, so it does not change when the camera rotates
+    private static final float RADIUS_QUANTUM = 1.0f / 16.0f;
+    // How far the casters in front of a cascade are taken into account, relative to its size
+    private static final float CASTERS_DISTANCE = 1.0f;
 
     private final Matrix4f lightViewMatrix;
     private final Matrix4f lightProjectionMatrix;
@@ -21,7 +23,14 @@ public class ShadowCascade {
     private final FrustumIntersection lightFrustum;
     private final Vector3f[] frustumCorners;
     private final Vector3f centroid;
+    private final Matrix4f cameraProjectionViewMatrix;
+    private final Vector3f lightDirection;
+    private final Vector3f lightSpaceCentroid;
+    private final Vector3f lightSpaceCenter;
     private float farPlane;
+    private float margin;
+    private float halfSize;
+    private int shadowMapSize;
 
     public ShadowCascade() {
         lightViewMatrix = new Matrix4f();
@@ -31,6 +40,10 @@ public class ShadowCascade {
         lightFrustum = new FrustumIntersection();
         range(0, FRUSTUM_CORNERS_COUNT).forEach(i -> frustumCorners[i] = new Vector3f());
         centroid = new Vector3f();
+        cameraProjectionViewMatrix = new Matrix4f();
+        lightDirection = new Vector3f();
+        lightSpaceCentroid = new Vector3f();
+        lightSpaceCenter = new Vector3f();
     }
 
     public Matrix4fc lightViewMatrix() {
@@ -61,92 +74,119 @@ public class ShadowCascade {
         return farPlane;
     }
 
-    public void update(Camera camera, float zNear, float zFar, DirectionalLight light) {
+    /**
+     * Extra size of the cascade around the camera frustum slice, relative to its radius. The cascade only moves when
+     * the slice gets out of it, so a bigger margin keeps the cascade still for longer
+     */
+    public float margin() {
+        return margin;
+    }
+
+    public ShadowCascade margin(float margin) {
+        this.margin = max(margin, 0.0f);
+        return this;
+    }
+
+    /**
+     * Makes the next {@link #update} compute the cascade again, even if the camera frustum slice is still inside of it
+     */
+    public void invalidate() {
+        shadowMapSize = 0;
+    }
+
+    /**
+     * Fits this cascade around the slice of the camera frustum between the given planes. The cascade is a cube around
+     * the bounding sphere of the slice, snapped to the texels of the shadow map, so it does not shimmer when the camera
+     * moves or rotates. Returns whether the cascade has changed, which only happens when the light changes or when
+     * the slice gets out of the cascade
+     */
+    public boolean update(Camera camera, float zNear, float zFar, DirectionalLight light, int shadowMapSize) {
 
         farPlane = zFar;
 
-        Matrix4f cameraProjectionViewMatrix = new Matrix4f();
         cameraProjectionViewMatrix.setPerspective(camera.fov(), camera.viewport().aspect(), zNear, zFar);
         cameraProjectionViewMatrix.mul(camera.viewMatrix());
 
-        float maxZ = Float.MIN_VALUE;
-        float minZ = Float.MAX_VALUE;
-
         centroid.set(0, 0, 0);
 
         for(int i = 0;i < FRUSTUM_CORNERS_COUNT;i++) {
+            cameraProjectionViewMatrix.frustumCorner(i, frustumCorners[i]);
+            centroid.add(frustumCorners[i]);
+        }
 
-            Vector3f corner = frustumCorners[i].set(0, 0, 0);
-
-            cameraProjectionViewMatrix.frustumCorner(i, corner);
+        centroid.div(FRUSTUM_CORNERS_COUNT);
 
-            centroid.add(corner).div(FRUSTUM_CORNERS_COUNT);
+        float radius = 0.0f;
 
-            minZ = min(minZ, corner.z);
-            maxZ = max(maxZ, corner.z);
+        for(int i = 0;i < FRUSTUM_CORNERS_COUNT;i++) {
+            radius = max(radius, frustumCorners[i].distance(centroid));
         }
 
-        // Go back from the centroid up to max.z - min.z in the direction of light
-        Vector3fc lightDirection = new Vector3f(light.direction()).negate().normalize();
+        radius = (float) Math.ceil(radius / RADIUS_QUANTUM) * RADIUS_QUANTUM;
 
-        Vector3f lightPosInc = new Vector3f().set(lightDirection);
+        final float halfSize = radius * (1.0f + margin);
 
-        float distance = maxZ - minZ;
+        final Vector3fc direction = light.direction();
 
-        lightPosInc.mul(distance);
+        final boolean sameLight = lightDirection.equals(direction.x(), direction.y(), direction.z());
 
-        Vector3f lightPosition = new Vector3f();
-        lightPosition.set(centroid).add(lightPosInc);
+        if(!sameLight) {
+            lightDirection.set(direction);
+            updateLightViewMatrix();
+        }
 
-        updateLightViewMatrix(camera, lightDirection, lightPosition);
+        lightViewMatrix.transformPosition(centroid, lightSpaceCentroid);
 
-        updateLightProjectionMatrix();
+        if(sameLight && halfSize == this.halfSize && shadowMapSize == this.shadowMapSize && contains(lightSpaceCentroid, radius)) {
+            return false;
+        }
 
-        lightProjectionMatrix.mul(lightViewMatrix, lightProjectionViewMatrix);
+        this.halfSize = halfSize;
+        this.shadowMapSize = shadowMapSize;
 
-        lightFrustum.set(lightProjectionViewMatrix);
-    }
+        // Move in whole texels, so the same geometry always falls on the same texels
+        final float texelSize = 2.0f * halfSize / max(shadowMapSize, 1);
 
-    private void updateLightViewMatrix(Camera camera, Vector3fc lightDirection, Vector3f lightPosition) {
+        lightSpaceCenter.set(
+                (float) Math.floor(lightSpaceCentroid.x / texelSize) * texelSize,
+                (float) Math.floor(lightSpaceCentroid.y / texelSize) * texelSize,
+                lightSpaceCentroid.z);
 
-        // lightViewMatrix.setLookAt(lightDirection, lightPosition, new Vector3f(0, 1, 0));
-        final float lightAngleX = acos(lightDirection.z());
-        final float lightAngleY = asin(lightDirection.x());
+        updateLightProjectionMatrix();
 
-        // lightViewMatrix.setLookAt(lightPosition.x, lightPosition.y, lightPosition.z, -lightDirection.x(), -lightDirection.y(), -lightDirection.z(), 0, 1, 0);
+        lightProjectionMatrix.mul(lightViewMatrix, lightProjectionViewMatrix);
 
-        // lightViewMatrix.setLookAt(lightPosition.negate(), lightDirection, camera.up());
+        lightFrustum.set(lightProjectionViewMatrix);
 
-        lightViewMatrix.rotationX(lightAngleX).rotateY(lightAngleY).translate(lightPosition.negate());
+        return true;
     }
 
-    private void updateLightProjectionMatrix() {
+    private boolean contains(Vector3fc point, float radius) {
+        return abs(point.x() - lightSpaceCenter.x) + radius <= halfSize
+                && abs(point.y() - lightSpaceCenter.y) + radius <= halfSize
+                && abs(point.z() - lightSpaceCenter.z) + radius <= halfSize;
+    }
 
-        // Now calculate frustum dimensions in light space
-        float minX = Float.MAX_VALUE;
-        float maxX = -Float.MIN_VALUE;
-        float minY = Float.MAX_VALUE;
-        float maxY = -Float.MIN_VALUE;
-        float minZ = Float.MAX_VALUE;
-        float maxZ = -Float.MIN_VALUE;
+    private void updateLightViewMatrix() {
 
-        Vector4f lightSpaceCorner = new Vector4f();
+        // Any up vector works, as long as it is not parallel to the light
+        final float upZ = abs(lightDirection.y) > 0.99f ? 1.0f : 0.0f;
 
-        for(int i = 0;i < FRUSTUM_CORNERS_COUNT;i++) {
+        lightViewMatrix.setLookAlong(lightDirection.x, lightDirection.y, lightDirection.z, 0, 1 - upZ, upZ);
+    }
 
-            lightSpaceCorner.set(frustumCorners[i], 1.0f).mul(lightViewMatrix);
+    private void updateLightProjectionMatrix() {
 
-            minX = min(lightSpaceCorner.x, minX);
-            maxX = max(lightSpaceCorner.x, maxX);
-            minY = min(lightSpaceCorner.y, minY);
-            maxY = max(lightSpaceCorner.y, maxY);
-            minZ = min(lightSpaceCorner.z, minZ);
-            maxZ = max(lightSpaceCorner.z, maxZ);
-        }
+        final float left = lightSpaceCenter.x - halfSize;
+        final float right = lightSpaceCenter.x + halfSize;
+        final float bottom = lightSpaceCenter.y - halfSize;
+        final float top = lightSpaceCenter.y + halfSize;
 
-        float distanceZ = maxZ - minZ;
+        // The light looks down the negative z axis, and casters in front of the cascade must be kept
+        final float zNear = -lightSpaceCenter.z - halfSize * (1.0f + CASTERS_DISTANCE);
+        final float zFar = -lightSpaceCenter.z + halfSize;
 
-        lightProjectionMatrix.setOrtho(minX, maxX, minY, maxY, 0, distanceZ);
+        lightProjectionMatrix.setOrtho(left, right, bottom, top, zNear, zFar);
     }
 
 }
@@ -10,6 +10,7 @@ import java.nio.file.Files;
 import java.nio.file.Path;
 
 import static java.nio.file.Files.exists;
+import static radon.engine.core.RadonConfigConstants.COMPACT_VERTEX_FORMAT;
 import static radon.engine.core.RadonConfigConstants.PRINT_SHADERS_SOURCE;
 
 public final class GLSLPreprocessor {
@@ -17,6 +18,8 @@ public final class GLSLPreprocessor {
     private static final String DIRECTIVE_CHARACTER = "@";
     private static final Path SHADERS_ROOT = RadonFiles.getPath("shaders");
     private static final String BERYL_GLSL_METADATA = createBerylGLSLMetadata();
+    // Engine configuration visible to every shader, right after its #version line
+    private static final String GLOBAL_DEFINES = createGlobalDefines();
 
     private final StringBuffer sourceBuffer;
     private final Path path;
@@ -41,6 +44,17 @@ public final class GLSLPreprocessor {
         return builder.toString();
     }
 
+    private static String createGlobalDefines() {
+
+        StringBuilder builder = new StringBuilder();
+
+        if (COMPACT_VERTEX_FORMAT) {
+            builder.append(define("COMPACT_VERTEX_FORMAT"));
+        }
+
+        return builder.toString();
+    }
+
     private static String define(Object name, Object value) {
         return "#define " + name + " " + value + "\n";
     }
@@ -99,6 +113,10 @@ public final class GLSLPreprocessor {
 
     private String processDirective(String line) {
 
+        if (line.startsWith("#version")) {
+            return line + '\n' + GLOBAL_DEFINES;
+        }
+
         if (!line.startsWith(DIRECTIVE_CHARACTER)) {
             return line;
         }
@@ -130,7 +148,7 @@ public final class GLSLPreprocessor {
 
         @Override
         public String process(String arg) {
-            return BERYL_GLSL_METADATA + define(stage.name()) + '\n';
+            return BERYL_GLSL_METADATA + GLOBAL_DEFINES + define(stage.name()) + '\n';
         }
     }
 
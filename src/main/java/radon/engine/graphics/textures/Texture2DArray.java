@@ -0,0 +1,17 @@
+package radon.engine.graphics.textures;
+
+import radon.engine.images.PixelFormat;
+
+public interface Texture2DArray extends Texture {
+
+    int width();
+
+    int height();
+
+    int layers();
+
+    void allocate(int mipLevels, int width, int height, int layers, PixelFormat internalFormat);
+
+    void reallocate(int mipLevels, int width, int height, int layers, PixelFormat internalPixelFormat);
+
+}
@@ -8,9 +8,6 @@ import radon.engine.util.BitFlags;
 
 public abstract class AbstractMaterial implements Material {
 
-    static final Texture2D WHITE_TEXTURE = GraphicsFactory.get().whiteTexture();
-    static final Texture2D BLACK_TEXTURE = GraphicsFactory.get().blackTexture2D();
-
     private static final Vector2fc DEFAULT_TILING = new Vector2f(1.0f, 1.0f);
 
 
@@ -85,7 +82,16 @@ public abstract class AbstractMaterial implements Material {
     }
 
     protected Texture2D getMapOrDefault(Texture2D map) {
-        return map == null ? WHITE_TEXTURE : map;
+        return map == null ? whiteTexture() : map;
+    }
+
+    // Looked up on demand, so materials can be created without a graphics context
+    static Texture2D whiteTexture() {
+        return GraphicsFactory.get().whiteTexture();
+    }
+
+    static Texture2D blackTexture() {
+        return GraphicsFactory.get().blackTexture2D();
     }
 
     void setHandle(int handle) {
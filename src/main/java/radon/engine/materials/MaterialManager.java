@@ -81,6 +81,18 @@ public final class MaterialManager implements AssetManager<Material> {
     public void update() {
         updateModifiedMaterials();
         destroyGarbage();
+        storageHandlers.values().forEach(MaterialStorageHandler::flush);
+    }
+
+    /**
+     * Returns the bytes of material data uploaded to the GPU during the last update
+     */
+    public long uploadedBytes() {
+        long uploadedBytes = 0;
+        for(MaterialStorageHandler<?> storageHandler : storageHandlers.values()) {
+            uploadedBytes += storageHandler.uploadedBytes();
+        }
+        return uploadedBytes;
     }
 
     @Override
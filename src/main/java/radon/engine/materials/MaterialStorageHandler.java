@@ -5,105 +5,174 @@ import radon.engine.graphics.GraphicsFactory;
 import radon.engine.graphics.buffers.StorageBuffer;
 import radon.engine.graphics.textures.Texture;
 
-import java.util.ArrayList;
-import java.util.List;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
 
+import static java.lang.Math.max;
+import static org.lwjgl.system.MemoryUtil.*;
 import static radon.engine.util.Asserts.assertTrue;
 import static radon.engine.util.handles.IntHandle.NULL;
 
+/**
+ * Stores the materials of a shading model in a storage buffer, one slot per material. Slots never move, and the
+ * slots of destroyed materials are reused. Materials are written into a CPU copy of the buffer first, and modified
+ * slots are uploaded once per frame, merging adjacent slots into a single upload
+ */
 public abstract class MaterialStorageHandler<T extends ManagedMaterial> {
 
-    private List<T> materials;
+    private static final int INITIAL_CAPACITY = 16;
+
+    private T[] slots;
     private StorageBuffer buffer;
-    private long offset;
+    private ByteBuffer data;
+    // Free slots
+    private int[] freeSlots;
+    private int freeSlotCount;
+    private int slotCount;
+    // Slots modified since the last flush
+    private boolean[] dirty;
+    private int[] dirtySlots;
+    private int dirtySlotCount;
+    // Stats
+    private long pendingUploadedBytes;
+    private long uploadedBytes;
 
+    @SuppressWarnings("unchecked")
     public MaterialStorageHandler() {
-        materials = new ArrayList<>();
+        slots = (T[]) new ManagedMaterial[0];
+        freeSlots = new int[0];
+        dirty = new boolean[0];
+        dirtySlots = new int[0];
         buffer = createStorageBuffer();
+        reserve(INITIAL_CAPACITY);
+    }
+
+    public int count() {
+        return slotCount - freeSlotCount;
+    }
+
+    /**
+     * Returns the bytes uploaded to the storage buffer during the last frame
+     */
+    public long uploadedBytes() {
+        return uploadedBytes;
     }
 
     public void allocate(T material) {
 
-        checkBuffer();
+        final int slot = allocateSlot();
 
-        storeMaterialToBuffer(material, offset, buffer);
+        slots[slot] = material;
 
         MaterialStorageInfo storageInfo = material.storageInfo();
-        storageInfo.index(materials.size());
-        storageInfo.offset(offset);
+        storageInfo.index(slot);
+        storageInfo.offset(slotOffset(slot));
+
+        assertTrue(storageInfo.offset() % 16 == 0);
 
-        offset += getMaterialSizeof();
+        storeMaterial(material, slotData(slot));
 
-        assertTrue(offset % 16 == 0);
+        // Upload it right away, it may be drawn before the next flush
+        buffer.update(storageInfo.offset(), slotData(slot));
 
-        materials.add(material);
+        pendingUploadedBytes += getMaterialSizeof();
     }
 
+    /**
+     * Writes the material into its slot. It will be uploaded on the next {@link #flush()}
+     */
     public void update(T material) {
 
-        MaterialStorageInfo storageInfo = material.storageInfo();
+        final int slot = material.storageInfo().index();
+
+        storeMaterial(material, slotData(slot));
 
-        storeMaterialToBuffer(material, storageInfo.offset(), buffer);
+        if(!dirty[slot]) {
+            dirty[slot] = true;
+            dirtySlots[dirtySlotCount++] = slot;
+        }
     }
 
     public void free(T material) {
 
-        // Free the storage occupied by the given material
+        final int slot = material.storageInfo().index();
 
-        MaterialStorageInfo storageInfo = material.storageInfo();
+        if(slot < 0 || slot >= slotCount || slots[slot] != material) {
+            return;
+        }
 
-        final int index = storageInfo.index();
+        slots[slot] = null;
 
-        final int sizeof = getMaterialSizeof();
+        material.storageInfo().index(-1);
 
-        long offset = index * sizeof;
+        freeSlots[freeSlotCount++] = slot;
+    }
 
-        for(int i = index;i < materials.size();i++) {
+    /**
+     * Uploads the modified slots to the storage buffer
+     */
+    public void flush() {
 
-            final T nextMesh = materials.get(i);
+        uploadedBytes = pendingUploadedBytes;
+        pendingUploadedBytes = 0;
 
-            storeMaterialToBuffer(material, offset, buffer);
+        if(dirtySlotCount == 0) {
+            return;
+        }
 
-            nextMesh.storageInfo().index(i);
+        Arrays.sort(dirtySlots, 0, dirtySlotCount);
 
-            offset += sizeof;
-        }
+        int first = dirtySlots[0];
+        int last = first;
+
+        for(int i = 1;i <= dirtySlotCount;i++) {
+
+            final int slot = i < dirtySlotCount ? dirtySlots[i] : -1;
+
+            if(slot == last + 1) {
+                last = slot;
+                continue;
+            }
+
+            uploadSlots(first, last);
 
-        this.offset = offset;
+            first = last = slot;
+        }
 
-        assertTrue(offset % 16 == 0);
+        for(int i = 0;i < dirtySlotCount;i++) {
+            dirty[dirtySlots[i]] = false;
+        }
 
-        materials.remove(index);
+        dirtySlotCount = 0;
     }
 
     protected void clear() {
-        materials.clear();
-        buffer.reallocate(getMaterialSizeof());
-        offset = 0;
+        Arrays.fill(slots, null);
+        Arrays.fill(dirty, false);
+        slotCount = 0;
+        freeSlotCount = 0;
+        dirtySlotCount = 0;
+        buffer.reallocate((long) slots.length * getMaterialSizeof());
     }
 
     protected void terminate() {
-        materials.clear();
+        Arrays.fill(slots, null);
+        slotCount = 0;
+        freeSlotCount = 0;
+        dirtySlotCount = 0;
         buffer.release();
-        offset = Long.MIN_VALUE;
+        memFree(data);
+        data = null;
     }
 
-    protected abstract void storeMaterialToBuffer(T material, long offset, StorageBuffer buffer);
-
-    protected void checkBuffer() {
-
-        final long size = buffer.size();
-
-        if(offset >= size) {
-            buffer.resize(size * 2);
-        }
-    }
+    /**
+     * Writes the material at the current position of data
+     */
+    protected abstract void storeMaterial(T material, ByteBuffer data);
 
     protected StorageBuffer createStorageBuffer() {
         StorageBuffer buffer = GraphicsFactory.get().newStorageBuffer();
-        buffer.allocate(getMaterialSizeof());
-        buffer.mapMemory();
-        offset = 0;
+        buffer.allocate((long) INITIAL_CAPACITY * getMaterialSizeof());
         return buffer;
     }
 
@@ -117,4 +186,52 @@ public abstract class MaterialStorageHandler<T extends ManagedMaterial> {
     public <T extends StorageBuffer> T buffer() {
         return (T) buffer;
     }
+
+    private void uploadSlots(int first, int last) {
+
+        final int offset = (int) slotOffset(first);
+        final int size = (last - first + 1) * getMaterialSizeof();
+
+        buffer.update(offset, data.limit(offset + size).position(offset));
+
+        pendingUploadedBytes += size;
+    }
+
+    private ByteBuffer slotData(int slot) {
+        final int offset = (int) slotOffset(slot);
+        return data.limit(offset + getMaterialSizeof()).position(offset);
+    }
+
+    private long slotOffset(int slot) {
+        return (long) slot * getMaterialSizeof();
+    }
+
+    private int allocateSlot() {
+
+        if(freeSlotCount > 0) {
+            return freeSlots[--freeSlotCount];
+        }
+
+        if(slotCount == slots.length) {
+            reserve(max(slots.length * 2, INITIAL_CAPACITY));
+        }
+
+        return slotCount++;
+    }
+
+    private void reserve(int newCapacity) {
+
+        final long newSize = (long) newCapacity * getMaterialSizeof();
+
+        if(buffer.size() < newSize) {
+            buffer.resize(newSize);
+        }
+
+        data = data == null ? memCalloc((int) newSize) : memRealloc(data.clear(), (int) newSize);
+
+        slots = Arrays.copyOf(slots, newCapacity);
+        freeSlots = Arrays.copyOf(freeSlots, newCapacity);
+        dirty = Arrays.copyOf(dirty, newCapacity);
+        dirtySlots = Arrays.copyOf(dirtySlots, newCapacity);
+    }
 }
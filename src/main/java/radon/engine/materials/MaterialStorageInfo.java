@@ -4,7 +4,7 @@ public class MaterialStorageInfo {
 
     // Size in bytes of the material
     private int materialSizeof;
-    // This is the index of the material in the material's type list
+    // This is the slot of the material in the material's type buffer
     private int index;
     // Offset of the material into the materials buffer
     private long offset;
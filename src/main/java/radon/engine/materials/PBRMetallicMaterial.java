@@ -61,8 +61,8 @@ public class PBRMetallicMaterial extends ManagedMaterial implements Material {
         albedo = Color.colorWhite();
         emissiveColor = Color.colorBlackTransparent();
 
-        albedoMap = WHITE_TEXTURE;
-        emissiveMap = BLACK_TEXTURE;
+        albedoMap = whiteTexture();
+        emissiveMap = blackTexture();
 
         alpha = DEFAULT_ALPHA;
         metallic = DEFAULT_METALLIC;
@@ -1,41 +1,31 @@
 package radon.engine.materials;
 
-import org.lwjgl.system.MemoryStack;
-import radon.engine.graphics.buffers.StorageBuffer;
-
 import java.nio.ByteBuffer;
 
 public class PBRMetallicMaterialStorageHandler extends MaterialStorageHandler<PBRMetallicMaterial> {
 
     @Override
-    protected void storeMaterialToBuffer(PBRMetallicMaterial material, long offset, StorageBuffer buffer) {
-
-        try(MemoryStack stack = MemoryStack.stackPush()) {
-
-            ByteBuffer data = stack.malloc(getMaterialSizeof());
-
-            material.albedo().getRGBA(data);
-            material.emissiveColor().getRGBA(data);
+    protected void storeMaterial(PBRMetallicMaterial material, ByteBuffer data) {
 
-            data.putLong(textureResidentHandle(material.albedoMap()));
-            data.putLong(textureResidentHandle(material.metallicMap()));
-            data.putLong(textureResidentHandle(material.roughnessMap()));
-            data.putLong(textureResidentHandle(material.occlusionMap()));
-            data.putLong(textureResidentHandle(material.emissiveMap()));
-            data.putLong(textureResidentHandle(material.normalMap()));
+        material.albedo().getRGBA(data);
+        material.emissiveColor().getRGBA(data);
 
-            data.putFloat(material.tiling().x()).putFloat(material.tiling().y());
+        data.putLong(textureResidentHandle(material.albedoMap()));
+        data.putLong(textureResidentHandle(material.metallicMap()));
+        data.putLong(textureResidentHandle(material.roughnessMap()));
+        data.putLong(textureResidentHandle(material.occlusionMap()));
+        data.putLong(textureResidentHandle(material.emissiveMap()));
+        data.putLong(textureResidentHandle(material.normalMap()));
 
-            data.putFloat(material.alpha());
-            data.putFloat(material.metallic());
-            data.putFloat(material.roughness());
-            data.putFloat(material.occlusion());
-            data.putFloat(material.fresnel0());
+        data.putFloat(material.tiling().x()).putFloat(material.tiling().y());
 
-            data.putInt(material.flags());
+        data.putFloat(material.alpha());
+        data.putFloat(material.metallic());
+        data.putFloat(material.roughness());
+        data.putFloat(material.occlusion());
+        data.putFloat(material.fresnel0());
 
-            buffer.update(offset, data.rewind());
-        }
+        data.putInt(material.flags());
     }
 
     @Override
@@ -1,8 +1,5 @@
 package radon.engine.materials;
 
-import org.lwjgl.system.MemoryStack;
-import radon.engine.graphics.buffers.StorageBuffer;
-
 import java.nio.ByteBuffer;
 
 public class PhongMaterialStorageHandler extends MaterialStorageHandler<PhongMaterial> {
@@ -11,36 +8,28 @@ public class PhongMaterialStorageHandler extends MaterialStorageHandler<PhongMat
     }
 
     @Override
-    protected void storeMaterialToBuffer(PhongMaterial material, long offset, StorageBuffer buffer) {
-
-        try(MemoryStack stack = MemoryStack.stackPush()) {
-
-            ByteBuffer data = stack.malloc(getMaterialSizeof());
-
-            material.ambientColor().getRGBA(data);
-            material.diffuseColor().getRGBA(data);
-            material.specularColor().getRGBA(data);
-            material.emissiveColor().getRGBA(data);
+    protected void storeMaterial(PhongMaterial material, ByteBuffer data) {
 
-            data.putLong(textureResidentHandle(material.ambientMap()));
-            data.putLong(textureResidentHandle(material.diffuseMap()));
-            data.putLong(textureResidentHandle(material.specularMap()));
-            data.putLong(textureResidentHandle(material.emissiveMap()));
-            data.putLong(textureResidentHandle(material.occlusionMap()));
-            data.putLong(textureResidentHandle(material.normalMap()));
+        material.ambientColor().getRGBA(data);
+        material.diffuseColor().getRGBA(data);
+        material.specularColor().getRGBA(data);
+        material.emissiveColor().getRGBA(data);
 
-            data.putFloat(material.tiling().x()).putFloat(material.tiling().y());
+        data.putLong(textureResidentHandle(material.ambientMap()));
+        data.putLong(textureResidentHandle(material.diffuseMap()));
+        data.putLong(textureResidentHandle(material.specularMap()));
+        data.putLong(textureResidentHandle(material.emissiveMap()));
+        data.putLong(textureResidentHandle(material.occlusionMap()));
+        data.putLong(textureResidentHandle(material.normalMap()));
 
-            data.putFloat(material.alpha());
-            data.putFloat(material.shininess());
-            data.putFloat(material.reflectivity());
-            data.putFloat(material.refractiveIndex());
+        data.putFloat(material.tiling().x()).putFloat(material.tiling().y());
 
-            data.putInt(material.flags());
+        data.putFloat(material.alpha());
+        data.putFloat(material.shininess());
+        data.putFloat(material.reflectivity());
+        data.putFloat(material.refractiveIndex());
 
-            buffer.copy(offset, data.rewind());
-            // buffer.update(offset, data.rewind());
-        }
+        data.putInt(material.flags());
     }
 
     @Override
@@ -1,6 +1,5 @@
 package radon.engine.materials;
 
-import radon.engine.graphics.GraphicsFactory;
 import radon.engine.graphics.rendering.ShadingModel;
 import radon.engine.graphics.textures.Texture2D;
 import radon.engine.util.Color;
@@ -57,8 +56,6 @@ public class WaterMaterial extends AbstractMaterial {
 
     private Texture2D dudvMap;
     private Texture2D normalMap;
-    private Texture2D reflectionMap;
-    private Texture2D refractionMap;
 
     private float distortionStrength;
     private float textureOffset;
@@ -132,14 +129,6 @@ public class WaterMaterial extends AbstractMaterial {
         return this;
     }
 
-    public Texture2D getReflectionMap() {
-        return reflectionMap;
-    }
-
-    public Texture2D getRefractionMap() {
-        return refractionMap;
-    }
-
     public float getDistortionStrength() {
         return distortionStrength;
     }
@@ -171,11 +160,6 @@ public class WaterMaterial extends AbstractMaterial {
 
         color = Color.colorWhite();
 
-        GraphicsFactory graphicsFactory = GraphicsFactory.get();
-
-        reflectionMap = graphicsFactory.newTexture2D();
-        refractionMap = graphicsFactory.newTexture2D();
-
         distortionStrength = DEFAULT_DISTORTION_STRENGTH;
         textureOffset = DEFAULT_TEXTURE_OFFSET;
         colorStrength = DEFAULT_COLOR_STRENGTH;
@@ -39,6 +39,7 @@ public abstract class Mesh extends ManagedResource implements Asset {
     protected final Sphere boundingSphere;
     private final MeshStorageInfo storageInfo;
     protected final int stride;
+    private MeshLODs lods;
 
     public Mesh(int handle, String name, ByteBuffer vertexData, ByteBuffer indexData, int stride) {
         this.handle = handle;
@@ -79,6 +80,42 @@ public abstract class Mesh extends ManagedResource implements Asset {
         return indexed() ? indexData.capacity() / UINT32_SIZEOF : 0;
     }
 
+    /**
+     * Returns the simplified versions of this mesh, or null if it has none
+     */
+    public MeshLODs lods() {
+        return lods;
+    }
+
+    void lods(MeshLODs lods) {
+        this.lods = lods;
+    }
+
+    /**
+     * Returns the number of levels of detail of this mesh, the mesh itself being the first one
+     */
+    public int lodCount() {
+        return lods == null ? 1 : 1 + lods.count();
+    }
+
+    public int lodIndexCount(int lod) {
+        return lod == 0 ? indexCount() : lods.indexCount(lod - 1);
+    }
+
+    /**
+     * Returns the first index of the level of detail, relative to the first index of this mesh
+     */
+    public int lodFirstIndex(int lod) {
+        return lod == 0 ? 0 : indexCount() + lods.firstIndex(lod - 1);
+    }
+
+    /**
+     * Returns the geometric error of the level of detail, relative to the size of this mesh
+     */
+    public float lodError(int lod) {
+        return lod == 0 ? 0.0f : lods.error(lod - 1);
+    }
+
     public IAABB bounds() {
         return boundingBox;
     }
@@ -161,6 +198,9 @@ public abstract class Mesh extends ManagedResource implements Asset {
     protected void free() {
         memFree(vertexData);
         memFree(indexData);
+        if(lods != null) {
+            lods.free();
+        }
     }
 
     @Override
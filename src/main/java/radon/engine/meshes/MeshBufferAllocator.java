@@ -0,0 +1,457 @@
+package radon.engine.meshes;
+
+import java.util.Arrays;
+
+import static java.lang.Integer.numberOfLeadingZeros;
+import static java.lang.Integer.numberOfTrailingZeros;
+import static java.lang.Math.max;
+
+/**
+ * Two level segregated fit allocator of ranges of a buffer, in elements. Free ranges are kept in lists by size class
+ * with a bitmap of the non empty classes, so allocating and freeing take constant time, and a freed range is merged
+ * with its free neighbours right away. Ranges are linked in address order so used ones can be moved down into the
+ * free space before them, letting the free space gather at the end of the buffer
+ */
+final class MeshBufferAllocator {
+
+    static final int NO_SPACE = -1;
+
+    private static final int NONE = -1;
+    private static final int INITIAL_RANGE_CAPACITY = 64;
+    // Every power of 2 is split in 8 size classes
+    private static final int SUB_CLASS_BITS = 3;
+    private static final int SUB_CLASS_COUNT = 1 << SUB_CLASS_BITS;
+    private static final int CLASS_GROUP_COUNT = Integer.SIZE;
+
+    // Ranges, free or used
+    private int[] offsets;
+    private int[] sizes;
+    private int[] owners;
+    private boolean[] used;
+    private int[] prevRanges;
+    private int[] nextRanges;
+    private int[] prevFreeRanges;
+    private int[] nextFreeRanges;
+    private int firstRange;
+    private int lastRange;
+    // Unused range ids
+    private int[] releasedRanges;
+    private int releasedRangeCount;
+    private int rangeCount;
+    // Free lists by size class
+    private final int[] freeLists;
+    private final int[] classMasks;
+    private int groupMask;
+    private int freeRangeCount;
+    private int capacity;
+    private int freeSpace;
+
+    MeshBufferAllocator(int capacity) {
+        freeLists = new int[CLASS_GROUP_COUNT * SUB_CLASS_COUNT];
+        classMasks = new int[CLASS_GROUP_COUNT];
+        offsets = new int[0];
+        sizes = new int[0];
+        owners = new int[0];
+        used = new boolean[0];
+        prevRanges = new int[0];
+        nextRanges = new int[0];
+        prevFreeRanges = new int[0];
+        nextFreeRanges = new int[0];
+        releasedRanges = new int[0];
+        reserve(INITIAL_RANGE_CAPACITY);
+        reset(capacity);
+    }
+
+    int capacity() {
+        return capacity;
+    }
+
+    int freeSpace() {
+        return freeSpace;
+    }
+
+    int offset(int range) {
+        return offsets[range];
+    }
+
+    int size(int range) {
+        return sizes[range];
+    }
+
+    /**
+     * Returns the value associated to the given range with {@link #owner(int, int)}
+     */
+    int owner(int range) {
+        return owners[range];
+    }
+
+    void owner(int range, int owner) {
+        owners[range] = owner;
+    }
+
+    /**
+     * Returns whether there is free space somewhere else than at the end of the buffer
+     */
+    boolean fragmented() {
+        return freeRangeCount > (lastRange != NONE && !used[lastRange] ? 1 : 0);
+    }
+
+    /**
+     * Returns the id of a new range of the given size, or {@link #NO_SPACE} if there is no free range large enough
+     */
+    int allocate(int size) {
+
+        if (size <= 0) {
+            return NO_SPACE;
+        }
+
+        final int range = findFreeRange(size);
+
+        if (range == NONE) {
+            return NO_SPACE;
+        }
+
+        removeFreeRange(range);
+
+        used[range] = true;
+        freeSpace -= size;
+
+        final int remainder = sizes[range] - size;
+
+        if (remainder > 0) {
+            sizes[range] = size;
+            final int rest = newRange(offsets[range] + size, remainder);
+            linkAfter(range, rest);
+            insertFreeRange(rest);
+        }
+
+        return range;
+    }
+
+    void free(int range) {
+
+        used[range] = false;
+        freeSpace += sizes[range];
+
+        final int prev = prevRanges[range];
+
+        if (prev != NONE && !used[prev]) {
+            removeFreeRange(prev);
+            offsets[range] = offsets[prev];
+            sizes[range] += sizes[prev];
+            unlink(prev);
+        }
+
+        final int next = nextRanges[range];
+
+        if (next != NONE && !used[next]) {
+            removeFreeRange(next);
+            sizes[range] += sizes[next];
+            unlink(next);
+        }
+
+        insertFreeRange(range);
+    }
+
+    /**
+     * Adds free space at the end of the buffer
+     */
+    void grow(int newCapacity) {
+
+        final int extraSpace = newCapacity - capacity;
+
+        if (extraSpace <= 0) {
+            return;
+        }
+
+        if (lastRange != NONE && !used[lastRange]) {
+            removeFreeRange(lastRange);
+            sizes[lastRange] += extraSpace;
+            insertFreeRange(lastRange);
+        } else {
+            final int range = newRange(capacity, extraSpace);
+            linkAfter(lastRange, range);
+            insertFreeRange(range);
+        }
+
+        capacity = newCapacity;
+        freeSpace += extraSpace;
+    }
+
+    void reset(int capacity) {
+
+        Arrays.fill(freeLists, NONE);
+        Arrays.fill(classMasks, 0);
+        groupMask = 0;
+        freeRangeCount = 0;
+
+        rangeCount = 0;
+        releasedRangeCount = 0;
+        firstRange = NONE;
+        lastRange = NONE;
+
+        this.capacity = 0;
+        freeSpace = 0;
+
+        grow(capacity);
+    }
+
+    /**
+     * Returns the first used range, starting at the given one, that comes right after a free range, or
+     * {@link #NO_SPACE} if there is none. Pass {@link #NO_SPACE} to start at the beginning of the buffer
+     */
+    int nextMovableRange(int range) {
+
+        for (int r = range == NO_SPACE ? firstRange : range; r != NONE; r = nextRanges[r]) {
+            if (used[r] && prevRanges[r] != NONE && !used[prevRanges[r]]) {
+                return r;
+            }
+        }
+
+        return NO_SPACE;
+    }
+
+    /**
+     * Moves a used range to the beginning of the free range right before it. That free range ends up right after it,
+     * merged with the next one if it is free too
+     */
+    void moveDown(int range) {
+
+        final int free = prevRanges[range];
+
+        removeFreeRange(free);
+
+        offsets[range] = offsets[free];
+        offsets[free] = offsets[range] + sizes[range];
+
+        // Swap both ranges in the address order
+        final int before = prevRanges[free];
+        final int after = nextRanges[range];
+
+        prevRanges[range] = before;
+        nextRanges[range] = free;
+        prevRanges[free] = range;
+        nextRanges[free] = after;
+
+        if (before != NONE) {
+            nextRanges[before] = range;
+        } else {
+            firstRange = range;
+        }
+
+        if (after != NONE) {
+            prevRanges[after] = free;
+        } else {
+            lastRange = free;
+        }
+
+        if (after != NONE && !used[after]) {
+            removeFreeRange(after);
+            sizes[free] += sizes[after];
+            unlink(after);
+        }
+
+        insertFreeRange(free);
+    }
+
+    private int findFreeRange(int size) {
+
+        // Any range of the class above the size is large enough
+        final int sizeClass = findNonEmptyClass(sizeClassRoundUp(size));
+
+        if (sizeClass != NONE) {
+            return freeLists[sizeClass];
+        }
+
+        // The class of the size itself may still have a large enough range
+        for (int r = freeLists[sizeClass(size)]; r != NONE; r = nextFreeRanges[r]) {
+            if (sizes[r] >= size) {
+                return r;
+            }
+        }
+
+        return NONE;
+    }
+
+    private int findNonEmptyClass(int minClass) {
+
+        if (minClass >= freeLists.length) {
+            return NONE;
+        }
+
+        int group = minClass >>> SUB_CLASS_BITS;
+
+        final int mask = classMasks[group] & (-1 << (minClass & (SUB_CLASS_COUNT - 1)));
+
+        if (mask != 0) {
+            return (group << SUB_CLASS_BITS) | numberOfTrailingZeros(mask);
+        }
+
+        if (group + 1 == CLASS_GROUP_COUNT) {
+            return NONE;
+        }
+
+        final int groups = groupMask & (-1 << (group + 1));
+
+        if (groups == 0) {
+            return NONE;
+        }
+
+        group = numberOfTrailingZeros(groups);
+
+        return (group << SUB_CLASS_BITS) | numberOfTrailingZeros(classMasks[group]);
+    }
+
+    private void insertFreeRange(int range) {
+
+        final int sizeClass = sizeClass(sizes[range]);
+        final int head = freeLists[sizeClass];
+
+        prevFreeRanges[range] = NONE;
+        nextFreeRanges[range] = head;
+
+        if (head != NONE) {
+            prevFreeRanges[head] = range;
+        }
+
+        freeLists[sizeClass] = range;
+
+        classMasks[sizeClass >>> SUB_CLASS_BITS] |= 1 << (sizeClass & (SUB_CLASS_COUNT - 1));
+        groupMask |= 1 << (sizeClass >>> SUB_CLASS_BITS);
+
+        ++freeRangeCount;
+    }
+
+    private void removeFreeRange(int range) {
+
+        final int sizeClass = sizeClass(sizes[range]);
+        final int prev = prevFreeRanges[range];
+        final int next = nextFreeRanges[range];
+
+        if (prev != NONE) {
+            nextFreeRanges[prev] = next;
+        } else {
+            freeLists[sizeClass] = next;
+        }
+
+        if (next != NONE) {
+            prevFreeRanges[next] = prev;
+        }
+
+        if (freeLists[sizeClass] == NONE) {
+
+            final int group = sizeClass >>> SUB_CLASS_BITS;
+
+            classMasks[group] &= ~(1 << (sizeClass & (SUB_CLASS_COUNT - 1)));
+
+            if (classMasks[group] == 0) {
+                groupMask &= ~(1 << group);
+            }
+        }
+
+        --freeRangeCount;
+    }
+
+    private void linkAfter(int range, int newRange) {
+
+        final int next = range == NONE ? firstRange : nextRanges[range];
+
+        prevRanges[newRange] = range;
+        nextRanges[newRange] = next;
+
+        if (range != NONE) {
+            nextRanges[range] = newRange;
+        } else {
+            firstRange = newRange;
+        }
+
+        if (next != NONE) {
+            prevRanges[next] = newRange;
+        } else {
+            lastRange = newRange;
+        }
+    }
+
+    private void unlink(int range) {
+
+        final int prev = prevRanges[range];
+        final int next = nextRanges[range];
+
+        if (prev != NONE) {
+            nextRanges[prev] = next;
+        } else {
+            firstRange = next;
+        }
+
+        if (next != NONE) {
+            prevRanges[next] = prev;
+        } else {
+            lastRange = prev;
+        }
+
+        releasedRanges[releasedRangeCount++] = range;
+    }
+
+    private int newRange(int offset, int size) {
+
+        final int range;
+
+        if (releasedRangeCount > 0) {
+            range = releasedRanges[--releasedRangeCount];
+        } else {
+            if (rangeCount == offsets.length) {
+                reserve(max(rangeCount * 2, INITIAL_RANGE_CAPACITY));
+            }
+            range = rangeCount++;
+        }
+
+        offsets[range] = offset;
+        sizes[range] = size;
+        owners[range] = NONE;
+        used[range] = false;
+
+        return range;
+    }
+
+    private void reserve(int newCapacity) {
+        offsets = Arrays.copyOf(offsets, newCapacity);
+        sizes = Arrays.copyOf(sizes, newCapacity);
+        owners = Arrays.copyOf(owners, newCapacity);
+        used = Arrays.copyOf(used, newCapacity);
+        prevRanges = Arrays.copyOf(prevRanges, newCapacity);
+        nextRanges = Arrays.copyOf(nextRanges, newCapacity);
+        prevFreeRanges = Arrays.copyOf(prevFreeRanges, newCapacity);
+        nextFreeRanges = Arrays.copyOf(nextFreeRanges, newCapacity);
+        releasedRanges = Arrays.copyOf(releasedRanges, newCapacity);
+    }
+
+    /**
+     * Size class containing the given size, rounding down
+     */
+    private static int sizeClass(int size) {
+
+        if (size < SUB_CLASS_COUNT) {
+            return size;
+        }
+
+        final int log2 = 31 - numberOfLeadingZeros(size);
+        final int subClass = (size >>> (log2 - SUB_CLASS_BITS)) & (SUB_CLASS_COUNT - 1);
+
+        return ((log2 - SUB_CLASS_BITS + 1) << SUB_CLASS_BITS) | subClass;
+    }
+
+    /**
+     * First size class whose ranges are all at least as large as the given size
+     */
+    private static int sizeClassRoundUp(int size) {
+
+        if (size < SUB_CLASS_COUNT) {
+            return size;
+        }
+
+        final int log2 = 31 - numberOfLeadingZeros(size);
+        final int step = 1 << (log2 - SUB_CLASS_BITS);
+
+        return sizeClass(size + step - 1);
+    }
+}
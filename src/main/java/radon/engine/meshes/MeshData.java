@@ -6,6 +6,7 @@ public final class MeshData {
 
     private ByteBuffer vertices;
     private ByteBuffer indices;
+    private MeshLODs lods;
 
     public void set(ByteBuffer vertices, ByteBuffer indices) {
         this.vertices = vertices;
@@ -19,4 +20,12 @@ public final class MeshData {
     public ByteBuffer indices() {
         return indices;
     }
+
+    public MeshLODs lods() {
+        return lods;
+    }
+
+    public void lods(MeshLODs lods) {
+        this.lods = lods;
+    }
 }
@@ -0,0 +1,88 @@
+package radon.engine.meshes;
+
+import radon.engine.util.types.IBuilder;
+
+import java.util.Arrays;
+
+import static radon.engine.util.Asserts.assertTrue;
+
+/**
+ * How the levels of detail of a mesh are generated. Each level is simplified from the previous one, down to a fraction
+ * of its indices, as long as its error stays below the target error of the level. Errors are relative to the size of
+ * the mesh
+ */
+public final class MeshLODSettings {
+
+    public static final float DEFAULT_REDUCTION = 0.5f;
+    // A level that removes less than this fraction of the indices of the previous one is not worth drawing
+    public static final float DEFAULT_MIN_REDUCTION = 0.1f;
+
+    public static MeshLODSettings defaults() {
+        return new Builder().targetErrors(0.01f, 0.03f, 0.1f).build();
+    }
+
+    private final float[] targetErrors;
+    private final float reduction;
+    private final float minReduction;
+
+    public MeshLODSettings(float[] targetErrors, float reduction, float minReduction) {
+        assertTrue(reduction > 0.0f && reduction < 1.0f);
+        assertTrue(minReduction >= 0.0f && minReduction < 1.0f);
+        this.targetErrors = Arrays.copyOf(targetErrors, targetErrors.length);
+        this.reduction = reduction;
+        this.minReduction = minReduction;
+    }
+
+    /**
+     * Returns the maximum number of levels of detail, besides the mesh itself
+     */
+    public int levelCount() {
+        return targetErrors.length;
+    }
+
+    public float targetError(int level) {
+        return targetErrors[level];
+    }
+
+    /**
+     * Returns the fraction of the indices of the previous level that each level aims for
+     */
+    public float reduction() {
+        return reduction;
+    }
+
+    public float minReduction() {
+        return minReduction;
+    }
+
+
+    public static final class Builder implements IBuilder<MeshLODSettings> {
+
+        private float[] targetErrors = new float[0];
+        private float reduction = DEFAULT_REDUCTION;
+        private float minReduction = DEFAULT_MIN_REDUCTION;
+
+        public Builder() {
+        }
+
+        public Builder targetErrors(float... targetErrors) {
+            this.targetErrors = targetErrors;
+            return this;
+        }
+
+        public Builder reduction(float reduction) {
+            this.reduction = reduction;
+            return this;
+        }
+
+        public Builder minReduction(float minReduction) {
+            this.minReduction = minReduction;
+            return this;
+        }
+
+        @Override
+        public MeshLODSettings build() {
+            return new MeshLODSettings(targetErrors, reduction, minReduction);
+        }
+    }
+}
@@ -0,0 +1,145 @@
+package radon.engine.meshes;
+
+import org.lwjgl.system.MemoryStack;
+
+import java.nio.ByteBuffer;
+import java.nio.FloatBuffer;
+import java.nio.IntBuffer;
+import java.util.Arrays;
+
+import static java.lang.Math.max;
+import static org.lwjgl.system.MemoryStack.stackPush;
+import static org.lwjgl.system.MemoryUtil.*;
+import static org.lwjgl.util.meshoptimizer.MeshOptimizer.meshopt_simplify;
+import static radon.engine.util.types.DataType.UINT32_SIZEOF;
+
+/**
+ * The simplified versions of a mesh, from the finest to the coarsest. They share the vertices of the mesh, and their
+ * indices are stored right after the indices of the mesh. The mesh itself is not one of them
+ */
+public final class MeshLODs {
+
+    // Fewer indices than these are not simplified any further
+    private static final int MIN_INDEX_COUNT = 3 * 16;
+
+    /**
+     * Generates the levels of detail of the given mesh data with meshoptimizer. Returns null if the mesh cannot be
+     * simplified within the settings
+     */
+    public static MeshLODs generate(ByteBuffer vertices, ByteBuffer indices, int stride, MeshLODSettings settings) {
+
+        final int vertexCount = vertices.capacity() / stride;
+        final int indexCount = indices.capacity() / UINT32_SIZEOF;
+
+        if (settings.levelCount() == 0 || indexCount < MIN_INDEX_COUNT) {
+            return null;
+        }
+
+        final FloatBuffer positions = memFloatBuffer(memAddress(vertices, Mesh.VERTEX_POSITION_OFFSET), vertexCount * stride / Float.BYTES);
+
+        final IntBuffer source = memIntBuffer(memAddress(indices), indexCount);
+
+        final int[] indexCounts = new int[settings.levelCount()];
+        final float[] errors = new float[settings.levelCount()];
+        // Each level takes as many indices as the mesh at most
+        final IntBuffer lodIndices = memAllocInt(indexCount * settings.levelCount());
+
+        int levelCount = 0;
+        int previousCount = indexCount;
+
+        try (MemoryStack stack = stackPush()) {
+
+            final FloatBuffer resultError = stack.mallocFloat(1);
+
+            for (int level = 0; level < settings.levelCount() && previousCount >= MIN_INDEX_COUNT; level++) {
+
+                final IntBuffer destination = lodIndices.slice(lodIndices.position(), indexCount);
+
+                final long targetIndexCount = max((long) (previousCount * settings.reduction()) / 3 * 3, 3);
+
+                // Every level is simplified from the mesh itself, so their errors do not add up
+                final int count = (int) meshopt_simplify(destination, source, positions, vertexCount, stride,
+                        targetIndexCount, settings.targetError(level), 0, resultError);
+
+                if (count == 0 || count > previousCount * (1.0f - settings.minReduction())) {
+                    break;
+                }
+
+                // Simplification leaves the triangles in no particular order
+                MeshOptimization.optimizeVertexCache(destination.slice(0, count), vertexCount);
+
+                indexCounts[levelCount] = count;
+                errors[levelCount] = resultError.get(0);
+                ++levelCount;
+
+                previousCount = count;
+                lodIndices.position(lodIndices.position() + count);
+            }
+        }
+
+        if (levelCount == 0) {
+            memFree(lodIndices);
+            return null;
+        }
+
+        final ByteBuffer lodIndexData = memAlloc(lodIndices.position() * UINT32_SIZEOF);
+
+        memCopy(memAddress0(lodIndices), memAddress(lodIndexData), lodIndexData.capacity());
+
+        memFree(lodIndices);
+
+        return new MeshLODs(lodIndexData, Arrays.copyOf(indexCounts, levelCount), Arrays.copyOf(errors, levelCount));
+    }
+
+    private final ByteBuffer indexData;
+    private final int[] indexCounts;
+    private final int[] firstIndices;
+    private final float[] errors;
+
+    public MeshLODs(ByteBuffer indexData, int[] indexCounts, float[] errors) {
+        this.indexData = indexData;
+        this.indexCounts = indexCounts;
+        this.errors = errors;
+        firstIndices = new int[indexCounts.length];
+        for (int i = 1; i < indexCounts.length; i++) {
+            firstIndices[i] = firstIndices[i - 1] + indexCounts[i - 1];
+        }
+    }
+
+    public int count() {
+        return indexCounts.length;
+    }
+
+    /**
+     * Returns the indices of every level, one after the other
+     */
+    public ByteBuffer indexData() {
+        return indexData;
+    }
+
+    public int indexCount() {
+        return indexData.capacity() / UINT32_SIZEOF;
+    }
+
+    public int indexCount(int level) {
+        return indexCounts[level];
+    }
+
+    /**
+     * Returns the first index of the level, relative to the start of {@link #indexData()}
+     */
+    public int firstIndex(int level) {
+        return firstIndices[level];
+    }
+
+    /**
+     * Returns the geometric error of the level, relative to the size of the mesh
+     */
+    public float error(int level) {
+        return errors[level];
+    }
+
+    void free() {
+        memFree(indexData);
+    }
+}
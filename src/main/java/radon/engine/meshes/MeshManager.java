@@ -40,6 +40,10 @@ public final class MeshManager implements AssetManager<Mesh> {
     }
 
     protected synchronized StaticMesh createStaticMesh(String name, ByteBuffer vertices, ByteBuffer indices) {
+        return createStaticMesh(name, vertices, indices, null);
+    }
+
+    protected synchronized StaticMesh createStaticMesh(String name, ByteBuffer vertices, ByteBuffer indices, MeshLODs lods) {
 
         if(invalidMeshData(name, vertices, indices)) {
             return null;
@@ -49,6 +53,8 @@ public final class MeshManager implements AssetManager<Mesh> {
 
         StaticMesh mesh = new StaticMesh(meshHandle, name, vertices, indices);
 
+        mesh.lods(lods);
+
         allocate(mesh);
 
         return mesh;
@@ -0,0 +1,60 @@
+package radon.engine.meshes;
+
+import java.nio.ByteBuffer;
+import java.nio.FloatBuffer;
+import java.nio.IntBuffer;
+
+import static org.lwjgl.system.MemoryUtil.*;
+import static org.lwjgl.util.meshoptimizer.MeshOptimizer.*;
+import static radon.engine.util.types.DataType.UINT32_SIZEOF;
+
+/**
+ * Import time reordering of the triangles and vertices of a mesh with meshoptimizer. It does not change how the mesh
+ * looks, only how fast the GPU draws it
+ */
+public final class MeshOptimization {
+
+    // How much worse the vertex cache may get in exchange for less overdraw
+    public static final float OVERDRAW_THRESHOLD = 1.05f;
+
+    /**
+     * Reorders the triangles for the post transform vertex cache and then to reduce overdraw, and the vertices in the
+     * order the triangles fetch them. The indices are remapped in place. Unused vertices are removed, so the returned
+     * vertex buffer may be a smaller reallocation of the given one
+     */
+    public static ByteBuffer optimize(ByteBuffer vertices, ByteBuffer indices, int stride) {
+
+        final int vertexCount = vertices.capacity() / stride;
+        final int indexCount = indices.capacity() / UINT32_SIZEOF;
+
+        if (vertexCount == 0 || indexCount == 0) {
+            return vertices;
+        }
+
+        final IntBuffer indexBuffer = memIntBuffer(memAddress(indices), indexCount);
+
+        meshopt_optimizeVertexCache(indexBuffer, indexBuffer, vertexCount);
+
+        final FloatBuffer positions = memFloatBuffer(memAddress(vertices, Mesh.VERTEX_POSITION_OFFSET), vertexCount * stride / Float.BYTES);
+
+        meshopt_optimizeOverdraw(indexBuffer, indexBuffer, positions, vertexCount, stride, OVERDRAW_THRESHOLD);
+
+        final int usedVertexCount = (int) meshopt_optimizeVertexFetch(vertices, indexBuffer, vertices, vertexCount, stride);
+
+        if (usedVertexCount == vertexCount) {
+            return vertices;
+        }
+
+        return memRealloc(vertices, usedVertexCount * stride);
+    }
+
+    /**
+     * Reorders the triangles of the given range of indices for the post transform vertex cache
+     */
+    public static void optimizeVertexCache(IntBuffer indices, int vertexCount) {
+        meshopt_optimizeVertexCache(indices, indices, vertexCount);
+    }
+
+    private MeshOptimization() {
+    }
+}
@@ -2,12 +2,18 @@ package radon.engine.meshes;
 
 
 import radon.engine.graphics.GraphicsFactory;
+import radon.engine.graphics.buffers.GraphicsBuffer;
 import radon.engine.graphics.buffers.IndexBuffer;
 import radon.engine.graphics.buffers.VertexBuffer;
+import radon.engine.logging.Log;
 
 import java.util.ArrayList;
 import java.util.List;
 
+import static java.lang.Math.max;
+import static radon.engine.meshes.MeshBufferAllocator.NO_SPACE;
+import static radon.engine.util.types.DataType.UINT32_SIZEOF;
+
 public abstract class MeshStorageHandler<T extends Mesh> {
 
     protected static final int VERTEX_BUFFER_INITIAL_CAPACITY = 1024 * 1024; // 1MB
@@ -18,16 +24,30 @@ public abstract class MeshStorageHandler<T extends Mesh> {
     // Buffer for drawing
     private final VertexBuffer vertexBuffer;
     private final IndexBuffer indexBuffer;
-    // Offsets and indices
-    private long vertexBufferOffset;
-    private long indexBufferOffset;
-    private int firstIndex;
-    private int baseVertex;
+    // Size of the vertices of the meshes, and of the vertices stored in the vertex buffer
+    private final int meshStride;
+    // Ranges of the buffers, in vertices and indices
+    private final int vertexSize;
+    private final MeshBufferAllocator vertexAllocator;
+    private final MeshBufferAllocator indexAllocator;
+    private int modifications;
+
+    protected MeshStorageHandler(int vertexSize) {
+        this(vertexSize, vertexSize);
+    }
 
-    protected MeshStorageHandler() {
+    /**
+     * The vertices of the meshes are converted to vertexSize bytes each when they are uploaded to the vertex buffer.
+     * See {@link #updateVertexBuffer(Mesh, long)}
+     */
+    protected MeshStorageHandler(int meshStride, int vertexSize) {
+        this.meshStride = meshStride;
+        this.vertexSize = vertexSize;
         meshes = new ArrayList<>();
         vertexBuffer = createVertexBuffer();
         indexBuffer = createIndexBuffer();
+        vertexAllocator = new MeshBufferAllocator((int) (vertexBuffer.size() / vertexSize));
+        indexAllocator = new MeshBufferAllocator((int) (indexBuffer.size() / UINT32_SIZEOF));
     }
 
     public int count() {
@@ -38,16 +58,34 @@ public abstract class MeshStorageHandler<T extends Mesh> {
         return meshes.get(index);
     }
 
+    /**
+     * Incremented every time meshes already stored are moved inside the buffers or get another index
+     */
+    public int modifications() {
+        return modifications;
+    }
+
     protected synchronized void allocate(T mesh) {
 
-        checkBuffers(mesh);
+        if(mesh.stride() != meshStride) {
+            Log.error("Mesh " + mesh.name() + " has a stride of " + mesh.stride() + " bytes, expected " + meshStride);
+            return;
+        }
+
+        MeshStorageInfo storageInfo = mesh.storageInfo();
+
+        storageInfo.index(meshes.size());
+        storageInfo.vertexRange(allocateRange(vertexAllocator, vertexBuffer, mesh.vertexCount(), vertexSize));
+        storageInfo.indexRange(allocateRange(indexAllocator, indexBuffer, storedIndexCount(mesh), UINT32_SIZEOF));
+
+        setOwner(mesh);
 
         copyVertexData(mesh);
         copyIndexData(mesh);
 
-        mesh.storageInfo().index(meshes.size());
-
         meshes.add(mesh);
+
+        onMeshIndexChanged(mesh);
     }
 
     protected synchronized void free(int index) {
@@ -56,37 +94,52 @@ public abstract class MeshStorageHandler<T extends Mesh> {
 
     protected synchronized void free(T mesh) {
 
-        // Free the storage occupied by the given mesh
+        MeshStorageInfo storageInfo = mesh.storageInfo();
 
-        MeshStorageInfo meshStorageInfo = mesh.storageInfo();
+        final int index = storageInfo.index();
 
-        final int index = meshStorageInfo.index();
-        vertexBufferOffset = meshStorageInfo.vertexBufferOffset();
-        indexBufferOffset = meshStorageInfo.indexBufferOffset();
-        baseVertex = meshStorageInfo.baseVertex();
-        firstIndex = meshStorageInfo.firstIndex();
+        if(index < 0 || index >= meshes.size() || meshes.get(index) != mesh) {
+            return;
+        }
 
-        for(int i = index;i < meshes.size();i++) {
+        freeRange(vertexAllocator, storageInfo.vertexRange());
+        freeRange(indexAllocator, storageInfo.indexRange());
 
-            final T nextMesh = meshes.get(i);
+        storageInfo.vertexRange(NO_SPACE);
+        storageInfo.indexRange(NO_SPACE);
 
-            copyVertexData(nextMesh);
-            copyIndexData(nextMesh);
+        // Swap with the last mesh, so no other mesh is moved in the list or in the buffers
+        final T last = meshes.remove(meshes.size() - 1);
 
-            nextMesh.storageInfo().index(i);
+        if(last != mesh) {
+            meshes.set(index, last);
+            last.storageInfo().index(index);
+            setOwner(last);
+            onMeshIndexChanged(last);
+            ++modifications;
         }
 
-        meshes.remove(index);
+        storageInfo.index(-1);
+    }
+
+    /**
+     * Moves meshes down into the free space left by the freed ones, so it gathers at the end of the buffers. At most
+     * maxBytes are moved per call, so this can be called every frame until the buffers are compact again
+     */
+    public synchronized void defragment(long maxBytes) {
+
+        final long movedBytes = defragment(vertexAllocator, vertexBuffer, vertexSize, maxBytes);
+
+        defragment(indexAllocator, indexBuffer, UINT32_SIZEOF, maxBytes - movedBytes);
     }
 
     protected void clear() {
         meshes.clear();
         vertexBuffer.reallocate(VERTEX_BUFFER_INITIAL_CAPACITY);
         indexBuffer.reallocate(INDEX_BUFFER_INITIAL_CAPACITY);
-        vertexBufferOffset = 0;
-        indexBufferOffset = 0;
-        firstIndex = 0;
-        baseVertex = 0;
+        vertexAllocator.reset((int) (vertexBuffer.size() / vertexSize));
+        indexAllocator.reset((int) (indexBuffer.size() / UINT32_SIZEOF));
+        ++modifications;
     }
 
     protected void terminate() {
@@ -105,61 +158,148 @@ public abstract class MeshStorageHandler<T extends Mesh> {
         return (B) indexBuffer;
     }
 
-    public long vertexBufferOffset() {
-        return vertexBufferOffset;
-    }
-
-    public long indexBufferOffset() {
-        return indexBufferOffset;
-    }
-
     protected void copyVertexData(T mesh) {
 
-        vertexBuffer.update(vertexBufferOffset, mesh.vertexData());
-
-        mesh.storageInfo().baseVertex(baseVertex);
-        mesh.storageInfo().vertexBufferOffset(vertexBufferOffset);
+        updateStorageInfo(mesh);
 
-        baseVertex += mesh.vertexCount();
-        vertexBufferOffset += mesh.vertexData().capacity();
+        if(mesh.storageInfo().vertexRange() != NO_SPACE) {
+            updateVertexBuffer(mesh, mesh.storageInfo().vertexBufferOffset());
+        }
     }
 
-    protected void copyIndexData(T mesh) {
-
-        indexBuffer.update(indexBufferOffset, mesh.indexData());
+    /**
+     * Writes the vertices of the mesh into the vertex buffer at the given offset
+     */
+    protected void updateVertexBuffer(T mesh, long offset) {
+        vertexBuffer.update(offset, mesh.vertexData());
+    }
 
-        mesh.storageInfo().firstIndex(firstIndex);
-        mesh.storageInfo().indexBufferOffset(indexBufferOffset);
+    /**
+     * Called when a mesh is stored at a new index of this handler
+     */
+    protected void onMeshIndexChanged(T mesh) {
 
-        firstIndex += mesh.indexCount();
-        indexBufferOffset += mesh.indexData().capacity();
     }
 
-    protected void checkBuffers(T mesh) {
-
-        final int vertexDataSize = mesh.vertexData().capacity();
-        final int indexDataSize = mesh.indexData().capacity();
+    protected void copyIndexData(T mesh) {
 
-        if(vertexBufferOffset + vertexDataSize > vertexBuffer.size()) {
-            vertexBuffer.resize(vertexBuffer.size() + vertexDataSize);
-        }
+        updateStorageInfo(mesh);
 
-        if(indexBufferOffset + indexDataSize > indexBuffer.size()) {
-            indexBuffer.resize(indexBuffer.size() + indexDataSize);
+        if(mesh.storageInfo().indexRange() != NO_SPACE) {
+            indexBuffer.update(mesh.storageInfo().indexBufferOffset(), mesh.indexData());
+            // The levels of detail go right after the mesh, so they share its range
+            if(mesh.lods() != null) {
+                indexBuffer.update(mesh.storageInfo().indexBufferOffset() + (long) mesh.indexCount() * UINT32_SIZEOF, mesh.lods().indexData());
+            }
         }
     }
 
     protected IndexBuffer createIndexBuffer() {
         IndexBuffer indexBuffer = GraphicsFactory.get().newIndexBuffer();
         indexBuffer.allocate(INDEX_BUFFER_INITIAL_CAPACITY);
-        indexBufferOffset = 0;
         return indexBuffer;
     }
 
     protected VertexBuffer createVertexBuffer() {
         VertexBuffer vertexBuffer = GraphicsFactory.get().newVertexBuffer();
         vertexBuffer.allocate(VERTEX_BUFFER_INITIAL_CAPACITY);
-        vertexBufferOffset = 0;
         return vertexBuffer;
     }
+
+    private int allocateRange(MeshBufferAllocator allocator, GraphicsBuffer buffer, int count, int elementSize) {
+
+        if(count == 0) {
+            return NO_SPACE;
+        }
+
+        int range = allocator.allocate(count);
+
+        if(range == NO_SPACE) {
+            // Grow geometrically, so loading many meshes only resizes the buffer a few times
+            final int newCapacity = max(allocator.capacity() * 2, allocator.capacity() + count);
+            buffer.resize((long) newCapacity * elementSize);
+            allocator.grow(newCapacity);
+            range = allocator.allocate(count);
+        }
+
+        return range;
+    }
+
+    private int storedIndexCount(T mesh) {
+        return mesh.lods() == null ? mesh.indexCount() : mesh.indexCount() + mesh.lods().indexCount();
+    }
+
+    private void freeRange(MeshBufferAllocator allocator, int range) {
+        if(range != NO_SPACE) {
+            allocator.free(range);
+        }
+    }
+
+    private void setOwner(T mesh) {
+
+        MeshStorageInfo storageInfo = mesh.storageInfo();
+
+        if(storageInfo.vertexRange() != NO_SPACE) {
+            vertexAllocator.owner(storageInfo.vertexRange(), storageInfo.index());
+        }
+
+        if(storageInfo.indexRange() != NO_SPACE) {
+            indexAllocator.owner(storageInfo.indexRange(), storageInfo.index());
+        }
+    }
+
+    private void updateStorageInfo(T mesh) {
+
+        MeshStorageInfo storageInfo = mesh.storageInfo();
+
+        final int vertexRange = storageInfo.vertexRange();
+        final int indexRange = storageInfo.indexRange();
+
+        storageInfo.baseVertex(vertexRange == NO_SPACE ? 0 : vertexAllocator.offset(vertexRange));
+        storageInfo.vertexBufferOffset((long) storageInfo.baseVertex() * vertexSize);
+
+        storageInfo.firstIndex(indexRange == NO_SPACE ? 0 : indexAllocator.offset(indexRange));
+        storageInfo.indexBufferOffset((long) storageInfo.firstIndex() * UINT32_SIZEOF);
+    }
+
+    private long defragment(MeshBufferAllocator allocator, GraphicsBuffer buffer, int elementSize, long maxBytes) {
+
+        if(!allocator.fragmented()) {
+            return 0;
+        }
+
+        long movedBytes = 0;
+
+        for(int range = allocator.nextMovableRange(NO_SPACE);
+            range != NO_SPACE && movedBytes < maxBytes;
+            range = allocator.nextMovableRange(range)) {
+
+            final T mesh = meshes.get(allocator.owner(range));
+
+            final long srcOffset = (long) allocator.offset(range) * elementSize;
+            final long size = (long) allocator.size(range) * elementSize;
+
+            allocator.moveDown(range);
+
+            final long destOffset = (long) allocator.offset(range) * elementSize;
+
+            if(srcOffset - destOffset >= size) {
+                buffer.copyRange(srcOffset, destOffset, size);
+                updateStorageInfo(mesh);
+            } else if(allocator == vertexAllocator) {
+                // The GPU cannot copy between overlapping ranges, so upload the data of the mesh again
+                copyVertexData(mesh);
+            } else {
+                copyIndexData(mesh);
+            }
+
+            movedBytes += size;
+        }
+
+        if(movedBytes > 0) {
+            ++modifications;
+        }
+
+        return movedBytes;
+    }
 }
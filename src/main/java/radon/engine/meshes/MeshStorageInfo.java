@@ -7,6 +7,9 @@ public class MeshStorageInfo {
     private long indexBufferOffset;
     private int baseVertex;
     private int firstIndex;
+    // Ranges of the storage buffers
+    private int vertexRange;
+    private int indexRange;
 
     protected MeshStorageInfo() {
 
@@ -51,4 +54,20 @@ public class MeshStorageInfo {
     void firstIndex(int firstIndex) {
         this.firstIndex = firstIndex;
     }
+
+    int vertexRange() {
+        return vertexRange;
+    }
+
+    void vertexRange(int vertexRange) {
+        this.vertexRange = vertexRange;
+    }
+
+    int indexRange() {
+        return indexRange;
+    }
+
+    void indexRange(int indexRange) {
+        this.indexRange = indexRange;
+    }
 }
@@ -34,7 +34,7 @@ public class StaticMesh extends Mesh implements Asset {
         MeshData data = new MeshData();
         meshData.accept(data);
 
-        return manager.createStaticMesh(name, data.vertices(), data.indices());
+        return manager.createStaticMesh(name, data.vertices(), data.indices(), data.lods());
     }
 
     public StaticMesh(int handle, String name, ByteBuffer vertexData, ByteBuffer indexData) {
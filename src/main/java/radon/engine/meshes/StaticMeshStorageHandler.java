@@ -1,5 +1,146 @@
 package radon.engine.meshes;
 
+import org.joml.Vector3fc;
+import org.lwjgl.system.MemoryStack;
+import radon.engine.graphics.GraphicsFactory;
+import radon.engine.graphics.buffers.StorageBuffer;
+
+import java.nio.ByteBuffer;
+
+import static java.lang.Math.abs;
+import static java.lang.Math.max;
+import static org.lwjgl.system.MemoryStack.stackPush;
+import static org.lwjgl.system.MemoryUtil.memAlloc;
+import static org.lwjgl.system.MemoryUtil.memFree;
+import static org.lwjgl.util.meshoptimizer.MeshOptimizer.meshopt_quantizeHalf;
+import static org.lwjgl.util.meshoptimizer.MeshOptimizer.meshopt_quantizeSnorm;
+import static radon.engine.core.RadonConfigConstants.COMPACT_VERTEX_FORMAT;
+import static radon.engine.util.types.DataType.*;
+
 public class StaticMeshStorageHandler extends MeshStorageHandler<StaticMesh> {
 
+    // Half float position relative to the center of the mesh + padding, octahedral normal as 2 snorm16 and half float
+    // texture coordinates
+    public static final int COMPACT_VERTEX_DATA_SIZE = 4 * FLOAT16_SIZEOF + 2 * INT16_SIZEOF + 2 * FLOAT16_SIZEOF;
+
+    private static final int MESH_CENTER_SIZEOF = VECTOR4_SIZEOF;
+    private static final int MESH_CENTERS_INITIAL_CAPACITY = 1024;
+
+    // Center of the bounds of each mesh, by index, the compact positions are relative to it
+    private final StorageBuffer meshCentersBuffer;
+
+    public StaticMeshStorageHandler() {
+        super(StaticMesh.VERTEX_DATA_SIZE, COMPACT_VERTEX_FORMAT ? COMPACT_VERTEX_DATA_SIZE : StaticMesh.VERTEX_DATA_SIZE);
+        meshCentersBuffer = COMPACT_VERTEX_FORMAT ? createMeshCentersBuffer() : null;
+    }
+
+    /**
+     * Returns the buffer with the center of every mesh, or null if the vertices are not stored in the compact format
+     */
+    @SuppressWarnings("unchecked")
+    public <B extends StorageBuffer> B meshCentersBuffer() {
+        return (B) meshCentersBuffer;
+    }
+
+    @Override
+    protected void updateVertexBuffer(StaticMesh mesh, long offset) {
+
+        if (!COMPACT_VERTEX_FORMAT) {
+            super.updateVertexBuffer(mesh, offset);
+            return;
+        }
+
+        ByteBuffer compactVertices = memAlloc(mesh.vertexCount() * COMPACT_VERTEX_DATA_SIZE);
+
+        try {
+            encode(mesh, compactVertices);
+            vertexBuffer().update(offset, compactVertices);
+        } finally {
+            memFree(compactVertices);
+        }
+    }
+
+    @Override
+    protected void onMeshIndexChanged(StaticMesh mesh) {
+
+        if (meshCentersBuffer == null) {
+            return;
+        }
+
+        final long offset = (long) mesh.storageInfo().index() * MESH_CENTER_SIZEOF;
+
+        if (meshCentersBuffer.size() < offset + MESH_CENTER_SIZEOF) {
+            meshCentersBuffer.resize(max(meshCentersBuffer.size() * 2, offset + MESH_CENTER_SIZEOF));
+        }
+
+        final Vector3fc center = mesh.boundingSphere().center();
+
+        try (MemoryStack stack = stackPush()) {
+            meshCentersBuffer.update(offset, stack.floats(center.x(), center.y(), center.z(), 0.0f));
+        }
+    }
+
+    @Override
+    protected void terminate() {
+        super.terminate();
+        if (meshCentersBuffer != null) {
+            meshCentersBuffer.release();
+        }
+    }
+
+    private StorageBuffer createMeshCentersBuffer() {
+        StorageBuffer buffer = GraphicsFactory.get().newStorageBuffer();
+        buffer.allocate((long) MESH_CENTERS_INITIAL_CAPACITY * MESH_CENTER_SIZEOF);
+        return buffer;
+    }
+
+    private static void encode(StaticMesh mesh, ByteBuffer dest) {
+
+        final ByteBuffer vertices = mesh.vertexData();
+        final Vector3fc center = mesh.boundingSphere().center();
+        final int stride = mesh.stride();
+
+        for (int i = 0; i < mesh.vertexCount(); i++) {
+
+            final int vertex = i * stride;
+
+            final int position = vertex + Mesh.VERTEX_POSITION_OFFSET;
+
+            dest.putShort((short) meshopt_quantizeHalf(vertices.getFloat(position) - center.x()));
+            dest.putShort((short) meshopt_quantizeHalf(vertices.getFloat(position + FLOAT32_SIZEOF) - center.y()));
+            dest.putShort((short) meshopt_quantizeHalf(vertices.getFloat(position + FLOAT32_SIZEOF * 2) - center.z()));
+            dest.putShort((short) 0);
+
+            putOctahedralNormal(vertices, vertex + Mesh.VERTEX_NORMAL_OFFSET, dest);
+
+            final int texCoords = vertex + Mesh.VERTEX_TEXCOORDS_OFFSET;
+
+            dest.putShort((short) meshopt_quantizeHalf(vertices.getFloat(texCoords)));
+            dest.putShort((short) meshopt_quantizeHalf(vertices.getFloat(texCoords + FLOAT32_SIZEOF)));
+        }
+
+        dest.flip();
+    }
+
+    // Projects the normal onto an octahedron and unfolds its lower half over the upper one
+    private static void putOctahedralNormal(ByteBuffer vertices, int offset, ByteBuffer dest) {
+
+        final float x = vertices.getFloat(offset);
+        final float y = vertices.getFloat(offset + FLOAT32_SIZEOF);
+        final float z = vertices.getFloat(offset + FLOAT32_SIZEOF * 2);
+
+        final float length = abs(x) + abs(y) + abs(z);
+
+        float u = length == 0.0f ? 0.0f : x / length;
+        float v = length == 0.0f ? 0.0f : y / length;
+
+        if (z < 0.0f) {
+            final float foldedU = (1.0f - abs(v)) * (u >= 0.0f ? 1.0f : -1.0f);
+            v = (1.0f - abs(u)) * (v >= 0.0f ? 1.0f : -1.0f);
+            u = foldedU;
+        }
+
+        dest.putShort((short) meshopt_quantizeSnorm(u, 16));
+        dest.putShort((short) meshopt_quantizeSnorm(v, 16));
+    }
 }
@@ -64,14 +64,37 @@ public final class TerrainMeshLoader {
 
     private TerrainMesh generateTerrain(String name, float size, float minY, float maxY, int width, int height, ByteBuffer pixels) {
 
+        ByteBuffer vertices = memCalloc(vertexDataSize(width, height));
+        ByteBuffer indices = memCalloc(indexDataSize(width, height));
+
+        final HeightMap heightMap = generateGeometry(size, minY, maxY, width, height, pixels, vertices, indices);
+
+        vertices.rewind();
+        indices.rewind();
+
+        return MeshManager.get().createTerrainMesh(name, vertices, indices, heightMap);
+    }
+
+    static int vertexDataSize(int width, int height) {
+        return width * height * VERTEX_DATA_SIZE;
+    }
+
+    static int indexDataSize(int width, int height) {
+        return (width - 1) * (height - 1) * 6 * INT32_SIZEOF;
+    }
+
+    /**
+     * Writes the vertices and indices of the terrain into the given buffers and returns its height map. It does not
+     * touch the graphics API, so it can also run outside of the rendering thread
+     */
+    HeightMap generateGeometry(float size, float minY, float maxY, int width, int height, ByteBuffer pixels,
+                               ByteBuffer vertices, ByteBuffer indices) {
+
         float[][] heights = new float[height][width];
 
         final float incX = size / (width - 1);
         final float incZ = size / (height - 1);
 
-        ByteBuffer vertices = memCalloc(width * height * VERTEX_DATA_SIZE);
-        ByteBuffer indices = memCalloc((width - 1) * (height - 1) * 6 * INT32_SIZEOF);
-
         int positionsOffset = VERTEX_POSITION_OFFSET;
         int normalsOffset = VERTEX_NORMAL_OFFSET;
         int textCoordsOffset = VERTEX_TEXCOORDS_OFFSET;
@@ -102,12 +125,7 @@ public final class TerrainMeshLoader {
             }
         }
 
-        vertices.rewind();
-        indices.rewind();
-
-        final HeightMap heightMap = new HeightMap(size, heights, minY, maxY);
-
-        return MeshManager.get().createTerrainMesh(name, vertices, indices, heightMap);
+        return new HeightMap(size, heights, minY, maxY);
     }
 
     private void setNormal(ByteBuffer vertices, int offset,
@@ -4,7 +4,10 @@ import org.lwjgl.PointerBuffer;
 import org.lwjgl.assimp.AIMesh;
 import org.lwjgl.assimp.AIScene;
 import radon.engine.logging.Log;
+import radon.engine.meshes.MeshLODSettings;
+import radon.engine.meshes.MeshLODs;
 import radon.engine.meshes.MeshManager;
+import radon.engine.meshes.MeshOptimization;
 import radon.engine.meshes.StaticMesh;
 import radon.engine.util.FileUtils;
 
@@ -55,6 +58,14 @@ public final class StaticModelLoader extends AssimpLoader {
     }
 
     public synchronized StaticModel load(Path path, StaticVertexHandler handler, NameMapper nameMapper) {
+        return load(path, handler, nameMapper, null);
+    }
+
+    /**
+     * Loads the model and generates the levels of detail of its meshes with the given settings, or none if they are
+     * null
+     */
+    public synchronized StaticModel load(Path path, StaticVertexHandler handler, NameMapper nameMapper, MeshLODSettings lodSettings) {
 
         assertNonNull(handler);
 
@@ -74,7 +85,7 @@ public final class StaticModelLoader extends AssimpLoader {
 
         float start = System.nanoTime();
 
-        StaticModel model = loadAssimp(path, handler, nameMapper);
+        StaticModel model = loadAssimp(path, handler, nameMapper, lodSettings);
 
         float end = (float) ((System.nanoTime() - start) / 1e6);
 
@@ -85,7 +96,7 @@ public final class StaticModelLoader extends AssimpLoader {
         return model;
     }
 
-    private StaticModel loadAssimp(Path path, StaticVertexHandler handler, NameMapper nameMapper) {
+    private StaticModel loadAssimp(Path path, StaticVertexHandler handler, NameMapper nameMapper, MeshLODSettings lodSettings) {
 
         ByteBuffer fileContents = FileUtils.readAllBytes(path);
 
@@ -106,7 +117,7 @@ public final class StaticModelLoader extends AssimpLoader {
 
             for (int i = 0; i < meshes.capacity(); i++) {
                 AIMesh aiMesh = requireNonNull(AIMesh.createSafe(meshes.get(i)));
-                model.addMesh(loadMesh(aiScene, aiMesh, handler, nameMapper));
+                model.addMesh(loadMesh(aiScene, aiMesh, handler, nameMapper, lodSettings));
             }
 
             return model;
@@ -116,7 +127,8 @@ public final class StaticModelLoader extends AssimpLoader {
         }
     }
 
-    private StaticMesh loadMesh(AIScene aiScene, AIMesh aiMesh, StaticVertexHandler handler, NameMapper nameMapper) {
+    private StaticMesh loadMesh(AIScene aiScene, AIMesh aiMesh, StaticVertexHandler handler, NameMapper nameMapper,
+                                MeshLODSettings lodSettings) {
 
         final String meshName = nameMapper.rename(aiMesh.mName().dataString());
 
@@ -126,14 +138,23 @@ public final class StaticModelLoader extends AssimpLoader {
 
         if (mesh == null) {
 
-            ByteBuffer vertices = memAlloc(StaticMesh.VERTEX_DATA_SIZE * aiMesh.mNumVertices());
+            ByteBuffer vertexData = memAlloc(StaticMesh.VERTEX_DATA_SIZE * aiMesh.mNumVertices());
             ByteBuffer indices = getIndices(aiMesh);
 
-            processPositionAttribute(aiMesh, handler, vertices, StaticMesh.VERTEX_DATA_SIZE);
-            processNormalAttribute(aiMesh, handler, vertices, StaticMesh.VERTEX_DATA_SIZE);
-            processTexCoordsAttribute(aiMesh, handler, vertices, StaticMesh.VERTEX_DATA_SIZE);
+            processPositionAttribute(aiMesh, handler, vertexData, StaticMesh.VERTEX_DATA_SIZE);
+            processNormalAttribute(aiMesh, handler, vertexData, StaticMesh.VERTEX_DATA_SIZE);
+            processTexCoordsAttribute(aiMesh, handler, vertexData, StaticMesh.VERTEX_DATA_SIZE);
+
+            final ByteBuffer vertices = indices == null ? vertexData
+                    : MeshOptimization.optimize(vertexData, indices, StaticMesh.VERTEX_DATA_SIZE);
+
+            final MeshLODs lods = lodSettings == null || indices == null ? null
+                    : MeshLODs.generate(vertices, indices, StaticMesh.VERTEX_DATA_SIZE, lodSettings);
 
-            mesh = StaticMesh.get(meshName, staticMeshData -> staticMeshData.set(vertices, indices));
+            mesh = StaticMesh.get(meshName, staticMeshData -> {
+                staticMeshData.set(vertices, indices);
+                staticMeshData.lods(lods);
+            });
         }
 
         return mesh;
@@ -4,8 +4,7 @@ import radon.engine.util.types.ByteSize;
 import radon.engine.util.types.DataType;
 
 import static java.util.Objects.requireNonNull;
-import static radon.engine.util.types.DataType.FLOAT32;
-import static radon.engine.util.types.DataType.INT32;
+import static radon.engine.util.types.DataType.*;
 
 public enum VertexAttribute implements ByteSize {
 
@@ -22,14 +21,24 @@ public enum VertexAttribute implements ByteSize {
     MATRIX4F(FLOAT32, 16),
     INDEX(INT32, 1),
     BONE_IDS(INT32, 4),
-    BONE_WEIGHTS(FLOAT32, 4);
+    BONE_WEIGHTS(FLOAT32, 4),
+    // Compact vertex attributes. The fourth component of the position is padding
+    POSITION3D_HALF(FLOAT16, 4),
+    NORMAL_OCTAHEDRAL(INT16, 2, true),
+    TEXCOORDS2D_HALF(FLOAT16, 2);
 
     private final DataType dataType;
     private final int size;
+    private final boolean normalized;
 
     VertexAttribute(DataType dataType, int size) {
+        this(dataType, size, false);
+    }
+
+    VertexAttribute(DataType dataType, int size, boolean normalized) {
         this.dataType = requireNonNull(dataType);
         this.size = size;
+        this.normalized = normalized;
     }
 
     public DataType dataType() {
@@ -40,6 +49,13 @@ public enum VertexAttribute implements ByteSize {
         return size;
     }
 
+    /**
+     * Whether this integer attribute is read as a float in [-1, 1], or [0, 1] if it is unsigned
+     */
+    public boolean normalized() {
+        return normalized;
+    }
+
     @Override
     public int sizeof() {
         return size * dataType.sizeof();
@@ -9,9 +9,15 @@ public class VertexLayouts {
             .build();
 
 
+    // Transform, material and mesh indices of each instance
     public static final VertexLayout VERTEX_LAYOUT_3D_INDIRECT = new VertexLayout.Builder(2)
             .put(0, 0, POSITION3D, NORMAL, TEXCOORDS2D)
-            .put(1, 3, INDEX, INDEX).instanced(1, true)
+            .put(1, 3, INDEX, INDEX, INDEX).instanced(1, true)
+            .build();
+
+    public static final VertexLayout VERTEX_LAYOUT_3D_INDIRECT_COMPACT = new VertexLayout.Builder(2)
+            .put(0, 0, POSITION3D_HALF, NORMAL_OCTAHEDRAL, TEXCOORDS2D_HALF)
+            .put(1, 3, INDEX, INDEX, INDEX).instanced(1, true)
             .build();
 
 }
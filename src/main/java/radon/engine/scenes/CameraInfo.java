@@ -29,11 +29,9 @@ public final class CameraInfo implements Resource {
 
         cameraBuffer = GraphicsFactory.get().newUniformBuffer();
         cameraBuffer.allocate(CAMERA_BUFFER_SIZE);
-        cameraBuffer.mapMemory();
 
         frustumBuffer = GraphicsFactory.get().newUniformBuffer();
         frustumBuffer.allocate(FRUSTUM_BUFFER_SIZE);
-        frustumBuffer.mapMemory();
     }
 
     @SuppressWarnings("unchecked")
@@ -66,7 +64,7 @@ public final class CameraInfo implements Resource {
             camera.projectionViewMatrix().get(CAMERA_BUFFER_PROJECTION_VIEW_OFFSET, buffer);
             camera.position().get(CAMERA_BUFFER_CAMERA_POSITION_OFFSET, buffer);
 
-            cameraBuffer.copy(0, buffer);
+            cameraBuffer.update(0, buffer);
         }
     }
 
@@ -82,7 +80,7 @@ public final class CameraInfo implements Resource {
                 camera.frustumPlanes()[i].get(FRUSTUM_BUFFER_PLANES_OFFSET + i * VECTOR4_SIZEOF, buffer);
             }
 
-            frustumBuffer.copy(0, buffer);
+            frustumBuffer.update(0, buffer);
         }
     }
 }
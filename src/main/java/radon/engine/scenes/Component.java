@@ -1,16 +1,36 @@
 package radon.engine.scenes;
 
+import radon.engine.util.collections.FastIterableSet;
+
 public abstract class Component<SELF extends Component> extends SceneObject {
 
+    /**
+     * Slot of the component in the set of enabled components of its manager
+     */
+    public static final FastIterableSet.SlotAccessor<Component> SLOT = new FastIterableSet.SlotAccessor<>() {
+
+        @Override
+        public int slotOf(Object element) {
+            return element instanceof Component ? ((Component<?>) element).slot : FastIterableSet.NO_SLOT;
+        }
+
+        @Override
+        public void setSlot(Component element, int slot) {
+            element.slot = slot;
+        }
+    };
+
     Entity entity;
     ComponentManager<SELF> manager;
     private boolean enabled;
+    private int slot;
 
 
     @Override
     protected void init() {
         super.init();
         enabled = true;
+        slot = FastIterableSet.NO_SLOT;
     }
 
     public Entity entity() {
@@ -0,0 +1,116 @@
+package radon.engine.scenes;
+
+import java.util.Arrays;
+
+import static java.lang.Math.max;
+
+/**
+ * Sparse set of the components of one class in a scene. Components are packed in a dense array, and a sparse array
+ * indexed by entity index maps every entity to its component in constant time
+ */
+public final class ComponentPool<T extends Component> {
+
+    private static final int INITIAL_CAPACITY = 16;
+    private static final int ABSENT = -1;
+
+    private Component[] components;
+    private int[] entities;
+    private int[] sparse;
+    private int size;
+
+    ComponentPool() {
+        components = new Component[INITIAL_CAPACITY];
+        entities = new int[INITIAL_CAPACITY];
+        sparse = new int[INITIAL_CAPACITY];
+        Arrays.fill(sparse, ABSENT);
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    /**
+     * Returns the component at the given position of the dense array
+     */
+    @SuppressWarnings("unchecked")
+    public T component(int index) {
+        return (T) components[index];
+    }
+
+    /**
+     * Returns the index of the entity owning the component at the given position of the dense array
+     */
+    public int entity(int index) {
+        return entities[index];
+    }
+
+    /**
+     * Returns the component of the entity with the given index, or null if it has none
+     */
+    @SuppressWarnings("unchecked")
+    public T get(int entityIndex) {
+        if (entityIndex < 0 || entityIndex >= sparse.length) {
+            return null;
+        }
+        final int index = sparse[entityIndex];
+        return index == ABSENT ? null : (T) components[index];
+    }
+
+    void add(int entityIndex, T component) {
+
+        if (entityIndex >= sparse.length) {
+            final int oldLength = sparse.length;
+            sparse = Arrays.copyOf(sparse, max(entityIndex + 1, oldLength * 2));
+            Arrays.fill(sparse, oldLength, sparse.length, ABSENT);
+        }
+
+        if (sparse[entityIndex] != ABSENT) {
+            components[sparse[entityIndex]] = component;
+            return;
+        }
+
+        if (size == components.length) {
+            components = Arrays.copyOf(components, size * 2);
+            entities = Arrays.copyOf(entities, size * 2);
+        }
+
+        components[size] = component;
+        entities[size] = entityIndex;
+        sparse[entityIndex] = size;
+
+        ++size;
+    }
+
+    void remove(int entityIndex, T component) {
+
+        if (entityIndex < 0 || entityIndex >= sparse.length) {
+            return;
+        }
+
+        final int index = sparse[entityIndex];
+
+        if (index == ABSENT || components[index] != component) {
+            return;
+        }
+
+        // Move the last component into the gap to keep the dense array packed
+        final int last = --size;
+
+        components[index] = components[last];
+        entities[index] = entities[last];
+        sparse[entities[index]] = index;
+
+        components[last] = null;
+        sparse[entityIndex] = ABSENT;
+    }
+
+    void clear() {
+        Arrays.fill(components, 0, size, null);
+        Arrays.fill(sparse, ABSENT);
+        size = 0;
+    }
+}
@@ -0,0 +1,50 @@
+package radon.engine.scenes;
+
+import java.util.function.BiConsumer;
+
+/**
+ * Iterates the entities of a scene having both component classes. The smallest pool is traversed in its dense order
+ * and the other component is found through the sparse index of its pool. Components cannot be added or removed
+ * during the iteration
+ */
+public final class ComponentQuery<A extends Component, B extends Component> {
+
+    private final ComponentPool<A> first;
+    private final ComponentPool<B> second;
+
+    ComponentQuery(ComponentPool<A> first, ComponentPool<B> second) {
+        this.first = first;
+        this.second = second;
+    }
+
+    /**
+     * Performs the action for every entity having both components enabled
+     */
+    public void forEach(BiConsumer<A, B> action) {
+
+        if (first.size() <= second.size()) {
+
+            for (int i = 0; i < first.size(); i++) {
+
+                final A a = first.component(i);
+                final B b = second.get(first.entity(i));
+
+                if (b != null && a.enabled() && b.enabled()) {
+                    action.accept(a, b);
+                }
+            }
+
+        } else {
+
+            for (int i = 0; i < second.size(); i++) {
+
+                final B b = second.component(i);
+                final A a = first.get(second.entity(i));
+
+                if (a != null && a.enabled() && b.enabled()) {
+                    action.accept(a, b);
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,29 @@
+package radon.engine.scenes;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Dense integer identifiers of component classes. They index the components of every entity and the component pools of
+ * every scene, so looking up a component never hashes its class more than once
+ */
+public final class ComponentType {
+
+    private static final AtomicInteger NEXT_ID = new AtomicInteger();
+
+    private static final ClassValue<Integer> IDS = new ClassValue<>() {
+        @Override
+        protected Integer computeValue(Class<?> type) {
+            return NEXT_ID.getAndIncrement();
+        }
+    };
+
+    public static int of(Class<? extends Component> componentClass) {
+        return IDS.get(componentClass);
+    }
+
+    public static int count() {
+        return NEXT_ID.get();
+    }
+
+    private ComponentType() {}
+}
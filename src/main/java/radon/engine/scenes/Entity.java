@@ -2,10 +2,10 @@ package radon.engine.scenes;
 
 import radon.engine.logging.Log;
 
-import java.util.HashMap;
+import java.util.Arrays;
 import java.util.Iterator;
-import java.util.Map;
 import java.util.NoSuchElementException;
+import java.util.Objects;
 import java.util.stream.Stream;
 
 import static radon.engine.util.Asserts.assertNonNull;
@@ -50,27 +50,36 @@ public final class Entity extends SceneObject implements Iterable<Component> {
     private String name;
     private String tag;
     private Scene scene;
-    private Map<Class<? extends Component>, Component> components;
+    // Indexed by ComponentType
+    private Component[] components;
+    private int componentCount;
     private int index;
     private boolean enabled;
 
     Entity(String name, String tag, Scene scene, int index) {
-        components = new HashMap<>();
+        components = new Component[ComponentType.count()];
         init(name, tag, scene, index);
     }
 
     public synchronized <T extends Component> T add(Class<T> componentClass) {
         assertNonNull(componentClass);
 
-        if(has(componentClass)) {
-            return getComponent(componentClass);
+        final int type = ComponentType.of(componentClass);
+
+        if(type < components.length && components[type] != null) {
+            return componentClass.cast(components[type]);
         }
 
         T component = newInstance(componentClass);
         component.init();
         component.entity = this;
 
-        components.put(componentClass, component);
+        if(type >= components.length) {
+            components = Arrays.copyOf(components, Math.max(type + 1, ComponentType.count()));
+        }
+
+        components[type] = component;
+        ++componentCount;
 
         if(!destroyed()) {
             doLater(() -> scene.add(component));
@@ -82,15 +91,27 @@ public final class Entity extends SceneObject implements Iterable<Component> {
     public <T extends Component> T get(Class<T> componentClass) {
         assertNonNull(componentClass);
 
-        if(has(componentClass)) {
-            return getComponent(componentClass);
+        final Component component = getComponent(ComponentType.of(componentClass));
+
+        if(component != null) {
+            return componentClass.cast(component);
         }
 
         return add(componentClass);
     }
 
-    private <T extends Component> T getComponent(Class<T> componentClass) {
-        return componentClass.cast(components.get(componentClass));
+    private Component getComponent(int type) {
+        return type < components.length ? components[type] : null;
+    }
+
+    private void removeComponent(Component component) {
+
+        final int type = ComponentType.of(component.getClass());
+
+        if(getComponent(type) == component) {
+            components[type] = null;
+            --componentCount;
+        }
     }
 
     public <T extends Component> T requires(Class<T> componentClass) {
@@ -114,7 +135,7 @@ public final class Entity extends SceneObject implements Iterable<Component> {
         }
 
         scene.destroy(component);
-        doLater(() -> components.remove(component.getClass()));
+        doLater(() -> removeComponent(component));
     }
 
     public void destroyNow(Component component) {
@@ -124,27 +145,27 @@ public final class Entity extends SceneObject implements Iterable<Component> {
         }
 
         scene.destroyNow(component);
-        components.remove(component.getClass());
+        removeComponent(component);
     }
 
     public boolean has(Class<? extends Component> componentClass) {
-        return components.containsKey(componentClass);
+        return getComponent(ComponentType.of(componentClass)) != null;
     }
 
     public boolean has(Component component) {
-        return components.containsValue(component);
+        return component != null && getComponent(ComponentType.of(component.getClass())) == component;
     }
 
     public int componentCount() {
-        return components.size();
+        return componentCount;
     }
 
     public Stream<Component> components() {
-        return components.values().stream();
+        return Arrays.stream(components).filter(Objects::nonNull);
     }
 
     public Stream<Component> components(Class<? extends Component> type) {
-        return this.components.values().stream().filter(c -> c.type().equals(type));
+        return components().filter(c -> c.type().equals(type));
     }
 
     public String name() {
@@ -171,7 +192,7 @@ public final class Entity extends SceneObject implements Iterable<Component> {
     @Override
     public Entity enable() {
         if(!enabled) {
-            components.values().forEach(Component::enable);
+            components().forEach(Component::enable);
             enabled = true;
         }
         return this;
@@ -180,7 +201,7 @@ public final class Entity extends SceneObject implements Iterable<Component> {
     @Override
     public Entity disable() {
         if(enabled) {
-            components.values().forEach(Component::disable);
+            components().forEach(Component::disable);
             enabled = false;
         }
         return this;
@@ -198,18 +219,18 @@ public final class Entity extends SceneObject implements Iterable<Component> {
 
     @Override
     public Iterator<Component> iterator() {
-        return components.values().iterator();
+        return components().iterator();
     }
 
     @Override
     protected void onDestroy() {
-        components.values().forEach(scene::destroyComponent);
+        components().forEach(scene::destroyComponent);
         index = INVALID_INDEX;
         name = null;
         tag = null;
         scene = null;
-        components.clear();
         components = null;
+        componentCount = 0;
     }
 
     int index() {
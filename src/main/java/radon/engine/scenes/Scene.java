@@ -22,11 +22,14 @@ import radon.engine.sprites.SceneSpriteInfo;
 import radon.engine.tiles.SceneTileMapInfo;
 
 import java.util.ArrayDeque;
+import java.util.Arrays;
 import java.util.Deque;
 import java.util.HashMap;
 import java.util.Map;
+import java.util.Objects;
 import java.util.stream.Stream;
 
+import static java.lang.Math.max;
 import static java.util.Objects.requireNonNull;
 import static radon.engine.scenes.Entity.UNTAGGED;
 import static radon.engine.util.Asserts.assertNonNull;
@@ -57,6 +60,8 @@ public final class Scene {
     private final TileMapManager tileMaps;
 
     private final Map<Class<? extends Component>, ComponentManager<?>> componentManagers;
+    // Components of every class, indexed by ComponentType
+    private ComponentPool<?>[] componentPools;
     // ===
 
     // Rendering
@@ -93,6 +98,7 @@ public final class Scene {
         tileMaps = newInstance(TileMapManager.class, this);
 
         componentManagers = createComponentManagersMap();
+        componentPools = new ComponentPool<?>[max(ComponentType.count(), 1)];
         // ===
 
         renderInfo = new SceneRenderInfo();
@@ -124,6 +130,10 @@ public final class Scene {
         return tileMaps;
     }
 
+    public TransformManager transforms() {
+        return transforms;
+    }
+
     public SceneRenderInfo renderInfo() {
         return renderInfo;
     }
@@ -143,6 +153,7 @@ public final class Scene {
 
     void update() {
         transforms.update();
+        meshes.update();
         sprites.update();
 
         behaviours.update();
@@ -186,6 +197,7 @@ public final class Scene {
         entityManager.remove();
         componentManagers.values().forEach(ComponentManager::removeAll);
         componentManagers.clear();
+        Arrays.stream(componentPools).filter(Objects::nonNull).forEach(ComponentPool::clear);
         environment.release();
     }
 
@@ -302,6 +314,8 @@ public final class Scene {
         manager.add(component);
 
         component.manager = manager;
+
+        pool(component.getClass()).add(component.entity().index(), component);
     }
 
     void destroy(Component component) {
@@ -341,9 +355,44 @@ public final class Scene {
 
         manager.remove(component);
 
+        pool(component.getClass()).remove(component.entity().index(), component);
+
         component.delete();
     }
 
+    /**
+     * Returns the components of the given class in this scene
+     */
+    public <T extends Component> ComponentPool<T> components(Class<T> componentClass) {
+        return pool(componentClass);
+    }
+
+    /**
+     * Returns a query over the entities having components of both classes, for example
+     * {@code scene.query(Transform.class, SpriteInstance.class).forEach((transform, sprite) -> ...)}
+     */
+    public <A extends Component, B extends Component> ComponentQuery<A, B> query(Class<A> first, Class<B> second) {
+        return new ComponentQuery<>(pool(first), pool(second));
+    }
+
+    @SuppressWarnings("unchecked")
+    private <T extends Component> ComponentPool<T> pool(Class<? extends Component> componentClass) {
+
+        final int type = ComponentType.of(componentClass);
+
+        if (type >= componentPools.length) {
+            componentPools = Arrays.copyOf(componentPools, max(type + 1, componentPools.length * 2));
+        }
+
+        ComponentPool<?> pool = componentPools[type];
+
+        if (pool == null) {
+            pool = componentPools[type] = new ComponentPool<>();
+        }
+
+        return (ComponentPool<T>) pool;
+    }
+
     @SuppressWarnings("unchecked")
     private <T extends Component> ComponentManager<T> managerOf(Class<T> type) {
         assertTrue(componentManagers.containsKey(type));
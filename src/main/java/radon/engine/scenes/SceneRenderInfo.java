@@ -1,6 +1,8 @@
 package radon.engine.scenes;
 
 import radon.engine.graphics.rendering.ShadingModel;
+import radon.engine.graphics.rendering.culling.FrustumCullingMode;
+import radon.engine.graphics.rendering.culling.OcclusionCullingMode;
 
 import static radon.engine.core.RadonConfigConstants.*;
 
@@ -10,11 +12,15 @@ public class SceneRenderInfo {
     private ShadingModel shadingModel;
     private boolean shadowsEnabled;
     private boolean vsync;
+    private FrustumCullingMode frustumCullingMode;
+    private OcclusionCullingMode occlusionCullingMode;
 
     public SceneRenderInfo() {
         shadingModel = SCENE_SHADING_MODEL;
         shadowsEnabled = SHADOWS_ENABLED_ON_START;
         vsync = VSYNC;
+        frustumCullingMode = FRUSTUM_CULLING_MODE;
+        occlusionCullingMode = OCCLUSION_CULLING_MODE;
     }
 
     public ShadingModel shadingModel() {
@@ -43,4 +49,22 @@ public class SceneRenderInfo {
         this.vsync = vsync;
         return this;
     }
+
+    public FrustumCullingMode frustumCullingMode() {
+        return frustumCullingMode;
+    }
+
+    public SceneRenderInfo frustumCullingMode(FrustumCullingMode frustumCullingMode) {
+        this.frustumCullingMode = frustumCullingMode;
+        return this;
+    }
+
+    public OcclusionCullingMode occlusionCullingMode() {
+        return occlusionCullingMode;
+    }
+
+    public SceneRenderInfo occlusionCullingMode(OcclusionCullingMode occlusionCullingMode) {
+        this.occlusionCullingMode = occlusionCullingMode;
+        return this;
+    }
 }
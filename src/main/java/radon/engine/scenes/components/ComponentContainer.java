@@ -64,7 +64,7 @@ public class ComponentContainer<T extends Component, EnabledContainer extends Co
     public static class Default<T extends Component> extends ComponentContainer<T, FastIterableSet<T>, HashSet<T>> {
 
         public Default() {
-            super(new FastIterableSet<>(), new HashSet<>());
+            super(new FastIterableSet<>(Component.SLOT), new HashSet<>());
         }
     }
 
@@ -1,12 +1,16 @@
 package radon.engine.scenes.components.behaviours;
 
 import radon.engine.scenes.Component;
+import radon.engine.util.collections.FastIterableSet;
 
 import static radon.engine.util.Asserts.assertTrue;
 
 public abstract class AbstractBehaviour extends Component<AbstractBehaviour> {
 
     private boolean started;
+    // Slots in the update and late update sets of the behaviour manager
+    int updateSlot;
+    int lateSlot;
 
     protected AbstractBehaviour() {
 
@@ -17,6 +21,8 @@ public abstract class AbstractBehaviour extends Component<AbstractBehaviour> {
         super.init();
         assertTrue(this instanceof IUpdateBehaviour || this instanceof ILateBehaviour);
         started = false;
+        updateSlot = FastIterableSet.NO_SLOT;
+        lateSlot = FastIterableSet.NO_SLOT;
         onInit();
     }
 
@@ -7,14 +7,40 @@ import radon.engine.util.collections.FastIterableSet;
 
 public class BehaviourManager extends ComponentManager<AbstractBehaviour> {
 
+    private static final FastIterableSet.SlotAccessor<IUpdateBehaviour> UPDATE_SLOT = new FastIterableSet.SlotAccessor<>() {
+
+        @Override
+        public int slotOf(Object element) {
+            return element instanceof AbstractBehaviour ? ((AbstractBehaviour) element).updateSlot : FastIterableSet.NO_SLOT;
+        }
+
+        @Override
+        public void setSlot(IUpdateBehaviour element, int slot) {
+            ((AbstractBehaviour) element).updateSlot = slot;
+        }
+    };
+
+    private static final FastIterableSet.SlotAccessor<ILateBehaviour> LATE_SLOT = new FastIterableSet.SlotAccessor<>() {
+
+        @Override
+        public int slotOf(Object element) {
+            return element instanceof AbstractBehaviour ? ((AbstractBehaviour) element).lateSlot : FastIterableSet.NO_SLOT;
+        }
+
+        @Override
+        public void setSlot(ILateBehaviour element, int slot) {
+            ((AbstractBehaviour) element).lateSlot = slot;
+        }
+    };
+
     private final FastIterableSet<IUpdateBehaviour> updateBehaviours;
     private final FastIterableSet<ILateBehaviour> lateBehaviours;
     private int size;
 
     private BehaviourManager(Scene scene) {
         super(scene);
-        updateBehaviours = new FastIterableSet<>();
-        lateBehaviours = new FastIterableSet<>();
+        updateBehaviours = new FastIterableSet<>(UPDATE_SLOT);
+        lateBehaviours = new FastIterableSet<>(LATE_SLOT);
     }
 
     public void update() {
@@ -8,15 +8,22 @@ import java.util.ArrayList;
 import java.util.List;
 import java.util.stream.Stream;
 
+/**
+ * View over the slot of this transform in the {@link TransformStorage} of its scene. Position, rotation and scale are
+ * relative to the parent, and are only stored in the slot. The model matrix is the world matrix computed by the storage
+ */
 public final class Transform extends Component<Transform> {
+
+    private static final ThreadLocal<Matrix4f> ROTATION = ThreadLocal.withInitial(Matrix4f::new);
+
     private Transform parent;
-    private Vector3f position;
-    private Matrix4f rotation;
-    private Vector3f scale;
     private Matrix4f modelMatrix;
     private Matrix4f normalMatrix; // Use Matrix4f to avoid alignment issues in shaders
     private List<Transform> children;
-    private boolean modified;
+    private int version;
+    // Slot in the packed storage of the scene, assigned the first time this transform is accessed
+    int slot;
+    TransformStorage storage;
 
 
     private Transform() {
@@ -26,47 +33,51 @@ public final class Transform extends Component<Transform> {
     @Override
     protected void init() {
         super.init();
-        position = new Vector3f();
-        rotation = new Matrix4f();
-        scale = new Vector3f(1.0f);
         modelMatrix = new Matrix4f();
         normalMatrix = new Matrix4f();
         children = new ArrayList<>(0);
-        identity();
+        slot = -1;
+        storage = null;
     }
 
     public Transform identity() {
         assertNotDeleted();
 
-        updateChildrenPosition(0, 0, 0);
-        updateChildrenScale(1, 1, 1);
-        updateChildrenRotation(0, 0, 0, 0);
-
-        modelMatrix.identity();
-        normalMatrix.identity();
-        rotation.identity();
-
-        modify();
+        storage().identity(slot);
 
         return this;
     }
 
     public boolean modified() {
         assertNotDeleted();
-        return modified;
+        return storage().modified(slot);
+    }
+
+    /**
+     * Incremented every time the model matrix is recomputed
+     */
+    public int version() {
+        assertNotDeleted();
+        return version;
     }
 
+    /**
+     * Returns a copy of the position, relative to the parent
+     */
     public Vector3fc position() {
         assertNotDeleted();
-        return position;
+        return getPosition(new Vector3f());
+    }
+
+    public Vector3f getPosition(Vector3f dest) {
+        assertNotDeleted();
+        return storage().getPosition(slot, dest);
     }
 
     public Transform position(float x, float y, float z) {
         assertNotDeleted();
         if (enabled()) {
-            updateChildrenPosition(x, y, z);
-            position.set(x, y, z);
-            modify();
+            storage().setPosition(slot, x, y, z);
         }
         return this;
     }
@@ -80,9 +91,7 @@ public final class Transform extends Component<Transform> {
     public Transform translate(float x, float y, float z) {
         assertNotDeleted();
         if (enabled()) {
-            updateChildrenPosition(position.x + x, position.y + y, position.z + z);
-            position.add(x, y, z);
-            modify();
+            storage().translate(slot, x, y, z);
         }
         return this;
     }
@@ -92,17 +101,23 @@ public final class Transform extends Component<Transform> {
         return translate(translation.x(), translation.y(), translation.z());
     }
 
+    /**
+     * Returns a copy of the scale, relative to the parent
+     */
     public Vector3fc scale() {
         assertNotDeleted();
-        return scale;
+        return getScale(new Vector3f());
+    }
+
+    public Vector3f getScale(Vector3f dest) {
+        assertNotDeleted();
+        return storage().getScale(slot, dest);
     }
 
     public Transform scale(float x, float y, float z) {
         assertNotDeleted();
         if (enabled()) {
-            updateChildrenScale(x, y, z);
-            scale.set(x, y, z);
-            modify();
+            storage().setScale(slot, x, y, z);
         }
         return this;
     }
@@ -119,31 +134,38 @@ public final class Transform extends Component<Transform> {
 
     public Transform scaleX(float scaleX) {
         assertNotDeleted();
-        return scale(scaleX, scale.y, scale.z);
+        final Vector3fc scale = scale();
+        return scale(scaleX, scale.y(), scale.z());
     }
 
     public Transform scaleY(float scaleY) {
         assertNotDeleted();
-        return scale(scale.x, scaleY, scale.z);
+        final Vector3fc scale = scale();
+        return scale(scale.x(), scaleY, scale.z());
     }
 
     public Transform scaleZ(float scaleZ) {
         assertNotDeleted();
-        return scale(scale.x, scale.y, scaleZ);
+        final Vector3fc scale = scale();
+        return scale(scale.x(), scale.y(), scaleZ);
     }
 
     public Vector3f euler() {
         assertNotDeleted();
-        return rotation.getEulerAnglesZYX(new Vector3f());
+        return rotationMatrix().getEulerAnglesZYX(new Vector3f());
     }
 
     public Quaternionf rotation() {
         assertNotDeleted();
-        return rotation.getNormalizedRotation(new Quaternionf());
+        return rotationMatrix().getNormalizedRotation(new Quaternionf());
     }
 
-    public Matrix4f rotationMatrix() {
-        return rotation;
+    /**
+     * Returns a copy of the rotation matrix, relative to the parent
+     */
+    public Matrix4fc rotationMatrix() {
+        assertNotDeleted();
+        return storage().getRotation(slot, new Matrix4f());
     }
 
     public float angle() {
@@ -155,10 +177,7 @@ public final class Transform extends Component<Transform> {
         assertNotDeleted();
 
         if (enabled()) {
-
-            rotation.identity();
-
-            modify();
+            storage().setRotation(slot, ROTATION.get().identity());
         }
 
         return this;
@@ -167,9 +186,7 @@ public final class Transform extends Component<Transform> {
     public Transform rotate(float radians, float x, float y, float z) {
         assertNotDeleted();
         if (enabled()) {
-            updateChildrenRotation(radians, x, y, z);
-            rotation.rotation(radians, x, y, z);
-            modify();
+            storage().setRotation(slot, ROTATION.get().rotation(radians, x, y, z));
         }
         return this;
     }
@@ -192,9 +209,7 @@ public final class Transform extends Component<Transform> {
     public Transform rotateX(float radians) {
         assertNotDeleted();
         if (enabled()) {
-            updateChildrenRotation(radians, 1, 0, 0);
-            rotation.rotationX(radians);
-            modify();
+            storage().setRotation(slot, ROTATION.get().rotationX(radians));
         }
         return this;
     }
@@ -202,9 +217,7 @@ public final class Transform extends Component<Transform> {
     public Transform rotateY(float radians) {
         assertNotDeleted();
         if (enabled()) {
-            updateChildrenRotation(radians, 0, 1, 0);
-            rotation.rotationY(radians);
-            modify();
+            storage().setRotation(slot, ROTATION.get().rotationY(radians));
         }
         return this;
     }
@@ -212,22 +225,25 @@ public final class Transform extends Component<Transform> {
     public Transform rotateZ(float radians) {
         assertNotDeleted();
         if (enabled()) {
-            updateChildrenRotation(radians, 0, 0, 1);
-            rotation.rotationZ(radians);
-            modify();
+            storage().setRotation(slot, ROTATION.get().rotationZ(radians));
         }
         return this;
     }
 
     public Transform rotateAround(float radians, float rx, float ry, float rz, float x0, float y0, float z0) {
 
+        final TransformStorage storage = storage();
+
+        final Vector3f position = storage.getPosition(slot, new Vector3f());
+        final Vector3f scale = storage.getScale(slot, new Vector3f());
+
         final float x = (x0 - position.x) * scale.x;
         final float y = (y0 - position.y) * scale.y;
         final float z = (z0 - position.z) * scale.z;
 
-        rotation.translate(x, y, z).rotate(radians, rx, ry, rz).translate(-x, -y, -z);
+        final Matrix4f rotation = storage.getRotation(slot, ROTATION.get());
 
-        modify();
+        storage.setRotation(slot, rotation.translate(x, y, z).rotate(radians, rx, ry, rz).translate(-x, -y, -z));
 
         return this;
     }
@@ -259,7 +275,11 @@ public final class Transform extends Component<Transform> {
     public Transform lookAt(float x, float y, float z) {
         assertNotDeleted();
 
-        rotation.setLookAt(position.x, position.y, position.z, x, y, z, 0, 1, 0);
+        final TransformStorage storage = storage();
+
+        final Vector3f position = storage.getPosition(slot, new Vector3f());
+
+        storage.setRotation(slot, ROTATION.get().setLookAt(position.x, position.y, position.z, x, y, z, 0, 1, 0));
 
         return this;
     }
@@ -283,6 +303,10 @@ public final class Transform extends Component<Transform> {
         return children.get(index);
     }
 
+    public int childCount() {
+        return children.size();
+    }
+
     public boolean addChild(Transform child) {
         assertNotDeleted();
 
@@ -308,6 +332,10 @@ public final class Transform extends Component<Transform> {
 
         child.parent = this;
 
+        if (child.storage != null) {
+            child.storage.setParent(child, this);
+        }
+
         return children.add(child);
     }
 
@@ -328,12 +356,21 @@ public final class Transform extends Component<Transform> {
             return false;
         }
 
+        child.parent = null;
+
+        if (child.storage != null) {
+            child.storage.setParent(child, null);
+        }
+
         return children.remove(child);
     }
 
     public void removeAllChildren() {
         for (Transform child : children) {
             child.parent = null;
+            if (child.storage != null) {
+                child.storage.setParent(child, null);
+            }
         }
         children.clear();
     }
@@ -344,7 +381,8 @@ public final class Transform extends Component<Transform> {
     }
 
     public void modify() {
-        modified = true;
+        assertNotDeleted();
+        storage().modify(slot);
     }
 
     @Override
@@ -378,9 +416,6 @@ public final class Transform extends Component<Transform> {
         removeAllChildren();
         children = null;
 
-        position = null;
-        rotation = null;
-        scale = null;
         modelMatrix = null;
         normalMatrix = null;
     }
@@ -391,58 +426,24 @@ public final class Transform extends Component<Transform> {
     }
 
 
-    void update() {
+    /**
+     * Sets the model matrix computed by the storage
+     */
+    void publish(float[] worldMatrices, int offset) {
 
-        modelMatrix.translation(position).mulAffine(rotation).scale(scale);
+        modelMatrix.set(worldMatrices, offset);
 
         // normalMatrix = transpose(inverse(mat3(model)))
         // normalMatrix.set(modelMatrix).invert().transpose();
         // normalMatrix._m30(0.0f)._m31(0.0f)._m32(0.0f);
-        modified = false;
-    }
-
-    private void updateChildrenPosition(float newX, float newY, float newZ) {
-        if (children.isEmpty()) {
-            return;
-        }
-
-        final float deltaX = newX - position.x;
-        final float deltaY = newY - position.y;
-        final float deltaZ = newZ - position.z;
-
-        for (Transform child : children) {
-            if (child.enabled()) {
-                child.translate(deltaX, deltaY, deltaZ);
-            }
-        }
+        ++version;
     }
 
-    private void updateChildrenScale(float newX, float newY, float newZ) {
-        if (children.isEmpty()) {
-            return;
-        }
-
-        final float deltaX = newX - scale.x;
-        final float deltaY = newY - scale.y;
-        final float deltaZ = newZ - scale.z;
-
-        for (Transform child : children) {
-            if (child.enabled()) {
-                final Vector3fc s = child.scale;
-                child.scale(s.x() + deltaX, s.y() + deltaY, s.z() + deltaZ);
-            }
-        }
-    }
-
-    private void updateChildrenRotation(float radians, float newX, float newY, float newZ) {
-        if (children.isEmpty()) {
-            return;
-        }
-
-        for (Transform child : children) {
-            if (child.enabled()) {
-                child.rotate(radians, newX, newY, newZ);
-            }
+    // Transforms get their slot on first access, which may happen before they are added to the scene
+    private TransformStorage storage() {
+        if (storage == null) {
+            scene().transforms().storage().attach(this);
         }
+        return storage;
     }
-}
\ No newline at end of file
+}
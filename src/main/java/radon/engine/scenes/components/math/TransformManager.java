@@ -3,19 +3,38 @@ package radon.engine.scenes.components.math;
 import radon.engine.scenes.Scene;
 import radon.engine.scenes.components.AbstractComponentManager;
 
-import java.util.stream.Stream;
-
 public final class TransformManager extends AbstractComponentManager<Transform> {
 
+    private final TransformStorage storage;
+
     private TransformManager(Scene scene) {
         super(scene);
+        storage = new TransformStorage();
     }
 
     public void update() {
-        modifiedTransforms().forEach(Transform::update);
+        storage.update();
+    }
+
+    TransformStorage storage() {
+        return storage;
+    }
+
+    @Override
+    protected void add(Transform transform) {
+        super.add(transform);
+        storage.attach(transform);
+    }
+
+    @Override
+    protected void remove(Transform transform) {
+        super.remove(transform);
+        storage.detach(transform);
     }
 
-    private Stream<Transform> modifiedTransforms() {
-        return components.enabled().parallelStream().unordered().filter(Transform::modified);
+    @Override
+    protected void removeAll() {
+        super.removeAll();
+        storage.clear();
     }
 }
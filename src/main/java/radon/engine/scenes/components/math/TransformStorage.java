@@ -0,0 +1,484 @@
+package radon.engine.scenes.components.math;
+
+import org.joml.Matrix4f;
+import org.joml.Matrix4fc;
+import org.joml.Vector3f;
+import radon.engine.graphics.rendering.RenderJobScheduler;
+
+import java.util.Arrays;
+
+import static java.lang.Math.max;
+
+/**
+ * Packed storage of the transforms of a scene. Local position, rotation and scale of every transform live in flat
+ * arrays indexed by a stable slot, and {@link Transform} only reads and writes its slot. Slots are grouped by their
+ * depth in the hierarchy so world matrices can be computed level by level, with parents always before their children.
+ * Only the modified transforms and their descendants are updated, every level in parallel
+ */
+final class TransformStorage {
+
+    private static final int INITIAL_CAPACITY = 256;
+    private static final int VECTOR_STRIDE = 3;
+    private static final int MATRIX_STRIDE = 16;
+    private static final int NO_PARENT = -1;
+
+    private float[] positions;
+    private float[] rotations;
+    private float[] scales;
+    private float[] worldMatrices;
+    private int[] parents;
+    private int[] depths;
+    private int[] levelIndices;
+    private boolean[] modified;
+    private Transform[] owners;
+    private int capacity;
+    // Slots grouped by depth
+    private int[][] levels;
+    private int[] levelSizes;
+    private int levelCount;
+    // Modified slots since the last update, in no particular order
+    private int[] dirtySlots;
+    private int dirtySlotCount;
+    // Free slots
+    private int[] freeSlots;
+    private int freeSlotCount;
+    private int slotCount;
+    // Slots to update in the current run, grouped by depth
+    private int[][] updateLevels;
+    private int[] updateLevelSizes;
+    private int[] updateStamps;
+    private int updateStamp;
+    // Per run attributes
+    private int[] currentLevel;
+
+    TransformStorage() {
+        positions = new float[0];
+        rotations = new float[0];
+        scales = new float[0];
+        worldMatrices = new float[0];
+        parents = new int[0];
+        depths = new int[0];
+        levelIndices = new int[0];
+        modified = new boolean[0];
+        owners = new Transform[0];
+        levels = new int[0][];
+        levelSizes = new int[0];
+        dirtySlots = new int[INITIAL_CAPACITY];
+        freeSlots = new int[0];
+        updateLevels = new int[0][];
+        updateLevelSizes = new int[0];
+        updateStamps = new int[0];
+        reserve(INITIAL_CAPACITY);
+    }
+
+    int size() {
+        return slotCount - freeSlotCount;
+    }
+
+    void attach(Transform transform) {
+
+        if (transform.slot >= 0) {
+            return;
+        }
+
+        final int slot = allocateSlot();
+
+        owners[slot] = transform;
+        parents[slot] = NO_PARENT;
+        depths[slot] = -1;
+
+        transform.slot = slot;
+        transform.storage = this;
+
+        identity(slot);
+
+        final Transform parent = transform.parent();
+
+        setLevel(slot, parent != null && parent.slot >= 0 ? parent.slot : NO_PARENT);
+
+        // Children may have been attached before their parent
+        for (int i = 0; i < transform.childCount(); i++) {
+            final Transform child = transform.child(i);
+            if (child.slot >= 0) {
+                setLevel(child.slot, slot);
+            }
+        }
+    }
+
+    void detach(Transform transform) {
+
+        final int slot = transform.slot;
+
+        if (slot < 0 || owners[slot] != transform) {
+            return;
+        }
+
+        for (int i = 0; i < transform.childCount(); i++) {
+            final Transform child = transform.child(i);
+            if (child.slot >= 0 && parents[child.slot] == slot) {
+                setLevel(child.slot, NO_PARENT);
+            }
+        }
+
+        removeFromLevel(slot);
+
+        owners[slot] = null;
+        // Left in the dirty slots if it was there, it is skipped since it has no owner
+        modified[slot] = false;
+
+        transform.slot = -1;
+        transform.storage = null;
+
+        freeSlots[freeSlotCount++] = slot;
+    }
+
+    void setParent(Transform transform, Transform parent) {
+        if (transform.slot >= 0) {
+            setLevel(transform.slot, parent != null && parent.slot >= 0 ? parent.slot : NO_PARENT);
+        }
+    }
+
+    boolean modified(int slot) {
+        return modified[slot];
+    }
+
+    /**
+     * Marks the slot for update. Transforms may be modified from several threads at once, as behaviours are updated in
+     * parallel, so the dirty slots are only appended under a lock
+     */
+    void modify(int slot) {
+        if (!modified[slot]) {
+            addDirtySlot(slot);
+        }
+    }
+
+    void identity(int slot) {
+        setPosition(slot, 0.0f, 0.0f, 0.0f);
+        setScale(slot, 1.0f, 1.0f, 1.0f);
+        new Matrix4f().get(rotations, slot * MATRIX_STRIDE);
+    }
+
+    Vector3f getPosition(int slot, Vector3f dest) {
+        final int offset = slot * VECTOR_STRIDE;
+        return dest.set(positions[offset], positions[offset + 1], positions[offset + 2]);
+    }
+
+    void setPosition(int slot, float x, float y, float z) {
+        final int offset = slot * VECTOR_STRIDE;
+        positions[offset] = x;
+        positions[offset + 1] = y;
+        positions[offset + 2] = z;
+        modify(slot);
+    }
+
+    void translate(int slot, float x, float y, float z) {
+        final int offset = slot * VECTOR_STRIDE;
+        positions[offset] += x;
+        positions[offset + 1] += y;
+        positions[offset + 2] += z;
+        modify(slot);
+    }
+
+    Vector3f getScale(int slot, Vector3f dest) {
+        final int offset = slot * VECTOR_STRIDE;
+        return dest.set(scales[offset], scales[offset + 1], scales[offset + 2]);
+    }
+
+    void setScale(int slot, float x, float y, float z) {
+        final int offset = slot * VECTOR_STRIDE;
+        scales[offset] = x;
+        scales[offset + 1] = y;
+        scales[offset + 2] = z;
+        modify(slot);
+    }
+
+    Matrix4f getRotation(int slot, Matrix4f dest) {
+        return dest.set(rotations, slot * MATRIX_STRIDE);
+    }
+
+    void setRotation(int slot, Matrix4fc rotation) {
+        rotation.get(rotations, slot * MATRIX_STRIDE);
+        modify(slot);
+    }
+
+    void clear() {
+
+        for (int i = 0; i < slotCount; i++) {
+            if (owners[i] != null) {
+                owners[i].slot = -1;
+                owners[i].storage = null;
+                owners[i] = null;
+            }
+        }
+
+        Arrays.fill(modified, false);
+        Arrays.fill(levelSizes, 0);
+        levelCount = 0;
+        dirtySlotCount = 0;
+        slotCount = 0;
+        freeSlotCount = 0;
+    }
+
+    /**
+     * Computes the world matrices of the modified transforms and of all their descendants. Nothing is done if no
+     * transform has been modified since the last update
+     */
+    void update() {
+
+        if (dirtySlotCount == 0) {
+            return;
+        }
+
+        ++updateStamp;
+
+        for (int i = 0; i < dirtySlotCount; i++) {
+            final int slot = dirtySlots[i];
+            if (owners[slot] != null && modified[slot]) {
+                scheduleUpdate(slot);
+            }
+        }
+
+        dirtySlotCount = 0;
+
+        for (int depth = 0; depth < levelCount; depth++) {
+
+            final int size = updateLevelSizes[depth];
+
+            if (size == 0) {
+                continue;
+            }
+
+            currentLevel = updateLevels[depth];
+
+            RenderJobScheduler.parallelFor(0, size, this::updateRange);
+
+            // The children of the updated slots go into the next level
+            for (int i = 0; i < size; i++) {
+                final Transform owner = owners[currentLevel[i]];
+                for (int j = 0; j < owner.childCount(); j++) {
+                    final int child = owner.child(j).slot;
+                    if (child >= 0) {
+                        scheduleUpdate(child);
+                    }
+                }
+            }
+
+            updateLevelSizes[depth] = 0;
+        }
+
+        currentLevel = null;
+    }
+
+    private synchronized void addDirtySlot(int slot) {
+
+        if (modified[slot]) {
+            return;
+        }
+
+        modified[slot] = true;
+
+        if (dirtySlotCount == dirtySlots.length) {
+            dirtySlots = Arrays.copyOf(dirtySlots, dirtySlotCount * 2);
+        }
+
+        dirtySlots[dirtySlotCount++] = slot;
+    }
+
+    private void scheduleUpdate(int slot) {
+
+        if (updateStamps[slot] == updateStamp) {
+            return;
+        }
+
+        updateStamps[slot] = updateStamp;
+
+        final int depth = depths[slot];
+
+        int[] level = updateLevels[depth];
+        final int size = updateLevelSizes[depth];
+
+        if (size == level.length) {
+            level = updateLevels[depth] = Arrays.copyOf(level, size * 2);
+        }
+
+        level[size] = slot;
+        updateLevelSizes[depth] = size + 1;
+    }
+
+    private void updateRange(int beginIndex, int endIndex) {
+
+        final int[] level = currentLevel;
+
+        for (int i = beginIndex; i < endIndex; i++) {
+
+            final int slot = level[i];
+
+            // Parents belong to previous levels, so their world matrices are already up to date
+            computeWorldMatrix(slot, parents[slot]);
+
+            modified[slot] = false;
+
+            owners[slot].publish(worldMatrices, slot * MATRIX_STRIDE);
+        }
+    }
+
+    private void computeWorldMatrix(int slot, int parent) {
+
+        final float[] r = rotations;
+        final float[] w = worldMatrices;
+
+        final int v = slot * VECTOR_STRIDE;
+        final int m = slot * MATRIX_STRIDE;
+
+        final float sx = scales[v];
+        final float sy = scales[v + 1];
+        final float sz = scales[v + 2];
+
+        // Local matrix = translation * rotation * scale, column major and affine
+        final float l00 = r[m] * sx, l01 = r[m + 1] * sx, l02 = r[m + 2] * sx;
+        final float l10 = r[m + 4] * sy, l11 = r[m + 5] * sy, l12 = r[m + 6] * sy;
+        final float l20 = r[m + 8] * sz, l21 = r[m + 9] * sz, l22 = r[m + 10] * sz;
+        final float l30 = r[m + 12] + positions[v];
+        final float l31 = r[m + 13] + positions[v + 1];
+        final float l32 = r[m + 14] + positions[v + 2];
+
+        if (parent == NO_PARENT) {
+            w[m] = l00; w[m + 1] = l01; w[m + 2] = l02; w[m + 3] = 0.0f;
+            w[m + 4] = l10; w[m + 5] = l11; w[m + 6] = l12; w[m + 7] = 0.0f;
+            w[m + 8] = l20; w[m + 9] = l21; w[m + 10] = l22; w[m + 11] = 0.0f;
+            w[m + 12] = l30; w[m + 13] = l31; w[m + 14] = l32; w[m + 15] = 1.0f;
+            return;
+        }
+
+        // World matrix = parent world matrix * local matrix
+        final int p = parent * MATRIX_STRIDE;
+
+        final float p00 = w[p], p01 = w[p + 1], p02 = w[p + 2];
+        final float p10 = w[p + 4], p11 = w[p + 5], p12 = w[p + 6];
+        final float p20 = w[p + 8], p21 = w[p + 9], p22 = w[p + 10];
+        final float p30 = w[p + 12], p31 = w[p + 13], p32 = w[p + 14];
+
+        w[m] = p00 * l00 + p10 * l01 + p20 * l02;
+        w[m + 1] = p01 * l00 + p11 * l01 + p21 * l02;
+        w[m + 2] = p02 * l00 + p12 * l01 + p22 * l02;
+        w[m + 3] = 0.0f;
+        w[m + 4] = p00 * l10 + p10 * l11 + p20 * l12;
+        w[m + 5] = p01 * l10 + p11 * l11 + p21 * l12;
+        w[m + 6] = p02 * l10 + p12 * l11 + p22 * l12;
+        w[m + 7] = 0.0f;
+        w[m + 8] = p00 * l20 + p10 * l21 + p20 * l22;
+        w[m + 9] = p01 * l20 + p11 * l21 + p21 * l22;
+        w[m + 10] = p02 * l20 + p12 * l21 + p22 * l22;
+        w[m + 11] = 0.0f;
+        w[m + 12] = p00 * l30 + p10 * l31 + p20 * l32 + p30;
+        w[m + 13] = p01 * l30 + p11 * l31 + p21 * l32 + p31;
+        w[m + 14] = p02 * l30 + p12 * l31 + p22 * l32 + p32;
+        w[m + 15] = 1.0f;
+    }
+
+    /**
+     * Moves the slot and all its descendants to the levels below the given parent
+     */
+    private void setLevel(int slot, int parent) {
+
+        final int depth = parent == NO_PARENT ? 0 : depths[parent] + 1;
+
+        parents[slot] = parent;
+        modify(slot);
+
+        if (depths[slot] == depth) {
+            return;
+        }
+
+        removeFromLevel(slot);
+        addToLevel(slot, depth);
+
+        final Transform owner = owners[slot];
+
+        for (int i = 0; i < owner.childCount(); i++) {
+            final Transform child = owner.child(i);
+            if (child.slot >= 0) {
+                setLevel(child.slot, slot);
+            }
+        }
+    }
+
+    private void addToLevel(int slot, int depth) {
+
+        if (depth >= levels.length) {
+            final int oldLength = levels.length;
+            levels = Arrays.copyOf(levels, max(depth + 1, oldLength * 2));
+            levelSizes = Arrays.copyOf(levelSizes, levels.length);
+            updateLevels = Arrays.copyOf(updateLevels, levels.length);
+            updateLevelSizes = Arrays.copyOf(updateLevelSizes, levels.length);
+            for (int i = oldLength; i < levels.length; i++) {
+                levels[i] = new int[INITIAL_CAPACITY];
+                updateLevels[i] = new int[INITIAL_CAPACITY];
+            }
+        }
+
+        int[] level = levels[depth];
+        final int size = levelSizes[depth];
+
+        if (size == level.length) {
+            level = levels[depth] = Arrays.copyOf(level, size * 2);
+        }
+
+        level[size] = slot;
+        levelSizes[depth] = size + 1;
+        levelIndices[slot] = size;
+        depths[slot] = depth;
+
+        levelCount = max(levelCount, depth + 1);
+    }
+
+    private void removeFromLevel(int slot) {
+
+        final int depth = depths[slot];
+
+        if (depth < 0) {
+            return;
+        }
+
+        final int[] level = levels[depth];
+        final int index = levelIndices[slot];
+        final int last = level[--levelSizes[depth]];
+
+        level[index] = last;
+        levelIndices[last] = index;
+
+        depths[slot] = -1;
+
+        while (levelCount > 0 && levelSizes[levelCount - 1] == 0) {
+            --levelCount;
+        }
+    }
+
+    private int allocateSlot() {
+
+        if (freeSlotCount > 0) {
+            return freeSlots[--freeSlotCount];
+        }
+
+        if (slotCount == capacity) {
+            reserve(capacity * 2);
+        }
+
+        return slotCount++;
+    }
+
+    private void reserve(int newCapacity) {
+        positions = Arrays.copyOf(positions, newCapacity * VECTOR_STRIDE);
+        rotations = Arrays.copyOf(rotations, newCapacity * MATRIX_STRIDE);
+        scales = Arrays.copyOf(scales, newCapacity * VECTOR_STRIDE);
+        worldMatrices = Arrays.copyOf(worldMatrices, newCapacity * MATRIX_STRIDE);
+        parents = Arrays.copyOf(parents, newCapacity);
+        depths = Arrays.copyOf(depths, newCapacity);
+        levelIndices = Arrays.copyOf(levelIndices, newCapacity);
+        modified = Arrays.copyOf(modified, newCapacity);
+        updateStamps = Arrays.copyOf(updateStamps, newCapacity);
+        owners = Arrays.copyOf(owners, newCapacity);
+        freeSlots = Arrays.copyOf(freeSlots, newCapacity);
+        capacity = newCapacity;
+    }
+}
@@ -16,6 +16,16 @@ import static radon.engine.util.Asserts.assertNonNull;
 public abstract class MeshInstance<T extends MeshView> extends Component<MeshInstance> implements Iterable<T> {
 
     protected List<T> meshViews;
+    private boolean staticShadows;
+    // Level of detail last drawn of each mesh view, so it only changes past some margin
+    private byte[] lods;
+    // Incremented every time the mesh views are set
+    int meshViewsVersion;
+    // Bookkeeping of the MeshInstanceList and MeshInstanceTree this instance belongs to
+    int listIndex;
+    int treeNode;
+    int treeTransformVersion;
+    int treeMeshViewsVersion;
 
     protected MeshInstance() {
 
@@ -25,6 +35,10 @@ public abstract class MeshInstance<T extends MeshView> extends Component<MeshIns
     protected void init() {
         super.init();
         meshViews = null;
+        staticShadows = false;
+        lods = null;
+        listIndex = -1;
+        treeNode = MeshInstanceTree.NULL_NODE;
     }
 
     public abstract Class<T> meshViewType();
@@ -51,11 +65,38 @@ public abstract class MeshInstance<T extends MeshView> extends Component<MeshIns
         } else {
             assertNonNull(meshView);
             this.meshViews = Collections.singletonList(meshView);
+            ++meshViewsVersion;
             doLater(() -> manager().enable(this));
         }
         return this;
     }
 
+    /**
+     * Whether this instance is not expected to move, so its shadows can be cached
+     */
+    public boolean staticShadows() {
+        return staticShadows;
+    }
+
+    public MeshInstance staticShadows(boolean staticShadows) {
+        this.staticShadows = staticShadows;
+        return this;
+    }
+
+    /**
+     * Returns the level of detail last drawn of the given mesh view
+     */
+    public int lod(int meshViewIndex) {
+        return lods == null ? 0 : lods[meshViewIndex];
+    }
+
+    public void lod(int meshViewIndex, int lod) {
+        if(lods == null) {
+            lods = new byte[numMeshViews()];
+        }
+        lods[meshViewIndex] = (byte) lod;
+    }
+
     public Transform transform() {
         return requires(Transform.class);
     }
@@ -8,10 +8,17 @@ import java.util.stream.Stream;
 public class MeshInstanceList<T extends MeshInstance> implements Iterable<T> {
 
     private final List<T> instances;
+    private final MeshInstanceTree<T> tree;
     private int numMeshViews;
+    private int modifications;
 
     public MeshInstanceList() {
+        this(null);
+    }
+
+    public MeshInstanceList(MeshInstanceTree<T> tree) {
         instances = new ArrayList<>();
+        this.tree = tree;
         numMeshViews = 0;
     }
 
@@ -27,23 +34,92 @@ public class MeshInstanceList<T extends MeshInstance> implements Iterable<T> {
         return numMeshViews;
     }
 
+    public int modifications() {
+        return modifications;
+    }
+
+    /**
+     * Returns the spatial index of this list, or null if its instances are not spatially indexed
+     */
+    public MeshInstanceTree<T> tree() {
+        return tree;
+    }
+
     public T get(int index) {
         return instances.get(index);
     }
 
     public void add(T instance) {
+
+        if (instance.listIndex >= 0) {
+            return;
+        }
+
+        instance.listIndex = instances.size();
         instances.add(instance);
+
+        if (tree != null) {
+            tree.add(instance);
+        }
+
         numMeshViews += instance.numMeshViews();
+        ++modifications;
     }
 
     public void remove(T instance) {
-        instances.remove(instance);
+
+        final int index = instance.listIndex;
+
+        if (index < 0 || index >= instances.size() || instances.get(index) != instance) {
+            return;
+        }
+
+        // Swap with the last instance to avoid shifting the whole list
+        final T last = instances.remove(instances.size() - 1);
+
+        if (last != instance) {
+            instances.set(index, last);
+            last.listIndex = index;
+        }
+
+        instance.listIndex = -1;
+
+        if (tree != null) {
+            tree.remove(instance);
+        }
+
         numMeshViews -= instance.numMeshViews();
+        ++modifications;
+    }
+
+    /**
+     * Refits the spatial index to the transforms that have changed since the last call
+     */
+    public void updateTree() {
+
+        if (tree == null) {
+            return;
+        }
+
+        for (int i = 0; i < instances.size(); i++) {
+            tree.update(instances.get(i));
+        }
     }
 
     public void clear() {
+
+        for (T instance : instances) {
+            instance.listIndex = -1;
+        }
+
         instances.clear();
+
+        if (tree != null) {
+            tree.clear();
+        }
+
         numMeshViews = 0;
+        ++modifications;
     }
 
     @Override
@@ -35,6 +35,13 @@ public final class MeshInstanceManager extends AbstractComponentManager<MeshInst
         return meshInstancesTable.get(WaterMeshView.class);
     }
 
+    /**
+     * Updates the spatial indices of the mesh instances after the transforms have been updated
+     */
+    public void update() {
+        meshInstancesTable.values().forEach(MeshInstanceList::updateTree);
+    }
+
     @Override
     protected void add(MeshInstance meshInstance) {
         super.add(meshInstance);
@@ -61,6 +68,7 @@ public final class MeshInstanceManager extends AbstractComponentManager<MeshInst
     @Override
     protected void removeAll() {
         super.removeAll();
+        meshInstancesTable.values().forEach(MeshInstanceList::clear);
         meshInstancesTable.clear();
     }
 
@@ -74,7 +82,10 @@ public final class MeshInstanceManager extends AbstractComponentManager<MeshInst
         if(meshInstancesTable.containsKey(meshViewType)) {
             meshInstancesOfThatType = meshInstancesTable.get(meshViewType);
         } else {
-            meshInstancesOfThatType = new MeshInstanceList();
+            // Static meshes are culled and picked through a spatial index
+            meshInstancesOfThatType = StaticMeshView.class.equals(meshViewType)
+                    ? new MeshInstanceList(new MeshInstanceTree())
+                    : new MeshInstanceList();
             meshInstancesTable.put(meshViewType, meshInstancesOfThatType);
         }
 
@@ -0,0 +1,690 @@
+package radon.engine.scenes.components.meshes;
+
+import org.joml.FrustumIntersection;
+import org.joml.Intersectionf;
+import org.joml.Matrix4fc;
+import org.joml.Vector2f;
+import org.joml.Vector3f;
+import org.joml.Vector3fc;
+import radon.engine.meshes.views.MeshView;
+import radon.engine.util.geometry.ISphere;
+
+import java.util.Arrays;
+
+import static java.lang.Math.max;
+import static radon.engine.util.Maths.maxScale;
+
+/**
+ * Dynamic bounding volume hierarchy over mesh instances. Leaves store fattened world space bounds, so small movements
+ * of an instance do not need to touch the tree. Subtrees are rebalanced with rotations on every insertion and removal
+ */
+public final class MeshInstanceTree<T extends MeshInstance> {
+
+    public static final int NULL_NODE = -1;
+
+    private static final int INITIAL_CAPACITY = 64;
+    private static final int AABB_STRIDE = 6;
+    // Leaf bounds are enlarged by this fraction of their size, with a minimum of MIN_FAT_MARGIN world units
+    private static final float FAT_MARGIN_FACTOR = 0.1f;
+    private static final float MIN_FAT_MARGIN = 0.1f;
+
+    private float[] aabbs;
+    private int[] parents; // Also used as the next free node link
+    private int[] children1;
+    private int[] children2;
+    private int[] heights;
+    private MeshInstance<?>[] instances;
+    private int capacity;
+    private int nodeCount;
+    private int freeList;
+    private int root;
+    // Scratch data, only used from the thread updating the tree
+    private final float[] bounds;
+    private final Vector3f center;
+
+    public MeshInstanceTree() {
+        bounds = new float[AABB_STRIDE];
+        center = new Vector3f();
+        root = NULL_NODE;
+        allocate(INITIAL_CAPACITY);
+    }
+
+    public int root() {
+        return root;
+    }
+
+    public int size() {
+        return nodeCount;
+    }
+
+    public int height() {
+        return root == NULL_NODE ? 0 : heights[root];
+    }
+
+    public boolean isLeaf(int node) {
+        return children1[node] == NULL_NODE;
+    }
+
+    public int child1(int node) {
+        return children1[node];
+    }
+
+    public int child2(int node) {
+        return children2[node];
+    }
+
+    @SuppressWarnings("unchecked")
+    public T instance(int node) {
+        return (T) instances[node];
+    }
+
+    public void add(T instance) {
+
+        if (instance.treeNode != NULL_NODE) {
+            return;
+        }
+
+        computeFatBounds(instance, bounds);
+
+        final int leaf = allocateNode();
+
+        System.arraycopy(bounds, 0, aabbs, leaf * AABB_STRIDE, AABB_STRIDE);
+        instances[leaf] = instance;
+        heights[leaf] = 0;
+
+        insertLeaf(leaf);
+
+        instance.treeNode = leaf;
+        instance.treeTransformVersion = instance.transform().version();
+        instance.treeMeshViewsVersion = instance.meshViewsVersion;
+    }
+
+    public void remove(T instance) {
+
+        final int leaf = instance.treeNode;
+
+        if (leaf == NULL_NODE) {
+            return;
+        }
+
+        removeLeaf(leaf);
+        freeNode(leaf);
+
+        instance.treeNode = NULL_NODE;
+    }
+
+    /**
+     * Refits the leaf of the given instance if its transform or its mesh views have changed since it was last updated.
+     * The leaf is only moved if the new bounds do not fit in its fattened bounds anymore
+     */
+    public void update(T instance) {
+
+        final int leaf = instance.treeNode;
+
+        if (leaf == NULL_NODE) {
+            return;
+        }
+
+        final int version = instance.transform().version();
+
+        if (instance.treeTransformVersion == version && instance.treeMeshViewsVersion == instance.meshViewsVersion) {
+            return;
+        }
+
+        instance.treeTransformVersion = version;
+        instance.treeMeshViewsVersion = instance.meshViewsVersion;
+
+        computeBounds(instance, bounds);
+
+        if (contains(leaf, bounds)) {
+            return;
+        }
+
+        removeLeaf(leaf);
+
+        fatten(bounds);
+
+        System.arraycopy(bounds, 0, aabbs, leaf * AABB_STRIDE, AABB_STRIDE);
+
+        insertLeaf(leaf);
+    }
+
+    public void clear() {
+
+        for (int i = 0; i < capacity; i++) {
+            if (instances[i] != null) {
+                instances[i].treeNode = NULL_NODE;
+            }
+        }
+
+        allocate(INITIAL_CAPACITY);
+        root = NULL_NODE;
+    }
+
+    /**
+     * Returns the frustum intersection of the bounds of the given node, as in {@link FrustumIntersection#intersectAab}
+     */
+    public int intersect(FrustumIntersection frustum, int node) {
+        final int offset = node * AABB_STRIDE;
+        return frustum.intersectAab(aabbs[offset], aabbs[offset + 1], aabbs[offset + 2],
+                aabbs[offset + 3], aabbs[offset + 4], aabbs[offset + 5]);
+    }
+
+    /**
+     * Visits the instances of the given subtree whose bounds intersect the frustum. Subtrees fully inside the frustum
+     * are accepted without testing their descendants. Can be called from several threads at the same time
+     */
+    public void cull(FrustumIntersection frustum, int subtree, Visitor<T> visitor) {
+
+        if (subtree == NULL_NODE) {
+            return;
+        }
+
+        int[] stack = new int[max(heights[subtree], 1) * 2 + 2];
+        int top = 0;
+
+        stack[top++] = subtree;
+
+        while (top > 0) {
+
+            final int node = stack[--top];
+
+            final int intersection = intersect(frustum, node);
+
+            if (intersection >= 0) {
+                // Outside of one of the planes
+                continue;
+            }
+
+            if (intersection == FrustumIntersection.INSIDE) {
+                visitAll(node, visitor);
+                continue;
+            }
+
+            if (isLeaf(node)) {
+                visitor.visit(instance(node), instances[node].listIndex, false);
+                continue;
+            }
+
+            if (top + 2 > stack.length) {
+                stack = Arrays.copyOf(stack, stack.length * 2);
+            }
+
+            stack[top++] = children1[node];
+            stack[top++] = children2[node];
+        }
+    }
+
+    /**
+     * Collects disjoint subtrees covering the whole tree, at least {@code minCount} of them if the tree is large enough.
+     * Useful to split a traversal in independent jobs
+     */
+    public int subtrees(int minCount, int[] subtrees) {
+
+        if (root == NULL_NODE) {
+            return 0;
+        }
+
+        int count = 1;
+        subtrees[0] = root;
+
+        boolean expanded = true;
+
+        while (count < minCount && expanded) {
+
+            expanded = false;
+
+            for (int i = 0; i < count && count < subtrees.length; i++) {
+
+                final int node = subtrees[i];
+
+                if (isLeaf(node)) {
+                    continue;
+                }
+
+                subtrees[i] = children1[node];
+                subtrees[count++] = children2[node];
+                expanded = true;
+            }
+        }
+
+        return count;
+    }
+
+    /**
+     * Returns the closest instance hit by the ray within the given distance, or null if there is none. Instances are
+     * tested against the bounding spheres of their meshes
+     */
+    public T raycast(Vector3fc origin, Vector3fc direction, float maxDistance) {
+
+        if (root == NULL_NODE) {
+            return null;
+        }
+
+        final Vector3f dir = new Vector3f(direction).normalize();
+        final Vector3f min = new Vector3f();
+        final Vector3f max = new Vector3f();
+        final Vector3f sphereCenter = new Vector3f();
+        final Vector2f result = new Vector2f();
+
+        int[] stack = new int[heights[root] * 2 + 2];
+        int top = 0;
+
+        stack[top++] = root;
+
+        T closest = null;
+        float closestDistance = maxDistance;
+
+        while (top > 0) {
+
+            final int node = stack[--top];
+            final int offset = node * AABB_STRIDE;
+
+            min.set(aabbs[offset], aabbs[offset + 1], aabbs[offset + 2]);
+            max.set(aabbs[offset + 3], aabbs[offset + 4], aabbs[offset + 5]);
+
+            if (!Intersectionf.intersectRayAab(origin, dir, min, max, result) || result.x > closestDistance) {
+                continue;
+            }
+
+            if (isLeaf(node)) {
+
+                final float distance = raycast(instances[node], origin, dir, sphereCenter, result);
+
+                if (distance < closestDistance) {
+                    closestDistance = distance;
+                    closest = instance(node);
+                }
+
+                continue;
+            }
+
+            if (top + 2 > stack.length) {
+                stack = Arrays.copyOf(stack, stack.length * 2);
+            }
+
+            stack[top++] = children1[node];
+            stack[top++] = children2[node];
+        }
+
+        return closest;
+    }
+
+    private float raycast(MeshInstance<?> instance, Vector3fc origin, Vector3fc dir, Vector3f center, Vector2f result) {
+
+        final Matrix4fc modelMatrix = instance.modelMatrix();
+        final float maxScale = maxScale(modelMatrix);
+
+        float closestDistance = Float.POSITIVE_INFINITY;
+
+        for (MeshView<?> meshView : instance) {
+
+            final ISphere sphere = meshView.mesh().boundingSphere();
+
+            modelMatrix.transformPosition(center.set(sphere.center()));
+
+            final float radius = sphere.radius() * maxScale;
+
+            if (Intersectionf.intersectRaySphere(origin, dir, center, radius * radius, result)) {
+                // If the origin is inside of the sphere the near distance is negative
+                final float distance = result.x >= 0.0f ? result.x : result.y;
+                closestDistance = Math.min(closestDistance, distance);
+            }
+        }
+
+        return closestDistance;
+    }
+
+    private void visitAll(int subtree, Visitor<T> visitor) {
+
+        if (isLeaf(subtree)) {
+            visitor.visit(instance(subtree), instances[subtree].listIndex, true);
+            return;
+        }
+
+        visitAll(children1[subtree], visitor);
+        visitAll(children2[subtree], visitor);
+    }
+
+    private void computeFatBounds(MeshInstance<?> instance, float[] bounds) {
+        computeBounds(instance, bounds);
+        fatten(bounds);
+    }
+
+    private void computeBounds(MeshInstance<?> instance, float[] bounds) {
+
+        final Matrix4fc modelMatrix = instance.modelMatrix();
+        final float maxScale = maxScale(modelMatrix);
+
+        Arrays.fill(bounds, 0, 3, Float.POSITIVE_INFINITY);
+        Arrays.fill(bounds, 3, 6, Float.NEGATIVE_INFINITY);
+
+        for (MeshView<?> meshView : instance) {
+
+            final ISphere sphere = meshView.mesh().boundingSphere();
+
+            modelMatrix.transformPosition(center.set(sphere.center()));
+
+            final float radius = sphere.radius() * maxScale;
+
+            bounds[0] = Math.min(bounds[0], center.x - radius);
+            bounds[1] = Math.min(bounds[1], center.y - radius);
+            bounds[2] = Math.min(bounds[2], center.z - radius);
+            bounds[3] = Math.max(bounds[3], center.x + radius);
+            bounds[4] = Math.max(bounds[4], center.y + radius);
+            bounds[5] = Math.max(bounds[5], center.z + radius);
+        }
+    }
+
+    private void fatten(float[] bounds) {
+
+        final float marginX = max((bounds[3] - bounds[0]) * FAT_MARGIN_FACTOR, MIN_FAT_MARGIN);
+        final float marginY = max((bounds[4] - bounds[1]) * FAT_MARGIN_FACTOR, MIN_FAT_MARGIN);
+        final float marginZ = max((bounds[5] - bounds[2]) * FAT_MARGIN_FACTOR, MIN_FAT_MARGIN);
+
+        bounds[0] -= marginX;
+        bounds[1] -= marginY;
+        bounds[2] -= marginZ;
+        bounds[3] += marginX;
+        bounds[4] += marginY;
+        bounds[5] += marginZ;
+    }
+
+    private boolean contains(int node, float[] bounds) {
+        final int offset = node * AABB_STRIDE;
+        return aabbs[offset] <= bounds[0] && aabbs[offset + 1] <= bounds[1] && aabbs[offset + 2] <= bounds[2]
+                && aabbs[offset + 3] >= bounds[3] && aabbs[offset + 4] >= bounds[4] && aabbs[offset + 5] >= bounds[5];
+    }
+
+    private void insertLeaf(int leaf) {
+
+        if (root == NULL_NODE) {
+            root = leaf;
+            parents[leaf] = NULL_NODE;
+            return;
+        }
+
+        // Find the best sibling for the new leaf, using the surface area heuristic
+        int index = root;
+
+        while (!isLeaf(index)) {
+
+            final int child1 = children1[index];
+            final int child2 = children2[index];
+
+            final float area = surfaceArea(index);
+            final float combinedArea = combinedSurfaceArea(index, leaf);
+
+            // Cost of creating a new parent for this node and the new leaf
+            final float cost = 2.0f * combinedArea;
+            // Minimum cost of pushing the leaf further down the tree
+            final float inheritanceCost = 2.0f * (combinedArea - area);
+
+            final float cost1 = descendCost(child1, leaf) + inheritanceCost;
+            final float cost2 = descendCost(child2, leaf) + inheritanceCost;
+
+            if (cost < cost1 && cost < cost2) {
+                break;
+            }
+
+            index = cost1 < cost2 ? child1 : child2;
+        }
+
+        final int sibling = index;
+
+        final int oldParent = parents[sibling];
+        final int newParent = allocateNode();
+
+        parents[newParent] = oldParent;
+        instances[newParent] = null;
+        combine(sibling, leaf, newParent);
+        heights[newParent] = heights[sibling] + 1;
+
+        if (oldParent != NULL_NODE) {
+            if (children1[oldParent] == sibling) {
+                children1[oldParent] = newParent;
+            } else {
+                children2[oldParent] = newParent;
+            }
+        } else {
+            root = newParent;
+        }
+
+        children1[newParent] = sibling;
+        children2[newParent] = leaf;
+        parents[sibling] = newParent;
+        parents[leaf] = newParent;
+
+        refitAncestors(parents[leaf]);
+    }
+
+    private void removeLeaf(int leaf) {
+
+        if (leaf == root) {
+            root = NULL_NODE;
+            return;
+        }
+
+        final int parent = parents[leaf];
+        final int grandParent = parents[parent];
+        final int sibling = children1[parent] == leaf ? children2[parent] : children1[parent];
+
+        if (grandParent != NULL_NODE) {
+
+            if (children1[grandParent] == parent) {
+                children1[grandParent] = sibling;
+            } else {
+                children2[grandParent] = sibling;
+            }
+
+            parents[sibling] = grandParent;
+
+            freeNode(parent);
+
+            refitAncestors(grandParent);
+
+        } else {
+            root = sibling;
+            parents[sibling] = NULL_NODE;
+            freeNode(parent);
+        }
+    }
+
+    private void refitAncestors(int node) {
+
+        int index = node;
+
+        while (index != NULL_NODE) {
+
+            index = balance(index);
+
+            final int child1 = children1[index];
+            final int child2 = children2[index];
+
+            heights[index] = 1 + max(heights[child1], heights[child2]);
+            combine(child1, child2, index);
+
+            index = parents[index];
+        }
+    }
+
+    /**
+     * Performs a left or right rotation if the node is imbalanced. Returns the new root of the subtree
+     */
+    private int balance(int a) {
+
+        if (isLeaf(a) || heights[a] < 2) {
+            return a;
+        }
+
+        final int b = children1[a];
+        final int c = children2[a];
+
+        final int balance = heights[c] - heights[b];
+
+        if (balance > 1) {
+            return rotateUp(a, c, b, false);
+        }
+
+        if (balance < -1) {
+            return rotateUp(a, b, c, true);
+        }
+
+        return a;
+    }
+
+    /**
+     * Moves the child up to the place of the node a, which takes the place of one of the grandchildren
+     */
+    private int rotateUp(int a, int child, int otherChild, boolean childIsFirst) {
+
+        final int f = children1[child];
+        final int g = children2[child];
+
+        // Swap a and child
+        children1[child] = a;
+        parents[child] = parents[a];
+        parents[a] = child;
+
+        // The old parent of a should point to child now
+        final int parent = parents[child];
+
+        if (parent != NULL_NODE) {
+            if (children1[parent] == a) {
+                children1[parent] = child;
+            } else {
+                children2[parent] = child;
+            }
+        } else {
+            root = child;
+        }
+
+        // The tallest grandchild stays under child, the other one goes under a
+        final int kept = heights[f] > heights[g] ? f : g;
+        final int moved = kept == f ? g : f;
+
+        children2[child] = kept;
+
+        if (childIsFirst) {
+            children1[a] = moved;
+        } else {
+            children2[a] = moved;
+        }
+
+        parents[moved] = a;
+
+        combine(otherChild, moved, a);
+        combine(a, kept, child);
+
+        heights[a] = 1 + max(heights[otherChild], heights[moved]);
+        heights[child] = 1 + max(heights[a], heights[kept]);
+
+        return child;
+    }
+
+    private float descendCost(int child, int leaf) {
+        final float combinedArea = combinedSurfaceArea(child, leaf);
+        return isLeaf(child) ? combinedArea : combinedArea - surfaceArea(child);
+    }
+
+    private float surfaceArea(int node) {
+        final int offset = node * AABB_STRIDE;
+        final float dx = aabbs[offset + 3] - aabbs[offset];
+        final float dy = aabbs[offset + 4] - aabbs[offset + 1];
+        final float dz = aabbs[offset + 5] - aabbs[offset + 2];
+        return 2.0f * (dx * dy + dy * dz + dz * dx);
+    }
+
+    private float combinedSurfaceArea(int node1, int node2) {
+        final int offset1 = node1 * AABB_STRIDE;
+        final int offset2 = node2 * AABB_STRIDE;
+        final float dx = Math.max(aabbs[offset1 + 3], aabbs[offset2 + 3]) - Math.min(aabbs[offset1], aabbs[offset2]);
+        final float dy = Math.max(aabbs[offset1 + 4], aabbs[offset2 + 4]) - Math.min(aabbs[offset1 + 1], aabbs[offset2 + 1]);
+        final float dz = Math.max(aabbs[offset1 + 5], aabbs[offset2 + 5]) - Math.min(aabbs[offset1 + 2], aabbs[offset2 + 2]);
+        return 2.0f * (dx * dy + dy * dz + dz * dx);
+    }
+
+    private void combine(int node1, int node2, int dest) {
+        final int offset1 = node1 * AABB_STRIDE;
+        final int offset2 = node2 * AABB_STRIDE;
+        final int destOffset = dest * AABB_STRIDE;
+        for (int i = 0; i < 3; i++) {
+            aabbs[destOffset + i] = Math.min(aabbs[offset1 + i], aabbs[offset2 + i]);
+            aabbs[destOffset + 3 + i] = Math.max(aabbs[offset1 + 3 + i], aabbs[offset2 + 3 + i]);
+        }
+    }
+
+    private int allocateNode() {
+
+        if (freeList == NULL_NODE) {
+            grow(capacity * 2);
+        }
+
+        final int node = freeList;
+
+        freeList = parents[node];
+
+        parents[node] = NULL_NODE;
+        children1[node] = NULL_NODE;
+        children2[node] = NULL_NODE;
+        heights[node] = 0;
+
+        ++nodeCount;
+
+        return node;
+    }
+
+    private void freeNode(int node) {
+        parents[node] = freeList;
+        heights[node] = -1;
+        instances[node] = null;
+        freeList = node;
+        --nodeCount;
+    }
+
+    private void allocate(int capacity) {
+        aabbs = new float[0];
+        parents = new int[0];
+        children1 = new int[0];
+        children2 = new int[0];
+        heights = new int[0];
+        instances = new MeshInstance<?>[0];
+        this.capacity = 0;
+        nodeCount = 0;
+        freeList = NULL_NODE;
+        grow(capacity);
+    }
+
+    private void grow(int newCapacity) {
+
+        aabbs = Arrays.copyOf(aabbs, newCapacity * AABB_STRIDE);
+        parents = Arrays.copyOf(parents, newCapacity);
+        children1 = Arrays.copyOf(children1, newCapacity);
+        children2 = Arrays.copyOf(children2, newCapacity);
+        heights = Arrays.copyOf(heights, newCapacity);
+        instances = Arrays.copyOf(instances, newCapacity);
+
+        // Link the new nodes into the free list
+        for (int i = capacity; i < newCapacity - 1; i++) {
+            parents[i] = i + 1;
+            heights[i] = -1;
+        }
+
+        parents[newCapacity - 1] = freeList;
+        heights[newCapacity - 1] = -1;
+
+        freeList = capacity;
+        capacity = newCapacity;
+    }
+
+    @FunctionalInterface
+    public interface Visitor<T> {
+
+        /**
+         * @param instance the visible instance
+         * @param index the index of the instance in its {@link MeshInstanceList}
+         * @param inside whether the instance is fully inside of the frustum, so its meshes need no further tests
+         */
+        void visit(T instance, int index, boolean inside);
+    }
+}
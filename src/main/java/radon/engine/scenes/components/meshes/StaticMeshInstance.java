@@ -1,6 +1,7 @@
 package radon.engine.scenes.components.meshes;
 
 import radon.engine.logging.Log;
+import radon.engine.meshes.StaticMesh;
 import radon.engine.meshes.views.StaticMeshView;
 
 import java.util.Arrays;
@@ -13,6 +14,14 @@ import static radon.engine.util.Asserts.assertTrue;
 
 public class StaticMeshInstance extends MeshInstance<StaticMeshView> {
 
+    private StaticMesh occluder;
+
+    @Override
+    protected void init() {
+        super.init();
+        occluder = null;
+    }
+
     @Override
     public Class<StaticMeshView> meshViewType() {
         return StaticMeshView.class;
@@ -29,8 +38,26 @@ public class StaticMeshInstance extends MeshInstance<StaticMeshView> {
             assertNonNull(meshViews);
             assertTrue(meshViews.size() > 0);
             this.meshViews = meshViews.stream().filter(Objects::nonNull).distinct().collect(Collectors.toUnmodifiableList());
+            ++meshViewsVersion;
             doLater(() -> manager().enable(this));
         }
         return this;
     }
+
+    /**
+     * Returns the low poly mesh this instance hides other instances with in the CPU occlusion culling, or null if it
+     * is not an occluder
+     */
+    public StaticMesh occluder() {
+        return occluder;
+    }
+
+    /**
+     * Makes this instance an occluder. The mesh should be a simplified version of its mesh views that does not go
+     * beyond them, so it never hides something that is actually visible
+     */
+    public StaticMeshInstance occluder(StaticMesh occluder) {
+        this.occluder = occluder;
+        return this;
+    }
 }
@@ -3,18 +3,38 @@ package radon.engine.scenes.components.sprites;
 import org.joml.Vector2f;
 import radon.engine.logging.Log;
 import radon.engine.scenes.Component;
-
 import radon.engine.sprites.Sprite;
+import radon.engine.util.Color;
+import radon.engine.util.IColor;
+import radon.engine.util.collections.FastIterableSet;
 
 import static radon.engine.util.Asserts.assertNonNull;
 
 public class SpriteInstance extends Component {
 
+    /**
+     * Slot of the sprite in the layer of the renderer that draws it
+     */
+    public static final FastIterableSet.SlotAccessor<SpriteInstance> RENDER_SLOT = new FastIterableSet.SlotAccessor<>() {
+
+        @Override
+        public int slotOf(Object element) {
+            return element instanceof SpriteInstance ? ((SpriteInstance) element).renderSlot : FastIterableSet.NO_SLOT;
+        }
+
+        @Override
+        public void setSlot(SpriteInstance element, int slot) {
+            element.renderSlot = slot;
+        }
+    };
+
     protected Sprite sprite;
     protected int layerOrder;
     protected Vector2f anchor;
+    protected Color color;
 
     private boolean modified;
+    private int renderSlot;
 
     protected SpriteInstance() {
 
@@ -26,6 +46,8 @@ public class SpriteInstance extends Component {
         sprite = null;
         layerOrder = 0;
         anchor = new Vector2f(0.5f, 0.5f);
+        color = Color.colorWhite();
+        renderSlot = FastIterableSet.NO_SLOT;
     }
 
     protected void update() {
@@ -86,6 +108,16 @@ public class SpriteInstance extends Component {
         return anchor;
     }
 
+    public SpriteInstance color(IColor color) {
+        this.color.set(color);
+        modify();
+        return this;
+    }
+
+    public IColor color() {
+        return color;
+    }
+
     public Sprite sprite() {
         return this.sprite;
     }
@@ -1,30 +1,39 @@
 package radon.engine.scenes.components.sprites;
 
 import radon.engine.scenes.ComponentManager;
+import radon.engine.scenes.ComponentPool;
 import radon.engine.scenes.Scene;
 import radon.engine.sprites.SceneSpriteInfo;
 
 import java.util.ArrayList;
 import java.util.List;
 
+/**
+ * Sprite instances are kept in the component pool of the scene, so they are updated in its dense order and removed in
+ * constant time
+ */
 public class SpriteInstanceManager extends ComponentManager<SpriteInstance> implements SceneSpriteInfo {
 
-    private final List<SpriteInstance> spriteInstanceList;
     private List<SpriteInstance> newInstances;
     private List<SpriteInstance> removeInstances;
 
     protected SpriteInstanceManager(Scene scene) {
         super(scene);
-        this.spriteInstanceList = new ArrayList<>();
         this.newInstances = new ArrayList<>();
         this.removeInstances = new ArrayList<>();
     }
 
+    public void update() {
+
+        final ComponentPool<SpriteInstance> instances = allInstances();
+
+        for (int i = 0; i < instances.size(); i++) {
+            instances.component(i).update();
+        }
+    }
 
-    public void update(){spriteInstanceList.forEach(SpriteInstance::update);}
     @Override
     protected void add(SpriteInstance component) {
-        spriteInstanceList.add(component);
         newInstances.add(component);
     }
 
@@ -40,22 +49,22 @@ public class SpriteInstanceManager extends ComponentManager<SpriteInstance> impl
 
     @Override
     protected void remove(SpriteInstance component) {
-        spriteInstanceList.remove(component);
+        removeInstances.add(component);
     }
 
     @Override
     protected void removeAll() {
-        spriteInstanceList.clear();
+        // The scene clears its component pools
     }
 
     @Override
     protected int size() {
-        return spriteInstanceList.size();
+        return allInstances().size();
     }
 
     @Override
-    public List<SpriteInstance> allInstances() {
-        return spriteInstanceList;
+    public ComponentPool<SpriteInstance> allInstances() {
+        return scene().components(SpriteInstance.class);
     }
 
     @Override
@@ -0,0 +1,126 @@
+package radon.engine.scenes.components.tilemap;
+
+import radon.engine.sprites.Sprite;
+import radon.engine.tiles.Tile;
+
+/**
+ * A square of {@link #SIZE}x{@link #SIZE} cells of a {@link TileMap}. Cells store the index of their tile in the palette
+ * of the map, so a chunk is just a few small arrays
+ */
+public final class TileChunk {
+
+    public static final int SIZE_SHIFT = 5;
+    public static final int SIZE = 1 << SIZE_SHIFT;
+    public static final int MASK = SIZE - 1;
+    public static final int CELL_COUNT = SIZE * SIZE;
+
+    static final short EMPTY = 0;
+
+    private final TileMap tileMap;
+    private final int chunkX;
+    private final int chunkY;
+    // Palette index of the tile of each cell, EMPTY if there is none
+    private final short[] tiles;
+    // Auto tiling sprite of each cell
+    private final byte[] variants;
+    private int tileCount;
+    private int version;
+
+    TileChunk(TileMap tileMap, int chunkX, int chunkY) {
+        this.tileMap = tileMap;
+        this.chunkX = chunkX;
+        this.chunkY = chunkY;
+        tiles = new short[CELL_COUNT];
+        variants = new byte[CELL_COUNT];
+    }
+
+    public TileMap tileMap() {
+        return tileMap;
+    }
+
+    public int chunkX() {
+        return chunkX;
+    }
+
+    public int chunkY() {
+        return chunkY;
+    }
+
+    public int tileCount() {
+        return tileCount;
+    }
+
+    public boolean isEmpty() {
+        return tileCount == 0;
+    }
+
+    /**
+     * Incremented every time a cell of this chunk changes
+     */
+    public int version() {
+        return version;
+    }
+
+    public boolean contains(int cell) {
+        return tiles[cell] != EMPTY;
+    }
+
+    public Tile tile(int cell) {
+        return tileMap.paletteTile(tiles[cell]);
+    }
+
+    public Sprite sprite(int cell) {
+        return tileMap.paletteSprite(tiles[cell], variants[cell]);
+    }
+
+    public int variant(int cell) {
+        return variants[cell];
+    }
+
+    public int tileX(int cell) {
+        return (chunkX << SIZE_SHIFT) + (cell & MASK);
+    }
+
+    public int tileY(int cell) {
+        return (chunkY << SIZE_SHIFT) + (cell >>> SIZE_SHIFT);
+    }
+
+    short paletteIndex(int cell) {
+        return tiles[cell];
+    }
+
+    void set(int cell, short paletteIndex) {
+
+        final short previous = tiles[cell];
+
+        if (previous == paletteIndex) {
+            return;
+        }
+
+        if (previous == EMPTY) {
+            ++tileCount;
+        } else if (paletteIndex == EMPTY) {
+            --tileCount;
+        }
+
+        tiles[cell] = paletteIndex;
+        variants[cell] = 0;
+
+        ++version;
+    }
+
+    void variant(int cell, int variant) {
+        if (variants[cell] != variant) {
+            variants[cell] = (byte) variant;
+            ++version;
+        }
+    }
+
+    static int cell(int x, int y) {
+        return ((y & MASK) << SIZE_SHIFT) | (x & MASK);
+    }
+
+    static long key(int chunkX, int chunkY) {
+        return ((long) chunkX << 32) | (chunkY & 0xFFFFFFFFL);
+    }
+}
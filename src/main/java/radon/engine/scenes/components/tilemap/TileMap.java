@@ -1,64 +1,76 @@
 package radon.engine.scenes.components.tilemap;
 
 import org.joml.Vector2i;
+import radon.engine.logging.Log;
 import radon.engine.scenes.Component;
 import radon.engine.scenes.Entity;
 import radon.engine.scenes.components.math.Transform;
-import radon.engine.scenes.components.sprites.SpriteInstance;
+import radon.engine.sprites.Sprite;
 import radon.engine.tiles.Tile;
 import radon.engine.tiles.TileInstance;
+import radon.engine.tiles.autotiling.AutoTillingProcessor;
 import radon.engine.tiles.properties.TileProperty;
+import radon.engine.util.collections.LongHashMap;
 
 import java.util.*;
 
+import static radon.engine.scenes.components.tilemap.TileChunk.EMPTY;
+import static radon.engine.scenes.components.tilemap.TileChunk.SIZE_SHIFT;
+
+/**
+ * Grid of tiles, stored in chunks of {@link TileChunk#SIZE}x{@link TileChunk#SIZE} cells. Tiles are drawn by the
+ * renderer straight from the chunks, so only tiles with a {@link TileProperty#INSTANCE} get an entity
+ */
 public class TileMap extends Component {
 
-    private Map<Integer, Map<Integer, TileInstance>> tiles = new HashMap<>();
+    private final LongHashMap<TileChunk> chunks = new LongHashMap<>();
+    // Last chunk looked up, neighbouring cells are usually in the same chunk
+    private TileChunk lastChunk;
+    // Tiles used by this map. Index 0 is the empty cell
+    private Tile[] palette = new Tile[16];
+    private Sprite[][] paletteAutoTilingSprites = new Sprite[16][];
+    private final Map<Tile, Short> paletteIndices = new IdentityHashMap<>();
+    private int paletteSize = 1;
+    // Entities of the tiles that need one
+    private final LongHashMap<TileInstance> instances = new LongHashMap<>();
+    // Scratch grids of updateTiles
+    private int[] autoTilingIds = new int[0];
+    private int[] autoTilingVariants = new int[0];
     private int layerOrder = 0;
     private float tileSize = 1 / 16f;
     private boolean modified = false;
-    private List<Vector2i> updatedTiles = new ArrayList<>();
     private boolean useHardShadow = false;
 
-
     private TileInstance createTileInstance(int x, int y, Tile tile) {
-        if (!contains(x, y)) {
-            Entity tileEntity = scene().newEntity(entity().name() + ":tile_" + x + "," + y);
 
-            Vector2i offset = tile.getPropertyValue(TileProperty.MULTI_TILE_CENTER);
-            Vector2i size = tile.getPropertyValue(TileProperty.MULTI_TILE_SIZE);
+        Class<? extends TileInstance> instanceType = tile.instanceType();
 
-            float posX = x;
-            if (offset != null) x += offset.x;
-            float posY = y;
-            if (offset != null) y += offset.y;
+        if (instanceType == null) {
+            return null;
+        }
 
-            float sizeX = tileSize;
-            if (size != null) sizeX *= size.x;
-            float sizeY = tileSize;
-            if (size != null) sizeY *= size.y;
+        Entity tileEntity = scene().newEntity(entity().name() + ":tile_" + x + "," + y);
 
-            Transform transform = tileEntity.get(Transform.class);
-            transform.translate(posX * sizeX, posY * sizeY, layerOrder);
-            transform.scale(sizeX, sizeY, 1);
-            entity().get(Transform.class).addChild(transform);
+        Vector2i size = tile.getPropertyValue(TileProperty.MULTI_TILE_SIZE);
 
-            tileEntity.add(TileInstance.class).setup(x, y, tile, this);
-            tileEntity.add(SpriteInstance.class)
-                    .sprite(tile.sprite())
-                    .anchor(0, 0);
+        float sizeX = tileSize;
+        if (size != null) sizeX *= size.x;
+        float sizeY = tileSize;
+        if (size != null) sizeY *= size.y;
 
-            return tileEntity.get(TileInstance.class);
-        }
+        Transform transform = tileEntity.get(Transform.class);
+        transform.translate(x * tileSize, y * tileSize, layerOrder);
+        transform.scale(sizeX, sizeY, 1);
+        entity().get(Transform.class).addChild(transform);
 
-        return null;
+        TileInstance instance = tileEntity.add(instanceType);
+        instance.setup(x, y, tile, this);
+
+        return instance;
     }
 
     protected void update() {
-        if (modified()) {
-            modified = false;
-            updatedTiles.clear();
-        }
+        modified = false;
     }
 
     @Override
@@ -77,137 +89,155 @@ public class TileMap extends Component {
     }
 
     public boolean contains(int x, int y) {
-        Map<Integer, TileInstance> yMap = tiles.get(x);
-        if (yMap == null) return false;
-        return yMap.containsKey(y);
+        TileChunk chunk = chunk(x, y, false);
+        return chunk != null && chunk.contains(TileChunk.cell(x, y));
     }
 
     public Tile getTile(int x, int y) {
-        if (contains(x, y)) return tiles.get(x).get(y).tile();
-        return null;
+        TileChunk chunk = chunk(x, y, false);
+        return chunk == null ? null : chunk.tile(TileChunk.cell(x, y));
+    }
+
+    public Sprite sprite(int x, int y) {
+        TileChunk chunk = chunk(x, y, false);
+        return chunk == null ? null : chunk.sprite(TileChunk.cell(x, y));
     }
 
+    /**
+     * Returns the instance of the tile at the given cell, or null if there is no tile or its tile has no
+     * {@link TileProperty#INSTANCE}
+     */
     public TileInstance getTileInstance(int x, int y) {
-        if (contains(x, y)) return tiles.get(x).get(y);
-        return null;
+        return instances.get(TileChunk.key(x, y));
     }
 
     public void setTile(int x, int y, Tile tile) {
-        Map<Integer, TileInstance> yMap = tiles.computeIfAbsent(x, k -> new HashMap<>());
-        yMap.put(y, createTileInstance(x, y, tile));
 
-        for (int i = -1; i < 2; i++)
-            for (int j = -1; j < 2; j++)
-                updateTile(x + i, y + j);
+        if (tile == null) {
+            removeTile(x, y);
+            return;
+        }
+
+        placeTile(x, y, tile);
+
+        updateTiles(x - 1, y - 1, x + 1, y + 1);
     }
 
     public void removeTile(int x, int y) {
         if (contains(x, y)) {
-            Map<Integer, TileInstance> yMap = tiles.get(x);
-            scene().destroy(yMap.get(y).entity());
-
-            yMap.remove(y);
-            if (yMap.isEmpty()) {
-                tiles.remove(x);
-            }
 
+            placeTile(x, y, null);
 
-            for (int i = -1; i < 2; i++)
-                for (int j = -1; j < 2; j++)
-                    updateTile(x + i, y + j);
+            updateTiles(x - 1, y - 1, x + 1, y + 1);
 
-            modify(x, y);
+            modify();
         }
     }
 
     public void fill(int startX, int startY, int endX, int endY, Tile tile) {
+
         for (int x = startX; x <= endX; x++) {
             for (int y = startY; y <= endY; y++) {
-                if (contains(x, y)) {
-                    Map<Integer, TileInstance> yMap = tiles.get(x);
-                    yMap.remove(y);
+                placeTile(x, y, tile);
+                if (tile == null) modify();
+            }
+        }
 
-                    if (tile != null && yMap.isEmpty()) {
-                        tiles.remove(x);
-                    }
-                }
+        updateTiles(startX - 1, startY - 1, endX + 1, endY + 1);
+    }
 
-                if (tile != null) {
-                    Map<Integer, TileInstance> yMap = tiles.computeIfAbsent(x, k -> new HashMap<>());
-                    yMap.put(y, createTileInstance(x, y, tile));
-                } else {
-                    modify(x, y);
-                }
+    public void fill(int startX, int startY, Tile[][] tilesArray) {
+
+        int endY = startY;
 
-                updateFill(startX, startY, endX, endY, x, y);
+        for (int row = 0; row < tilesArray.length; row++) {
+            for (int col = 0; col < tilesArray[row].length; col++) {
+                placeTile(startX + row, startY + col, tilesArray[row][col]);
+                if (tilesArray[row][col] == null) modify();
             }
+            endY = Math.max(endY, startY + tilesArray[row].length - 1);
         }
 
-        if (tile != null) {
-            for (int x = startX; x <= endX; x++) {
-                for (int y = startY; y <= endY; y++) {
-                    updateTile(x, y);
-                    updateFill(startX, startY, endX, endY, x, y);
-                }
-            }
+        updateTiles(startX - 1, startY - 1, startX + tilesArray.length, endY + 1);
+    }
+
+    public void updateTile(int x, int y) {
+
+        TileChunk chunk = chunk(x, y, false);
+
+        if (chunk == null) {
+            return;
+        }
+
+        final int cell = TileChunk.cell(x, y);
+
+        if (!chunk.contains(cell)) {
+            return;
         }
+
+        if (chunk.tile(cell).autoTiling()) {
+            chunk.variant(cell, AutoTillingProcessor.process(this, x, y));
+        }
+
+        modify();
     }
 
-    public void fill(int startX, int startY, Tile[][] tilesArray) {
-        for (int row = 0; row < tilesArray.length; row++) {
-            for (int col = 0; col < tilesArray[row].length; col++) {
+    /**
+     * Updates every tile of the given area, bounds included, at once. The neighbours of all the cells are gathered
+     * into a grid first, the auto tiling of the whole grid is computed in parallel, and then applied to the chunks
+     */
+    public void updateTiles(int startX, int startY, int endX, int endY) {
 
-                int x = startX + row;
-                int y = startY + col;
-                Tile tile = tilesArray[row][col];
-
-                if (contains(x, y)) {
-                    Map<Integer, TileInstance> yMap = tiles.get(x);
-                    scene().destroy(yMap.get(y).entity());
-                    yMap.remove(y);
-                    if (tile != null && yMap.isEmpty()) {
-                        tiles.remove(x);
-                    }
-                }
+        final int width = endX - startX + 1;
+        final int height = endY - startY + 1;
 
-                if (tile != null) {
-                    Map<Integer, TileInstance> yMap = tiles.computeIfAbsent(x, k -> new HashMap<>());
-                    yMap.put(y, createTileInstance(x, y, tile));
-                } else {
-                    modify(x, y);
-                }
+        if (width <= 0 || height <= 0) {
+            return;
+        }
 
-                updateFill(startX, startY, startX + tilesArray.length, startY + tilesArray[row].length, x, y);
-            }
+        final int gridSize = (width + 2) * (height + 2);
+
+        if (autoTilingIds.length < gridSize) {
+            autoTilingIds = new int[gridSize];
         }
 
-        for (int row = 0; row < tilesArray.length; row++) {
-            for (int col = 0; col < tilesArray[row].length; col++) {
-                int x = startX + row;
-                int y = startY + col;
+        if (autoTilingVariants.length < width * height) {
+            autoTilingVariants = new int[width * height];
+        }
 
-                updateTile(x, y);
-                updateFill(startX, startY, startX + tilesArray.length, startY + tilesArray[row].length, x, y);
+        int i = 0;
+
+        for (int y = startY - 1; y <= endY + 1; y++) {
+            for (int x = startX - 1; x <= endX + 1; x++) {
+                autoTilingIds[i++] = tileId(x, y);
             }
         }
-    }
 
-    private void updateFill(int startX, int startY, int endX, int endY, int x, int y) {
-        if (x == startX) updateTile(startX - 1, y);
-        if (x == endX) updateTile(endX + 1, y);
+        AutoTillingProcessor.process(autoTilingIds, width, height, autoTilingVariants);
 
-        if (y == startY) updateTile(x, startY - 1);
-        if (y == endY) updateTile(x, endY + 1);
+        i = 0;
 
-        if (x == startX && y == startY) updateTile(startX - 1, startY - 1);
-        if (x == endX && y == endY) updateTile(endX + 1, endY + 1);
-    }
+        for (int y = startY; y <= endY; y++) {
+            for (int x = startX; x <= endX; x++, i++) {
 
-    public void updateTile(int x, int y) {
-        TileInstance instance = getTileInstance(x, y);
-        if (instance != null) {
-            instance.update();
-            modify(x, y);
+                TileChunk chunk = chunk(x, y, false);
+
+                if (chunk == null) {
+                    continue;
+                }
+
+                final int cell = TileChunk.cell(x, y);
+
+                if (!chunk.contains(cell)) {
+                    continue;
+                }
+
+                if (paletteAutoTilingSprites[chunk.paletteIndex(cell)] != null) {
+                    chunk.variant(cell, autoTilingVariants[i]);
+                }
+
+                modify();
+            }
         }
     }
 
@@ -226,13 +256,9 @@ public class TileMap extends Component {
         return modified;
     }
 
-    private void modify(int x, int y) {
+    // The chunks track their own changes through their version
+    private void modify() {
         modified = true;
-        updatedTiles.add(new Vector2i(x, y));
-    }
-
-    public List<Vector2i> updatedTiles() {
-        return updatedTiles;
     }
 
     public int layerOrder() {
@@ -243,8 +269,8 @@ public class TileMap extends Component {
         return tileSize;
     }
 
-    public Map<Integer, Map<Integer, TileInstance>> tiles() {
-        return tiles;
+    public Collection<TileChunk> chunks() {
+        return chunks.values();
     }
 
     public boolean useHardShadow() {
@@ -255,4 +281,98 @@ public class TileMap extends Component {
         this.useHardShadow = useHardShadow;
         return this;
     }
+
+    Tile paletteTile(short index) {
+        return palette[index];
+    }
+
+    Sprite paletteSprite(short index, int variant) {
+        Sprite[] autoTilingSprites = paletteAutoTilingSprites[index];
+        return autoTilingSprites != null ? autoTilingSprites[variant] : index == EMPTY ? null : palette[index].sprite();
+    }
+
+    private int tileId(int x, int y) {
+        TileChunk chunk = chunk(x, y, false);
+        final short index = chunk == null ? EMPTY : chunk.paletteIndex(TileChunk.cell(x, y));
+        return index == EMPTY ? AutoTillingProcessor.NO_TILE : palette[index].id();
+    }
+
+    private void placeTile(int x, int y, Tile tile) {
+
+        TileInstance instance = instances.remove(TileChunk.key(x, y));
+
+        if (instance != null) {
+            scene().destroy(instance.entity());
+        }
+
+        TileChunk chunk = chunk(x, y, tile != null);
+
+        if (chunk == null) {
+            return;
+        }
+
+        chunk.set(TileChunk.cell(x, y), tile == null ? EMPTY : paletteIndex(tile));
+
+        if (chunk.isEmpty()) {
+            chunks.remove(TileChunk.key(chunk.chunkX(), chunk.chunkY()));
+            lastChunk = null;
+            return;
+        }
+
+        if (tile != null) {
+            instance = createTileInstance(x, y, tile);
+            if (instance != null) {
+                instances.put(TileChunk.key(x, y), instance);
+            }
+        }
+    }
+
+    private TileChunk chunk(int x, int y, boolean create) {
+
+        final int chunkX = x >> SIZE_SHIFT;
+        final int chunkY = y >> SIZE_SHIFT;
+
+        TileChunk chunk = lastChunk;
+
+        if (chunk != null && chunk.chunkX() == chunkX && chunk.chunkY() == chunkY) {
+            return chunk;
+        }
+
+        chunk = create
+                ? chunks.computeIfAbsent(TileChunk.key(chunkX, chunkY), k -> new TileChunk(this, chunkX, chunkY))
+                : chunks.get(TileChunk.key(chunkX, chunkY));
+
+        if (chunk != null) {
+            lastChunk = chunk;
+        }
+
+        return chunk;
+    }
+
+    private short paletteIndex(Tile tile) {
+
+        Short index = paletteIndices.get(tile);
+
+        if (index != null) {
+            return index;
+        }
+
+        if (paletteSize > Short.MAX_VALUE) {
+            Log.error("Tile map " + entity().name() + " cannot use more than " + Short.MAX_VALUE + " different tiles");
+            return EMPTY;
+        }
+
+        if (paletteSize == palette.length) {
+            palette = Arrays.copyOf(palette, paletteSize * 2);
+            paletteAutoTilingSprites = Arrays.copyOf(paletteAutoTilingSprites, paletteSize * 2);
+        }
+
+        final short newIndex = (short) paletteSize++;
+
+        palette[newIndex] = tile;
+        paletteAutoTilingSprites[newIndex] = tile.autoTiling() ? tile.getPropertyValue(TileProperty.AUTO_TILING) : null;
+        paletteIndices.put(tile, newIndex);
+
+        return newIndex;
+    }
 }
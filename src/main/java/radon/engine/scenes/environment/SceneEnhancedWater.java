@@ -7,14 +7,61 @@ import java.util.Arrays;
 import java.util.Objects;
 import java.util.stream.Stream;
 
+import static java.lang.Math.max;
+
 public class SceneEnhancedWater {
 
     public static final int MAX_ENHANCED_WATER_VIEWS = 1;
 
+    private static final float MIN_TEXTURES_SCALE = 1 / 16.0f;
+
     private final WaterMeshView[] enhancedWaterViews;
+    private float texturesScale;
+    private int texturesUpdateInterval;
+    private boolean texturesUpdatedOnlyOnCameraMovement;
 
     public SceneEnhancedWater() {
         enhancedWaterViews = new WaterMeshView[MAX_ENHANCED_WATER_VIEWS];
+        texturesScale = 1.0f;
+        texturesUpdateInterval = 1;
+    }
+
+    /**
+     * Size of the reflection and refraction textures of the water, relative to the window
+     */
+    public float texturesScale() {
+        return texturesScale;
+    }
+
+    public SceneEnhancedWater texturesScale(float texturesScale) {
+        this.texturesScale = max(texturesScale, MIN_TEXTURES_SCALE);
+        return this;
+    }
+
+    /**
+     * Every how many frames the reflection and refraction textures of each water plane are rendered. Planes take
+     * turns, so that they are not all rendered in the same frame
+     */
+    public int texturesUpdateInterval() {
+        return texturesUpdateInterval;
+    }
+
+    public SceneEnhancedWater texturesUpdateInterval(int texturesUpdateInterval) {
+        this.texturesUpdateInterval = max(texturesUpdateInterval, 1);
+        return this;
+    }
+
+    /**
+     * Whether the reflection and refraction textures are only rendered again when the camera moves. Only suitable
+     * for scenes where nothing else moves
+     */
+    public boolean texturesUpdatedOnlyOnCameraMovement() {
+        return texturesUpdatedOnlyOnCameraMovement;
+    }
+
+    public SceneEnhancedWater texturesUpdatedOnlyOnCameraMovement(boolean texturesUpdatedOnlyOnCameraMovement) {
+        this.texturesUpdatedOnlyOnCameraMovement = texturesUpdatedOnlyOnCameraMovement;
+        return this;
     }
 
     public boolean empty() {
@@ -2,6 +2,7 @@ package radon.engine.scenes.environment;
 
 import org.lwjgl.system.MemoryStack;
 import radon.engine.graphics.GraphicsFactory;
+import radon.engine.graphics.buffers.StorageBuffer;
 import radon.engine.graphics.buffers.UniformBuffer;
 import radon.engine.lights.DirectionalLight;
 import radon.engine.lights.Light;
@@ -15,21 +16,23 @@ import radon.engine.util.IColor;
 import java.nio.ByteBuffer;
 import java.util.List;
 
-import static java.lang.Math.min;
+import static java.lang.Math.max;
 import static java.util.Objects.requireNonNull;
 import static org.lwjgl.system.MemoryStack.stackPush;
-import static radon.engine.scenes.environment.SceneLighting.MAX_POINT_LIGHTS;
-import static radon.engine.scenes.environment.SceneLighting.MAX_SPOT_LIGHTS;
+import static org.lwjgl.system.MemoryUtil.*;
 import static radon.engine.util.Maths.roundUp2;
 import static radon.engine.util.types.DataType.INT32_SIZEOF;
 import static radon.engine.util.types.DataType.VECTOR4_SIZEOF;
 
+/**
+ * The directional light, the ambient color, the fog and the number of point and spot lights are stored in a uniform
+ * buffer every frame. Point and spot lights are stored in a storage buffer, point lights first, which grows with the
+ * number of lights and is only updated when any of them changes
+ */
 public final class SceneEnvironment implements Resource {
 
     public static final int DIRECTIONAL_LIGHT_OFFSET = 0;
-    public static final int POINT_LIGHTS_OFFSET = Light.SIZEOF;
-    public static final int SPOT_LIGHTS_OFFSET = POINT_LIGHTS_OFFSET + Light.SIZEOF * MAX_POINT_LIGHTS;
-    public static final int AMBIENT_COLOR_OFFSET = SPOT_LIGHTS_OFFSET + Light.SIZEOF * MAX_SPOT_LIGHTS;
+    public static final int AMBIENT_COLOR_OFFSET = DIRECTIONAL_LIGHT_OFFSET + Light.SIZEOF;
     public static final int FOG_OFFSET = AMBIENT_COLOR_OFFSET + Color.SIZEOF;
     public static final int POINT_LIGHTS_COUNT_OFFSET = roundUp2(FOG_OFFSET + Fog.SIZEOF, VECTOR4_SIZEOF);
     public static final int SPOT_LIGHTS_COUNT_OFFSET = POINT_LIGHTS_COUNT_OFFSET + INT32_SIZEOF;
@@ -38,12 +41,18 @@ public final class SceneEnvironment implements Resource {
     public static final Color DEFAULT_AMBIENT_COLOR = new Color(0.8f, 0.8f, 0.8f);
     public static final Color DEFAULT_CLEAR_COLOR = new Color(0.8f, 0.8f, 0.8f);
 
+    private static final int INITIAL_LIGHTS_CAPACITY = 16;
+
 
     private final SceneLighting lights;
     private final Fog fog;
     private final Color ambientColor;
     private final Color clearColor;
     private UniformBuffer lightsBuffer;
+    private StorageBuffer lightsStorageBuffer;
+    // Point and spot lights packed this frame, and as they are in the storage buffer
+    private ByteBuffer lightsData;
+    private ByteBuffer uploadedLightsData;
     private Skybox skybox;
 
     public SceneEnvironment() {
@@ -53,7 +62,10 @@ public final class SceneEnvironment implements Resource {
         fog = new Fog();
         lightsBuffer = GraphicsFactory.get().newUniformBuffer();
         lightsBuffer.allocate(LIGHTS_BUFFER_SIZE);
-        lightsBuffer.mapMemory();
+        lightsStorageBuffer = GraphicsFactory.get().newStorageBuffer();
+        lightsStorageBuffer.allocate((long) INITIAL_LIGHTS_CAPACITY * Light.SIZEOF);
+        lightsData = memCalloc(INITIAL_LIGHTS_CAPACITY * Light.SIZEOF);
+        uploadedLightsData = memCalloc(INITIAL_LIGHTS_CAPACITY * Light.SIZEOF).limit(0);
     }
 
     public SceneLighting lighting() {
@@ -98,8 +110,8 @@ public final class SceneEnvironment implements Resource {
         final List<PointLight> pointLights = lights.pointLights();
         final List<SpotLight> spotLights = lights.spotLights();
 
-        final int pointLightsCount = min(pointLights.size(), MAX_POINT_LIGHTS);
-        final int spotLightsCount = min(spotLights.size(), MAX_SPOT_LIGHTS);
+        final int pointLightsCount = pointLights.size();
+        final int spotLightsCount = spotLights.size();
 
         try (MemoryStack stack = stackPush()) {
 
@@ -109,25 +121,20 @@ public final class SceneEnvironment implements Resource {
                 directionalLight.get(DIRECTIONAL_LIGHT_OFFSET, buffer);
             }
 
-            if (pointLightsCount > 0) {
-                for (int i = 0; i < pointLightsCount; i++) {
-                    pointLights.get(i).get(POINT_LIGHTS_OFFSET + i * Light.SIZEOF, buffer);
-                }
-            }
-
-            if (spotLightsCount > 0) {
-                for (int i = 0; i < spotLightsCount; i++) {
-                    spotLights.get(i).get(SPOT_LIGHTS_OFFSET + i * Light.SIZEOF, buffer);
-                }
-            }
-
             ambientColor.getRGBA(AMBIENT_COLOR_OFFSET, buffer);
             fog.get(FOG_OFFSET, buffer);
             buffer.putInt(POINT_LIGHTS_COUNT_OFFSET, pointLightsCount);
             buffer.putInt(SPOT_LIGHTS_COUNT_OFFSET, spotLightsCount);
 
-            lightsBuffer.copy(0, buffer);
+            lightsBuffer.update(0, buffer);
         }
+
+        updateLightsStorageBuffer(pointLights, spotLights);
+    }
+
+    @SuppressWarnings("unchecked")
+    public <T extends StorageBuffer> T lightsStorageBuffer() {
+        return (T) lightsStorageBuffer;
     }
 
     @SuppressWarnings("unchecked")
@@ -138,5 +145,56 @@ public final class SceneEnvironment implements Resource {
     @Override
     public void release() {
         lightsBuffer.release();
+        lightsStorageBuffer.release();
+        memFree(lightsData);
+        memFree(uploadedLightsData);
+        lightsData = null;
+        uploadedLightsData = null;
+    }
+
+    private void updateLightsStorageBuffer(List<PointLight> pointLights, List<SpotLight> spotLights) {
+
+        final int size = (pointLights.size() + spotLights.size()) * Light.SIZEOF;
+
+        if (lightsData.capacity() < size) {
+            final int capacity = max(size, lightsData.capacity() * 2);
+            memFree(lightsData);
+            lightsData = memCalloc(capacity);
+        }
+
+        lightsData.clear();
+
+        memSet(memAddress(lightsData), 0, size);
+
+        int offset = 0;
+
+        for (PointLight light : pointLights) {
+            light.get(offset, lightsData);
+            offset += Light.SIZEOF;
+        }
+
+        for (SpotLight light : spotLights) {
+            light.get(offset, lightsData);
+            offset += Light.SIZEOF;
+        }
+
+        lightsData.limit(size);
+
+        // Lights are plain objects without any modification tracking, so they are compared with the uploaded ones
+        if (lightsData.equals(uploadedLightsData)) {
+            return;
+        }
+
+        if (lightsStorageBuffer.size() < size) {
+            lightsStorageBuffer.reallocate(max(size, lightsStorageBuffer.size() * 2));
+        }
+
+        if (size > 0) {
+            lightsStorageBuffer.update(0, lightsData);
+        }
+
+        final ByteBuffer uploaded = uploadedLightsData;
+        uploadedLightsData = lightsData;
+        lightsData = uploaded;
     }
 }
@@ -8,15 +8,13 @@ import radon.engine.lights.SpotLight;
 import java.util.ArrayList;
 import java.util.List;
 
-import static java.lang.StrictMath.min;
+import static java.lang.StrictMath.max;
 
 public final class SceneLighting {
 
-    public static final int MAX_POINT_LIGHTS = 10;
-    public static final int MAX_SPOT_LIGHTS = 10;
-
     private static final float DEFAULT_SHADOWS_MAX_DISTANCE = 1024;
     private static final int DEFAULT_SHADOW_MAP_SIZE = 2048;
+    private static final int DEFAULT_SHADOW_CASCADES_UPDATE_INTERVAL = 1;
 
 
     private DirectionalLight directionalLight;
@@ -24,18 +22,21 @@ public final class SceneLighting {
     private final List<SpotLight> spotLights;
     private float shadowsMaxDistance;
     private int shadowMapSize;
+    private boolean shadowsCaching;
+    private int shadowCascadesUpdateInterval;
 
     SceneLighting() {
         pointLights = new ArrayList<>();
         spotLights = new ArrayList<>();
         shadowsMaxDistance = DEFAULT_SHADOWS_MAX_DISTANCE;
         shadowMapSize = DEFAULT_SHADOW_MAP_SIZE;
+        shadowCascadesUpdateInterval = DEFAULT_SHADOW_CASCADES_UPDATE_INTERVAL;
     }
 
     public int lightsCount() {
         int count = directionalLight == null ? 0 : 1;
-        count += min(pointLights.size(), 10);
-        count += min(spotLights.size(), 10);
+        count += pointLights.size();
+        count += spotLights.size();
         return count;
     }
 
@@ -73,4 +74,30 @@ public final class SceneLighting {
         this.shadowMapSize = shadowMapSize;
         return this;
     }
+
+    /**
+     * Whether the shadows of static mesh instances are cached, and only rendered again when the light, the static
+     * instances or the shadow cascades change
+     */
+    public boolean shadowsCaching() {
+        return shadowsCaching;
+    }
+
+    public SceneLighting shadowsCaching(boolean shadowsCaching) {
+        this.shadowsCaching = shadowsCaching;
+        return this;
+    }
+
+    /**
+     * Every how many frames the shadow cascades other than the nearest one are rendered. They take turns, so that
+     * they are not all rendered in the same frame
+     */
+    public int shadowCascadesUpdateInterval() {
+        return shadowCascadesUpdateInterval;
+    }
+
+    public SceneLighting shadowCascadesUpdateInterval(int shadowCascadesUpdateInterval) {
+        this.shadowCascadesUpdateInterval = max(shadowCascadesUpdateInterval, 1);
+        return this;
+    }
 }
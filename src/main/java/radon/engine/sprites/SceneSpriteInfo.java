@@ -1,11 +1,12 @@
 package radon.engine.sprites;
 
+import radon.engine.scenes.ComponentPool;
 import radon.engine.scenes.components.sprites.SpriteInstance;
 
 import java.util.List;
 
 public interface SceneSpriteInfo {
-    List<SpriteInstance> allInstances();
+    ComponentPool<SpriteInstance> allInstances();
     List<SpriteInstance> newInstances();
     List<SpriteInstance> removeInstances();
 
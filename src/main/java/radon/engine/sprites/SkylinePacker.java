@@ -0,0 +1,190 @@
+package radon.engine.sprites;
+
+import java.util.Arrays;
+
+import static java.lang.Math.max;
+
+/**
+ * Packs rectangles into a page with the skyline bottom left heuristic. The skyline is the top edge of the packed
+ * rectangles, kept as a list of horizontal segments, and every rectangle is placed where its top edge ends up lowest
+ */
+final class SkylinePacker {
+
+    static final long NO_SPACE = -1;
+
+    private final int width;
+    private final int height;
+    // Segments of the skyline, from left to right
+    private int[] segmentX;
+    private int[] segmentY;
+    private int[] segmentWidth;
+    private int segmentCount;
+    private long usedArea;
+
+    SkylinePacker(int width, int height) {
+        this.width = width;
+        this.height = height;
+        segmentX = new int[16];
+        segmentY = new int[16];
+        segmentWidth = new int[16];
+        segmentX[0] = 0;
+        segmentY[0] = 0;
+        segmentWidth[0] = width;
+        segmentCount = 1;
+    }
+
+    /**
+     * Returns the fraction of the page covered by packed rectangles
+     */
+    float occupancy() {
+        return (float) ((double) usedArea / ((long) width * height));
+    }
+
+    /**
+     * Returns the position of the packed rectangle as x in the high 32 bits and y in the low 32 bits, or
+     * {@link #NO_SPACE} if it does not fit
+     */
+    long insert(int rectWidth, int rectHeight) {
+
+        if (rectWidth <= 0 || rectHeight <= 0 || rectWidth > width || rectHeight > height) {
+            return NO_SPACE;
+        }
+
+        int bestSegment = -1;
+        int bestTop = Integer.MAX_VALUE;
+        int bestWidth = Integer.MAX_VALUE;
+        int bestY = 0;
+
+        for (int i = 0; i < segmentCount; i++) {
+
+            final int y = fit(i, rectWidth, rectHeight);
+
+            if (y < 0) {
+                continue;
+            }
+
+            final int top = y + rectHeight;
+
+            if (top < bestTop || (top == bestTop && segmentWidth[i] < bestWidth)) {
+                bestSegment = i;
+                bestTop = top;
+                bestWidth = segmentWidth[i];
+                bestY = y;
+            }
+        }
+
+        if (bestSegment < 0) {
+            return NO_SPACE;
+        }
+
+        final int x = segmentX[bestSegment];
+
+        addSegment(bestSegment, x, bestY + rectHeight, rectWidth);
+
+        usedArea += (long) rectWidth * rectHeight;
+
+        return ((long) x << 32) | bestY;
+    }
+
+    static int x(long position) {
+        return (int) (position >>> 32);
+    }
+
+    static int y(long position) {
+        return (int) position;
+    }
+
+    /**
+     * Returns the lowest y the rectangle can be placed at, with its left edge at the given segment, or -1 if it
+     * does not fit there
+     */
+    private int fit(int segment, int rectWidth, int rectHeight) {
+
+        if (segmentX[segment] + rectWidth > width) {
+            return -1;
+        }
+
+        int y = 0;
+        int remainingWidth = rectWidth;
+
+        for (int i = segment; remainingWidth > 0; i++) {
+
+            y = max(y, segmentY[i]);
+
+            if (y + rectHeight > height) {
+                return -1;
+            }
+
+            remainingWidth -= segmentWidth[i];
+        }
+
+        return y;
+    }
+
+    private void addSegment(int index, int x, int y, int segmentWidth) {
+
+        insertSegment(index, x, y, segmentWidth);
+
+        // Cut the segments now below the new one
+        final int end = x + segmentWidth;
+
+        while (index + 1 < segmentCount && segmentX[index + 1] < end) {
+
+            final int next = index + 1;
+            final int shrink = end - segmentX[next];
+
+            if (shrink < this.segmentWidth[next]) {
+                segmentX[next] += shrink;
+                this.segmentWidth[next] -= shrink;
+                break;
+            }
+
+            removeSegment(next);
+        }
+
+        mergeSegments();
+    }
+
+    private void mergeSegments() {
+        for (int i = 0; i + 1 < segmentCount; ) {
+            if (segmentY[i] == segmentY[i + 1]) {
+                segmentWidth[i] += segmentWidth[i + 1];
+                removeSegment(i + 1);
+            } else {
+                ++i;
+            }
+        }
+    }
+
+    private void insertSegment(int index, int x, int y, int width) {
+
+        if (segmentCount == segmentX.length) {
+            segmentX = Arrays.copyOf(segmentX, segmentCount * 2);
+            segmentY = Arrays.copyOf(segmentY, segmentCount * 2);
+            segmentWidth = Arrays.copyOf(segmentWidth, segmentCount * 2);
+        }
+
+        final int moved = segmentCount - index;
+
+        System.arraycopy(segmentX, index, segmentX, index + 1, moved);
+        System.arraycopy(segmentY, index, segmentY, index + 1, moved);
+        System.arraycopy(segmentWidth, index, segmentWidth, index + 1, moved);
+
+        segmentX[index] = x;
+        segmentY[index] = y;
+        segmentWidth[index] = width;
+
+        ++segmentCount;
+    }
+
+    private void removeSegment(int index) {
+
+        final int moved = segmentCount - index - 1;
+
+        System.arraycopy(segmentX, index + 1, segmentX, index, moved);
+        System.arraycopy(segmentY, index + 1, segmentY, index, moved);
+        System.arraycopy(segmentWidth, index + 1, segmentWidth, index, moved);
+
+        --segmentCount;
+    }
+}
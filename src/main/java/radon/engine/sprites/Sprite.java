@@ -11,6 +11,7 @@ public class Sprite {
 
     protected GLTexture texture;
     protected Rect bounds;
+    private int version;
 
     public Sprite(GLTexture texture) {
         this(texture, new Rect(0, texture.width(), 0, texture.height()));
@@ -29,6 +30,19 @@ public class Sprite {
         return bounds;
     }
 
+    /**
+     * Incremented every time the sprite is moved to another texture, like when it is packed into a {@link TextureAtlas}
+     */
+    public int version() {
+        return version;
+    }
+
+    void remap(GLTexture texture, Rect bounds) {
+        this.texture = requireNonNull(texture);
+        this.bounds = requireNonNull(bounds);
+        ++version;
+    }
+
     public Vector2f[] textureCoords() {
         return new Vector2f[]{
                 new Vector2f(bounds.right() / (float) texture.width(), bounds.top() / (float) texture.height()),
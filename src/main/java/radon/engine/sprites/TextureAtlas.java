@@ -0,0 +1,458 @@
+package radon.engine.sprites;
+
+import radon.engine.graphics.GraphicsFactory;
+import radon.engine.graphics.opengl.textures.GLTexture;
+import radon.engine.graphics.opengl.textures.GLTexture2D;
+import radon.engine.images.PixelFormat;
+import radon.engine.logging.Log;
+import radon.engine.resource.Resource;
+import radon.engine.util.geometry.Rect;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import static java.lang.Integer.numberOfLeadingZeros;
+import static java.lang.Math.max;
+import static java.lang.Math.min;
+import static org.lwjgl.opengl.GL45.*;
+
+/**
+ * Packs the textures of many sprites into a few large pages, so sprites share textures. Sprites are added first, and
+ * {@link #build(Path)} copies the used region of every texture into a page and moves the sprites to it. Later builds
+ * pack new textures into the free space of the pages, and sprites of a texture already packed are moved when added.
+ * The layout of the first build can be cached in a file, so the packing only runs again when the textures change.
+ * Must be used from the rendering thread. The original textures are not released
+ */
+public final class TextureAtlas implements Resource {
+
+    public static final int DEFAULT_PAGE_SIZE = 2048;
+
+    private static final String LAYOUT_HEADER = "radon-texture-atlas 1";
+    // Pixels around every region filled with its edges, so filtering does not bleed into its neighbours
+    private static final int PADDING = 2;
+    // Mip levels that never mix two regions, a region is PADDING * 2 pixels away from the next one
+    private static final int MIP_LEVELS = 32 - numberOfLeadingZeros(PADDING);
+
+    private final int pageSize;
+    // Sprites waiting for the next build, by texture
+    private final Map<GLTexture, Set<Sprite>> sprites;
+    // Last packed region of every texture
+    private final Map<GLTexture, Region> packedRegions;
+    // Textures that cannot be packed
+    private final Set<GLTexture> unpackedTextures;
+    private final List<GLTexture2D> pages;
+    // Packer of every page, null if the free space of the page is unknown
+    private final List<SkylinePacker> packers;
+
+    public TextureAtlas() {
+        this(DEFAULT_PAGE_SIZE);
+    }
+
+    public TextureAtlas(int pageSize) {
+        this.pageSize = pageSize;
+        sprites = new LinkedHashMap<>();
+        packedRegions = new HashMap<>();
+        unpackedTextures = new HashSet<>();
+        pages = new ArrayList<>();
+        packers = new ArrayList<>();
+    }
+
+    public int pageSize() {
+        return pageSize;
+    }
+
+    public List<GLTexture2D> pages() {
+        return Collections.unmodifiableList(pages);
+    }
+
+    public TextureAtlas add(Sprite... sprites) {
+        for (Sprite sprite : sprites) {
+            add(sprite);
+        }
+        return this;
+    }
+
+    /**
+     * Adds the sprite to the next build. If the part of its texture it uses is already packed, the sprite is moved to
+     * its page right away
+     */
+    public TextureAtlas add(Sprite sprite) {
+
+        final GLTexture texture = sprite == null ? null : sprite.texture();
+
+        if (texture == null || unpackedTextures.contains(texture) || (texture instanceof GLTexture2D && pages.contains(texture))) {
+            return this;
+        }
+
+        final Region region = packedRegions.get(texture);
+
+        if (region != null && region.contains(sprite.bounds())) {
+            remap(sprite, region);
+        } else {
+            sprites.computeIfAbsent(texture, t -> new LinkedHashSet<>()).add(sprite);
+        }
+
+        return this;
+    }
+
+    public boolean hasPendingSprites() {
+        return !sprites.isEmpty();
+    }
+
+    public void build() {
+        build(null);
+    }
+
+    /**
+     * Packs the sprites added since the last build into the pages, adding new pages when they are full. If layoutCache
+     * is not null and the atlas has not been built yet, the layout is read from it when it matches the added sprites,
+     * and written to it otherwise
+     */
+    public void build(Path layoutCache) {
+
+        final List<Region> regions = collectRegions();
+
+        sprites.clear();
+
+        if (regions.isEmpty()) {
+            return;
+        }
+
+        final boolean cacheable = layoutCache != null && pages.isEmpty() && regions.stream().noneMatch(region -> region.key == null);
+
+        if (layoutCache != null && !cacheable) {
+            Log.warning("Texture atlas layout will not be cached: the atlas was already built or some textures have no name");
+        }
+
+        final int pageCount = cacheable ? readLayout(layoutCache, regions) : -1;
+
+        if (pageCount >= 0) {
+            for (int i = 0; i < pageCount; i++) {
+                packers.add(null);
+            }
+        } else {
+            pack(regions);
+            if (cacheable) {
+                writeLayout(layoutCache, regions, packers.size());
+            }
+            logOccupancy();
+        }
+
+        while (pages.size() < packers.size()) {
+            pages.add(createPage(pages.size()));
+        }
+
+        final boolean[] updatedPages = new boolean[pages.size()];
+
+        for (Region region : regions) {
+            copyRegion(region, pages.get(region.page));
+            packedRegions.put(region.texture, region);
+            updatedPages[region.page] = true;
+        }
+
+        for (int i = 0; i < pages.size(); i++) {
+            if (updatedPages[i]) {
+                pages.get(i).generateMipmaps();
+            }
+        }
+    }
+
+    private void logOccupancy() {
+
+        final StringBuilder builder = new StringBuilder("Texture atlas packed into ").append(packers.size()).append(" pages:");
+
+        for (int i = 0; i < packers.size(); i++) {
+            final SkylinePacker packer = packers.get(i);
+            if (packer != null) {
+                builder.append(' ').append(i).append('=').append(Math.round(packer.occupancy() * 100.0f)).append('%');
+            }
+        }
+
+        Log.trace(builder);
+    }
+
+    @Override
+    public void release() {
+        pages.forEach(GLTexture::release);
+        pages.clear();
+        packers.clear();
+        sprites.clear();
+        packedRegions.clear();
+        unpackedTextures.clear();
+    }
+
+    private List<Region> collectRegions() {
+
+        final List<Region> regions = new ArrayList<>(sprites.size());
+
+        for (Map.Entry<GLTexture, Set<Sprite>> entry : sprites.entrySet()) {
+
+            final GLTexture texture = entry.getKey();
+
+            if (texture.internalFormat() != PixelFormat.RGBA) {
+                Log.warning("Texture " + texture + " is not RGBA8, it will not be packed into the atlas");
+                unpackedTextures.add(texture);
+                continue;
+            }
+
+            final Region region = new Region(texture, entry.getValue());
+
+            if (region.width <= 0 || region.height <= 0) {
+                continue;
+            }
+
+            if (region.width + PADDING * 2 > pageSize || region.height + PADDING * 2 > pageSize) {
+                Log.warning("Texture " + texture + " does not fit in an atlas page of " + pageSize + " pixels");
+                unpackedTextures.add(texture);
+                continue;
+            }
+
+            regions.add(region);
+        }
+
+        return regions;
+    }
+
+    private void pack(List<Region> regions) {
+
+        final List<Region> sortedRegions = new ArrayList<>(regions);
+
+        // Taller regions first, so rows of the skyline stay even
+        sortedRegions.sort((r1, r2) -> r1.height != r2.height ? Integer.compare(r2.height, r1.height) : Integer.compare(r2.width, r1.width));
+
+        for (Region region : sortedRegions) {
+
+            final int width = region.width + PADDING * 2;
+            final int height = region.height + PADDING * 2;
+
+            int page = 0;
+            long position = SkylinePacker.NO_SPACE;
+
+            // A region always fits in an empty page
+            while (position == SkylinePacker.NO_SPACE) {
+
+                if (page == packers.size()) {
+                    packers.add(new SkylinePacker(pageSize, pageSize));
+                }
+
+                final SkylinePacker packer = packers.get(page);
+
+                position = packer == null ? SkylinePacker.NO_SPACE : packer.insert(width, height);
+
+                if (position == SkylinePacker.NO_SPACE) {
+                    ++page;
+                }
+            }
+
+            region.page = page;
+            region.pageX = SkylinePacker.x(position) + PADDING;
+            region.pageY = SkylinePacker.y(position) + PADDING;
+        }
+    }
+
+    private GLTexture2D createPage(int index) {
+
+        GLTexture2D page = (GLTexture2D) GraphicsFactory.get().newTexture2D();
+
+        page.name("TextureAtlas page " + index);
+
+        page.allocate(MIP_LEVELS, pageSize, pageSize, PixelFormat.RGBA);
+
+        glClearTexImage(page.handle(), 0, GL_RGBA, GL_UNSIGNED_BYTE, (ByteBuffer) null);
+
+        return page;
+    }
+
+    private void copyRegion(Region region, GLTexture2D page) {
+
+        glCopyImageSubData(
+                region.texture.handle(), GL_TEXTURE_2D, 0, region.x, region.y, 0,
+                page.handle(), GL_TEXTURE_2D, 0, region.pageX, region.pageY, 0,
+                region.width, region.height, 1);
+
+        extrudeEdges(region, page);
+
+        for (Sprite sprite : region.sprites) {
+            remap(sprite, region);
+        }
+    }
+
+    private void remap(Sprite sprite, Region region) {
+
+        final int dx = region.pageX - region.x;
+        final int dy = region.pageY - region.y;
+
+        final Rect bounds = sprite.bounds();
+
+        sprite.remap(pages.get(region.page), new Rect(bounds.left() + dx, bounds.right() + dx, bounds.top() + dy, bounds.bottom() + dy));
+    }
+
+    // Repeats the outer pixels of the region into its padding, the columns first and then the rows with the corners
+    private void extrudeEdges(Region region, GLTexture2D page) {
+
+        final int left = region.pageX;
+        final int right = region.pageX + region.width - 1;
+        final int bottom = region.pageY;
+        final int top = region.pageY + region.height - 1;
+
+        for (int i = 1; i <= PADDING; i++) {
+            copyPixels(page, left, bottom, left - i, bottom, 1, region.height);
+            copyPixels(page, right, bottom, right + i, bottom, 1, region.height);
+        }
+
+        final int x = left - PADDING;
+        final int width = region.width + PADDING * 2;
+
+        for (int i = 1; i <= PADDING; i++) {
+            copyPixels(page, x, bottom, x, bottom - i, width, 1);
+            copyPixels(page, x, top, x, top + i, width, 1);
+        }
+    }
+
+    private void copyPixels(GLTexture2D page, int srcX, int srcY, int dstX, int dstY, int width, int height) {
+        glCopyImageSubData(
+                page.handle(), GL_TEXTURE_2D, 0, srcX, srcY, 0,
+                page.handle(), GL_TEXTURE_2D, 0, dstX, dstY, 0,
+                width, height, 1);
+    }
+
+    private int readLayout(Path file, List<Region> regions) {
+
+        if (!Files.exists(file)) {
+            return -1;
+        }
+
+        try {
+
+            final List<String> lines = Files.readAllLines(file);
+
+            if (lines.size() < 3 || !lines.get(0).equals(LAYOUT_HEADER) || Integer.parseInt(lines.get(1)) != pageSize) {
+                return -1;
+            }
+
+            final Map<String, String[]> placements = new HashMap<>();
+
+            for (int i = 3; i < lines.size(); i++) {
+                final String[] values = lines.get(i).split("\t");
+                placements.put(values[0], values);
+            }
+
+            final int pageCount = Integer.parseInt(lines.get(2));
+
+            for (Region region : regions) {
+
+                final String[] placement = placements.get(region.key);
+
+                if (placement == null || placement.length < 4) {
+                    return -1;
+                }
+
+                region.page = Integer.parseInt(placement[1]);
+                region.pageX = Integer.parseInt(placement[2]);
+                region.pageY = Integer.parseInt(placement[3]);
+
+                if (!fitsInPage(region, pageCount)) {
+                    Log.warning("Texture atlas layout " + file + " is not valid, packing the textures again");
+                    return -1;
+                }
+            }
+
+            return pageCount;
+
+        } catch (IOException | RuntimeException e) {
+            Log.error("Failed to read texture atlas layout " + file, e);
+        }
+
+        return -1;
+    }
+
+    private void writeLayout(Path file, List<Region> regions, int pageCount) {
+
+        final List<String> lines = new ArrayList<>(regions.size() + 3);
+
+        lines.add(LAYOUT_HEADER);
+        lines.add(String.valueOf(pageSize));
+        lines.add(String.valueOf(pageCount));
+
+        for (Region region : regions) {
+            lines.add(region.key + '\t' + region.page + '\t' + region.pageX + '\t' + region.pageY);
+        }
+
+        try {
+            if (file.getParent() != null) {
+                Files.createDirectories(file.getParent());
+            }
+            Files.write(file, lines);
+        } catch (IOException e) {
+            Log.error("Failed to write texture atlas layout " + file, e);
+        }
+    }
+
+    private boolean fitsInPage(Region region, int pageCount) {
+        return region.page >= 0 && region.page < pageCount
+                && region.pageX >= PADDING && region.pageX + region.width + PADDING <= pageSize
+                && region.pageY >= PADDING && region.pageY + region.height + PADDING <= pageSize;
+    }
+
+    /**
+     * Part of a texture used by sprites. Sprites of the same texture are packed together, so sprite sheets stay whole
+     */
+    private static final class Region {
+
+        private final GLTexture texture;
+        private final Collection<Sprite> sprites;
+        private final String key;
+        private final int x;
+        private final int y;
+        private final int width;
+        private final int height;
+        private int page;
+        private int pageX;
+        private int pageY;
+
+        private Region(GLTexture texture, Collection<Sprite> sprites) {
+
+            this.texture = texture;
+            this.sprites = sprites;
+
+            int minX = Integer.MAX_VALUE;
+            int minY = Integer.MAX_VALUE;
+            int maxX = Integer.MIN_VALUE;
+            int maxY = Integer.MIN_VALUE;
+
+            for (Sprite sprite : sprites) {
+                final Rect bounds = sprite.bounds();
+                minX = min(minX, min(bounds.left(), bounds.right()));
+                maxX = max(maxX, max(bounds.left(), bounds.right()));
+                minY = min(minY, min(bounds.top(), bounds.bottom()));
+                maxY = max(maxY, max(bounds.top(), bounds.bottom()));
+            }
+
+            x = max(minX, 0);
+            y = max(minY, 0);
+            width = min(maxX, texture.width()) - x;
+            height = min(maxY, texture.height()) - y;
+
+            final String name = texture.name();
+
+            key = name == null || name.isEmpty() ? null : name + '@' + x + ',' + y + ',' + width + 'x' + height;
+        }
+
+        private boolean contains(Rect bounds) {
+            return min(bounds.left(), bounds.right()) >= x && max(bounds.left(), bounds.right()) <= x + width
+                    && min(bounds.top(), bounds.bottom()) >= y && max(bounds.top(), bounds.bottom()) <= y + height;
+        }
+    }
+}
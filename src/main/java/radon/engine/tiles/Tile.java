@@ -7,6 +7,7 @@ import java.util.HashMap;
 
 
 import static radon.engine.tiles.properties.TileProperty.AUTO_TILING;
+import static radon.engine.tiles.properties.TileProperty.INSTANCE;
 
 public class Tile {
 
@@ -52,6 +53,10 @@ public class Tile {
         return properties.containsKey(AUTO_TILING);
     }
 
+    public Class<? extends TileInstance> instanceType() {
+        return getPropertyValue(INSTANCE);
+    }
+
     public int id() {
         return id;
     }
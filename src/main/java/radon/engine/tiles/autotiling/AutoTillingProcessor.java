@@ -1,99 +1,123 @@
 package radon.engine.tiles.autotiling;
 
+import radon.engine.graphics.rendering.RenderJobScheduler;
 import radon.engine.scenes.components.tilemap.TileMap;
-import radon.engine.sprites.Sprite;
 import radon.engine.tiles.Tile;
-import radon.engine.tiles.TileInstance;
-import radon.engine.tiles.properties.TileProperty;
 
-import java.util.HashMap;
-import java.util.Map;
+import static java.lang.Math.max;
 
 public class AutoTillingProcessor {
 
-    private static final Map<Integer, Integer> INDICES = new HashMap<>();
+    /**
+     * Tile id of the empty cells in the grids given to {@link #process(int[], int, int, int[])}
+     */
+    public static final int NO_TILE = Integer.MIN_VALUE;
+
+    // Sprite index by neighbour mask
+    private static final int[] INDICES = new int[256];
+
+    // Cells per parallel job
+    private static final int CELLS_PER_JOB = 4096;
 
     static {
         String autoTilingIndexStr = "2 = 1, 8 = 2, 10 = 3, 11 = 4, 16 = 5, 18 = 6, 22 = 7, 24 = 8, 26 = 9, 27 = 10, 30 = 11, 31 = 12, 64 = 13, 66 = 14, 72 = 15, 74 = 16, 75 = 17, 80 = 18, 82 = 19, 86 = 20, 88 = 21, 90 = 22, 91 = 23, 94 = 24, 95 = 25, 104 = 26, 106 = 27, 107 = 28, 120 = 29, 122 = 30, 123 = 31, 126 = 32, 127 = 33, 208 = 34, 210 = 35, 214 = 36, 216 = 37, 218 = 38, 219 = 39, 222 = 40, 223 = 41, 248 = 42, 250 = 43, 251 = 44, 254 = 45, 255 = 46";
         String[] split = autoTilingIndexStr.split(",", -1);
         for (String value : split) {
             String[] keyValue = value.split("=",2);
-            Integer s = Integer.parseInt(keyValue[0].trim());
-            Integer e = Integer.parseInt(keyValue[1].trim());
+            int s = Integer.parseInt(keyValue[0].trim());
+            int e = Integer.parseInt(keyValue[1].trim());
 
-            INDICES.put(s, e);
+            INDICES[s] = e;
         }
     }
 
-    public static void process(TileMap tileMap, TileInstance tileI) {
+    /**
+     * Returns the index of the auto tiling sprite of the tile at the given cell, depending on its neighbours
+     */
+    public static int process(TileMap tileMap, int x, int y) {
 
-        Tile tile, tileNW, tileN, tileNE, tileW, tileE, tileSW, tileS, tileSE;
+        Tile tile = tileMap.getTile(x, y);
 
-        int x = tileI.x();
-        int y = tileI.y();
+        if (tile == null) {
+            return 0;
+        }
 
-        tile = tileI.tile();
-        tileNW = tileMap.getTile(x - 1, y + 1);
-        tileN = tileMap.getTile(x, y + 1);
-        tileNE = tileMap.getTile(x + 1, y + 1);
+        boolean N = detectSameTileType(tile, tileMap.getTile(x, y + 1));
+        boolean S = detectSameTileType(tile, tileMap.getTile(x, y - 1));
+        boolean E = detectSameTileType(tile, tileMap.getTile(x + 1, y));
+        boolean W = detectSameTileType(tile, tileMap.getTile(x - 1, y));
 
-        tileW = tileMap.getTile(x - 1, y);
-        tileE = tileMap.getTile(x + 1, y);
+        boolean NW = N && W && detectSameTileType(tile, tileMap.getTile(x - 1, y + 1));
+        boolean NE = N && E && detectSameTileType(tile, tileMap.getTile(x + 1, y + 1));
+        boolean SW = S && W && detectSameTileType(tile, tileMap.getTile(x - 1, y - 1));
+        boolean SE = S && E && detectSameTileType(tile, tileMap.getTile(x + 1, y - 1));
 
-        tileSW = tileMap.getTile(x - 1, y - 1);
-        tileS = tileMap.getTile(x, y - 1);
-        tileSE = tileMap.getTile(x + 1, y - 1);
+        return INDICES[mask(NW, N, NE, W, E, SW, S, SE)];
+    }
 
-        int i;
+    /**
+     * Computes the auto tiling sprite index of every cell of an area at once.
+     *
+     * @param tileIds  the tile id of every cell of the area plus a border of 1 cell around it, row by row from the
+     *                 bottom, {@link #NO_TILE} for empty cells. Its size is (width + 2) * (height + 2)
+     * @param width    the width of the area
+     * @param height   the height of the area
+     * @param variants receives the sprite index of every cell of the area, row by row from the bottom
+     */
+    public static void process(int[] tileIds, int width, int height, int[] variants) {
+
+        final int minRowsPerJob = max(1, CELLS_PER_JOB / max(width, 1));
+
+        RenderJobScheduler.parallelFor(0, height, minRowsPerJob * 2, minRowsPerJob,
+                (beginRow, endRow) -> processRows(tileIds, width, beginRow, endRow, variants));
+    }
 
-        boolean N = detectSameTileType(tile, tileN);
-        boolean S = detectSameTileType(tile, tileS);
-        boolean E = detectSameTileType(tile, tileE);
-        boolean W = detectSameTileType(tile, tileW);
+    private static void processRows(int[] tileIds, int width, int beginRow, int endRow, int[] variants) {
 
-        boolean NW = detectSameTileType(tile, tileNW) && N && W;
-        boolean NE = detectSameTileType(tile, tileNE) && N && E;
-        boolean SW = detectSameTileType(tile, tileSW) && S && W;
-        boolean SE = detectSameTileType(tile, tileSE) && S && E;
+        final int stride = width + 2;
 
+        for (int row = beginRow; row < endRow; row++) {
 
-        i = (boolToInt(NW) << 0) |
-                (boolToInt(N) << 1) |
-                (boolToInt(NE) << 2) |
-                (boolToInt(W) << 3) |
-                (boolToInt(E) << 4) |
-                (boolToInt(SW) << 5) |
-                (boolToInt(S) << 6) |
-                (boolToInt(SE) << 7);
+            // Rows below, at and above the cells of this row
+            int south = row * stride + 1;
+            int center = south + stride;
+            int north = center + stride;
 
-        i = INDICES.getOrDefault(i, 0);
+            int output = row * width;
 
-        Map<Integer, Integer> neighbors = new HashMap<>();
+            for (int x = 0; x < width; x++, south++, center++, north++, output++) {
 
-        if (tileN != null) neighbors.compute(tileN.id(), (k, v) -> v == null ? 1 : v + 1);
-        if (tileS != null) neighbors.compute(tileS.id(), (k, v) -> v == null ? 1 : v + 1);
-        if (tileE != null) neighbors.compute(tileE.id(), (k, v) -> v == null ? 1 : v + 1);
-        if (tileW != null) neighbors.compute(tileW.id(), (k, v) -> v == null ? 1 : v + 1);
-        if (tileNE != null) neighbors.compute(tileNE.id(), (k, v) -> v == null ? 1 : v + 1);
-        if (tileNW != null) neighbors.compute(tileNW.id(), (k, v) -> v == null ? 1 : v + 1);
-        if (tileSE != null) neighbors.compute(tileSE.id(), (k, v) -> v == null ? 1 : v + 1);
-        if (tileSW != null) neighbors.compute(tileSW.id(), (k, v) -> v == null ? 1 : v + 1);
+                final int id = tileIds[center];
 
-        int n = 0;
-        int nums = 0;
+                if (id == NO_TILE) {
+                    variants[output] = 0;
+                    continue;
+                }
 
-        for (Map.Entry<Integer, Integer> entry : neighbors.entrySet()) {
-            int key = entry.getKey();
-            int value = entry.getValue();
-            if (key == tile.id()) continue;
-            n = (value > nums) ? key : n;
-            nums = (value > nums) ? value : nums;
-        }
+                final boolean N = tileIds[north] == id;
+                final boolean S = tileIds[south] == id;
+                final boolean E = tileIds[center + 1] == id;
+                final boolean W = tileIds[center - 1] == id;
 
+                final boolean NW = N && W && tileIds[north - 1] == id;
+                final boolean NE = N && E && tileIds[north + 1] == id;
+                final boolean SW = S && W && tileIds[south - 1] == id;
+                final boolean SE = S && E && tileIds[south + 1] == id;
 
-        Sprite[] sprites = tileI.tile().getPropertyValue(TileProperty.AUTO_TILING);
+                variants[output] = INDICES[mask(NW, N, NE, W, E, SW, S, SE)];
+            }
+        }
+    }
 
-        tileI.sprite(sprites[i]/*, i */);
+    private static int mask(boolean NW, boolean N, boolean NE, boolean W, boolean E, boolean SW, boolean S, boolean SE) {
+        return (boolToInt(NW) << 0) |
+                (boolToInt(N) << 1) |
+                (boolToInt(NE) << 2) |
+                (boolToInt(W) << 3) |
+                (boolToInt(E) << 4) |
+                (boolToInt(SW) << 5) |
+                (boolToInt(S) << 6) |
+                (boolToInt(SE) << 7);
     }
 
     private static boolean detectSameTileType(Tile a, Tile b) {
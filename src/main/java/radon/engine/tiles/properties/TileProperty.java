@@ -5,6 +5,8 @@ public class TileProperty<T> {
     public static final String AUTO_TILING = "tile.auto_tiling";
     public static final String MULTI_TILE_SIZE = "tile.multi_tile.size";
     public static final String MULTI_TILE_CENTER = "tile.multi_tile.center";
+    // Subclass of TileInstance to create an entity with, for tiles that need behaviour
+    public static final String INSTANCE = "tile.instance";
 
     private final String property;
     private T value;
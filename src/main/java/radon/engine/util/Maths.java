@@ -1,5 +1,6 @@
 package radon.engine.util;
 
+import org.joml.Matrix4fc;
 import org.joml.Quaternionf;
 import org.joml.Random;
 import org.joml.Vector3f;
@@ -73,6 +74,16 @@ public class Maths {
         return Integer.SIZE - 1 - Integer.numberOfLeadingZeros(n);
     }
 
+    /**
+     * Returns the biggest scale of the affine matrix, the length of the longest column of its upper 3x3 part
+     */
+    public static float maxScale(Matrix4fc m) {
+        final float x = m.m00() * m.m00() + m.m01() * m.m01() + m.m02() * m.m02();
+        final float y = m.m10() * m.m10() + m.m11() * m.m11() + m.m12() * m.m12();
+        final float z = m.m20() * m.m20() + m.m21() * m.m21() + m.m22() * m.m22();
+        return (float) sqrt(max(max(x, y), z));
+    }
+
     public static float lerp(float a, float b, float t) {
         return (1 - t) * a + t * b;
     }
@@ -1,24 +1,32 @@
 package radon.engine.util.collections;
 
 import java.util.*;
-import java.util.stream.Stream;
+import java.util.function.Consumer;
 
-public class FastIterableSet<T> implements Set<T> {
+import static java.util.Objects.requireNonNull;
 
-    private T[] data;
-    private final Queue<Integer> freeIndices;
-    private final Map<Object, Integer> indexTable;
+/**
+ * Dense set that stores the slot of every element on the element itself, through a {@link SlotAccessor}. Lookups do
+ * not hash, and removals move the last element into the gap, so the elements always occupy the first {@link #size()}
+ * positions of the array and iteration never visits dead slots
+ */
+public class FastIterableSet<T> extends AbstractSet<T> {
+
+    public static final int NO_SLOT = -1;
+
+    private static final int SPLITERATOR_CHARACTERISTICS = Spliterator.DISTINCT | Spliterator.NONNULL;
+
+    private final SlotAccessor<? super T> slots;
+    private Object[] data;
     private int size;
 
-    public FastIterableSet() {
-        this(16);
+    public FastIterableSet(SlotAccessor<? super T> slots) {
+        this(slots, 16);
     }
 
-    @SuppressWarnings("unchecked")
-    public FastIterableSet(int initialCapacity) {
-        data = (T[]) new Object[initialCapacity];
-        freeIndices = new ArrayDeque<>(initialCapacity);
-        indexTable = new HashMap<>(initialCapacity);
+    public FastIterableSet(SlotAccessor<? super T> slots, int initialCapacity) {
+        this.slots = requireNonNull(slots);
+        data = new Object[Math.max(initialCapacity, 1)];
     }
 
     @Override
@@ -28,147 +36,177 @@ public class FastIterableSet<T> implements Set<T> {
 
     @Override
     public boolean isEmpty() {
-        return size() == 0;
+        return size == 0;
+    }
+
+    @SuppressWarnings("unchecked")
+    public T get(int index) {
+        return (T) data[index];
     }
 
     @Override
     public boolean contains(Object o) {
-        return indexTable.containsKey(o);
+        return indexOf(o) != NO_SLOT;
     }
 
     @Override
     public Object[] toArray() {
-        return data;
+        return Arrays.copyOf(data, size);
     }
 
     @Override
     @SuppressWarnings("unchecked")
     public <T1> T1[] toArray(T1[] a) {
-        System.arraycopy((T1[]) data, 0, a, 0, a.length);
+        if(a.length < size) {
+            return (T1[]) Arrays.copyOf(data, size, a.getClass());
+        }
+        System.arraycopy(data, 0, a, 0, size);
+        if(a.length > size) {
+            a[size] = null;
+        }
         return a;
     }
 
     @Override
     public boolean add(T t) {
 
-        if(indexTable.containsKey(t)) {
+        requireNonNull(t);
+
+        if(indexOf(t) != NO_SLOT) {
             return false;
         }
 
-        if(!freeIndices.isEmpty()) {
-
-            final int index = freeIndices.poll();
-            data[index] = t;
-            indexTable.put(t, index);
-
-        } else {
-
-            if(size >= data.length) {
-                data = Arrays.copyOf(data, Math.round(size * 1.5f));
-            }
-
-            indexTable.put(t, size);
-            data[size] = t;
+        if(size == data.length) {
+            data = Arrays.copyOf(data, Math.max(Math.round(size * 1.5f), size + 1));
         }
 
+        data[size] = t;
+        slots.setSlot(t, size);
+
         ++size;
 
         return true;
     }
 
     @Override
+    @SuppressWarnings("unchecked")
     public boolean remove(Object o) {
 
-        if(!indexTable.containsKey(o)) {
+        final int index = indexOf(o);
+
+        if(index == NO_SLOT) {
             return false;
         }
 
-        final int index = indexTable.get(o);
-        data[index] = null;
-        freeIndices.add(index);
-        indexTable.remove(o);
-
-        --size;
+        removeAt(index);
+        slots.setSlot((T) o, NO_SLOT);
 
         return true;
     }
 
     @Override
+    @SuppressWarnings("unchecked")
     public void clear() {
+        for(int i = 0; i < size; i++) {
+            slots.setSlot((T) data[i], NO_SLOT);
+        }
+        Arrays.fill(data, 0, size, null);
         size = 0;
-        Arrays.fill(data, null);
-        freeIndices.clear();
-        indexTable.clear();
     }
 
     @Override
-    public boolean addAll(Collection<? extends T> c) {
-        boolean allAdded = false;
-        for(T t : c) {
-            allAdded |= add(t);
+    @SuppressWarnings("unchecked")
+    public void forEach(Consumer<? super T> action) {
+        for(int i = 0; i < size; i++) {
+            action.accept((T) data[i]);
         }
-        return allAdded;
     }
 
     @Override
-    public boolean removeAll(Collection<?> c) {
-        boolean allRemoved = false;
-        for(Object o : c) {
-            allRemoved |= remove(o);
-        }
-        return allRemoved;
+    public Iterator<T> iterator() {
+        return new Itr();
     }
 
+    /**
+     * Splits the dense range of elements in halves, so parallel streams get evenly sized chunks
+     */
     @Override
-    public boolean retainAll(Collection<?> c) {
-        Iterator<T> it = iterator();
-        boolean changed = false;
-        while(it.hasNext()) {
-            T t = it.next();
-            if(!c.contains(t)) {
-                it.remove();
-                changed = true;
-            }
-        }
-        return changed;
+    public Spliterator<T> spliterator() {
+        return Spliterators.spliterator(data, 0, size, SPLITERATOR_CHARACTERISTICS);
     }
 
     @Override
-    public Iterator<T> iterator() {
-        return stream().iterator();
+    public String toString() {
+        return Arrays.toString(toArray());
     }
 
-    @Override
-    public boolean containsAll(Collection<?> c) {
-        return c.stream().allMatch(this::contains);
-    }
+    private int indexOf(Object o) {
 
-    @Override
-    public Stream<T> stream() {
-        return Arrays.stream(data).unordered().filter(Objects::nonNull);
-    }
+        if(o == null) {
+            return NO_SLOT;
+        }
 
-    @Override
-    public Stream<T> parallelStream() {
-        return Arrays.stream(data).parallel().unordered().filter(Objects::nonNull);
+        final int index = slots.slotOf(o);
+
+        // The element may be stored in another set using the same slot
+        return index >= 0 && index < size && data[index] == o ? index : NO_SLOT;
     }
 
-    @Override
-    public boolean equals(Object o) {
-        if (this == o) return true;
-        if (o == null || getClass() != o.getClass()) return false;
-        FastIterableSet<?> that = (FastIterableSet<?>) o;
-        return Arrays.equals(data, that.data) &&
-                Objects.equals(freeIndices, that.freeIndices);
+    @SuppressWarnings("unchecked")
+    private void removeAt(int index) {
+
+        final int last = --size;
+
+        if(index != last) {
+            data[index] = data[last];
+            slots.setSlot((T) data[index], index);
+        }
+
+        data[last] = null;
     }
 
-    @Override
-    public int hashCode() {
-        return Objects.hash(data, freeIndices);
+    /**
+     * Reads and writes the slot of an element in a {@link FastIterableSet}. Usually backed by an int field of the element
+     */
+    public interface SlotAccessor<T> {
+
+        /**
+         * Returns the slot stored in the element, or {@link #NO_SLOT} if the object is not a valid element
+         */
+        int slotOf(Object element);
+
+        void setSlot(T element, int slot);
     }
 
-    @Override
-    public String toString() {
-        return Arrays.toString(data);
+    private final class Itr implements Iterator<T> {
+
+        private int cursor;
+        private int lastReturned = NO_SLOT;
+
+        @Override
+        public boolean hasNext() {
+            return cursor < size;
+        }
+
+        @Override
+        @SuppressWarnings("unchecked")
+        public T next() {
+            if(cursor >= size) {
+                throw new NoSuchElementException();
+            }
+            lastReturned = cursor++;
+            return (T) data[lastReturned];
+        }
+
+        @Override
+        public void remove() {
+            if(lastReturned == NO_SLOT) {
+                throw new IllegalStateException();
+            }
+            FastIterableSet.this.remove(data[lastReturned]);
+            // The last element has been moved into the removed slot, so visit it next
+            cursor = lastReturned;
+            lastReturned = NO_SLOT;
+        }
     }
 }
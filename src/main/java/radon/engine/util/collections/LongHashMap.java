@@ -0,0 +1,244 @@
+package radon.engine.util.collections;
+
+import java.util.AbstractCollection;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.ConcurrentModificationException;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.function.LongFunction;
+
+/**
+ * Hash map from primitive long keys to non null values, with open addressing and linear probing. Keys are never boxed,
+ * and removals shift the following entries back, so lookups never visit deleted entries
+ */
+public class LongHashMap<V> {
+
+    private static final float MAX_LOAD_FACTOR = 0.5f;
+
+    private final Collection<V> valuesView;
+    private long[] keys;
+    private Object[] values;
+    private int size;
+    private int mask;
+    private int modifications;
+
+    public LongHashMap() {
+        this(16);
+    }
+
+    public LongHashMap(int initialCapacity) {
+        final int capacity = tableSize(initialCapacity);
+        keys = new long[capacity];
+        values = new Object[capacity];
+        mask = capacity - 1;
+        valuesView = new Values();
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    public boolean containsKey(long key) {
+        return values[indexOf(key)] != null;
+    }
+
+    @SuppressWarnings("unchecked")
+    public V get(long key) {
+        return (V) values[indexOf(key)];
+    }
+
+    @SuppressWarnings("unchecked")
+    public V put(long key, V value) {
+
+        if (value == null) {
+            throw new NullPointerException("Values cannot be null");
+        }
+
+        final int index = indexOf(key);
+        final V oldValue = (V) values[index];
+
+        if (oldValue != null) {
+            values[index] = value;
+            return oldValue;
+        }
+
+        insert(index, key, value);
+
+        return null;
+    }
+
+    @SuppressWarnings("unchecked")
+    public V computeIfAbsent(long key, LongFunction<? extends V> mappingFunction) {
+
+        final int index = indexOf(key);
+        final V value = (V) values[index];
+
+        if (value != null) {
+            return value;
+        }
+
+        final V newValue = mappingFunction.apply(key);
+
+        if (newValue != null) {
+            insert(index, key, newValue);
+        }
+
+        return newValue;
+    }
+
+    @SuppressWarnings("unchecked")
+    public V remove(long key) {
+
+        int index = indexOf(key);
+        final V value = (V) values[index];
+
+        if (value == null) {
+            return null;
+        }
+
+        // Shift back the following entries of the run that would not be found past the gap
+        int next = (index + 1) & mask;
+
+        while (values[next] != null) {
+
+            final int home = hash(keys[next]) & mask;
+
+            if (((next - home) & mask) >= ((next - index) & mask)) {
+                keys[index] = keys[next];
+                values[index] = values[next];
+                index = next;
+            }
+
+            next = (next + 1) & mask;
+        }
+
+        values[index] = null;
+
+        --size;
+        ++modifications;
+
+        return value;
+    }
+
+    public void clear() {
+        Arrays.fill(values, null);
+        size = 0;
+        ++modifications;
+    }
+
+    /**
+     * Returns a view of the values of this map, in no particular order
+     */
+    public Collection<V> values() {
+        return valuesView;
+    }
+
+    private void insert(int index, long key, V value) {
+
+        keys[index] = key;
+        values[index] = value;
+
+        ++size;
+        ++modifications;
+
+        if (size > values.length * MAX_LOAD_FACTOR) {
+            rehash(values.length * 2);
+        }
+    }
+
+    private int indexOf(long key) {
+
+        int index = hash(key) & mask;
+
+        while (values[index] != null && keys[index] != key) {
+            index = (index + 1) & mask;
+        }
+
+        return index;
+    }
+
+    private void rehash(int newCapacity) {
+
+        final long[] oldKeys = keys;
+        final Object[] oldValues = values;
+
+        keys = new long[newCapacity];
+        values = new Object[newCapacity];
+        mask = newCapacity - 1;
+
+        for (int i = 0; i < oldValues.length; i++) {
+            if (oldValues[i] != null) {
+                final int index = indexOf(oldKeys[i]);
+                keys[index] = oldKeys[i];
+                values[index] = oldValues[i];
+            }
+        }
+    }
+
+    private static int hash(long key) {
+        // Mixes the high bits in, so keys packed from two ints spread over the table
+        final long h = key * 0x9E3779B97F4A7C15L;
+        return (int) (h ^ (h >>> 32));
+    }
+
+    private static int tableSize(int capacity) {
+        final int size = Integer.highestOneBit(Math.max((int) (capacity / MAX_LOAD_FACTOR), 2) - 1) << 1;
+        return Math.max(size, 2);
+    }
+
+    private final class Values extends AbstractCollection<V> {
+
+        @Override
+        public int size() {
+            return size;
+        }
+
+        @Override
+        public Iterator<V> iterator() {
+            return new ValueIterator();
+        }
+    }
+
+    private final class ValueIterator implements Iterator<V> {
+
+        private final int expectedModifications = modifications;
+        private int index = nextIndex(0);
+
+        @Override
+        public boolean hasNext() {
+            return index < values.length;
+        }
+
+        @Override
+        @SuppressWarnings("unchecked")
+        public V next() {
+
+            if (expectedModifications != modifications) {
+                throw new ConcurrentModificationException();
+            }
+
+            if (index >= values.length) {
+                throw new NoSuchElementException();
+            }
+
+            final V value = (V) values[index];
+
+            index = nextIndex(index + 1);
+
+            return value;
+        }
+
+        private int nextIndex(int start) {
+            int i = start;
+            while (i < values.length && values[i] == null) {
+                ++i;
+            }
+            return i;
+        }
+    }
+}
@@ -1,7 +1,7 @@
 package radon.examples;
 
 import org.joml.Vector2i;
-import org.joml.Vector3f;
+import org.joml.Vector3fc;
 import radon.engine.core.Radon;
 import radon.engine.core.RadonApplication;
 import radon.engine.core.RadonFiles;
@@ -115,8 +115,8 @@ public class SpriteExample extends RadonApplication {
     protected void onUpdate() {
         super.onUpdate();
 
-        Vector3f pos = (Vector3f) SceneManager.scene().entity("Player").get(Transform.class).position();
+        Vector3fc pos = SceneManager.scene().entity("Player").get(Transform.class).position();
 
-        SceneManager.scene().camera().position(pos.x, pos.y, 10);
+        SceneManager.scene().camera().position(pos.x(), pos.y(), 10);
     }
 }
@@ -1,29 +1,38 @@
 #version 450 core
 
-//#extension GL_KHR_vulkan_glsl: require
+#extension GL_ARB_shader_viewport_layer_array : enable
+#extension GL_AMD_vertex_shader_layer : enable
 
 @include "structs/transform.glsl"
 
-layout(std140, set = 0, binding = 0) uniform Camera {
-    mat4 projectionViewMatrix;
-    vec4 position;
-} u_Camera;
+#define MAX_SHADOW_CASCADES_COUNT 3
 
 layout(std430, binding = 2) readonly buffer Transforms {
     Transform u_Transforms[];
 };
 
-uniform mat4 u_LightProjectionViewMatrix;
+// Light matrix and shadow map layer of each layer of the view
+uniform mat4 u_LightProjectionViewMatrices[MAX_SHADOW_CASCADES_COUNT];
+uniform int u_Layers[MAX_SHADOW_CASCADES_COUNT];
+
+@include "structs/static_vertex.glsl"
 
-layout(location = 0) in vec3 in_Position;
-layout(location = 1) in vec3 in_Normal;
-layout(location = 2) in vec2 in_TexCoords;
 layout(location = 3) in int in_TransformIndex;
-layout(location = 4) in int in_MaterialIndex;
+// Shadow cascades are drawn as a layered view, so each instance holds its layer instead of its material
+layout(location = 4) in int in_Layer;
+
+// Read by the geometry shader when the layer cannot be selected from here
+out flat int v_Layer;
 
 void main() {
 
     mat4 modelMatrix = u_Transforms[in_TransformIndex].modelMatrix;
-    
-    gl_Position = u_LightProjectionViewMatrix * modelMatrix * vec4(in_Position, 1.0);
+
+    gl_Position = u_LightProjectionViewMatrices[in_Layer] * modelMatrix * vec4(vertexPosition(), 1.0);
+
+    v_Layer = u_Layers[in_Layer];
+
+#if defined(GL_ARB_shader_viewport_layer_array) || defined(GL_AMD_vertex_shader_layer)
+    gl_Layer = v_Layer;
+#endif
 }
@@ -2,10 +2,8 @@
 
 #extension GL_ARB_bindless_texture: require
 
-#define MAX_POINT_LIGHTS 10
-#define MAX_SPOT_LIGHTS 10
-
 @include "structs/lights.glsl"
+@include "structs/light_clusters.glsl"
 @include "structs/metallic_material.glsl"
 @include "structs/fog.glsl"
 @include "structs/shadow_cascade.glsl"
@@ -19,8 +17,6 @@ layout(std140, binding = 0) uniform Camera {
 
 layout(std140, binding = 1) uniform Lights {
     Light u_DirectionalLight;
-    Light u_PointLights[MAX_POINT_LIGHTS];
-    Light u_SpotLights[MAX_SPOT_LIGHTS];
     vec4 u_AmbientColor;
     Fog u_Fog;
     int u_PointLightsCount;
@@ -81,9 +77,16 @@ vec3 computePointLights() {
 
     vec3 L0 = vec3(0.0);
 
-    for(int i = 0; i < u_PointLightsCount; ++i) {
+    LightCluster cluster = getLightCluster(info.fragmentPosition, u_PointLightsCount + u_SpotLightsCount);
+
+    for(uint i = 0u; i < cluster.count; ++i) {
+
+        Light light = getClusterLight(cluster, i);
 
-        Light light = u_PointLights[i];
+        // Spot lights are not supported by this shading model yet
+        if(light.type != LIGHT_TYPE_POINT) {
+            continue;
+        }
 
         vec3 direction = light.position.xyz - info.fragmentPosition;
 
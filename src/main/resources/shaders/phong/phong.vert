@@ -24,9 +24,8 @@ layout(std140, binding = 5) uniform ShadowsInfo {
 uniform vec4 u_ClipPlane;
 
 
-layout(location = 0) in vec3 in_Position;
-layout(location = 1) in vec3 in_Normal;
-layout(location = 2) in vec2 in_TexCoords;
+@include "structs/static_vertex.glsl"
+
 layout(location = 3) in int in_TransformIndex;
 layout(location = 4) in int in_MaterialIndex;
 
@@ -43,12 +42,12 @@ void main() {
 
     Transform transform = u_Transforms[in_TransformIndex];
 
-    vec4 position = transform.modelMatrix * vec4(in_Position, 1.0);
+    vec4 position = transform.modelMatrix * vec4(vertexPosition(), 1.0);
 
     gl_ClipDistance[0] = dot(position, u_ClipPlane);
 
     fragment.position = position.xyz;
-    fragment.normal = normalize(mat3(transform.modelMatrix) * in_Normal);
+    fragment.normal = normalize(mat3(transform.modelMatrix) * vertexNormal());
     fragment.texCoords = in_TexCoords;
     fragment.materialIndex = in_MaterialIndex;
 
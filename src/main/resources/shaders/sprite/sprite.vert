@@ -1,21 +1,32 @@
-#version 330 core
-layout (location=0) in vec3 aPos;
-layout (location=1) in vec4 aColor;
-layout (location=2) in vec2 aTexCoords;
-layout (location=3) in float aTexId;
+#version 450 core
+
+@include "structs/sprite.glsl"
+
+layout(std430, binding = 0) readonly buffer Sprites {
+    Sprite u_Sprites[];
+};
 
 uniform mat4 uProjection;
 uniform mat4 uView;
+uniform mat4 uModel;
 
 out vec4 fColor;
 out vec2 fTexCoords;
-out float fTexId;
+flat out uvec2 fTexture;
 
 void main()
 {
-    fColor = aColor;
-    fTexCoords = aTexCoords;
-    fTexId = aTexId;
+    Sprite sprite = u_Sprites[gl_InstanceID];
+
+    // Triangle strip of 4 vertices: (0, 0), (1, 0), (0, 1), (1, 1)
+    vec2 corner = vec2(gl_VertexID & 1, gl_VertexID >> 1);
+    vec2 local = corner - vec2(sprite.axisX.w, sprite.axisY.w);
+
+    vec3 position = sprite.origin.xyz + sprite.axisX.xyz * local.x + sprite.axisY.xyz * local.y;
+
+    fColor = unpackUnorm4x8(sprite.color);
+    fTexCoords = mix(sprite.texCoords.xy, sprite.texCoords.zw, corner);
+    fTexture = sprite.textureHandle;
 
-    gl_Position = uProjection * uView * vec4(aPos, 1.0);
-}
\ No newline at end of file
+    gl_Position = uProjection * uView * uModel * vec4(position, 1.0);
+}
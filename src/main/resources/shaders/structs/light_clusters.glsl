@@ -0,0 +1,62 @@
+#define LIGHT_CLUSTERS_X 16
+#define LIGHT_CLUSTERS_Y 9
+#define LIGHT_CLUSTERS_Z 24
+
+layout(std430, binding = 7) readonly buffer LightClusters {
+    mat4 u_ClustersProjectionViewMatrix;
+    vec4 u_ClustersDepthPlane;
+    vec4 u_ClustersDepthParams;
+    uint u_LightClusters[];
+};
+
+// Point lights first, then spot lights
+layout(std430, binding = 8) readonly buffer SceneLights {
+    Light u_Lights[];
+};
+
+struct LightCluster {
+    uint offset;
+    uint count;
+    bool allLights;
+};
+
+// Positions outside of the froxel grid of the camera, like the ones seen in reflections, get every light
+LightCluster getLightCluster(vec3 position, int lightsCount) {
+
+    LightCluster cluster = LightCluster(0u, uint(lightsCount), true);
+
+    vec4 clipSpace = u_ClustersProjectionViewMatrix * vec4(position, 1.0);
+
+    if(clipSpace.w <= 0.0) {
+        return cluster;
+    }
+
+    vec2 ndc = clipSpace.xy / clipSpace.w;
+
+    float depth = dot(u_ClustersDepthPlane.xyz, position) + u_ClustersDepthPlane.w;
+
+    if(any(greaterThan(abs(ndc), vec2(1.0))) || depth > u_ClustersDepthParams.y) {
+        return cluster;
+    }
+
+    ivec2 tile = clamp(ivec2((ndc * 0.5 + 0.5) * vec2(LIGHT_CLUSTERS_X, LIGHT_CLUSTERS_Y)),
+        ivec2(0), ivec2(LIGHT_CLUSTERS_X - 1, LIGHT_CLUSTERS_Y - 1));
+
+    int slice = 0;
+
+    if(depth > u_ClustersDepthParams.x) {
+        slice = clamp(int(log(depth) * u_ClustersDepthParams.z + u_ClustersDepthParams.w), 0, LIGHT_CLUSTERS_Z - 1);
+    }
+
+    uint index = uint((slice * LIGHT_CLUSTERS_Y + tile.y) * LIGHT_CLUSTERS_X + tile.x);
+
+    cluster.offset = u_LightClusters[index * 2u];
+    cluster.count = u_LightClusters[index * 2u + 1u];
+    cluster.allLights = false;
+
+    return cluster;
+}
+
+Light getClusterLight(LightCluster cluster, uint i) {
+    return u_Lights[cluster.allLights ? i : u_LightClusters[cluster.offset + i]];
+}
@@ -2,7 +2,8 @@
 
 struct ShadowCascade {
     mat4 lightMatrix;
-    layout(bindless_sampler) sampler2D depthMap;  
+    // Every cascade is a layer of the same depth map
+    layout(bindless_sampler) sampler2DArray depthMap;
     float farPlane;
     float _padding;
 };
@@ -41,9 +42,9 @@ float computeDirShadows(mat4 projectionViewMatrix, vec3 fragPos, vec4 posDirLigh
 
     float numberOfSamples = 9.0;
 
-    sampler2D depthMap = shadowCascade.depthMap;
+    sampler2DArray depthMap = shadowCascade.depthMap;
 
-    vec2 inc = 1.0 / textureSize(depthMap, 0);
+    vec2 inc = 1.0 / textureSize(depthMap, 0).xy;
 
     for(int row = -1; row <= 1; ++row) {
 
@@ -51,7 +52,7 @@ float computeDirShadows(mat4 projectionViewMatrix, vec3 fragPos, vec4 posDirLigh
 
             vec2 shadowSampleCoords = projCoords.xy + vec2(row, col) * inc;
 
-            float textDepth = texture(depthMap, shadowSampleCoords).r;
+            float textDepth = texture(depthMap, vec3(shadowSampleCoords, shadowCascadeIndex)).r;
 
             shadow += projCoords.z - bias > textDepth ? 1.0 : 0.0;
         }
@@ -0,0 +1,9 @@
+struct Sprite {
+    vec4 axisX;
+    vec4 axisY;
+    vec4 origin;
+    vec4 texCoords;
+    uvec2 textureHandle;
+    uint color;
+    int layer;
+};
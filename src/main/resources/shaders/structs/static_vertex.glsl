@@ -0,0 +1,43 @@
+
+// Vertex attributes of the static meshes. In the compact format, positions are half floats relative to the center of
+// the mesh and normals are encoded on an octahedron
+#ifdef COMPACT_VERTEX_FORMAT
+
+layout(std430, binding = 4) readonly buffer MeshCenters {
+    vec4 u_MeshCenters[];
+};
+
+layout(location = 0) in vec4 in_Position;
+layout(location = 1) in vec2 in_Normal;
+layout(location = 2) in vec2 in_TexCoords;
+
+#else
+
+layout(location = 0) in vec3 in_Position;
+layout(location = 1) in vec3 in_Normal;
+layout(location = 2) in vec2 in_TexCoords;
+
+#endif
+
+layout(location = 5) in int in_MeshIndex;
+
+
+vec3 vertexPosition() {
+#ifdef COMPACT_VERTEX_FORMAT
+    return in_Position.xyz + u_MeshCenters[in_MeshIndex].xyz;
+#else
+    return in_Position;
+#endif
+}
+
+vec3 vertexNormal() {
+#ifdef COMPACT_VERTEX_FORMAT
+    vec3 normal = vec3(in_Normal, 1.0 - abs(in_Normal.x) - abs(in_Normal.y));
+    // Unfold the lower half of the octahedron
+    const float t = max(-normal.z, 0.0);
+    normal.xy += vec2(normal.x >= 0.0 ? -t : t, normal.y >= 0.0 ? -t : t);
+    return normalize(normal);
+#else
+    return in_Normal;
+#endif
+}
@@ -2,10 +2,8 @@
 
 //#extension GL_KHR_vulkan_glsl: require
 
-#define MAX_POINT_LIGHTS 10
-#define MAX_SPOT_LIGHTS 10
-
 @include "structs/lights.glsl"
+@include "structs/light_clusters.glsl"
 @include "structs/fog.glsl"
 @include "structs/water_material.glsl"
 
@@ -17,8 +15,6 @@ layout(std140, binding = 0) uniform Camera {
 
 layout(std140, binding = 1) uniform Lights {
     Light u_DirectionalLight;
-    Light u_PointLights[MAX_POINT_LIGHTS];
-    Light u_SpotLights[MAX_SPOT_LIGHTS];
     vec4 u_AmbientColor;
     Fog u_Fog;
     int u_PointLightsCount;
@@ -120,12 +116,17 @@ vec4 specularHighlights() {
         highlights += computeDirectionalLight(u_DirectionalLight);
     }
 
-    for(int i = 0;i < u_PointLightsCount;++i) {
-        highlights += computePointLight(u_PointLights[i]);
-    }
+    LightCluster cluster = getLightCluster(fragment.position, u_PointLightsCount + u_SpotLightsCount);
+
+    for(uint i = 0u;i < cluster.count;++i) {
+
+        Light light = getClusterLight(cluster, i);
 
-    for(int i = 0;i < u_SpotLightsCount;++i) {
-        highlights += computeSpotLight(u_SpotLights[i]);
+        if(light.type == LIGHT_TYPE_POINT) {
+            highlights += computePointLight(light);
+        } else {
+            highlights += computeSpotLight(light);
+        }
     }
 
     return vec4(highlights, 0.0);